@@ -20,6 +20,7 @@ import android.annotation.TargetApi;
 import android.content.Context;
 import android.os.Build;
 
+import org.runnerup.tracker.FixSample;
 import org.runnerup.tracker.Tracker;
 import org.runnerup.tracker.WorkoutObserver;
 import org.runnerup.workout.WorkoutInfo;
@@ -48,6 +49,6 @@ public class TrackerWear extends DefaultTrackerComponent implements WorkoutObser
     }
 
     @Override
-    public void workoutEvent(WorkoutInfo workoutInfo, int type) {
+    public void workoutEvent(WorkoutInfo workoutInfo, int type, FixSample sample) {
     }
 }
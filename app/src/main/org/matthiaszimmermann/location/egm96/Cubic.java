@@ -14,30 +14,27 @@ class Cubic
       { 1  ,  0  ,  0  , 0  } 
    };
 
-   private final double[][] C = new double[4][4];    // bicubic coefficients matrix
+   private final double[] C = new double[16];    // bicubic coefficients matrix, row major
 
-   Cubic(double[][] G) {
-      double[][] t = new double[4][4];
+   // G is the 4x4 grid, row major
+   Cubic(double[] G) {
+      double[] t = new double[16];
       for (int i = 0; i < 4 ; i++)    // T = G MT
       for (int j = 0 ; j < 4 ; j++)
       for (int k = 0 ; k < 4 ; k++)
-	 t[i][j] += G[i][k] * Cubic.BEZIER[j][k];
-      
+	 t[i * 4 + j] += G[i * 4 + k] * Cubic.BEZIER[j][k];
+
       for (int i = 0 ; i < 4 ; i++)    // C = M T
       for (int j = 0 ; j < 4 ; j++)
       for (int k = 0 ; k < 4 ; k++)
-	 C[i][j] += Cubic.BEZIER[i][k] * t[k][j];
+	 C[i * 4 + j] += Cubic.BEZIER[i][k] * t[k * 4 + j];
    }
 
-   private final double[] C3 = C[0];
-   private final double[] C2 = C[1];
-   private final double[] C1 = C[2];
-   private final double[] C0 = C[3];
-
    double eval(double u, double v) {
-      return u * (u * (u * (v * (v * (v * C3[0] + C3[1]) + C3[2]) + C3[3])
-                         + (v * (v * (v * C2[0] + C2[1]) + C2[2]) + C2[3]))
-                         + (v * (v * (v * C1[0] + C1[1]) + C1[2]) + C1[3]))
-                         + (v * (v * (v * C0[0] + C0[1]) + C0[2]) + C0[3]);
+      final double[] C = this.C;
+      return u * (u * (u * (v * (v * (v * C[0] + C[1]) + C[2]) + C[3])
+                         + (v * (v * (v * C[4] + C[5]) + C[6]) + C[7]))
+                         + (v * (v * (v * C[8] + C[9]) + C[10]) + C[11]))
+                         + (v * (v * (v * C[12] + C[13]) + C[14]) + C[15]);
    }
 }
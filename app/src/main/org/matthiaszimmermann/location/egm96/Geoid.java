@@ -1,14 +1,16 @@
 package org.matthiaszimmermann.location.egm96;
 
 import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-
-import org.matthiaszimmermann.location.Location;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
 
 /**
- * offline <a href="https://en.wikipedia.org/wiki/Geoid">geoid</a> implementation based on the data provided 
+ * offline <a href="https://en.wikipedia.org/wiki/Geoid">geoid</a> implementation based on the data provided
  * by the <a href="http://earth-info.nga.mil/GandG/wgs84/gravitymod/egm96/intpt.html">online caluclator</a>.
- * 
+ *
  * @author matthiaszimmermann
  *
  */
@@ -19,266 +21,261 @@ public class Geoid {
 	private static final int ROWS = 719;  // (89.75 + 89.75)/0.25 + 1 = 719
 	private static final int COLS = 1440; // 359.75/0.25 + 1 = 1440
 
+	// The grid rows including the poles, row 0 is the north pole and row GRID_ROWS - 1 the south pole
+	private static final int GRID_ROWS = ROWS + 2;
+
 	private static final double LATITUDE_MAX = 90.0;
-	private static final double LATITUDE_MAX_GRID = 89.74;
-	private static final double LATITUDE_ROW_FIRST = 89.50;
-	private static final double LATITUDE_ROW_LAST = -89.50;
-	private static final double LATITUDE_MIN_GRID = -89.74;
 	private static final double LATITUDE_MIN = -90.0;
 	public static final double LATITUDE_STEP = 0.25;
 
-	private static final double LONGITIDE_MIN = 0.0;
-	private static final double LONGITIDE_MIN_GRID = 0.0;
-	private static final double LONGITIDE_MAX_GRID = 359.75;
 	private static final double LONGITIDE_MAX = 360.0;
 	private static final double LONGITIDE_STEP = 0.25;
 
 	//Store in 'fixed point format' 16-bit short (in 1/100m (cm)) instead of 64-bit double
-	private static final short [][] offset = new short[ROWS][COLS];
-	private static short offset_north_pole = 0;
-	private static short offset_south_pole = 0;
-	private static boolean s_model_ok = false;
+	//One buffer outside the heap, the pole offsets are repeated for all columns
+	//This is also the layout of the precompiled grid, see GridLoader
+	private static volatile ShortBuffer offset = null;
+	private static GridLoader s_loader = null;
+
+	//The interpolation for the last cell, a track normally stays within a few cells
+	private static volatile Cell s_cell = null;
 
+	private static class Cell {
+		final int row;
+		final int col;
+		final Cubic cubic;
+
+		Cell(int row, int col, Cubic cubic) {
+			this.row = row;
+			this.col = col;
+			this.cubic = cubic;
+		}
+	}
+
+	/**
+	 * Source for the precompiled grid: (ROWS + 2) * COLS 16-bit offsets in cm, row by row
+	 * from the north pole, the pole offsets repeated for all columns.
+	 * The byte order of the buffer is used, normally a memory mapped file.
+	 */
+	public interface GridLoader {
+		ByteBuffer load() throws IOException;
+	}
+
+	/**
+	 * Set the source for the grid, loaded at the first lookup
+	 */
+	public static synchronized void init(GridLoader loader) {
+		if(offset == null) {
+			s_loader = loader;
+		}
+	}
+
+	/**
+	 * Read the grid from the compressed format (egm96-delta.dat)
+	 */
 	@SuppressWarnings("UnusedReturnValue")
-	public static boolean init(InputStream is) {
-		if(s_model_ok) {
+	public static synchronized boolean init(InputStream is) {
+		if(offset != null) {
 			return true;
 		}
 
 		try {
-
-			s_model_ok = readGeoidOffsetsD(new BufferedInputStream(is));
+			ShortBuffer grid = ByteBuffer.allocateDirect(GRID_ROWS * COLS * 2)
+					.order(ByteOrder.nativeOrder()).asShortBuffer();
+			if (readGeoidOffsetsD(new BufferedInputStream(is), grid)) {
+				offset = grid;
+			}
 		}
 		catch (Exception e) {
-			s_model_ok = false;
 			System.err.println("failed to read stream "+e);
 		}
 
-		return s_model_ok;
+		return offset != null;
+	}
+
+	/**
+	 * Drop the grid, for tests comparing the grid sources
+	 */
+	static synchronized void reset() {
+		offset = null;
+		s_loader = null;
+		s_cell = null;
+	}
+
+	/**
+	 * Load the grid if not loaded
+	 * @return true if offsets are available
+	 */
+	public static boolean isAvailable() {
+		return offset != null || load();
+	}
+
+	private static synchronized boolean load() {
+		if(offset != null) {
+			return true;
+		}
+		if(s_loader == null) {
+			return false;
+		}
+
+		try {
+			ByteBuffer buf = s_loader.load();
+			if (buf.capacity() == GRID_ROWS * COLS * 2) {
+				offset = buf.asShortBuffer();
+			} else {
+				System.err.println("unexpected grid size "+buf.capacity());
+			}
+		}
+		catch (IOException e) {
+			System.err.println("failed to load grid "+e);
+		}
+		// Do not retry
+		s_loader = null;
+
+		return offset != null;
 	}
 
-	public static double getOffset(double lat, double lon) {
-        Location location = new Location(lat, lon);
-        return getOffset(location);
-    }
-
-    private static double getOffset(Location location) {
-		double lat = location.getLatitude();
-		double lng = location.getLongitude();
-		
-		// special case for exact grid positions
-		if(latIsGridPoint(lat) && lngIsGridPoint(lng)) {
-			return getGridOffset(lat, lng);
+	public static double getOffset(double lat, double lng) {
+		if(offset == null) {
+			load();
+		}
+		lat = normalizeLat(lat);
+		lng = normalizeLong(lng);
+
+		// grid index of the lower left location, latitude counted from the equator
+		double latFloor = Math.floor(lat / LATITUDE_STEP) * LATITUDE_STEP;
+		double lngFloor = Math.floor(lng / LONGITIDE_STEP) * LONGITIDE_STEP;
+		int row = latToRow(latFloor);
+		int col = lngToCol(lngFloor);
+
+		// special case for exact grid positions, the poles have one offset
+		if(lat == latFloor && lng == lngFloor || row == 0) {
+			return getGridOffset(row, col);
 		}
-		
-		Location [][] q = new Location[4][4];
-		
-		// get four grid locations surrounding the target location
-		// used for bilinear interpolation
-		q[1][1] = getGridFloorLocation(lat, lng);
-		q[1][2] = getUpperLocation(q[1][1]);
-		q[2][1] = getRightLocation(q[1][1]);
-		q[2][2] = getUpperLocation(q[2][1]);
-		
+
 		// check if we can get points for bicubic interpolation
-		if(q[1][1].getLatitude() >= LATITUDE_MIN_GRID && q[1][2].getLatitude() <= LATITUDE_MAX_GRID) {
-			// left column
-			q[0][1] = getLeftLocation(q[1][1]);
-			q[0][2] = getUpperLocation(q[0][1]);
-			q[0][3] = getUpperLocation(q[0][2]);
-			
-			// top row
-			q[1][3] = getRightLocation(q[0][3]);
-			q[2][3] = getRightLocation(q[1][3]);
-			q[2][3] = getRightLocation(q[1][3]);
-			q[3][3] = getRightLocation(q[2][3]);
-			
-			// bottom row
-			q[0][0] = getLowerLocation(q[0][1]);
-			q[1][0] = getRightLocation(q[0][0]);
-			q[1][0] = getRightLocation(q[0][0]);
-			q[2][0] = getRightLocation(q[1][0]);
-
-			// right column
-			q[3][0] = getRightLocation(q[2][0]);
-			q[3][1] = getUpperLocation(q[3][0]);
-			q[3][2] = getUpperLocation(q[3][1]);
-						
-//			return bilinearInterpolation(location, q[1][1], q[1][2], q[2][1], q[2][2]);
-			return bicubicSplineInterpolation(location, q);
-			
+		if(row >= 2 && row + 1 < GRID_ROWS) {
+			return bicubicSplineInterpolation(lat, lng, latFloor, lngFloor, row, col);
 		}
 		else {
-			return bilinearInterpolation(location, q[1][1], q[1][2], q[2][1], q[2][2]);
+			return bilinearInterpolation(lat, lng, latFloor, lngFloor, row, col);
 		}
 	}
-	
+
 	/**
 	 * bilinearInterpolation according to description on wikipedia
 	 * @see <a href="https://en.wikipedia.org/wiki/Bilinear_interpolation">wikipedia Bilinear_interpolation</a>
 	 * @return  the lineary interpolated value
 	 */
-	private static double bilinearInterpolation(Location target, Location q11, Location q12, Location q21, Location q22) {
-		double fq11 = getGridOffset(q11); // lower left
-		double fq12 = getGridOffset(q12); // upper left
-		double fq21 = getGridOffset(q21); // lower right
-		double fq22 = getGridOffset(q22); // upper right
-		
-		double x1 = q11.getLongitude();
-		double x2 = q22.getLongitude();
-		double y1 = q22.getLatitude();
-		double y2 = q11.getLatitude();
-		
-		// special case for latitude moving from 359.75 -> 0
-		if(x1 == 359.75 && x2 == 0.0) {
-			x2 = 360.0;
-		}
-		
-		double x = target.getLongitude();
-		double y = target.getLatitude();
-		
+	private static double bilinearInterpolation(double y, double x, double latFloor, double lngFloor, int row, int col) {
+		int upper = Math.max(row - 1, 0);
+		int right = rightCol(col);
+		double fq11 = getGridOffset(row, col); // lower left
+		double fq12 = getGridOffset(upper, col); // upper left
+		double fq21 = getGridOffset(row, right); // lower right
+		double fq22 = getGridOffset(upper, right); // upper right
+
+		double x1 = lngFloor;
+		double x2 = x1 + LONGITIDE_STEP;
+		double y1 = Math.min(latFloor + LATITUDE_STEP, LATITUDE_MAX);
+		double y2 = latFloor;
+
 		double f11 = fq11 * (x2 - x) * (y2 - y);
 		double f12 = fq12 * (x2 - x) * (y - y1);
 		double f21 = fq21 * (x - x1) * (y2 - y);
 		double f22 = fq22 * (x - x1) * (y - y1);
-		
+
 		return (f11 + f12 + f21 + f22) / ((x2 - x1) * (y2 - y1));
 	}
-	
+
 	/**
-	 * Bicubic spline: If you provide a 4x4 grid of values for geometric quantities in u and v, 
-	 * this class creates an object that will interpolate a Bicubic spline to give you the value 
+	 * Bicubic spline: If you provide a 4x4 grid of values for geometric quantities in u and v,
+	 * this class creates an object that will interpolate a Bicubic spline to give you the value
 	 * within any point of a unit tile in (u,v) space.
 	 * If you want to create a spline surface, you can make a two dimensional array of such objects.
-	 * 
+	 *
 	 * @see <a href="http://mrl.nyu.edu/~perlin/cubic/Cubic_java.html">Gubic</a>
 	 * @return bicubic spline
-	 */	
-    private static double bicubicSplineInterpolation(Location target, Location[][] grid) {
-		double G [][] = new double [4][4];
-
-		for(int i = 0; i < 4; i++) {
-			for(int j = 0; j < 4; j++) {
-				G[i][j] = getGridOffset(grid[i][j]);
+	 */
+	private static double bicubicSplineInterpolation(double lat, double lng, double latFloor, double lngFloor, int row, int col) {
+		Cell cell = s_cell;
+		if (cell == null || cell.row != row || cell.col != col) {
+			// G[i][j]: i is the column from the left, j the row from the bottom
+			double[] G = new double[16];
+			int c = leftCol(col);
+			for (int i = 0; i < 4; i++) {
+				for (int j = 0; j < 4; j++) {
+					G[i * 4 + j] = getGridOffset(row + 1 - j, c);
+				}
+				c = rightCol(c);
 			}
+			cell = new Cell(row, col, new Cubic(G));
+			s_cell = cell;
 		}
-		
-		double u1 = grid[1][1].getLatitude();
-		double v1 = grid[1][1].getLongitude();
-				
-		double u = (target.getLatitude() - u1 + LATITUDE_STEP) / (4 * LATITUDE_STEP);
-		double v = (target.getLongitude() - v1 + LONGITIDE_STEP) / (4 * LONGITIDE_STEP);
-		Cubic c = new Cubic(G);
-		
-    	return c.eval(u, v);
-    }	
-    
-	private static Location getUpperLocation(Location location) {
-		double lat = location.getLatitude();
-		double lng = location.getLongitude();
-		
-		if(lat == LATITUDE_MAX_GRID) {
-			lat = LATITUDE_MAX;
-		}
-		else if(lat == LATITUDE_ROW_FIRST) {
-			lat = LATITUDE_MAX_GRID;
-		}
-		else if(lat == LATITUDE_MIN) {
-			lat = LATITUDE_MIN_GRID;
-		}
-		else if(lat == LATITUDE_MIN_GRID) {
-			lat = LATITUDE_ROW_LAST;
-		}
-		else {
-			lat += LATITUDE_STEP;
-		}
-		
-		return new Location(lat, lng);
+
+		double u = (lat - latFloor + LATITUDE_STEP) / (4 * LATITUDE_STEP);
+		double v = (lng - lngFloor + LONGITIDE_STEP) / (4 * LONGITIDE_STEP);
+
+		return cell.cubic.eval(u, v);
 	}
-	
-	private static Location getLowerLocation(Location location) {
-		double lat = location.getLatitude();
-		double lng = location.getLongitude();
-		
-		if(lat == LATITUDE_MIN_GRID) {
-			lat = LATITUDE_MIN;
-		}
-		else if(lat == LATITUDE_ROW_FIRST) {
-			lat = LATITUDE_MIN_GRID;
-		}
-		else if(lat == LATITUDE_MAX) {
-			lat = LATITUDE_MAX_GRID;
-		}
-		else if(lat == LATITUDE_MAX_GRID) {
-			lat = LATITUDE_ROW_FIRST;
-		}
-		else {
-			lat -= LATITUDE_STEP;
+
+	private static double getGridOffset(int row, int col) {
+		ShortBuffer grid = offset;
+		if(grid == null) {
+			return OFFSET_INVALID/100.0d;
 		}
-		
-		return new Location(lat, lng);
+		return grid.get(row * COLS + col)/100.0d;
 	}
-	
-	private static Location getLeftLocation(Location location) {
-		double lat = location.getLatitude();
-		double lng = location.getLongitude();
-		
-		return new Location(lat, lng - LATITUDE_STEP);
+
+	private static int latToRow(double lat) {
+		return (int)((LATITUDE_MAX - lat) / LATITUDE_STEP);
 	}
-	
-	private static Location getRightLocation(Location location) {
-		double lat = location.getLatitude();
-		double lng = location.getLongitude();
-		
-		return new Location(lat, lng + LATITUDE_STEP);
+
+	private static int lngToCol(double lng) {
+		return (int)(lng / LONGITIDE_STEP);
 	}
-	
-	private static Location getGridFloorLocation(double lat, double lng) {
-		Location floor = (new Location(lat, lng)).floor();
-		double latFloor = floor.getLatitude();
-		
-		if(lat >= LATITUDE_MAX_GRID && lat < LATITUDE_MAX) { 
-			latFloor = LATITUDE_MAX_GRID; 
-		}
-		else if(lat < LATITUDE_MIN_GRID) {
-			latFloor = LATITUDE_MIN; 
-		}
-		else if(lat < LATITUDE_ROW_LAST) {
-			latFloor = LATITUDE_MIN_GRID; 
-		}
-		
-		return new Location(latFloor, floor.getLongitude());
+
+	private static int leftCol(int col) {
+		return col == 0 ? COLS - 1 : col - 1;
 	}
-	
-	private static double getGridOffset(Location location) {
-		return getGridOffset(location.getLatitude(), location.getLongitude());
+
+	private static int rightCol(int col) {
+		return col == COLS - 1 ? 0 : col + 1;
 	}
 
-	private static double getGridOffset(double lat, double lng) {
-		return getGridOffsetS(lat, lng)/100.0d;
+	private static double normalizeLat(double lat) {
+		if(lat > LATITUDE_MAX) {
+			return normalizeLatPositive(lat);
+		}
+		else if(lat < LATITUDE_MIN) {
+			return -normalizeLatPositive(-lat);
+		}
+
+		return lat;
 	}
-    private static short getGridOffsetS(double lat, double lng) {
-		if(!s_model_ok) {
-			return OFFSET_INVALID;
+
+	private static double normalizeLatPositive(double lat) {
+		double delta = (lat - LATITUDE_MAX) % LONGITIDE_MAX;
+
+		if(delta <= 180.0) {
+			lat = LATITUDE_MAX - delta;
 		}
-		
-		if(!latIsGridPoint(lat) || !lngIsGridPoint(lng)) {
-			return OFFSET_INVALID;
+		else {
+			lat = delta - 270.0;
 		}
-		
-		if(latIsPole(lat)) {
-			if(lat == LATITUDE_MAX) {
-				return offset_north_pole;
-			}
-			else {
-				return offset_south_pole;
-			}
+
+		return lat;
+	}
+
+	private static double normalizeLong(double lng) {
+		lng %= LONGITIDE_MAX;
+
+		if(lng >= 0.0) {
+			return lng;
+		}
+		else {
+			return lng + LONGITIDE_MAX;
 		}
-		
-		int i = latToI(lat);
-		int j = lngToJ(lng);
-		
-		return offset[i][j];
 	}
 
     //Get offsets from a definition file where the data is stored in a compressed format
@@ -297,7 +294,7 @@ public class Geoid {
 	//For two bytes, the data is stored as 0xc000+offset, so first bit is always set
 	//Last, the south pole offset is added negatively, to get last offset as 0 (used as a check)
 
-	private static boolean readGeoidOffsetsD(BufferedInputStream is) throws Exception {
+	private static boolean readGeoidOffsetsD(BufferedInputStream is, ShortBuffer grid) throws Exception {
 		//BufferedReader _may_ increase the performance
 		final byte[] buf = new byte[1000];
 		int bufRead = 0;
@@ -322,9 +319,9 @@ public class Geoid {
 				prevByte=c;
 				if (!prevIsTwo) {
 					if (offsetCount < 0) {
-						offset_north_pole = (short) off;
+						fillRow(grid, 0, (short) off);
 					} else if (offsetCount == ROWS * COLS) {
-						offset_south_pole = (short) off;
+						fillRow(grid, GRID_ROWS - 1, (short) off);
 					} else if (offsetCount == 1 + ROWS * COLS) {
 						if (off == 0) {
 							allRead = true;
@@ -336,7 +333,7 @@ public class Geoid {
 						allRead = false;
 						System.err.println("Unexpected data "+offsetCount / COLS + " "+offsetCount % COLS + " "+off+" "+c);
 					} else {
-						offset[offsetCount / COLS][offsetCount % COLS] = (short) off;
+						grid.put(COLS + offsetCount, (short) off);
 					}
 					offsetCount++;
 				}
@@ -347,41 +344,9 @@ public class Geoid {
 		return allRead;
 	}
 
-	private static boolean latOk(double lat) {
-		return lat >= LATITUDE_MIN && lat <= LATITUDE_MAX;
-	}
-	
-	@SuppressWarnings("unused")
-	private static boolean lngOk(double lng) {
-		return lng >= LONGITIDE_MIN && lng <= LONGITIDE_MAX;
-	} 
-	
-	private static boolean lngOkGrid(double lng) {
-		return lng >= LONGITIDE_MIN_GRID && lng <= LONGITIDE_MAX_GRID;
-	}
-	
-	private static boolean latIsGridPoint(double lat) {
-		return latOk(lat) && (latIsPole(lat) || lat == LATITUDE_MAX_GRID || lat == LATITUDE_MIN_GRID || lat <= LATITUDE_ROW_FIRST && lat >= LATITUDE_ROW_LAST && lat / LATITUDE_STEP == Math.round(lat / LATITUDE_STEP));
-
-	}
-	
-	private static boolean lngIsGridPoint(double lng) {
-		return lngOkGrid(lng) && lng / LONGITIDE_STEP == Math.round(lng / LONGITIDE_STEP);
-
-	}
-	
-	private static boolean latIsPole(double lat) {
-		return lat == LATITUDE_MAX || lat == LATITUDE_MIN; 
-	}
-	
-	private static int latToI(double lat) {
-		if(lat == LATITUDE_MAX_GRID) { return 0; }
-		if(lat == LATITUDE_MIN_GRID) { return ROWS - 1; }
-		else                         { return (int)((LATITUDE_ROW_FIRST - lat) / LATITUDE_STEP) + 1; }
-	}
-	
-	private static int lngToJ(double lng) {
-		return (int)(lng / LONGITIDE_STEP);
+	private static void fillRow(ShortBuffer grid, int row, short value) {
+		for (int j = 0; j < COLS; j++) {
+			grid.put(row * COLS + j, value);
+		}
 	}
-	
 }
@@ -19,7 +19,6 @@ package org.runnerup.content;
 
 import android.content.ContentProvider;
 import android.content.ContentValues;
-import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.UriMatcher;
 import android.database.Cursor;
@@ -29,7 +28,6 @@ import android.os.ParcelFileDescriptor;
 import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.util.Log;
-import android.util.Pair;
 
 import org.runnerup.BuildConfig;
 import org.runnerup.db.DBHelper;
@@ -43,11 +41,13 @@ import org.runnerup.export.format.TCX;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 public class ActivityProvider extends ContentProvider {
@@ -81,6 +81,10 @@ public class ActivityProvider extends ContentProvider {
     static final int RUNKEEPER = 6;
     private UriMatcher uriMatcher;
 
+    // Each export blocks while its reader is not reading, so exports are not queued
+    // behind each other. Idle threads are reused for the next open.
+    private static final ExecutorService sExportExecutor = Executors.newCachedThreadPool();
+
     @Override
     public boolean onCreate() {
         uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
@@ -93,35 +97,147 @@ public class ActivityProvider extends ContentProvider {
         return true;
     }
 
-    private Pair<File, OutputStream> openCacheFile(String name) {
-        for (int i = 0; i < 3; i++) {
+    private void export(int res, SQLiteDatabase mDB, long activityId, boolean accuracyExtensions,
+                        OutputStream out) throws Exception {
+        Writer writer = new OutputStreamWriter(out);
+        if (res == TCX) {
+            TCX tcx = new TCX(mDB);
+            tcx.export(activityId, writer);
+            Log.i(getClass().getName(), "export tcx");
+        } else if (res == GPX) {
+            GPX gpx = new GPX(mDB, true, accuracyExtensions);
+            gpx.export(activityId, writer);
+            Log.i(getClass().getName(), "export gpx");
+        } else if (res == NIKE) {
+            NikeXML xml = new NikeXML(mDB);
+            xml.export(activityId, writer);
+        } else if (res == MAPS) {
+            GoogleStaticMap map = new GoogleStaticMap(mDB);
+            String str = map.export(activityId, 2000);
+            writer.write(str);
+        } else if (res == FACEBOOK_COURSE) {
+            FacebookCourse map = new FacebookCourse(getContext(), mDB);
+            final boolean includeMap = true;
+            String str = map.export(activityId, includeMap, null).toString();
+            writer.write(str);
+        } else {
+           //noinspection ConstantConditions
+           if (res == RUNKEEPER) {
+                RunKeeper map = new RunKeeper(mDB);
+                map.export(activityId, writer);
+            }
+        }
+        writer.flush();
+    }
+
+    private void exportToPipe(int res, SQLiteDatabase mDB, long activityId,
+                              boolean accuracyExtensions, ExportFileCache cache, String key,
+                              OutputStream pipe) {
+        OutputStream reader = new BufferedOutputStream(pipe);
+        OutputStream cached;
+        try {
+            cached = cache.openTemp(key);
+        } catch (IOException e) {
+            Log.w(getClass().getName(), "activity: " + activityId + ", not cached: " + e.getMessage());
+            exportUncached(res, mDB, activityId, accuracyExtensions, reader);
+            return;
+        }
+
+        TeeOutputStream out = new TeeOutputStream(reader, cached);
+        try {
+            export(res, mDB, activityId, accuracyExtensions, out);
+            out.close();
+            cache.commit(key);
+            Log.i(getClass().getName(), "activity: " + activityId + ", streamed and cached " + key);
+        } catch (Exception e) {
+            Log.w(getClass().getName(), "activity: " + activityId + ", export failed: " + e.getMessage());
+            out.closeQuietly();
+            cache.abort(key);
+        } finally {
+            out.closeQuietly();
+        }
+    }
+
+    private void exportUncached(int res, SQLiteDatabase mDB, long activityId,
+                                boolean accuracyExtensions, OutputStream out) {
+        try {
+            export(res, mDB, activityId, accuracyExtensions, out);
+        } catch (Exception e) {
+            Log.w(getClass().getName(), "activity: " + activityId + ", export failed: " + e.getMessage());
+        } finally {
             try {
-                Context ctx = getContext();
-                if (BuildConfig.DEBUG && ctx == null) { throw new AssertionError(); }
-                File path;
-                switch (i) {
-                    case 0:
-                    default:
-                        path = ctx.getExternalCacheDir();
-                        break;
-                    case 1:
-                        path = ctx.getExternalFilesDir("tcx");
-                        break;
-                    case 2:
-                        path = ctx.getCacheDir();
-                        break;
+                out.close();
+            } catch (IOException e) {
+                // The reader closed the pipe
+            }
+        }
+    }
+
+    /**
+     * Writes to the reader and the cache.
+     * If the reader stops reading, the export is still completed to the cache.
+     */
+    private static class TeeOutputStream extends OutputStream {
+        private final OutputStream reader;
+        private final OutputStream cache;
+        private boolean readerOpen = true;
+        private boolean closed = false;
+
+        TeeOutputStream(OutputStream reader, OutputStream cache) {
+            this.reader = reader;
+            this.cache = cache;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            cache.write(b, off, len);
+            if (readerOpen) {
+                try {
+                    reader.write(b, off, len);
+                } catch (IOException e) {
+                    readerOpen = false;
                 }
-                @SuppressWarnings("ConstantConditions") final File file = new File(path.getAbsolutePath() + File.separator + name);
-                final OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
-                Log.e(getClass().getName(), Integer.toString(i) + ": putting cache file in: "
-                        + file.getAbsolutePath());
-                //noinspection Convert2Diamond
-                return new Pair<File, OutputStream>(file, out);
-            } catch (IOException | NullPointerException ignored) {
             }
         }
 
-        return null;
+        @Override
+        public void flush() throws IOException {
+            cache.flush();
+            if (readerOpen) {
+                try {
+                    reader.flush();
+                } catch (IOException e) {
+                    readerOpen = false;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                reader.close();
+            } catch (IOException e) {
+                readerOpen = false;
+            }
+            cache.close();
+        }
+
+        void closeQuietly() {
+            try {
+                close();
+            } catch (IOException e) {
+                Log.w("ActivityProvider", "Failed to close the cached export: " + e.getMessage());
+            }
+        }
     }
 
     @Override
@@ -129,7 +245,7 @@ public class ActivityProvider extends ContentProvider {
             throws FileNotFoundException {
 
         final int res = uriMatcher.match(uri);
-        Log.e(getClass().getName(), "match(" + uri.toString() + "): " + res);
+        Log.i(getClass().getName(), "match(" + uri.toString() + "): " + res);
         switch (res) {
             case GPX:
             case TCX:
@@ -140,59 +256,47 @@ public class ActivityProvider extends ContentProvider {
                 final List<String> list = uri.getPathSegments();
                 final String id = list.get(list.size() - 2);
                 final long activityId = Long.parseLong(id);
-                final String parcelFile = "activity." + list.get(list.size() - 3);
-                final Pair<File, OutputStream> out = openCacheFile(parcelFile);
-                if (out == null) {
-                    Log.e(getClass().getName(), "Failed to open cacheFile(" + parcelFile + ")");
-                    return null;
+                final String format = list.get(list.size() - 3);
+
+                //The data must exist if log, use the log option as a possibility to "deactivate" too
+                final SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this.getContext());
+                final boolean accuracyExtensions = res == GPX &&
+                        prefs.getBoolean(this.getContext().getString(org.runnerup.R.string.pref_log_gpx_accuracy), false);
+
+                final SQLiteDatabase mDB = DBHelper.getReadableDatabase(getContext());
+                final ExportFileCache cache = new ExportFileCache(getContext());
+                // Exports are cached until the activity is modified
+                final String key = ExportFileCache.getKey(mDB, activityId, format,
+                        accuracyExtensions ? "accuracy" : "");
+                if (key == null) {
+                    DBHelper.closeDB(mDB);
+                    throw new FileNotFoundException("No activity: " + uri.toString());
+                }
+                File file = cache.get(key);
+                if (file != null) {
+                    DBHelper.closeDB(mDB);
+                    Log.i(getClass().getName(), "activity: " + activityId + ", cached file: "
+                            + file.getAbsolutePath());
+                    return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
                 }
 
-                Log.e(getClass().getName(), "activity: " + activityId + ", file: "
-                        + out.first.getAbsolutePath());
-                SQLiteDatabase mDB = DBHelper.getReadableDatabase(getContext());
+                // Stream the export to the reader while it is produced, and to the cache
+                final ParcelFileDescriptor[] pipe;
                 try {
-                    if (res == TCX) {
-                        TCX tcx = new TCX(mDB);
-                        tcx.export(activityId, new OutputStreamWriter(out.second));
-                        Log.e(getClass().getName(), "export tcx");
-                    } else if (res == GPX) {
-                        final SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this.getContext());
-                        //The data must exist if log, use the log option as a possibility to "deactivate" too
-                        boolean enabled = prefs.getBoolean(this.getContext().getString(org.runnerup.R.string.pref_log_gpx_accuracy), false);
-                        GPX gpx = new GPX(mDB, true, enabled);
-                        gpx.export(activityId, new OutputStreamWriter(out.second));
-                        Log.e(getClass().getName(), "export gpx");
-                    } else if (res == NIKE) {
-                        NikeXML xml = new NikeXML(mDB);
-                        xml.export(activityId, new OutputStreamWriter(out.second));
-                    } else if (res == MAPS) {
-                        GoogleStaticMap map = new GoogleStaticMap(mDB);
-                        String str = map.export(activityId, 2000);
-                        out.second.write(str.getBytes());
-                    } else if (res == FACEBOOK_COURSE) {
-                        FacebookCourse map = new FacebookCourse(getContext(), mDB);
-                        final boolean includeMap = true;
-                        String str = map.export(activityId, includeMap, null).toString();
-                        out.second.write(str.getBytes());
-                    } else {
-                       //noinspection ConstantConditions
-                       if (res == RUNKEEPER) {
-                            RunKeeper map = new RunKeeper(mDB);
-                            map.export(activityId, new OutputStreamWriter(out.second));
-                        }
-                    }
-                    out.second.flush();
-                    out.second.close();
-                    Log.e(getClass().getName(), "wrote " + out.first.length() + " bytes...");
-                } catch (Exception e) {
-                    e.printStackTrace();
+                    pipe = ParcelFileDescriptor.createPipe();
+                } catch (IOException e) {
+                    DBHelper.closeDB(mDB);
+                    throw new FileNotFoundException("Failed to create pipe: " + e.getMessage());
                 }
-                DBHelper.closeDB(mDB);
-
-                //noinspection UnnecessaryLocalVariable
-                ParcelFileDescriptor pfd = ParcelFileDescriptor.open(out.first,
-                        ParcelFileDescriptor.MODE_READ_ONLY);
-                return pfd;
+                sExportExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        exportToPipe(res, mDB, activityId, accuracyExtensions, cache, key,
+                                new ParcelFileDescriptor.AutoCloseOutputStream(pipe[1]));
+                        DBHelper.closeDB(mDB);
+                    }
+                });
+                return pipe[0];
         }
 
         throw new FileNotFoundException("Unsupported uri: " + uri.toString());
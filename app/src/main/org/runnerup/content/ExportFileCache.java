@@ -0,0 +1,159 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.content;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import org.runnerup.common.util.Constants.DB;
+import org.runnerup.util.FileUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Exported activities in the app cache directory, shared by ActivityProvider and the synchronizers.
+ *
+ * Files are named by a hash of the activity id, the format, the export options and the
+ * modification stamp of the activity row, so a changed activity gets a new file and old
+ * files are evicted, least recently used first, when the cache exceeds MAX_BYTES.
+ */
+public class ExportFileCache {
+    private static final String DIR = "export";
+    private static final long MAX_BYTES = 32 * 1024 * 1024;
+
+    public interface Exporter {
+        void export(OutputStream out) throws IOException;
+    }
+
+    private final File dir;
+
+    public ExportFileCache(Context context) {
+        dir = new File(context.getCacheDir(), DIR);
+    }
+
+    /**
+     * @param format the export format, also used as the file extension
+     * @param options the export options affecting the content, may be empty
+     * @return the key for the current version of the activity export, null if no activity
+     */
+    public static String getKey(SQLiteDatabase db, long activityId, String format, String options) {
+        String[] columns = {DB.ACTIVITY.START_TIME, DB.ACTIVITY.MODIFIED};
+        Cursor c = db.query(DB.ACTIVITY.TABLE, columns, "_id = " + activityId,
+                null, null, null, null);
+        String stamp = null;
+        if (c.moveToFirst()) {
+            stamp = c.getLong(0) + ":" + c.getLong(1);
+        }
+        c.close();
+        if (stamp == null) {
+            return null;
+        }
+
+        String key = activityId + ":" + format + ":" + options + ":" + stamp;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.append('.').append(format).toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the cached export, or null if not cached
+     */
+    public File get(String key) {
+        File file = new File(dir, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Get the cached export or export the activity to the cache
+     */
+    public File get(String key, Exporter exporter) throws IOException {
+        File file = get(key);
+        if (file != null) {
+            return file;
+        }
+
+        OutputStream out = openTemp(key);
+        boolean ok = false;
+        try {
+            exporter.export(out);
+            ok = true;
+        } finally {
+            out.close();
+            if (!ok) {
+                abort(key);
+            }
+        }
+        return commit(key);
+    }
+
+    /**
+     * Open a temporary file for the export, made visible by commit()
+     */
+    OutputStream openTemp(String key) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir.getAbsolutePath());
+        }
+        return new BufferedOutputStream(new FileOutputStream(getTemp(key)));
+    }
+
+    File commit(String key) throws IOException {
+        File file = new File(dir, key);
+        if (!getTemp(key).renameTo(file)) {
+            throw new IOException("Cannot rename to " + file.getAbsolutePath());
+        }
+        trim();
+        return file;
+    }
+
+    void abort(String key) {
+        //noinspection ResultOfMethodCallIgnored
+        getTemp(key).delete();
+    }
+
+    private File getTemp(String key) {
+        return new File(dir, key + "." + Thread.currentThread().getId() + ".tmp");
+    }
+
+    private void trim() {
+        synchronized (ExportFileCache.class) {
+            // Exports in progress are not included
+            int deleted = FileUtil.trim(dir, MAX_BYTES);
+            if (deleted > 0) {
+                Log.i(getClass().getName(), "Trimmed " + deleted + " exports from the cache");
+            }
+        }
+    }
+}
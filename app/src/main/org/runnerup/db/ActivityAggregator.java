@@ -0,0 +1,216 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.db;
+
+import android.content.ContentValues;
+import android.location.Location;
+
+import org.runnerup.common.util.Constants;
+
+/**
+ * Incremental lap and activity aggregates, updated for each location in insert order.
+ * Used by the tracker while recording and by ActivityCleaner to repair an activity.
+ */
+public class ActivityAggregator implements Constants {
+
+    public static class Totals {
+        private double distance;
+        private long time; // ms
+        private long sumHr;
+        private int countHr;
+        private int maxHr;
+        private double sumCadence;
+        private int countCadence;
+        private double elevationGain;
+
+        void reset() {
+            distance = 0;
+            time = 0;
+            sumHr = 0;
+            countHr = 0;
+            maxHr = 0;
+            sumCadence = 0;
+            countCadence = 0;
+            elevationGain = 0;
+        }
+
+        public double getDistance() {
+            return distance;
+        }
+
+        public long getTimeMs() {
+            return time;
+        }
+
+        public boolean hasHr() {
+            return countHr > 0;
+        }
+
+        public long getAvgHr() {
+            return countHr == 0 ? 0 : Math.round(sumHr / (double) countHr);
+        }
+
+        public int getMaxHr() {
+            return maxHr;
+        }
+
+        public boolean hasCadence() {
+            return countCadence > 0;
+        }
+
+        public double getAvgCadence() {
+            return countCadence == 0 ? 0 : sumCadence / countCadence;
+        }
+
+        public double getElevationGain() {
+            return elevationGain;
+        }
+    }
+
+    private final Totals mLap = new Totals();
+    private final Totals mActivity = new Totals();
+    private final float[] mDistanceResult = new float[1];
+
+    private boolean mHasLast = false;
+    private double mLastLatitude;
+    private double mLastLongitude;
+    private long mLastTime;
+    private double mLastAltitude = Double.NaN;
+    private boolean mIsActive = false;
+
+    public void reset() {
+        mLap.reset();
+        mActivity.reset();
+        mHasLast = false;
+        mLastAltitude = Double.NaN;
+        mIsActive = false;
+    }
+
+    /**
+     * Start aggregating a new lap, the activity totals are kept
+     */
+    public void startLap() {
+        mLap.reset();
+    }
+
+    public Totals getLap() {
+        return mLap;
+    }
+
+    public Totals getActivity() {
+        return mActivity;
+    }
+
+    /**
+     * Add a location
+     * @param hr heart rate, 0 if not available
+     * @param cadence NaN if not available
+     * @param altitude NaN if not available
+     */
+    public void add(int type, long time, double latitude, double longitude,
+                    int hr, float cadence, double altitude) {
+        switch (type) {
+            case DB.LOCATION.TYPE_START:
+            case DB.LOCATION.TYPE_RESUME:
+                mIsActive = true;
+                break;
+            case DB.LOCATION.TYPE_END:
+            case DB.LOCATION.TYPE_PAUSE:
+            case DB.LOCATION.TYPE_GPS:
+                if (mHasLast && mIsActive) {
+                    Location.distanceBetween(mLastLatitude, mLastLongitude,
+                            latitude, longitude, mDistanceResult);
+                    double diffDist = mDistanceResult[0];
+                    long diffTime = time - mLastTime;
+                    mLap.distance += diffDist;
+                    mActivity.distance += diffDist;
+                    mLap.time += diffTime;
+                    mActivity.time += diffTime;
+
+                    if (hr > 0) {
+                        addHr(mLap, hr);
+                        addHr(mActivity, hr);
+                    }
+                    if (!Float.isNaN(cadence)) {
+                        mLap.sumCadence += cadence;
+                        mLap.countCadence++;
+                        mActivity.sumCadence += cadence;
+                        mActivity.countCadence++;
+                    }
+                    if (!Double.isNaN(altitude) && !Double.isNaN(mLastAltitude)
+                            && altitude > mLastAltitude) {
+                        mLap.elevationGain += altitude - mLastAltitude;
+                        mActivity.elevationGain += altitude - mLastAltitude;
+                    }
+                }
+                if (type == DB.LOCATION.TYPE_PAUSE || type == DB.LOCATION.TYPE_END) {
+                    mIsActive = false;
+                }
+                break;
+            default:
+                return;
+        }
+
+        mHasLast = true;
+        mLastLatitude = latitude;
+        mLastLongitude = longitude;
+        mLastTime = time;
+        if (!Double.isNaN(altitude)) {
+            mLastAltitude = altitude;
+        }
+    }
+
+    private static void addHr(Totals t, int hr) {
+        t.sumHr += hr;
+        t.countHr++;
+        t.maxHr = Math.max(t.maxHr, hr);
+    }
+
+    /**
+     * Aggregates for the current lap, as in the lap table
+     */
+    public ContentValues getLapValues() {
+        ContentValues tmp = new ContentValues();
+        tmp.put(DB.LAP.DISTANCE, mLap.distance);
+        tmp.put(DB.LAP.TIME, Math.round(mLap.time / 1000.0d));
+        if (mLap.hasHr()) {
+            tmp.put(DB.LAP.AVG_HR, mLap.getAvgHr());
+            tmp.put(DB.LAP.MAX_HR, mLap.maxHr);
+        }
+        if (mLap.hasCadence()) {
+            tmp.put(DB.LAP.AVG_CADENCE, mLap.getAvgCadence());
+        }
+        return tmp;
+    }
+
+    /**
+     * Aggregates for the activity, as in the activity table
+     */
+    public ContentValues getActivityValues() {
+        ContentValues tmp = new ContentValues();
+        if (mActivity.hasHr()) {
+            tmp.put(DB.ACTIVITY.AVG_HR, mActivity.getAvgHr());
+            tmp.put(DB.ACTIVITY.MAX_HR, mActivity.maxHr);
+        }
+        if (mActivity.hasCadence()) {
+            tmp.put(DB.ACTIVITY.AVG_CADENCE, mActivity.getAvgCadence());
+        }
+        tmp.put(DB.ACTIVITY.DISTANCE, mActivity.distance);
+        tmp.put(DB.ACTIVITY.ELEVATION_GAIN, mActivity.elevationGain);
+        tmp.put(DB.ACTIVITY.TIME, Math.round(mActivity.time / 1000.0d)); // also used as a flag for conditionalRecompute
+        return tmp;
+    }
+}
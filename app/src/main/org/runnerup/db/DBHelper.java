@@ -53,15 +53,17 @@ import org.runnerup.export.RunningFreeOnlineSynchronizer;
 import org.runnerup.export.RuntasticSynchronizer;
 import org.runnerup.export.StravaSynchronizer;
 import org.runnerup.util.FileUtil;
+import org.runnerup.util.GraphWrapper;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.List;
 
 public class DBHelper extends SQLiteOpenHelper implements
         Constants {
 
-    private static final int DBVERSION = 31;
+    private static final int DBVERSION = 35;
     private static final String DBNAME = "runnerup.db";
 
     //DBVERSION update
@@ -71,7 +73,7 @@ public class DBHelper extends SQLiteOpenHelper implements
     //        + (DB.DBINFO.ACCOUNT_VERSION + " integer not null default 0")
     //        + ");";
 
-    private static final String CREATE_TABLE_ACTIVITY = "create table "
+    static final String CREATE_TABLE_ACTIVITY = "create table "
             + DB.ACTIVITY.TABLE + " ( "
             + ("_id integer primary key autoincrement, ")
             + (DB.ACTIVITY.START_TIME + " integer not null default (strftime('%s','now')),")
@@ -85,10 +87,179 @@ public class DBHelper extends SQLiteOpenHelper implements
             + (DB.ACTIVITY.AVG_CADENCE + " real, ")
             + (DB.ACTIVITY.META_DATA + " text, ")
             + ("deleted integer not null default 0, ")
-            + "nullColumnHack text null"
+            + "nullColumnHack text null, "
+            + (DB.ACTIVITY.MODIFIED + " integer not null default 0, ")
+            + (DB.ACTIVITY.ELEVATION_GAIN + " real")
             + ");";
 
-    private static final String CREATE_TABLE_LOCATION = "create table "
+    // Modification stamp for the activity, used to validate cached exports
+    static final String CREATE_TRIGGER_ACTIVITY_MODIFIED = "create trigger "
+            + "if not exists ACTIVITY_MODIFIED after update on " + DB.ACTIVITY.TABLE
+            + (" when new." + DB.ACTIVITY.MODIFIED + " = old." + DB.ACTIVITY.MODIFIED)
+            + (" begin update " + DB.ACTIVITY.TABLE + " set " + DB.ACTIVITY.MODIFIED + " = old."
+            + DB.ACTIVITY.MODIFIED + " + 1 where _id = new._id; end");
+
+    // Edited laps and locations and sealed tracks change the exported data too.
+    // Inserted locations are not included, they are written while recording
+    // and the activity is updated when the recording is saved.
+    static final String[] CREATE_TRIGGER_ACTIVITY_DATA_MODIFIED = {
+            getCreateTriggerDataModified("LAP_INSERT_MODIFIED", "insert", DB.LAP.TABLE,
+                    "new." + DB.LAP.ACTIVITY),
+            getCreateTriggerDataModified("LAP_UPDATE_MODIFIED", "update", DB.LAP.TABLE,
+                    "new." + DB.LAP.ACTIVITY),
+            getCreateTriggerDataModified("LAP_DELETE_MODIFIED", "delete", DB.LAP.TABLE,
+                    "old." + DB.LAP.ACTIVITY),
+            getCreateTriggerDataModified("LOCATION_UPDATE_MODIFIED", "update", DB.LOCATION.TABLE,
+                    "new." + DB.LOCATION.ACTIVITY),
+            getCreateTriggerDataModified("TRACK_INSERT_MODIFIED", "insert", DB.TRACK.TABLE,
+                    "new." + DB.TRACK.ACTIVITY)
+    };
+
+    private static String getCreateTriggerDataModified(String name, String event, String table,
+                                                       String activity) {
+        return "create trigger if not exists " + name + " after " + event + " on " + table
+                + (" begin update " + DB.ACTIVITY.TABLE + " set " + DB.ACTIVITY.MODIFIED + " = "
+                + DB.ACTIVITY.MODIFIED + " + 1 where _id = " + activity + "; end");
+    }
+
+    static final String CREATE_TABLE_SUMMARY = "create table "
+            + DB.SUMMARY.TABLE + " ( "
+            + ("_id integer primary key, ")
+            + (DB.SUMMARY.START_TIME + " integer not null, ")
+            + (DB.SUMMARY.SPORT + " integer, ")
+            + (DB.SUMMARY.DISTANCE + " real, ")
+            + (DB.SUMMARY.TIME + " integer, ")
+            + (DB.SUMMARY.AVG_HR + " integer, ")
+            + (DB.SUMMARY.ELEVATION_GAIN + " real, ")
+            + (DB.SUMMARY.PACE + " real, ")
+            + (DB.SUMMARY.WEEK + " integer not null, ")
+            + (DB.SUMMARY.MONTH + " integer not null, ")
+            + (DB.SUMMARY.YEAR + " integer not null")
+            + ");";
+
+    static final String[] CREATE_INDEX_SUMMARY = {
+            createIndex("SUMMARY_START_TIME", DB.SUMMARY.TABLE, DB.SUMMARY.START_TIME),
+            createIndex("SUMMARY_WEEK", DB.SUMMARY.TABLE, DB.SUMMARY.WEEK),
+            createIndex("SUMMARY_MONTH", DB.SUMMARY.TABLE, DB.SUMMARY.MONTH),
+            createIndex("SUMMARY_YEAR", DB.SUMMARY.TABLE, DB.SUMMARY.YEAR)
+    };
+
+    static final String CREATE_TABLE_ROLLUP = "create table "
+            + DB.ROLLUP.TABLE + " ( "
+            + (DB.ROLLUP.PERIOD + " integer not null, ")
+            + (DB.ROLLUP.BUCKET + " integer not null, ")
+            + (DB.ROLLUP.COUNT + " integer not null, ")
+            + (DB.ROLLUP.DISTANCE + " real, ")
+            + (DB.ROLLUP.TIME + " integer, ")
+            + (DB.ROLLUP.ELEVATION_GAIN + " real, ")
+            + ("primary key (" + DB.ROLLUP.PERIOD + ", " + DB.ROLLUP.BUCKET + ")")
+            + ");";
+
+    private static final String SUMMARY_COLUMNS = "_id, "
+            + DB.SUMMARY.START_TIME + ", " + DB.SUMMARY.SPORT + ", "
+            + DB.SUMMARY.DISTANCE + ", " + DB.SUMMARY.TIME + ", "
+            + DB.SUMMARY.AVG_HR + ", " + DB.SUMMARY.ELEVATION_GAIN + ", "
+            + DB.SUMMARY.PACE + ", " + DB.SUMMARY.WEEK + ", "
+            + DB.SUMMARY.MONTH + ", " + DB.SUMMARY.YEAR;
+
+    private static final String[] SUMMARY_TRIGGERS = {
+            "ACTIVITY_SUMMARY_INSERT", "ACTIVITY_SUMMARY_UPDATE", "ACTIVITY_SUMMARY_DELETE",
+            "SUMMARY_ROLLUP_INSERT", "SUMMARY_ROLLUP_DELETE"
+    };
+
+    /**
+     * The triggers maintaining the summary, in SUMMARY_TRIGGERS order.
+     * The summary is kept for activities not deleted.
+     * @param firstDayOfWeek the first day of the week buckets, like Calendar.MONDAY
+     */
+    static String[] getCreateTriggerSummary(int firstDayOfWeek) {
+        return new String[]{
+            "create trigger if not exists ACTIVITY_SUMMARY_INSERT after insert on "
+                    + DB.ACTIVITY.TABLE + " when new." + DB.ACTIVITY.DELETED + " = 0 begin "
+                    + "insert into " + DB.SUMMARY.TABLE + " (" + SUMMARY_COLUMNS + ") values ("
+                    + getSummaryValues("new.", firstDayOfWeek) + "); end",
+            // Only for the columns in the summary, not for the modification stamp
+            "create trigger if not exists ACTIVITY_SUMMARY_UPDATE after update of "
+                    + DB.ACTIVITY.START_TIME + ", " + DB.ACTIVITY.SPORT + ", "
+                    + DB.ACTIVITY.DISTANCE + ", " + DB.ACTIVITY.TIME + ", "
+                    + DB.ACTIVITY.AVG_HR + ", " + DB.ACTIVITY.ELEVATION_GAIN + ", "
+                    + DB.ACTIVITY.DELETED + " on " + DB.ACTIVITY.TABLE + " begin "
+                    + "delete from " + DB.SUMMARY.TABLE + " where _id = old._id; "
+                    + "insert into " + DB.SUMMARY.TABLE + " (" + SUMMARY_COLUMNS + ") select "
+                    + getSummaryValues("new.", firstDayOfWeek) + " where new."
+                    + DB.ACTIVITY.DELETED + " = 0; end",
+            "create trigger if not exists ACTIVITY_SUMMARY_DELETE after delete on "
+                    + DB.ACTIVITY.TABLE + " begin "
+                    + "delete from " + DB.SUMMARY.TABLE + " where _id = old._id; end",
+            "create trigger if not exists SUMMARY_ROLLUP_INSERT after insert on "
+                    + DB.SUMMARY.TABLE + " begin " + getUpdateRollups("new") + "end",
+            "create trigger if not exists SUMMARY_ROLLUP_DELETE after delete on "
+                    + DB.SUMMARY.TABLE + " begin " + getUpdateRollups("old") + "end"
+        };
+    }
+
+    private static String getInsertSummary(int firstDayOfWeek) {
+        return "insert into " + DB.SUMMARY.TABLE
+                + " (" + SUMMARY_COLUMNS + ") select " + getSummaryValues("", firstDayOfWeek)
+                + " from " + DB.ACTIVITY.TABLE + " where " + DB.ACTIVITY.DELETED + " = 0";
+    }
+
+    /**
+     * The date modifiers to the first day of the week, in SQLite 'weekday N' Sunday is 0
+     */
+    private static String getWeekStart(int firstDayOfWeek) {
+        return "'-6 days', 'weekday " + (firstDayOfWeek - Calendar.SUNDAY) + "'";
+    }
+
+    private static String createIndex(String name, String table, String column) {
+        return "create index if not exists " + name + " on " + table + " (" + column + ")";
+    }
+
+    /**
+     * The summary values for an activity row, in SUMMARY_COLUMNS order
+     * @param row the row prefix, like "new."
+     * @param firstDayOfWeek the first day of the week buckets
+     */
+    private static String getSummaryValues(String row, int firstDayOfWeek) {
+        String start = row + DB.ACTIVITY.START_TIME + ", 'unixepoch', 'localtime'";
+        return row + "_id, "
+                + row + DB.ACTIVITY.START_TIME + ", "
+                + row + DB.ACTIVITY.SPORT + ", "
+                + row + DB.ACTIVITY.DISTANCE + ", "
+                + row + DB.ACTIVITY.TIME + ", "
+                + row + DB.ACTIVITY.AVG_HR + ", "
+                + row + DB.ACTIVITY.ELEVATION_GAIN + ", "
+                + "case when " + row + DB.ACTIVITY.DISTANCE + " > 0 then "
+                + row + DB.ACTIVITY.TIME + " / " + row + DB.ACTIVITY.DISTANCE + " end, "
+                // The week is keyed by its first day, weeks are not split at the new year
+                + "cast(strftime('%Y%m%d', " + start + ", " + getWeekStart(firstDayOfWeek)
+                + ") as integer), "
+                + "cast(strftime('%Y%m', " + start + ") as integer), "
+                + "cast(strftime('%Y', " + start + ") as integer)";
+    }
+
+    /**
+     * Recompute the rollups for the buckets of a summary row
+     * @param row "new" or "old"
+     */
+    private static String getUpdateRollups(String row) {
+        return getUpdateRollup(row, DB.ROLLUP.PERIOD_WEEK, DB.SUMMARY.WEEK)
+                + getUpdateRollup(row, DB.ROLLUP.PERIOD_MONTH, DB.SUMMARY.MONTH)
+                + getUpdateRollup(row, DB.ROLLUP.PERIOD_YEAR, DB.SUMMARY.YEAR)
+                + "delete from " + DB.ROLLUP.TABLE + " where " + DB.ROLLUP.COUNT + " = 0; ";
+    }
+
+    private static String getUpdateRollup(String row, int period, String column) {
+        return "insert or replace into " + DB.ROLLUP.TABLE + " ("
+                + DB.ROLLUP.PERIOD + ", " + DB.ROLLUP.BUCKET + ", " + DB.ROLLUP.COUNT + ", "
+                + DB.ROLLUP.DISTANCE + ", " + DB.ROLLUP.TIME + ", " + DB.ROLLUP.ELEVATION_GAIN
+                + ") select " + period + ", " + row + "." + column + ", count(*), "
+                + "sum(" + DB.SUMMARY.DISTANCE + "), sum(" + DB.SUMMARY.TIME + "), "
+                + "sum(" + DB.SUMMARY.ELEVATION_GAIN + ") from " + DB.SUMMARY.TABLE
+                + " where " + column + " = " + row + "." + column + "; ";
+    }
+
+    static final String CREATE_TABLE_LOCATION = "create table "
             + DB.LOCATION.TABLE + " ( "
             + ("_id integer primary key autoincrement, ")
             + (DB.LOCATION.ACTIVITY + " integer not null, ")
@@ -111,7 +282,19 @@ public class DBHelper extends SQLiteOpenHelper implements
             + (DB.LOCATION.SATELLITES + " integer ")
             + ");";
 
-    private static final String CREATE_TABLE_LAP = "create table "
+    static final String CREATE_TABLE_TRACK = "create table "
+            + DB.TRACK.TABLE + " ( "
+            + ("_id integer primary key autoincrement, ")
+            + (DB.TRACK.ACTIVITY + " integer not null, ")
+            + (DB.TRACK.COUNT + " integer not null, ")
+            + (DB.TRACK.DATA + " blob not null")
+            + ");";
+
+    private static final String CREATE_INDEX_TRACK = "create index "
+            + "if not exists TRACK_ACTIVITY "
+            + (" on " + DB.TRACK.TABLE + " (" + DB.TRACK.ACTIVITY + ")");
+
+    static final String CREATE_TABLE_LAP = "create table "
             + DB.LAP.TABLE + " ( "
             + ("_id integer primary key autoincrement, ")
             + (DB.LAP.ACTIVITY + " integer not null, ")
@@ -187,6 +370,12 @@ public class DBHelper extends SQLiteOpenHelper implements
             + (" on " + DB.FEED.TABLE + " (" + DB.FEED.START_TIME
             + ")");
 
+    // Locations are always read per activity (and lap) in insert order
+    static final String CREATE_INDEX_LOCATION = "create index "
+            + "if not exists LOCATION_ACTIVITY_LAP "
+            + (" on " + DB.LOCATION.TABLE + " (" + DB.LOCATION.ACTIVITY + ", "
+            + DB.LOCATION.LAP + ", _id)");
+
     private static DBHelper sInstance = null;
 
     private static synchronized DBHelper getHelper(Context context) {
@@ -241,6 +430,21 @@ public class DBHelper extends SQLiteOpenHelper implements
         arg0.execSQL(CREATE_TABLE_AUDIO_SCHEMES);
         arg0.execSQL(CREATE_TABLE_FEED);
         arg0.execSQL(CREATE_INDEX_FEED);
+        arg0.execSQL(CREATE_INDEX_LOCATION);
+        arg0.execSQL(CREATE_TABLE_TRACK);
+        arg0.execSQL(CREATE_INDEX_TRACK);
+        arg0.execSQL(CREATE_TRIGGER_ACTIVITY_MODIFIED);
+        for (String sql : CREATE_TRIGGER_ACTIVITY_DATA_MODIFIED) {
+            arg0.execSQL(sql);
+        }
+        arg0.execSQL(CREATE_TABLE_SUMMARY);
+        arg0.execSQL(CREATE_TABLE_ROLLUP);
+        for (String sql : CREATE_INDEX_SUMMARY) {
+            arg0.execSQL(sql);
+        }
+        for (String sql : getCreateTriggerSummary(Calendar.getInstance().getFirstDayOfWeek())) {
+            arg0.execSQL(sql);
+        }
 
         onCreateUpgrade(arg0, 0, DBVERSION);
     }
@@ -262,7 +466,7 @@ public class DBHelper extends SQLiteOpenHelper implements
                     + " int");
         }
 
-        //Recreated DBVERSION 31->32
+        //Recreated DBVERSION 35->36
         //DBVERSION update comment out below
         if (oldVersion < 10) {
             recreateAccount(arg0);
@@ -329,8 +533,38 @@ public class DBHelper extends SQLiteOpenHelper implements
                     + " text");
         }
 
+        if (oldVersion < 32) {
+            echoDo(arg0, CREATE_INDEX_LOCATION);
+        }
+
+        if (oldVersion < 33) {
+            echoDo(arg0, CREATE_TABLE_TRACK);
+            echoDo(arg0, CREATE_INDEX_TRACK);
+        }
+
+        if (oldVersion < 34) {
+            echoDo(arg0, "alter table " + DB.ACTIVITY.TABLE + " add column " + DB.ACTIVITY.MODIFIED
+                    + " integer not null default 0");
+            echoDo(arg0, CREATE_TRIGGER_ACTIVITY_MODIFIED);
+        }
+
+        if (oldVersion < 35) {
+            echoDo(arg0, "alter table " + DB.ACTIVITY.TABLE + " add column " + DB.ACTIVITY.ELEVATION_GAIN
+                    + " real");
+            echoDo(arg0, CREATE_TABLE_SUMMARY);
+            echoDo(arg0, CREATE_TABLE_ROLLUP);
+            for (String sql : CREATE_INDEX_SUMMARY) {
+                echoDo(arg0, sql);
+            }
+            int firstDayOfWeek = Calendar.getInstance().getFirstDayOfWeek();
+            for (String sql : getCreateTriggerSummary(firstDayOfWeek)) {
+                echoDo(arg0, sql);
+            }
+            echoDo(arg0, getInsertSummary(firstDayOfWeek));
+        }
+
         //DBVERSION update
-        //if (oldVersion < 32) {
+        //if (oldVersion < 36) {
         //    migrateFileSyncronizerInfo(arg0);
         //    recreateAccount(arg0);
         //}
@@ -365,6 +599,46 @@ public class DBHelper extends SQLiteOpenHelper implements
         //Temporary workaround: Always run at startup
         migrateFileSynchronizerInfo(arg0);
         insertAccounts(arg0);
+
+        if (!arg0.isReadOnly()) {
+            // Triggers added after version 35, "if not exists" is compatible both ways
+            for (String sql : CREATE_TRIGGER_ACTIVITY_DATA_MODIFIED) {
+                arg0.execSQL(sql);
+            }
+            updateSummaryWeeks(arg0, Calendar.getInstance().getFirstDayOfWeek());
+        }
+    }
+
+    /**
+     * Recreate the summary if the week buckets do not start on the first day of the week
+     * for the locale, after a locale change or from an older version
+     */
+    private static void updateSummaryWeeks(SQLiteDatabase arg0, int firstDayOfWeek) {
+        String[] args = {SUMMARY_TRIGGERS[0]};
+        Cursor c = arg0.rawQuery("select sql from sqlite_master where type = 'trigger'"
+                + " and name = ?", args);
+        String sql = c.moveToFirst() ? c.getString(0) : null;
+        c.close();
+        if (sql == null || sql.contains(getWeekStart(firstDayOfWeek))) {
+            return;
+        }
+
+        Log.i("DBHelper", "Recreating the activity summary, first day of week: " + firstDayOfWeek);
+        arg0.beginTransaction();
+        try {
+            for (String name : SUMMARY_TRIGGERS) {
+                arg0.execSQL("drop trigger if exists " + name);
+            }
+            arg0.execSQL("delete from " + DB.SUMMARY.TABLE);
+            arg0.execSQL("delete from " + DB.ROLLUP.TABLE);
+            for (String create : getCreateTriggerSummary(firstDayOfWeek)) {
+                arg0.execSQL(create);
+            }
+            arg0.execSQL(getInsertSummary(firstDayOfWeek));
+            arg0.setTransactionSuccessful();
+        } finally {
+            arg0.endTransaction();
+        }
     }
 
     /**
@@ -376,7 +650,7 @@ public class DBHelper extends SQLiteOpenHelper implements
         //insertAccounts(arg0);
 
         //Populate the table with data (will always be updated in onOpen())
-        //if (oldVersion < 32) {
+        //if (oldVersion < 36) {
         //    arg0.execSQL(CREATE_TABLE_DBINFO);
         //    ContentValues tmp = new ContentValues();
         //    tmp.put(DB.DBINFO.ACCOUNT_VERSION, 0);
@@ -535,6 +809,7 @@ public class DBHelper extends SQLiteOpenHelper implements
         };
         db.delete(DB.EXPORT.TABLE, DB.EXPORT.ACTIVITY + " = ?", args);
         db.delete(DB.LOCATION.TABLE, DB.LOCATION.ACTIVITY + " = ?", args);
+        TrackStore.delete(db, id);
         db.delete(DB.LAP.TABLE, DB.LAP.ACTIVITY + " = ?", args);
         db.delete(DB.ACTIVITY.TABLE, "_id = ?", args);
     }
@@ -568,6 +843,7 @@ public class DBHelper extends SQLiteOpenHelper implements
                 protected Void doInBackground(Long... args) {
                     for (Long id : list) {
                         deleteActivity(db, id);
+                        GraphWrapper.deleteSeries(ctx, id);
                         dialog.incrementProgressBy(1);
                     }
                     return null;
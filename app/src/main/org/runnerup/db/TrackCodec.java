@@ -0,0 +1,317 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.db;
+
+import org.runnerup.common.util.Constants.DB;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * Column oriented encoding of the locations for an activity ("sealed" track).
+ *
+ * Each column is stored as fixed point values, delta encoded to the previous non null value
+ * in the column, zig-zag/varint encoded and run-length compressed.
+ * A steady 1 Hz time column is then a single run, as is a constant heart rate.
+ *
+ * Real values are rounded to the scale of the column (normally 0.01, lat/lon 1e-7 degrees).
+ * No Android dependencies, used from plain JVM tests and benchmarks.
+ */
+public class TrackCodec {
+    private static final int VERSION = 1;
+
+    /**
+     * The location columns in the track, in location table order
+     */
+    public static final String[] COLUMNS = {
+            DB.LOCATION.LAP,
+            DB.LOCATION.TYPE,
+            DB.LOCATION.TIME,
+            DB.LOCATION.LONGITUDE,
+            DB.LOCATION.LATITUDE,
+            DB.LOCATION.ALTITUDE,
+            DB.LOCATION.HR,
+            DB.LOCATION.CADENCE,
+            DB.LOCATION.TEMPERATURE,
+            DB.LOCATION.PRESSURE,
+            DB.LOCATION.ELAPSED,
+            DB.LOCATION.DISTANCE,
+            DB.LOCATION.GPS_ALTITUDE,
+            DB.LOCATION.ACCURANCY,
+            DB.LOCATION.SPEED,
+            DB.LOCATION.BEARING,
+            DB.LOCATION.SATELLITES
+    };
+
+    // Multiplier to the stored fixed point value, 1 for integer columns
+    private static final double[] SCALE = {
+            1,      // LAP
+            1,      // TYPE
+            1,      // TIME
+            1e7,    // LONGITUDE
+            1e7,    // LATITUDE
+            100,    // ALTITUDE
+            1,      // HR
+            100,    // CADENCE
+            100,    // TEMPERATURE
+            100,    // PRESSURE
+            1,      // ELAPSED (ms)
+            100,    // DISTANCE
+            100,    // GPS_ALTITUDE
+            100,    // ACCURANCY
+            100,    // SPEED
+            100,    // BEARING
+            1       // SATELLITES
+    };
+
+    private static final boolean[] INTEGER = {
+            true,   // LAP
+            true,   // TYPE
+            true,   // TIME
+            false,  // LONGITUDE
+            false,  // LATITUDE
+            false,  // ALTITUDE
+            true,   // HR
+            false,  // CADENCE
+            false,  // TEMPERATURE
+            false,  // PRESSURE
+            false,  // ELAPSED
+            false,  // DISTANCE
+            false,  // GPS_ALTITUDE
+            false,  // ACCURANCY
+            false,  // SPEED
+            false,  // BEARING
+            true    // SATELLITES
+    };
+
+    public static int getColumnIndex(String name) {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (COLUMNS[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static boolean isInteger(int column) {
+        return INTEGER[column];
+    }
+
+    /**
+     * Decoded track, one primitive array per column
+     */
+    public static class Track {
+        private final int size;
+        private final long[][] values;
+        private final boolean[][] nulls;
+
+        public Track(int size) {
+            this.size = size;
+            this.values = new long[COLUMNS.length][];
+            this.nulls = new boolean[COLUMNS.length][];
+            for (int i = 0; i < COLUMNS.length; i++) {
+                values[i] = new long[size];
+                nulls[i] = new boolean[size];
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isNull(int column, int row) {
+            return nulls[column][row];
+        }
+
+        public void setNull(int column, int row) {
+            nulls[column][row] = true;
+            values[column][row] = 0;
+        }
+
+        public void set(int column, int row, double value) {
+            nulls[column][row] = false;
+            values[column][row] = Math.round(value * SCALE[column]);
+        }
+
+        public long getLong(int column, int row) {
+            if (INTEGER[column]) {
+                return values[column][row];
+            }
+            // like SQLite, truncate real values
+            return (long) getDouble(column, row);
+        }
+
+        public double getDouble(int column, int row) {
+            if (INTEGER[column]) {
+                return values[column][row];
+            }
+            return values[column][row] / SCALE[column];
+        }
+
+        /**
+         * Join tracks decoded in parts
+         */
+        public static Track concat(List<Track> parts) {
+            int size = 0;
+            for (Track t : parts) {
+                size += t.size;
+            }
+            Track track = new Track(size);
+            int offset = 0;
+            for (Track t : parts) {
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    System.arraycopy(t.values[i], 0, track.values[i], offset, t.size);
+                    System.arraycopy(t.nulls[i], 0, track.nulls[i], offset, t.size);
+                }
+                offset += t.size;
+            }
+            return track;
+        }
+    }
+
+    public static byte[] encode(Track track) {
+        return encode(track, 0, track.size);
+    }
+
+    /**
+     * Encode count rows starting at from
+     */
+    public static byte[] encode(Track track, int from, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarLong(out, VERSION);
+        writeVarLong(out, count);
+        writeVarLong(out, COLUMNS.length);
+        ByteArrayOutputStream col = new ByteArrayOutputStream();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            col.reset();
+            encodeColumn(col, track.values[i], track.nulls[i], from, count);
+            writeVarLong(out, col.size());
+            byte[] bytes = col.toByteArray();
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    public static Track decode(byte[] data) {
+        int[] pos = {0};
+        long version = readVarLong(data, pos);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported track version " + version);
+        }
+        int size = (int) readVarLong(data, pos);
+        int columns = (int) readVarLong(data, pos);
+        if (columns != COLUMNS.length) {
+            throw new IllegalArgumentException("Unexpected number of columns " + columns);
+        }
+        Track track = new Track(size);
+        for (int i = 0; i < columns; i++) {
+            int len = (int) readVarLong(data, pos);
+            int end = pos[0] + len;
+            decodeColumn(data, pos, end, track.values[i], track.nulls[i], size);
+            pos[0] = end;
+        }
+        return track;
+    }
+
+    /*
+     * Column: runs of (count, token), token 0 is null, else zigzag(delta) + 1
+     */
+    private static void encodeColumn(ByteArrayOutputStream out, long[] values, boolean[] nulls,
+                                     int from, int count) {
+        long prev = 0;
+        long runToken = -1;
+        long runLength = 0;
+        for (int i = from; i < from + count; i++) {
+            long token;
+            if (nulls[i]) {
+                token = 0;
+            } else {
+                token = zigzag(values[i] - prev) + 1;
+                prev = values[i];
+            }
+            if (token == runToken) {
+                runLength++;
+            } else {
+                if (runLength > 0) {
+                    writeVarLong(out, runLength);
+                    writeVarLong(out, runToken);
+                }
+                runToken = token;
+                runLength = 1;
+            }
+        }
+        if (runLength > 0) {
+            writeVarLong(out, runLength);
+            writeVarLong(out, runToken);
+        }
+    }
+
+    private static void decodeColumn(byte[] data, int[] pos, int end, long[] values,
+                                     boolean[] nulls, int size) {
+        long prev = 0;
+        int row = 0;
+        while (pos[0] < end && row < size) {
+            long runLength = readVarLong(data, pos);
+            long token = readVarLong(data, pos);
+            for (long n = 0; n < runLength && row < size; n++, row++) {
+                if (token == 0) {
+                    nulls[row] = true;
+                } else {
+                    prev += unzigzag(token - 1);
+                    values[row] = prev;
+                }
+            }
+        }
+        if (row != size) {
+            throw new IllegalArgumentException("Truncated track column");
+        }
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarLong(byte[] data, int[] pos) {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            if (pos[0] >= data.length) {
+                throw new IllegalArgumentException("Truncated track");
+            }
+            byte b = data[pos[0]++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IllegalArgumentException("Malformed varint in track");
+            }
+        }
+    }
+}
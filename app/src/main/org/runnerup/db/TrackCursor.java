@@ -0,0 +1,138 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.db;
+
+import android.database.AbstractCursor;
+
+import org.runnerup.common.util.Constants;
+
+/**
+ * Read only cursor over a sealed track, with the same columns as the location table.
+ * _id is the row number in the track (starting at 1), in the same order as the original rows.
+ */
+class TrackCursor extends AbstractCursor implements Constants {
+    private static final int COLUMN_ID = -1;
+    private static final int COLUMN_ACTIVITY = -2;
+
+    private final TrackCodec.Track mTrack;
+    private final long mActivityId;
+    private final String[] mColumnNames;
+    private final int[] mColumns;
+    private final int[] mRows;
+
+    /**
+     * @param rows the track rows in the cursor, null for all
+     */
+    TrackCursor(TrackCodec.Track track, long activityId, String[] columns, int[] rows) {
+        mTrack = track;
+        mActivityId = activityId;
+        mColumnNames = columns;
+        mColumns = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (DB.PRIMARY_KEY.equals(columns[i])) {
+                mColumns[i] = COLUMN_ID;
+            } else if (DB.LOCATION.ACTIVITY.equals(columns[i])) {
+                mColumns[i] = COLUMN_ACTIVITY;
+            } else {
+                mColumns[i] = TrackCodec.getColumnIndex(columns[i]);
+                if (mColumns[i] < 0) {
+                    throw new IllegalArgumentException("Unknown location column " + columns[i]);
+                }
+            }
+        }
+        mRows = rows;
+    }
+
+    private int row() {
+        return mRows == null ? getPosition() : mRows[getPosition()];
+    }
+
+    @Override
+    public int getCount() {
+        return mRows == null ? mTrack.size() : mRows.length;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mColumnNames;
+    }
+
+    @Override
+    public int getType(int column) {
+        if (isNull(column)) {
+            return FIELD_TYPE_NULL;
+        }
+        int c = mColumns[column];
+        if (c < 0 || TrackCodec.isInteger(c)) {
+            return FIELD_TYPE_INTEGER;
+        }
+        return FIELD_TYPE_FLOAT;
+    }
+
+    @Override
+    public String getString(int column) {
+        if (isNull(column)) {
+            return null;
+        }
+        int c = mColumns[column];
+        if (c < 0 || TrackCodec.isInteger(c)) {
+            return Long.toString(getLong(column));
+        }
+        return Double.toString(getDouble(column));
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        switch (mColumns[column]) {
+            case COLUMN_ID:
+                return row() + 1;
+            case COLUMN_ACTIVITY:
+                return mActivityId;
+            default:
+                return mTrack.getLong(mColumns[column], row());
+        }
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        int c = mColumns[column];
+        if (c < 0) {
+            return getLong(column);
+        }
+        return mTrack.getDouble(c, row());
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        int c = mColumns[column];
+        return c >= 0 && mTrack.isNull(c, row());
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import org.runnerup.common.util.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Access to the locations for an activity, in the location table or as a sealed track.
+ * All readers of locations should use query() rather than the location table directly.
+ *
+ * Tracks are sealed by the Tracker when the activity is completed, reads never seal.
+ * Activities recorded before tracks were sealed are read from the location table.
+ */
+public class TrackStore implements Constants {
+
+    // Rows per stored part, keeps each blob well below the CursorWindow size
+    private static final int ROWS_PER_PART = 16384;
+
+    // Reads of the location table, these must use the index (LocationQueryPlanTest)
+    static final String LOCATION_ORDER = DB.PRIMARY_KEY;
+
+    /**
+     * @param lap the lap, -1 for all laps
+     */
+    static String getLocationSelection(long activityId, long lap) {
+        String where = DB.LOCATION.ACTIVITY + " = " + activityId;
+        if (lap >= 0) {
+            where += " and " + DB.LOCATION.LAP + " = " + lap;
+        }
+        return where;
+    }
+
+    /**
+     * The last track read, for callers that read the same activity several times (exports).
+     * Owned by the caller, the track is not updated if the activity is changed.
+     */
+    public static class Cache {
+        private long activityId = -1;
+        private TrackCodec.Track track = null;
+    }
+
+    public static boolean isSealed(SQLiteDatabase db, long activityId) {
+        Cursor c = db.query(DB.TRACK.TABLE, new String[]{DB.PRIMARY_KEY},
+                DB.TRACK.ACTIVITY + " = " + activityId, null, null, null, null, "1");
+        boolean res = c.moveToFirst();
+        c.close();
+        return res;
+    }
+
+    /**
+     * Locations for the activity, in insert order
+     */
+    public static Cursor query(SQLiteDatabase db, String[] columns, long activityId) {
+        return query(db, columns, activityId, -1, null);
+    }
+
+    public static Cursor query(SQLiteDatabase db, String[] columns, long activityId, Cache cache) {
+        return query(db, columns, activityId, -1, cache);
+    }
+
+    public static Cursor query(SQLiteDatabase db, String[] columns, long activityId, long lap) {
+        return query(db, columns, activityId, lap, null);
+    }
+
+    /**
+     * Locations for a lap in the activity, in insert order
+     * @param lap the lap, -1 for all laps
+     * @param cache the last track read by the caller, null if not cached
+     */
+    public static Cursor query(SQLiteDatabase db, String[] columns, long activityId, long lap,
+                               Cache cache) {
+        TrackCodec.Track track;
+        if (cache != null && cache.activityId == activityId) {
+            track = cache.track;
+        } else {
+            track = load(db, activityId);
+            if (cache != null) {
+                cache.activityId = activityId;
+                cache.track = track;
+            }
+        }
+        if (track == null) {
+            return db.query(DB.LOCATION.TABLE, columns, getLocationSelection(activityId, lap),
+                    null, null, null, LOCATION_ORDER, null);
+        }
+
+        int[] rows = null;
+        if (lap >= 0) {
+            int lapColumn = TrackCodec.getColumnIndex(DB.LOCATION.LAP);
+            int count = 0;
+            for (int i = 0; i < track.size(); i++) {
+                if (track.getLong(lapColumn, i) == lap) {
+                    count++;
+                }
+            }
+            rows = new int[count];
+            count = 0;
+            for (int i = 0; i < track.size(); i++) {
+                if (track.getLong(lapColumn, i) == lap) {
+                    rows[count++] = i;
+                }
+            }
+        }
+        return new TrackCursor(track, activityId, columns, rows);
+    }
+
+    /**
+     * Move the locations for a completed activity to a sealed track.
+     * The check and the read are done in the transaction, so concurrent calls seal once.
+     * @return true if the activity is sealed
+     */
+    public static boolean seal(SQLiteDatabase db, long activityId) {
+        db.beginTransaction();
+        try {
+            if (isSealed(db, activityId)) {
+                return true;
+            }
+            TrackCodec.Track track = read(db, activityId);
+            if (track.size() == 0) {
+                return false;
+            }
+
+            for (int from = 0; from < track.size(); from += ROWS_PER_PART) {
+                int count = Math.min(ROWS_PER_PART, track.size() - from);
+                ContentValues tmp = new ContentValues();
+                tmp.put(DB.TRACK.ACTIVITY, activityId);
+                tmp.put(DB.TRACK.COUNT, count);
+                tmp.put(DB.TRACK.DATA, TrackCodec.encode(track, from, count));
+                if (db.insert(DB.TRACK.TABLE, null, tmp) < 0) {
+                    return false;
+                }
+            }
+            db.delete(DB.LOCATION.TABLE, getLocationSelection(activityId, -1), null);
+            db.setTransactionSuccessful();
+        } catch (SQLiteException e) {
+            // The locations are still in the location table
+            Log.w("TrackStore", "Failed to seal track for " + activityId + ": " + e.getMessage());
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+        return true;
+    }
+
+    private static TrackCodec.Track read(SQLiteDatabase db, long activityId) {
+        Cursor c = db.query(DB.LOCATION.TABLE, TrackCodec.COLUMNS,
+                getLocationSelection(activityId, -1), null, null, null,
+                LOCATION_ORDER, null);
+        TrackCodec.Track track = new TrackCodec.Track(c.getCount());
+        if (c.moveToFirst()) {
+            int row = 0;
+            do {
+                for (int i = 0; i < TrackCodec.COLUMNS.length; i++) {
+                    if (c.isNull(i)) {
+                        track.setNull(i, row);
+                    } else {
+                        track.set(i, row, c.getDouble(i));
+                    }
+                }
+                row++;
+            } while (c.moveToNext());
+        }
+        c.close();
+        return track;
+    }
+
+    public static void delete(SQLiteDatabase db, long activityId) {
+        db.delete(DB.TRACK.TABLE, DB.TRACK.ACTIVITY + " = " + activityId, null);
+    }
+
+    /**
+     * @return the sealed track or null if the locations are in the location table
+     */
+    private static TrackCodec.Track load(SQLiteDatabase db, long activityId) {
+        List<TrackCodec.Track> parts = new ArrayList<>();
+        Cursor c = db.query(DB.TRACK.TABLE, new String[]{DB.TRACK.DATA},
+                DB.TRACK.ACTIVITY + " = " + activityId, null, null, null,
+                DB.PRIMARY_KEY, null);
+        try {
+            if (c.moveToFirst()) {
+                do {
+                    parts.add(TrackCodec.decode(c.getBlob(0)));
+                } while (c.moveToNext());
+            }
+        } catch (IllegalArgumentException e) {
+            Log.e("TrackStore", "Failed to decode track for " + activityId + ": " + e.getMessage());
+            parts.clear();
+        } finally {
+            c.close();
+        }
+
+        if (parts.isEmpty()) {
+            return null;
+        }
+        return parts.size() == 1 ? parts.get(0) : TrackCodec.Track.concat(parts);
+    }
+}
@@ -23,6 +23,7 @@ import android.location.Location;
 import android.support.annotation.NonNull;
 
 import org.runnerup.common.util.Constants;
+import org.runnerup.db.TrackStore;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -103,8 +104,7 @@ public class LocationEntity extends AbstractEntity {
 
         private class LocationIterator implements Iterator<E> {
             private LocationIterator(long mID, SQLiteDatabase mDB) {
-                c = mDB.query(Constants.DB.LOCATION.TABLE, from, "activity_id == " + mID,
-                        null, null, null, "_id", null);
+                c = TrackStore.query(mDB, from, mID);
                 if (!c.moveToFirst()) {
                     c.close();
                 }
@@ -28,6 +28,7 @@ import org.runnerup.R;
 import org.runnerup.common.util.Constants;
 import org.runnerup.db.DBHelper;
 import org.runnerup.db.entities.ActivityEntity;
+import org.runnerup.export.util.ExportCache;
 import org.runnerup.export.util.FormValues;
 import org.runnerup.export.util.SyncHelper;
 import org.runnerup.feed.FeedList.FeedUpdater;
@@ -49,6 +50,7 @@ public abstract class DefaultSynchronizer implements Synchronizer {
 
     final Set<String> cookies = new HashSet<>();
     final FormValues formValues = new FormValues();
+    ExportCache exportCache = null;
 
     DefaultSynchronizer() {
         super();
@@ -111,14 +113,20 @@ public abstract class DefaultSynchronizer implements Synchronizer {
         return Status.OK;
     }
 
-    public Status upload(SQLiteDatabase db, long mID) {
-        Status s = Status.ERROR;
-        s.activityId = mID;
-        return s;
+    public UploadResult upload(SQLiteDatabase db, long mID) {
+        return new UploadResult(Status.ERROR);
     }
 
-    public Status getExternalId(SQLiteDatabase db, Status uploadStatus) {
-        return Status.ERROR;
+    public void setExportCache(ExportCache cache) {
+        exportCache = cache;
+    }
+
+    public int getMaxUploads() {
+        return 1;
+    }
+
+    public String getExternalId(SQLiteDatabase db, String uploadId) {
+        return null;
     }
 
     public boolean checkSupport(Synchronizer.Feature f) {
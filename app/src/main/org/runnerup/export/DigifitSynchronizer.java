@@ -431,13 +431,12 @@ public class DigifitSynchronizer extends DefaultSynchronizer {
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, long mID) {
+    public UploadResult upload(SQLiteDatabase db, long mID) {
         Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.USER_PASS);
         }
 
-        Status errorStatus = Status.ERROR;
         TCX tcx = new TCX(db);
         tcx.setAddGratuitousTrack(true);
 
@@ -458,15 +457,11 @@ public class DigifitSynchronizer extends DefaultSynchronizer {
             //
             // TODO: capture traffic from the app in order to use a better API
             // endpoint.
-            s = Status.OK;
-            s.activityId = mID;
-            return s;
+            return new UploadResult(Status.OK);
         } catch (Exception ex) {
-            errorStatus.ex = ex;
             Log.e(getName(), "Digifit returned: " + ex);
+            return new UploadResult(Status.ERROR, ex);
         }
-
-        return errorStatus;
     }
 
     private void uploadFileToDigifit(String payload, String uploadUrl) throws Exception {
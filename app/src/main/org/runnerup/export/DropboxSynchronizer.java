@@ -217,10 +217,16 @@ public class DropboxSynchronizer extends DefaultSynchronizer implements OAuth2Se
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, final long mID) {
+    public int getMaxUploads() {
+        // Only the access token is shared between uploads
+        return 2;
+    }
+
+    @Override
+    public UploadResult upload(SQLiteDatabase db, final long mID) {
         Status s = connect();
         if (s != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.OAUTH2);
         }
 
         Sport sport = Sport.RUNNING;
@@ -259,8 +265,7 @@ public class DropboxSynchronizer extends DefaultSynchronizer implements OAuth2Se
                 parameters.put("mode", "add");
                 parameters.put("autorename", true);
             } catch (JSONException e) {
-                e.printStackTrace();
-                return Status.ERROR;
+                return new UploadResult(Status.ERROR, e);
             }
             conn.addRequestProperty("Dropbox-API-Arg", parameters.toString());
             OutputStream out = new BufferedOutputStream(conn.getOutputStream());
@@ -275,16 +280,12 @@ public class DropboxSynchronizer extends DefaultSynchronizer implements OAuth2Se
             JSONObject obj = SyncHelper.parse(conn, getName());
 
             if (obj != null && responseCode >= HttpURLConnection.HTTP_OK && responseCode < HttpURLConnection.HTTP_MULT_CHOICE) {
-                s = Status.OK;
-                s.activityId = mID;
+                String externalId = null;
                 if (obj.has("id")) {
                     // Note: duplicate will not set activity_id
-                    s.externalId = noNullStr(obj.getString("id"));
-                    if (s.externalId != null) {
-                        s.externalIdStatus = ExternalIdStatus.OK;
-                    }
+                    externalId = noNullStr(obj.getString("id"));
                 }
-                return s;
+                return new UploadResult(Status.OK, externalId, ExternalIdStatus.OK);
             }
             String error = obj != null && obj.has("error") ?
                     noNullStr(obj.getString("error")) :
@@ -294,22 +295,16 @@ public class DropboxSynchronizer extends DefaultSynchronizer implements OAuth2Se
             if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED) {
                 // token no longer valid
                 access_token = null;
-                s = Status.NEED_AUTH;
-                s.authMethod = AuthMethod.OAUTH2;
             }
-            s = Status.ERROR;
-            return s;
+            return new UploadResult(Status.ERROR);
 
         } catch (IOException e) {
-            s = Status.ERROR;
-            s.ex = e;
+            Log.w(getName(), "Upload failed", e);
+            return new UploadResult(Status.ERROR, e);
         } catch (JSONException e) {
-            s = Status.ERROR;
-            s.ex = e;
+            Log.w(getName(), "Upload failed", e);
+            return new UploadResult(Status.ERROR, e);
         }
-
-        s.ex.printStackTrace();
-        return s;
     }
 
     @Override
@@ -29,6 +29,7 @@ import org.runnerup.R;
 import org.runnerup.common.util.Constants.DB;
 import org.runnerup.common.util.Constants.DB.FEED;
 import org.runnerup.export.format.EndomondoTrack;
+import org.runnerup.export.util.ExportWritable;
 import org.runnerup.export.util.FormValues;
 import org.runnerup.export.util.SyncHelper;
 import org.runnerup.feed.FeedList.FeedUpdater;
@@ -36,13 +37,10 @@ import org.runnerup.util.Formatter;
 import org.runnerup.workout.Sport;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.StringWriter;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -53,7 +51,6 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.UUID;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * @author jonas Based on https://github.com/cpfair/tapiriik
@@ -245,10 +242,10 @@ public class EndomondoSynchronizer extends DefaultSynchronizer {
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, long mID) {
+    public UploadResult upload(SQLiteDatabase db, long mID) {
         Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.USER_PASS);
         }
 
         EndomondoTrack tcx = new EndomondoTrack(db);
@@ -256,8 +253,7 @@ public class EndomondoSynchronizer extends DefaultSynchronizer {
         Exception ex;
         try {
             EndomondoTrack.Summary summary = new EndomondoTrack.Summary();
-            StringWriter writer = new StringWriter();
-            tcx.export(mID, writer, summary);
+            tcx.getSummary(mID, summary);
 
             String workoutId = deviceId + "-" + Long.toString(mID);
             Log.e(getName(), "workoutId: " + workoutId);
@@ -278,11 +274,8 @@ public class EndomondoSynchronizer extends DefaultSynchronizer {
             conn.setDoOutput(true);
             conn.setRequestMethod(RequestMethod.POST.name());
             conn.addRequestProperty("Content-Type", "application/octet-stream");
-            OutputStream out = new GZIPOutputStream(
-                    new BufferedOutputStream(conn.getOutputStream()));
-            out.write(writer.getBuffer().toString().getBytes());
-            out.flush();
-            out.close();
+            SyncHelper.postData(conn, new ExportWritable(exportCache, mID, "endomondo",
+                    writer -> tcx.export(mID, writer, null), true));
 
             BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
             JSONObject res = parseKVP(in);
@@ -294,12 +287,8 @@ public class EndomondoSynchronizer extends DefaultSynchronizer {
             String amsg = conn.getResponseMessage();
             if (responseCode == HttpURLConnection.HTTP_OK &&
                     "OK".contentEquals(res.getString("_0"))) {
-                s.activityId = mID;
-                if (res.has("workout.id")) {
-                    s.externalId = res.getString("workout.id");
-                    s.externalIdStatus = ExternalIdStatus.OK;
-                }
-                return s;
+                String externalId = res.has("workout.id") ? res.getString("workout.id") : null;
+                return new UploadResult(Status.OK, externalId, ExternalIdStatus.OK);
             }
             ex = new Exception(amsg);
         } catch (IOException e) {
@@ -308,10 +297,8 @@ public class EndomondoSynchronizer extends DefaultSynchronizer {
             ex = e;
         }
 
-        s = Synchronizer.Status.ERROR;
-        s.ex = ex;
-        ex.printStackTrace();
-        return s;
+        Log.w(getName(), "Upload failed", ex);
+        return new UploadResult(Status.ERROR, ex);
     }
 
     @Override
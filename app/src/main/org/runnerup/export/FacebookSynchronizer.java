@@ -242,13 +242,14 @@ public class FacebookSynchronizer extends DefaultSynchronizer implements OAuth2S
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, final long mID) {
+    public UploadResult upload(SQLiteDatabase db, final long mID) {
         Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.OAUTH2);
         }
 
         FacebookCourse courseFactory = new FacebookCourse(context, db);
+        Exception ex;
         try {
             JSONObject runObj = new JSONObject();
             JSONObject course = courseFactory.export(mID, !skipMapInPost, runObj);
@@ -259,23 +260,18 @@ public class FacebookSynchronizer extends DefaultSynchronizer implements OAuth2S
             try {
                 JSONObject ret = createRun(ref, runObj);
                 Log.e(getName(), "createdRunObj: " + ret.toString());
-                s = Status.OK;
-                s.activityId = mID;
-                return s;
+                return new UploadResult(Status.OK);
             } catch (Exception e) {
                 Log.e(getName(), "fail createdRunObj: " + e);
-                s.ex = e;
+                ex = e;
             }
             deleteCourse(ref);
         } catch (Exception e) {
             Log.e(getName(), "fail createdCourseObj: " + e);
-            s.ex = e;
+            ex = e;
         }
 
-        s = Status.ERROR;
-        if (s.ex != null)
-            s.ex.printStackTrace();
-        return s;
+        return new UploadResult(Status.ERROR, ex);
     }
 
     private JSONObject createObj(URL url, Part<?> parts[]) throws Exception{
@@ -18,6 +18,7 @@
 package org.runnerup.export;
 
 import android.content.ContentValues;
+import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
@@ -29,16 +30,20 @@ import org.json.JSONObject;
 import org.runnerup.R;
 import org.runnerup.common.util.Constants;
 import org.runnerup.common.util.Constants.DB;
+import org.runnerup.content.ExportFileCache;
 import org.runnerup.export.format.GPX;
 import org.runnerup.export.format.TCX;
 import org.runnerup.workout.Sport;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Locale;
 
 
@@ -49,10 +54,15 @@ public class FileSynchronizer extends DefaultSynchronizer {
     private long id = 0;
     private String mPath;
     private String mFormat;
+    private ExportFileCache mCache = null;
 
     FileSynchronizer() {
     }
 
+    FileSynchronizer(Context context) {
+        mCache = new ExportFileCache(context);
+    }
+
     @Override
     public long getId() {
         return id;
@@ -141,13 +151,13 @@ public class FileSynchronizer extends DefaultSynchronizer {
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, final long mID) {
-        Status s = Status.ERROR;
-        s.activityId = mID;
+    public UploadResult upload(SQLiteDatabase db, final long mID) {
+        Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.FILEPERMISSION);
         }
 
+        String externalId = null;
         Sport sport = Sport.RUNNING;
         try {
             String[] columns = {
@@ -169,24 +179,62 @@ public class FileSynchronizer extends DefaultSynchronizer {
                     String.format(Locale.getDefault(), "RunnerUp_%04d_%s.", mID, sport.TapiriikType());
             
             if (mFormat.contains("tcx")) {
-                TCX tcx = new TCX(db);
+                final TCX tcx = new TCX(db);
                 File file = new File(fileBase + "tcx");
-                OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
-                tcx.export(mID, new OutputStreamWriter(out));
-                s.externalId = Uri.fromFile(file).toString();
-                s.externalIdStatus = ExternalIdStatus.NONE; //Not working yet
+                export(db, mID, "tcx", "", file, new ExportFileCache.Exporter() {
+                    @Override
+                    public void export(OutputStream out) throws IOException {
+                        Writer writer = new OutputStreamWriter(out);
+                        tcx.export(mID, writer);
+                        writer.flush();
+                    }
+                });
+                externalId = Uri.fromFile(file).toString();
             }
             if (mFormat.contains("gpx")) {
-                GPX gpx = new GPX(db, true, true);
+                final GPX gpx = new GPX(db, true, true);
                 File file = new File(fileBase + "gpx");
-                OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
-                gpx.export(mID, new OutputStreamWriter(out));
+                export(db, mID, "gpx", "accuracy", file, new ExportFileCache.Exporter() {
+                    @Override
+                    public void export(OutputStream out) throws IOException {
+                        Writer writer = new OutputStreamWriter(out);
+                        gpx.export(mID, writer);
+                        writer.flush();
+                    }
+                });
             }
-            s = Status.OK;
         } catch (IOException e) {
-            //Status is ERROR
+            return new UploadResult(Status.ERROR, e);
+        }
+        //ExternalIdStatus.OK is not working yet
+        return new UploadResult(Status.OK, externalId, ExternalIdStatus.NONE);
+    }
+
+    /**
+     * Copy the export from the cache, the same export is used by shares of the activity
+     */
+    private void export(SQLiteDatabase db, long mID, String format, String options, File file,
+                        ExportFileCache.Exporter exporter) throws IOException {
+        String key = mCache == null ? null : ExportFileCache.getKey(db, mID, format, options);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            if (key == null) {
+                exporter.export(out);
+            } else {
+                InputStream in = new FileInputStream(mCache.get(key, exporter));
+                try {
+                    byte[] buf = new byte[8192];
+                    int len;
+                    while ((len = in.read(buf)) > 0) {
+                        out.write(buf, 0, len);
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            out.close();
         }
-        return s;
     }
 
     @Override
@@ -334,10 +334,10 @@ public class FunBeatSynchronizer extends DefaultSynchronizer {
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, long mID) {
+    public UploadResult upload(SQLiteDatabase db, long mID) {
         Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.USER_PASS);
         }
 
         TCX tcx = new TCX(db);
@@ -443,22 +443,14 @@ public class FunBeatSynchronizer extends DefaultSynchronizer {
                 Log.e(getName(), "ok: " + ok);
 
                 conn.disconnect();
-                if (ok) {
-                    s = Status.OK;
-                    s.activityId = mID;
-                } else {
-                    s = Status.ERROR;
-                }
-                return s;
+                return new UploadResult(ok ? Status.OK : Status.ERROR);
             }
         } catch (IOException e) {
             ex = e;
         }
 
-        s = Synchronizer.Status.ERROR;
-        s.ex = ex;
-        ex.printStackTrace();
-        return s;
+        Log.w(getName(), "Upload failed", ex);
+        return new UploadResult(Status.ERROR, ex);
     }
 
     @Override
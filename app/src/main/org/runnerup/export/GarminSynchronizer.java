@@ -28,9 +28,9 @@ import org.json.JSONObject;
 import org.runnerup.R;
 import org.runnerup.common.util.Constants.DB;
 import org.runnerup.export.format.TCX;
+import org.runnerup.export.util.ExportWritable;
 import org.runnerup.export.util.FormValues;
 import org.runnerup.export.util.Part;
-import org.runnerup.export.util.StringWritable;
 import org.runnerup.export.util.SyncHelper;
 import org.runnerup.workout.Sport;
 
@@ -41,7 +41,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.StringWriter;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -416,33 +415,31 @@ public class GarminSynchronizer extends DefaultSynchronizer {
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, long mID) {
+    public UploadResult upload(SQLiteDatabase db, long mID) {
         Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.USER_PASS);
         }
 
         TCX tcx = new TCX(db);
         HttpURLConnection conn;
         Exception ex;
         try {
-            StringWriter writer = new StringWriter();
-            tcx.export(mID, writer);
-
             conn = (HttpURLConnection) new URL(UPLOAD_URL).openConnection();
             conn.setDoOutput(true);
             conn.setRequestMethod(RequestMethod.POST.name());
             addCookies(conn);
 
-            Part<StringWritable> part2 = new Part<>("data",
-                    new StringWritable(writer.toString()));
+            Part<ExportWritable> part2 = new Part<>("data",
+                    new ExportWritable(exportCache, mID, "tcx",
+                            writer -> tcx.export(mID, writer), false));
             part2.setFilename("RunnerUp.tcx");
             part2.setContentType("application/octet-stream");
             Part<?> parts[] = {
                 part2
             };
 
-            SyncHelper.postMulti(conn, parts);
+            SyncHelper.postMulti(conn, parts, true);
             int responseCode = conn.getResponseCode();
             String amsg = conn.getResponseMessage();
             if (responseCode == HttpURLConnection.HTTP_OK) {
@@ -452,11 +449,9 @@ public class GarminSynchronizer extends DefaultSynchronizer {
                 JSONObject result = reply.getJSONObject("detailedImportResult");
                 JSONArray successes = result.getJSONArray("successes");
                 if (successes.length() == 1) {
-                    s = Status.OK;
-                    s.activityId = mID;
                     String garminID = successes.getJSONObject(0).getString("internalId");
                     setWorkoutType(tcx.getSport(), garminID);
-                    return s;
+                    return new UploadResult(Status.OK);
                 } else {
                     JSONArray failures = result.getJSONArray("failures");
                     ex = new Exception("Unexpected reply: " + (failures.length()>0?failures.toString():result.toString()));
@@ -468,10 +463,8 @@ public class GarminSynchronizer extends DefaultSynchronizer {
             ex = e;
         }
 
-        s = Synchronizer.Status.ERROR;
-        s.ex = ex;
-        ex.printStackTrace();
-        return s;
+        Log.w(getName(), "Upload failed", ex);
+        return new UploadResult(Status.ERROR, ex);
     }
 
     @Override
@@ -105,11 +105,11 @@ public class GoogleFitSynchronizer extends GooglePlusSynchronizer {
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, long mID) {
+    public UploadResult upload(SQLiteDatabase db, long mID) {
 
         Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.OAUTH2);
         }
 
         //export DataSource if not yet existing
@@ -118,31 +118,26 @@ public class GoogleFitSynchronizer extends GooglePlusSynchronizer {
         try {
             presentDataSources = listExistingDataSources();
         } catch (Exception e) {
-            e.printStackTrace();
-            return Status.ERROR;
+            Log.w(getName(), "Cannot list the data sources", e);
+            return new UploadResult(Status.ERROR, e);
         }
         List<GoogleFitData.DataSourceType> activitySources = gfd.getActivityDataSourceTypes(mID);
 
         s = exportActivityDataSourceTypes(gfd, presentDataSources, activitySources);
         if (s.equals(Status.ERROR)) {
-            return s;
+            return new UploadResult(s);
         }
 
         //export all DataPoint types for activity
         for (GoogleFitData.DataSourceType source : activitySources) {
             s = exportActivityData(gfd, source, mID);
             if(s.equals(Status.ERROR)) {
-                return s;
+                return new UploadResult(s);
             }
         }
 
         //export Session
-        s = exportActivitySession(gfd, mID);
-        if (!s.equals(Status.ERROR)) {
-            s.activityId = mID;
-        }
-
-        return s;
+        return new UploadResult(exportActivitySession(gfd, mID));
     }
 
     private Status exportActivityDataSourceTypes(GoogleFitData gfd, List<String> presentDataSources, List<GoogleFitData.DataSourceType> activitySources) {
@@ -253,13 +253,13 @@ public class GooglePlusSynchronizer extends DefaultSynchronizer implements Synch
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, final long mID) {
+    public UploadResult upload(SQLiteDatabase db, final long mID) {
         Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.OAUTH2);
         }
 
-        return Status.SKIP;
+        return new UploadResult(Status.SKIP);
     }
 
     @Override
@@ -266,10 +266,10 @@ public class JoggSESynchronizer extends DefaultSynchronizer {
     }
 
     @Override
-    public Status upload(final SQLiteDatabase db, final long mID) {
+    public UploadResult upload(final SQLiteDatabase db, final long mID) {
         Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.USER_PASS);
         }
 
         Exception ex;
@@ -309,9 +309,7 @@ public class JoggSESynchronizer extends DefaultSynchronizer {
             Log.e(getName(), "reply: " + e.getTextContent());
             if (e != null && e.getTextContent() != null
                     && "OK".contentEquals(e.getTextContent())) {
-                s = Status.OK;
-                s.activityId = mID;
-                return s;
+                return new UploadResult(Status.OK);
             }
             throw new Exception(e.getTextContent());
         } catch (final MalformedURLException e) {
@@ -332,11 +330,8 @@ public class JoggSESynchronizer extends DefaultSynchronizer {
         if (conn != null)
             conn.disconnect();
 
-        s = Synchronizer.Status.ERROR;
-        s.ex = ex;
-        s.activityId = mID;
-        ex.printStackTrace();
-        return s;
+        Log.w(getName(), "Upload failed", ex);
+        return new UploadResult(Status.ERROR, ex);
 
     }
 
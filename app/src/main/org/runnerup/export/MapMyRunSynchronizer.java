@@ -235,10 +235,10 @@ public class MapMyRunSynchronizer extends DefaultSynchronizer {
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, long mID) {
+    public UploadResult upload(SQLiteDatabase db, long mID) {
         Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.USER_PASS);
         }
 
         TCX tcx = new TCX(db);
@@ -301,9 +301,7 @@ public class MapMyRunSynchronizer extends DefaultSynchronizer {
                 SyncHelper.parse(in);
                 conn.disconnect();
 
-                s = Status.OK;
-                s.activityId = mID;
-                return s;
+                return new UploadResult(Status.OK);
             }
         } catch (IOException e) {
             ex = e;
@@ -311,11 +309,8 @@ public class MapMyRunSynchronizer extends DefaultSynchronizer {
             ex = e;
         }
 
-        s = Synchronizer.Status.ERROR;
-        s.ex = ex;
-        s.activityId = mID;
-        ex.printStackTrace();
-        return s;
+        Log.w(getName(), "Upload failed", ex);
+        return new UploadResult(Status.ERROR, ex);
     }
 
     @Override
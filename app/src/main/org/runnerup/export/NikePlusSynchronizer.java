@@ -229,10 +229,10 @@ public class NikePlusSynchronizer extends DefaultSynchronizer {
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, long mID) {
+    public UploadResult upload(SQLiteDatabase db, long mID) {
         Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.USER_PASS);
         }
 
         NikeXML nikeXML = new NikeXML(db);
@@ -287,9 +287,7 @@ public class NikePlusSynchronizer extends DefaultSynchronizer {
             amsg = conn.getResponseMessage();
             conn.disconnect();
             if (responseCode == HttpURLConnection.HTTP_OK) {
-                s = Status.OK;
-                s.activityId = mID;
-                return s;
+                return new UploadResult(Status.OK);
             }
 
             ex = new Exception(amsg);
@@ -297,11 +295,8 @@ public class NikePlusSynchronizer extends DefaultSynchronizer {
             ex = e;
         }
 
-        s = Synchronizer.Status.ERROR;
-        s.ex = ex;
-        s.activityId = mID;
-        ex.printStackTrace();
-        return s;
+        Log.w(getName(), "Upload failed", ex);
+        return new UploadResult(Status.ERROR, ex);
     }
 
     @Override
@@ -40,16 +40,15 @@ import org.runnerup.db.entities.ActivityEntity;
 import org.runnerup.export.format.RunKeeper;
 import org.runnerup.export.oauth2client.OAuth2Activity;
 import org.runnerup.export.oauth2client.OAuth2Server;
+import org.runnerup.export.util.ExportWritable;
 import org.runnerup.export.util.SyncHelper;
 import org.runnerup.util.Formatter;
 import org.runnerup.util.SyncActivityItem;
 import org.runnerup.workout.Sport;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
 import java.math.BigDecimal;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
@@ -382,10 +381,10 @@ public class RunKeeperSynchronizer extends DefaultSynchronizer implements Synchr
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, final long mID) {
+    public UploadResult upload(SQLiteDatabase db, final long mID) {
         Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.OAUTH2);
         }
 
         /*
@@ -403,10 +402,8 @@ public class RunKeeperSynchronizer extends DefaultSynchronizer implements Synchr
             conn.addRequestProperty("Content-type",
                     "application/vnd.com.runkeeper.NewFitnessActivity+json");
             RunKeeper rk = new RunKeeper(db);
-            BufferedWriter w = new BufferedWriter(new OutputStreamWriter(
-                    conn.getOutputStream()));
-            rk.export(mID, w);
-            w.flush();
+            SyncHelper.postData(conn, new ExportWritable(exportCache, mID, "runkeeper",
+                    writer -> rk.export(mID, writer), false));
 
             int responseCode = conn.getResponseCode();
             String amsg = conn.getResponseMessage();
@@ -415,13 +412,8 @@ public class RunKeeperSynchronizer extends DefaultSynchronizer implements Synchr
             conn = null;
 
             if (responseCode >= HttpURLConnection.HTTP_OK && responseCode < HttpURLConnection.HTTP_MULT_CHOICE) {
-                s = Status.OK;
-                s.activityId = mID;
-                if (!TextUtils.isEmpty(externalId)) {
-                    s.externalId = externalId;
-                    s.externalIdStatus = ExternalIdStatus.OK;
-                }
-                return s;
+                return new UploadResult(Status.OK,
+                        TextUtils.isEmpty(externalId) ? null : externalId, ExternalIdStatus.OK);
             }
             Log.e(getName(), "Error code: " + responseCode + ", amsg: " + amsg);
             ex = new Exception(amsg);
@@ -434,10 +426,7 @@ public class RunKeeperSynchronizer extends DefaultSynchronizer implements Synchr
         if (conn != null) {
             conn.disconnect();
         }
-        s = Synchronizer.Status.ERROR;
-        s.ex = ex;
-        s.activityId = mID;
-        return s;
+        return new UploadResult(Status.ERROR, ex);
     }
 
     @SuppressLint("StaticFieldLeak")
@@ -32,6 +32,7 @@ import org.runnerup.common.util.Constants.DB;
 import org.runnerup.export.format.TCX;
 import org.runnerup.export.oauth2client.OAuth2Activity;
 import org.runnerup.export.oauth2client.OAuth2Server;
+import org.runnerup.export.util.ExportWritable;
 import org.runnerup.export.util.FormValues;
 import org.runnerup.export.util.Part;
 import org.runnerup.export.util.StringWritable;
@@ -42,7 +43,6 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.StringWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.Locale;
@@ -291,24 +291,29 @@ public class RunalyzeSynchronizer extends DefaultSynchronizer implements OAuth2S
 
 
     @Override
-    public Status upload(SQLiteDatabase db, final long mID) {
+    public int getMaxUploads() {
+        // Only the access token is shared between uploads
+        return 2;
+    }
+
+    @Override
+    public UploadResult upload(SQLiteDatabase db, final long mID) {
         Status s = connect();
         if (s != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.OAUTH2);
         }
 
         String desc = getDesc(db, mID);
         TCX tcx = new TCX(db);
         try {
-            StringWriter writer = new StringWriter();
-            tcx.export(mID, writer);
             HttpURLConnection conn = (HttpURLConnection) new URL(UPLOAD_URL).openConnection();
             conn.setDoOutput(true);
             conn.setRequestMethod(RequestMethod.POST.name());
             conn.setRequestProperty("Authorization", "Bearer " + access_token);
 
-            Part<StringWritable> filePart = new Part<>("file",
-                    new StringWritable(writer.toString()));
+            Part<ExportWritable> filePart = new Part<>("file",
+                    new ExportWritable(exportCache, mID, "tcx",
+                            writer -> tcx.export(mID, writer), false));
             filePart.setFilename(String.format(Locale.getDefault(),
                     "RunnerUp_%04d.tcx", mID));
             filePart.setContentType("application/octet-stream");
@@ -320,7 +325,7 @@ public class RunalyzeSynchronizer extends DefaultSynchronizer implements OAuth2S
                         new StringWritable(desc));
                 parts[1] = descPart;
             }
-            SyncHelper.postMulti(conn, parts);
+            SyncHelper.postMulti(conn, parts, true);
 
             int responseCode = conn.getResponseCode();
             String amsg = conn.getResponseMessage();
@@ -329,16 +334,12 @@ public class RunalyzeSynchronizer extends DefaultSynchronizer implements OAuth2S
             JSONObject obj = SyncHelper.parse(conn, getName());
 
             if (obj != null && responseCode >= HttpURLConnection.HTTP_OK && responseCode < HttpURLConnection.HTTP_MULT_CHOICE) {
-                s = Status.OK;
-                s.activityId = mID;
+                String externalId = null;
                 if (obj.has("activity_id")) {
                     // Note: duplicate will not set activity_id
-                    s.externalId = noNullStr(obj.getString("activity_id"));
-                    if (s.externalId != null) {
-                        s.externalIdStatus = ExternalIdStatus.OK;
-                    }
+                    externalId = noNullStr(obj.getString("activity_id"));
                 }
-                return s;
+                return new UploadResult(Status.OK, externalId, ExternalIdStatus.OK);
             }
             String error = obj != null && obj.has("error") ?
                     noNullStr(obj.getString("error")) :
@@ -349,22 +350,16 @@ public class RunalyzeSynchronizer extends DefaultSynchronizer implements OAuth2S
             if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED) {
                 // token no longer valid
                 access_token = null;
-                s = Status.NEED_AUTH;
-                s.authMethod = AuthMethod.OAUTH2;
             }
-            s = Status.ERROR;
-            return s;
+            return new UploadResult(Status.ERROR);
 
         } catch (IOException e) {
-            s = Status.ERROR;
-            s.ex = e;
+            Log.w(getName(), "Upload failed", e);
+            return new UploadResult(Status.ERROR, e);
         } catch (JSONException e) {
-            s = Status.ERROR;
-            s.ex = e;
+            Log.w(getName(), "Upload failed", e);
+            return new UploadResult(Status.ERROR, e);
         }
-
-        s.ex.printStackTrace();
-        return s;
     }
 
     @Override
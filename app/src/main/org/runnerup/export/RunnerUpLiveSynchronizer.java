@@ -33,8 +33,10 @@ import org.json.JSONObject;
 import org.runnerup.BuildConfig;
 import org.runnerup.R;
 import org.runnerup.common.util.Constants.DB;
+import org.runnerup.tracker.FixSample;
 import org.runnerup.tracker.WorkoutObserver;
 import org.runnerup.util.Formatter;
+import org.runnerup.workout.Dimension;
 import org.runnerup.workout.Scope;
 import org.runnerup.workout.WorkoutInfo;
 
@@ -160,7 +162,7 @@ public class RunnerUpLiveSynchronizer extends DefaultSynchronizer implements Wor
     }
 
     @Override
-    public void workoutEvent(WorkoutInfo workoutInfo, int type) {
+    public void workoutEvent(WorkoutInfo workoutInfo, int type, FixSample sample) {
 
         if (type == DB.LOCATION.TYPE_GPS) {
             double mMinLiveLogDelayMillis = 5000;
@@ -171,8 +173,8 @@ public class RunnerUpLiveSynchronizer extends DefaultSynchronizer implements Wor
         
         mTimeLastLog = System.currentTimeMillis();
         int externalType = translateType(type);
-        long elapsedDistanceMeter = Math.round(workoutInfo.getDistance(Scope.ACTIVITY));
-        long elapsedTimeMillis = Math.round(workoutInfo.getTime(Scope.ACTIVITY));
+        long elapsedDistanceMeter = Math.round(workoutInfo.get(Scope.ACTIVITY, Dimension.DISTANCE));
+        long elapsedTimeMillis = Math.round(workoutInfo.get(Scope.ACTIVITY, Dimension.TIME));
 
         Location location = workoutInfo.getLastKnownLocation();
 
@@ -30,17 +30,14 @@ import org.runnerup.common.util.Constants.DB;
 import org.runnerup.export.format.TCX;
 import org.runnerup.export.oauth2client.OAuth2Activity;
 import org.runnerup.export.oauth2client.OAuth2Server;
+import org.runnerup.export.util.ExportWritable;
 import org.runnerup.export.util.SyncHelper;
 
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.StringWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.zip.GZIPOutputStream;
 
 
 public class RunningAHEADSynchronizer extends DefaultSynchronizer implements OAuth2Server {
@@ -196,10 +193,10 @@ public class RunningAHEADSynchronizer extends DefaultSynchronizer implements OAu
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, final long mID) {
+    public UploadResult upload(SQLiteDatabase db, final long mID) {
         Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.OAUTH2);
         }
 
         String URL = IMPORT_URL + "?access_token=" + access_token;
@@ -207,17 +204,12 @@ public class RunningAHEADSynchronizer extends DefaultSynchronizer implements OAu
         HttpURLConnection conn;
         Exception ex;
         try {
-            StringWriter writer = new StringWriter();
-            tcx.export(mID, writer);
             conn = (HttpURLConnection) new URL(URL).openConnection();
             conn.setDoOutput(true);
             conn.setRequestMethod(RequestMethod.POST.name());
             conn.addRequestProperty("Content-Encoding", "gzip");
-            OutputStream out = new GZIPOutputStream(
-                    new BufferedOutputStream(conn.getOutputStream()));
-            out.write(writer.toString().getBytes());
-            out.flush();
-            out.close();
+            SyncHelper.postData(conn, new ExportWritable(exportCache, mID, "tcx",
+                    writer -> tcx.export(mID, writer), true));
             int responseCode = conn.getResponseCode();
             String amsg = conn.getResponseMessage();
             Log.e(getName(), "code: " + responseCode + ", amsg: " + amsg);
@@ -244,7 +236,7 @@ public class RunningAHEADSynchronizer extends DefaultSynchronizer implements OAu
             }
             if (responseCode == HttpURLConnection.HTTP_OK && found) {
                 conn.disconnect();
-                return Status.OK;
+                return new UploadResult(Status.OK);
             }
             ex = new Exception(amsg);
         } catch (IOException e) {
@@ -253,10 +245,8 @@ public class RunningAHEADSynchronizer extends DefaultSynchronizer implements OAu
             ex = e;
         }
 
-        s = Synchronizer.Status.ERROR;
-        s.ex = ex;
-        ex.printStackTrace();
-        return s;
+        Log.w(getName(), "Upload failed", ex);
+        return new UploadResult(Status.ERROR, ex);
     }
 
     @Override
@@ -199,7 +199,7 @@ public class RunningFreeOnlineSynchronizer extends DefaultSynchronizer {
     }
     
     @Override
-    public Status upload(SQLiteDatabase db, long mID) {
+    public UploadResult upload(SQLiteDatabase db, long mID) {
         Status retval = Status.ERROR;
         Exception exception = null;
         HttpURLConnection conn = null;
@@ -259,11 +259,10 @@ public class RunningFreeOnlineSynchronizer extends DefaultSynchronizer {
         }
 
         if (exception != null) {
-            retval.ex = exception;
             Log.e(LOG_TAG, "upload failed", exception);
+            return new UploadResult(Status.ERROR, exception);
         }
-        retval.activityId = mID;
-        return retval;
+        return new UploadResult(retval);
     }
 
     /**
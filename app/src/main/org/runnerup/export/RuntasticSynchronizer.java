@@ -274,16 +274,17 @@ public class RuntasticSynchronizer extends DefaultSynchronizer {
 
 
     @Override
-    public Status upload(SQLiteDatabase db, long mID) {
+    public UploadResult upload(SQLiteDatabase db, long mID) {
         Status s;
         if ((s = connect()) != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.USER_PASS);
         }
 
         StringWriter writer = new StringWriter();
         TCX tcx = new TCX(db);
 
         HttpURLConnection conn = null;
+        Exception ex;
         try {
             Pair<String, Sport> res = tcx.exportWithSport(mID, writer);
             Sport sport = res.second;
@@ -346,25 +347,20 @@ public class RuntasticSynchronizer extends DefaultSynchronizer {
                 conn.disconnect();
             }
             logout();
-            s = Status.OK;
-            s.activityId = mID;
-            return s;
+            return new UploadResult(Status.OK);
 
-        } catch (IOException ex) {
-            s = Status.ERROR;
-            s.ex = ex;
+        } catch (IOException e) {
+            ex = e;
         } catch (JSONException e) {
-            s = Status.ERROR;
-            s.ex = e;
+            ex = e;
         }
 
-        Log.e(getName(), "ex: " + s.ex);
+        Log.e(getName(), "ex: " + ex);
 
         if (conn != null)
             conn.disconnect();
 
-        s.activityId = mID;
-        return s;
+        return new UploadResult(Status.ERROR, ex);
     }
 
     @Override
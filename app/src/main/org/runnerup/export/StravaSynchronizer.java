@@ -32,6 +32,7 @@ import org.runnerup.common.util.Constants.DB;
 import org.runnerup.export.format.TCX;
 import org.runnerup.export.oauth2client.OAuth2Activity;
 import org.runnerup.export.oauth2client.OAuth2Server;
+import org.runnerup.export.util.ExportWritable;
 import org.runnerup.export.util.FormValues;
 import org.runnerup.export.util.Part;
 import org.runnerup.export.util.StringWritable;
@@ -40,16 +41,13 @@ import org.runnerup.workout.Sport;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.StringWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
-import java.util.zip.GZIPOutputStream;
 
 
 public class StravaSynchronizer extends DefaultSynchronizer implements OAuth2Server {
@@ -329,28 +327,21 @@ public class StravaSynchronizer extends DefaultSynchronizer implements OAuth2Ser
         return dbInfo;
     }
 
-    private static byte[] gzip(String string) throws IOException {
-        ByteArrayOutputStream os = new ByteArrayOutputStream(string.length());
-        GZIPOutputStream gos = new GZIPOutputStream(os);
-        gos.write(string.getBytes());
-        gos.close();
-        byte[] compressed = os.toByteArray();
-        os.close();
-        return compressed;
+    @Override
+    public int getMaxUploads() {
+        // Only the access token is shared between uploads
+        return 2;
     }
 
     @Override
-    public Status upload(SQLiteDatabase db, final long mID) {
+    public UploadResult upload(SQLiteDatabase db, final long mID) {
         Status s = connect();
-        s.activityId = mID;
         if (s != Status.OK) {
-            return s;
+            return new UploadResult(s, AuthMethod.OAUTH2);
         }
 
         try {
             TCX tcx = new TCX(db);
-            StringWriter writer = new StringWriter();
-            tcx.export(mID, writer);
             ActivityDbInfo dbInfo = getStravaType(db, mID);
 
             HttpURLConnection conn = (HttpURLConnection) new URL(UPLOAD_URL).openConnection();
@@ -360,8 +351,9 @@ public class StravaSynchronizer extends DefaultSynchronizer implements OAuth2Ser
 
             Part<StringWritable> dataTypePart = new Part<>("data_type",
                     new StringWritable("tcx.gz"));
-            Part<StringWritable> filePart = new Part<>("file",
-                    new StringWritable(gzip(writer.toString())));
+            Part<ExportWritable> filePart = new Part<>("file",
+                    new ExportWritable(exportCache, mID, "tcx",
+                            writer -> tcx.export(mID, writer), true));
             filePart.setFilename(String.format(Locale.getDefault(), "RunnerUp_%04d.tcx.gz", mID));
             filePart.setContentType("application/octet-stream");
             Part<StringWritable> activityTypePart = new Part<>("activity_type",
@@ -374,7 +366,7 @@ public class StravaSynchronizer extends DefaultSynchronizer implements OAuth2Ser
                         new StringWritable(dbInfo.desc));
                 parts[3] = descPart;
             }
-            SyncHelper.postMulti(conn, parts);
+            SyncHelper.postMulti(conn, parts, true);
 
             int responseCode = conn.getResponseCode();
             String amsg = conn.getResponseMessage();
@@ -389,44 +381,35 @@ public class StravaSynchronizer extends DefaultSynchronizer implements OAuth2Ser
 
             if (responseCode == HttpURLConnection.HTTP_CREATED && obj.getLong("id") > 0 &&
                     stravaError == null) {
-                s = Status.OK;
-                s.activityId = mID;
-                s.externalId = noNullStr(obj.getString("activity_id"));
-                if (s.externalId == null) {
+                String externalId = noNullStr(obj.getString("activity_id"));
+                if (externalId == null) {
                     //The Strava ID is not yet found, request it
-                    s.externalIdStatus = ExternalIdStatus.PENDING;
-                    s.externalId = noNullStr(obj.getString("id"));
-                } else {
-                    //Only for very small activities
-                    s.externalIdStatus = ExternalIdStatus.OK;
+                    return new UploadResult(Status.OK, noNullStr(obj.getString("id")),
+                            ExternalIdStatus.PENDING);
                 }
-                return s;
+                //Only for very small activities
+                return new UploadResult(Status.OK, externalId, ExternalIdStatus.OK);
             }
 
             Log.e(getName(), "Error uploading to Strava. code: " + responseCode + ", amsg: " + amsg +
             ", json: " + obj);
-            s = Synchronizer.Status.ERROR;
-            return s;
+            return new UploadResult(Status.ERROR);
 
         } catch (IOException e) {
-            s = Synchronizer.Status.ERROR;
-            s.ex = e;
+            Log.w(getName(), "Upload failed", e);
+            return new UploadResult(Status.ERROR, e);
         } catch (JSONException e) {
-            s = Synchronizer.Status.ERROR;
-            s.ex = e;
+            Log.w(getName(), "Upload failed", e);
+            return new UploadResult(Status.ERROR, e);
         }
-
-        s.ex.printStackTrace();
-        return s;
     }
 
     /**
      * Strava processing
      */
     @Override
-    public Status getExternalId(final SQLiteDatabase db, Status uploadStatus) {
-        Status result = Status.ERROR;
-
+    public String getExternalId(final SQLiteDatabase db, String uploadId) {
+        Exception ex;
         try {
             String stravaError = null;
             int responseCode = 0;
@@ -438,7 +421,7 @@ public class StravaSynchronizer extends DefaultSynchronizer implements OAuth2Ser
                     TimeUnit.SECONDS.sleep(1);
                 } catch (InterruptedException e) {
                 }
-                HttpURLConnection conn = (HttpURLConnection) new URL(UPLOAD_URL + "/" + uploadStatus.externalId).openConnection();
+                HttpURLConnection conn = (HttpURLConnection) new URL(UPLOAD_URL + "/" + uploadId).openConnection();
                 conn.setRequestMethod(RequestMethod.GET.name());
                 conn.setRequestProperty("Authorization", "Bearer " + access_token);
 
@@ -454,28 +437,21 @@ public class StravaSynchronizer extends DefaultSynchronizer implements OAuth2Ser
                 if (responseCode <= HttpURLConnection.HTTP_CREATED && obj != null && obj.getLong("id") > 0 &&
                         noNullStr(obj.getString("activity_id")) != null && stravaError == null) {
                     Log.v(getName(), "extid code: " + obj);
-                    String extId = noNullStr(obj.getString("activity_id"));
-                    if (extId != null) {
-                        result = Status.OK;
-                        result.activityId = uploadStatus.activityId;
-                        result.externalId = extId;
-                        result.externalIdStatus = ExternalIdStatus.OK;
-                    }
-                    return result;
+                    return noNullStr(obj.getString("activity_id"));
                 }
             }
             Log.e(getName(), "Error getting id, code: " + responseCode + ", amsg: " + amsg
                     + " (" + remainingAttempts + ")");
-            return result;
+            return null;
 
         } catch (IOException e) {
-            result.ex = e;
+            ex = e;
         } catch (JSONException e) {
-            result.ex = e;
+            ex = e;
         }
 
-        result.ex.printStackTrace();
-        return result;
+        ex.printStackTrace();
+        return null;
     }
 
     @Override
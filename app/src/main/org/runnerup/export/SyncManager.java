@@ -212,7 +212,7 @@ public class SyncManager {
         } else if (synchronizerName.contentEquals(RunningFreeOnlineSynchronizer.NAME)) {
             synchronizer = new RunningFreeOnlineSynchronizer();
         } else if (synchronizerName.contentEquals(FileSynchronizer.NAME)) {
-            synchronizer = new FileSynchronizer();
+            synchronizer = new FileSynchronizer(mContext);
         } else if (synchronizerName.contentEquals(RunalyzeSynchronizer.NAME)) {
             synchronizer = new RunalyzeSynchronizer();
         } else if (synchronizerName.contentEquals(DropboxSynchronizer.NAME)) {
@@ -576,95 +576,128 @@ public class SyncManager {
         return result;
     }
 
-    private long mID = 0;
+    private static final int UPLOAD_THREADS = 4;
+    // Most synchronizers keep session state and upload one at a time, see getMaxUploads()
+    private static final int UPLOADS_PER_SYNCHRONIZER = 2;
+
+    private UploadScheduler uploadScheduler = null;
     private Callback uploadCallback = null;
-    private HashSet<String> pendingSynchronizers = null;
+    private Callback uploadProgressCallback = null;
+    // Uploads waiting for authentication, handled one at a time
+    private final List<PendingAuth> pendingAuth = new ArrayList<>();
+
+    private static class PendingAuth {
+        final Synchronizer synchronizer;
+        final long activityId;
+        final AuthMethod authMethod;
+
+        PendingAuth(Synchronizer synchronizer, long activityId, AuthMethod authMethod) {
+            this.synchronizer = synchronizer;
+            this.activityId = activityId;
+            this.authMethod = authMethod;
+        }
+    }
 
     public void startUploading(Callback callback, HashSet<String> synchronizers, long id) {
-        mID = id;
-        uploadCallback = callback;
-        pendingSynchronizers = synchronizers;
-        mSpinner.setTitle("Uploading (" + pendingSynchronizers.size() + ")");
-        mSpinner.show();
-        nextSynchronizer();
+        List<Long> ids = new ArrayList<>();
+        ids.add(id);
+        startUploading(callback, null, synchronizers, ids);
     }
 
-    private void nextSynchronizer() {
-        if (pendingSynchronizers.isEmpty()) {
-            doneUploading();
-            return;
+    /**
+     * Upload activities to synchronizers in parallel, limited per synchronizer
+     * @param callback called when all uploads are done
+     * @param progress called for each upload, may be null
+     */
+    public void startUploading(Callback callback, Callback progress, Set<String> synchronizerNames,
+                               List<Long> ids) {
+        uploadCallback = callback;
+        uploadProgressCallback = progress;
+        uploadScheduler = new UploadScheduler(UPLOAD_THREADS, UPLOADS_PER_SYNCHRONIZER,
+                new File(mContext.getCacheDir(), "upload"), uploadListener);
+        for (String name : synchronizerNames) {
+            Synchronizer synchronizer = synchronizers.get(name);
+            if (synchronizer == null) {
+                continue;
+            }
+            for (long id : ids) {
+                uploadScheduler.add(synchronizer, id);
+            }
         }
-
-        mSpinner.setTitle("Uploading (" + pendingSynchronizers.size() + ")");
-        final Synchronizer synchronizer = synchronizers.get(pendingSynchronizers.iterator().next());
-        pendingSynchronizers.remove(synchronizer.getName());
-        doUpload(synchronizer);
+        mSpinner.setTitle("Uploading (" + uploadScheduler.getRemaining() + ")");
+        mSpinner.show();
+        uploadScheduler.start();
     }
 
-    @SuppressLint("StaticFieldLeak")
-    private void doUpload(final Synchronizer synchronizer) {
-        final ProgressDialog copySpinner = mSpinner;
-        final SQLiteDatabase copyDB = DBHelper.getWritableDatabase(mContext);
-
-        copySpinner.setMessage(getResources().getString(SyncMode.UPLOAD.getTextId(), synchronizer.getName()));
-
-        new AsyncTask<Synchronizer, String, Synchronizer.Status>() {
-
-            @Override
-            protected Synchronizer.Status doInBackground(Synchronizer... params) {
-                try {
-                    Synchronizer.Status s2 = params[0].upload(copyDB, mID);
-                    // See doUpload() for motivation
-                    if (s2 == Synchronizer.Status.NEED_REFRESH) {
-                        s2 = handleRefreshComplete(synchronizer, synchronizer.refreshToken());
-                        if (s2 == Synchronizer.Status.OK) {
-                            s2 = params[0].upload(copyDB, mID);
-                        }
-                    }
-                    return s2;
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                    return Synchronizer.Status.ERROR;
+    private final UploadScheduler.Listener uploadListener = new UploadScheduler.Listener() {
+        @Override
+        public Synchronizer.UploadResult upload(Synchronizer synchronizer, long activityId) {
+            SQLiteDatabase copyDB = DBHelper.getWritableDatabase(mContext);
+            Synchronizer.UploadResult result = synchronizer.upload(copyDB, activityId);
+            // Refresh the access token and try again
+            if (result.status == Synchronizer.Status.NEED_REFRESH) {
+                Synchronizer.Status s2 = handleRefreshComplete(synchronizer, synchronizer.refreshToken());
+                if (s2 != Synchronizer.Status.OK) {
+                    return new Synchronizer.UploadResult(s2, Synchronizer.AuthMethod.OAUTH2);
                 }
+                result = synchronizer.upload(copyDB, activityId);
             }
+            return result;
+        }
 
-            @Override
-            protected void onPostExecute(Synchronizer.Status result) {
-                switch (result) {
-                    case OK:
-                        syncOK(synchronizer, copySpinner, copyDB, result);
-                        nextSynchronizer();
-                        break;
+        @Override
+        public void onUploaded(Synchronizer synchronizer, long activityId,
+                               Synchronizer.UploadResult result) {
+            final Synchronizer.Status status = result.status;
+            mSpinner.setTitle("Uploading (" + uploadScheduler.getRemaining() + ")");
+            mSpinner.setMessage(getResources().getString(SyncMode.UPLOAD.getTextId(), synchronizer.getName()));
+            switch (status) {
+                case OK:
+                    syncOK(synchronizer, mSpinner, mDB, activityId,
+                            result.externalId, result.externalIdStatus);
+                    break;
 
-                    case NEED_AUTH:
-                        handleAuth(new Callback() {
-                            @Override
-                            public void run(String synchronizerName,
-                                            Synchronizer.Status status) {
-                                switch (status) {
-                                    case OK:
-                                        doUpload(synchronizer);
-                                        break;
+                case NEED_AUTH:
+                    pendingAuth.add(new PendingAuth(synchronizer, activityId, result.authMethod));
+                    if (pendingAuth.size() == 1) {
+                        nextAuth();
+                    }
+                    break;
 
-                                    default:
-                                        nextSynchronizer();
-                                        break;
-                                }
-                            }
-                        }, synchronizer, result.authMethod);
-                        return;
+                case CANCEL:
+                    uploadScheduler.cancel();
+                    break;
 
-                    case CANCEL:
-                        pendingSynchronizers.clear();
-                        doneUploading();
-                        return;
+                default:
+                    break;
+            }
+            if (uploadProgressCallback != null) {
+                uploadProgressCallback.run(synchronizer.getName(), status);
+            }
+        }
 
-                    default:
-                        nextSynchronizer();
-                        break;
+        @Override
+        public void onDone() {
+            doneUploading();
+        }
+    };
+
+    private void nextAuth() {
+        final PendingAuth upload = pendingAuth.get(0);
+        handleAuth(new Callback() {
+            @Override
+            public void run(String synchronizerName, Synchronizer.Status status) {
+                pendingAuth.remove(0);
+                if (status == Synchronizer.Status.OK) {
+                    uploadScheduler.retry(upload.synchronizer, upload.activityId);
+                } else {
+                    uploadScheduler.drop(upload.synchronizer, upload.activityId);
+                }
+                if (!pendingAuth.isEmpty()) {
+                    nextAuth();
                 }
             }
-        }.execute(synchronizer);
+        }, upload.synchronizer, upload.authMethod);
     }
 
     /**
@@ -672,62 +705,62 @@ public class SyncManager {
      * The result is seen in activity upload only (clickable link).
      * @param synchronizer
      * @param copyDB
-     * @param status
+     * @param activityId
+     * @param uploadId the temporary identifier from the upload
      */
-    private static void getExternalId(final Synchronizer synchronizer, final SQLiteDatabase copyDB, final Synchronizer.Status status){
-        if(status.externalIdStatus == Synchronizer.ExternalIdStatus.PENDING) {
-            new AsyncTask<Void, Void, Synchronizer.Status>() {
-
-                @Override
-                protected Synchronizer.Status doInBackground(Void... args) {
-                    // Implementation must delay the call rate
-                    return synchronizer.getExternalId(copyDB, status);
-                }
+    private static void getExternalId(final Synchronizer synchronizer, final SQLiteDatabase copyDB,
+                                      final long activityId, final String uploadId) {
+        new AsyncTask<Void, Void, String>() {
 
-                @Override
-                protected void onPostExecute(Synchronizer.Status result) {
-                    //the external status is updated, check
-                    externalIdCompleted(synchronizer, copyDB, result);
-                }
-            }.execute();
-        }
-    }
+            @Override
+            protected String doInBackground(Void... args) {
+                // Implementation must delay the call rate
+                return synchronizer.getExternalId(copyDB, uploadId);
+            }
 
-    private final Callback disableSynchronizerCallback = new Callback() {
-        @Override
-        public void run(String synchronizerName, Status status) {
-            nextSynchronizer();
-        }
-    };
+            @Override
+            protected void onPostExecute(String externalId) {
+                //the external status is updated, check
+                externalIdCompleted(synchronizer, copyDB, activityId, externalId);
+            }
+        }.execute();
+    }
 
     private void syncOK(Synchronizer synchronizer, ProgressDialog copySpinner, SQLiteDatabase copyDB,
-                        Synchronizer.Status status) {
+                        long activityId, String externalId,
+                        Synchronizer.ExternalIdStatus externalIdStatus) {
         copySpinner.setMessage(getResources().getString(R.string.Saving));
-        status.activityId = mID; //Not always set
 
         ContentValues tmp = new ContentValues();
         tmp.put(DB.EXPORT.ACCOUNT, synchronizer.getId());
-        tmp.put(DB.EXPORT.ACTIVITY, status.activityId);
-        tmp.put(DB.EXPORT.STATUS, status.externalIdStatus.getInt());
-        tmp.put(DB.EXPORT.EXTERNAL_ID, status.externalId);
+        tmp.put(DB.EXPORT.ACTIVITY, activityId);
+        tmp.put(DB.EXPORT.STATUS, externalIdStatus.getInt());
+        tmp.put(DB.EXPORT.EXTERNAL_ID, externalId);
         copyDB.insert(DB.EXPORT.TABLE, null, tmp);
 
-        getExternalId(synchronizer, copyDB, status);
+        if (externalIdStatus == Synchronizer.ExternalIdStatus.PENDING) {
+            getExternalId(synchronizer, copyDB, activityId, externalId);
+        }
     }
 
     private static void externalIdCompleted(Synchronizer synchronizer, SQLiteDatabase copyDB,
-                                            Synchronizer.Status status) {
+                                            long activityId, String externalId) {
+        Synchronizer.ExternalIdStatus externalIdStatus = externalId != null ?
+                Synchronizer.ExternalIdStatus.OK : Synchronizer.ExternalIdStatus.NONE;
         ContentValues tmp = new ContentValues();
-        tmp.put(DB.EXPORT.STATUS, status.externalIdStatus.getInt());
-        tmp.put(DB.EXPORT.EXTERNAL_ID, status.externalId);
-        String[] args = { Long.toString(synchronizer.getId()), Long.toString(status.activityId) };
+        tmp.put(DB.EXPORT.STATUS, externalIdStatus.getInt());
+        tmp.put(DB.EXPORT.EXTERNAL_ID, externalId);
+        String[] args = { Long.toString(synchronizer.getId()), Long.toString(activityId) };
         copyDB.update(DB.EXPORT.TABLE, tmp, DB.EXPORT.ACCOUNT + "= ? AND " + DB.EXPORT.ACTIVITY + " = ?", args);
     }
 
     private void doneUploading() {
         mSpinner.dismiss();
+        uploadScheduler = null;
+        pendingAuth.clear();
         final Callback cb = uploadCallback;
         uploadCallback = null;
+        uploadProgressCallback = null;
         if (cb != null)
             cb.run(null, null);
     }
@@ -862,7 +895,7 @@ public class SyncManager {
             protected Synchronizer.Status doInBackground(Synchronizer... params) {
                 try {
                     Synchronizer.Status s2 = params[0].listWorkouts(list);
-                    // See doUpload() for motivation
+                    // Refresh the access token and try again
                     if (s2 == Synchronizer.Status.NEED_REFRESH) {
                         s2 = handleRefreshComplete(synchronizer, synchronizer.refreshToken());
                         if (s2 == Synchronizer.Status.OK) {
@@ -1088,9 +1121,42 @@ public class SyncManager {
                     }
                 });
         }
+        if (mode == SyncMode.UPLOAD) {
+            uploadActivities(synchronizer);
+            return;
+        }
         syncNextActivity(synchronizer, mode);
     }
 
+    private void uploadActivities(final Synchronizer synchronizer) {
+        final List<Long> ids = new ArrayList<>();
+        for (SyncActivityItem ai : syncActivitiesList) {
+            ids.add(ai.getId());
+        }
+        syncActivitiesList.clear();
+        Set<String> names = new HashSet<>();
+        names.add(synchronizer.getName());
+
+        startUploading(new Callback() {
+            @Override
+            public void run(String synchronizerName, Status status) {
+                syncActivityCallback.run(synchronizer.getName(),
+                        checkCancel(cancelSync) ? Status.CANCEL : Status.OK);
+            }
+        }, new Callback() {
+            @Override
+            public void run(String synchronizerName, Status status) {
+                if (uploadScheduler == null) {
+                    return;
+                }
+                mSpinner.setProgress(ids.size() - uploadScheduler.getRemaining());
+                if (checkCancel(cancelSync)) {
+                    uploadScheduler.cancel();
+                }
+            }
+        }, names, ids);
+    }
+
     private void prepareSpinnerForSync(List<SyncActivityItem> list, final StringBuffer cancel, SyncMode mode, String synchronizerName) {
         String msg = getResources().getString(mode.getTextId(), synchronizerName);
         mSpinner.setTitle(msg);
@@ -1135,7 +1201,6 @@ public class SyncManager {
         mSpinner.setProgress(syncActivitiesList.size());
         SyncActivityItem ai = syncActivitiesList.get(0);
         syncActivitiesList.remove(0);
-        mID = ai.getId();
         doSyncMulti(synchronizer, mode, ai);
     }
 
@@ -1145,50 +1210,45 @@ public class SyncManager {
         final SQLiteDatabase copyDB = DBHelper.getWritableDatabase(mContext);
 
         copySpinner.setMessage(Long.toString(1 + syncActivitiesList.size()) + " remaining");
-        new AsyncTask<Synchronizer, String, Status>() {
+        new AsyncTask<Synchronizer, String, Synchronizer.UploadResult>() {
 
             @Override
-            protected Synchronizer.Status doInBackground(Synchronizer... params) {
+            protected Synchronizer.UploadResult doInBackground(Synchronizer... params) {
                 try {
-                    Synchronizer.Status s2;
-                    switch (mode) {
-                        case UPLOAD:
-                            s2 = synchronizer.upload(copyDB, activityItem.getId());
-                            break;
-                        case DOWNLOAD:
-                            s2 = synchronizer.download(copyDB, activityItem);
-                            break;
-                        default:
-                            s2 = Synchronizer.Status.INCORRECT_USAGE;
-                    }
-                    // See doUpload() for motivation
-                    if (s2 == Synchronizer.Status.NEED_REFRESH) {
-                        s2 = handleRefreshComplete(synchronizer, synchronizer.refreshToken());
-                        if (s2 == Synchronizer.Status.OK) {
-                            switch (mode) {
-                                case UPLOAD:
-                                    s2 = synchronizer.upload(copyDB, activityItem.getId());
-                                    break;
-                                case DOWNLOAD:
-                                    s2 = synchronizer.download(copyDB, activityItem);
-                                    break;
-                                default:
-                                    s2 = Synchronizer.Status.INCORRECT_USAGE;
-                            }
+                    Synchronizer.UploadResult result = sync();
+                    // Refresh the access token and try again
+                    if (result.status == Synchronizer.Status.NEED_REFRESH) {
+                        Synchronizer.Status s2 = handleRefreshComplete(synchronizer, synchronizer.refreshToken());
+                        if (s2 != Synchronizer.Status.OK) {
+                            return new Synchronizer.UploadResult(s2, Synchronizer.AuthMethod.OAUTH2);
                         }
+                        result = sync();
                     }
-                    return s2;
+                    return result;
                 } catch (Exception ex) {
-                    ex.printStackTrace();
-                    return Synchronizer.Status.ERROR;
+                    Log.w(getClass().getName(), "Sync failed", ex);
+                    return new Synchronizer.UploadResult(Synchronizer.Status.ERROR, ex);
+                }
+            }
+
+            private Synchronizer.UploadResult sync() {
+                switch (mode) {
+                    case UPLOAD:
+                        return synchronizer.upload(copyDB, activityItem.getId());
+                    case DOWNLOAD:
+                        Synchronizer.Status s2 = synchronizer.download(copyDB, activityItem);
+                        return new Synchronizer.UploadResult(s2, s2.authMethod);
+                    default:
+                        return new Synchronizer.UploadResult(Synchronizer.Status.INCORRECT_USAGE);
                 }
             }
 
             @Override
-            protected void onPostExecute(Synchronizer.Status result) {
-                switch (result) {
+            protected void onPostExecute(final Synchronizer.UploadResult result) {
+                switch (result.status) {
                     case OK:
-                        syncOK(synchronizer, copySpinner, copyDB, result);
+                        syncOK(synchronizer, copySpinner, copyDB, activityItem.getId(),
+                                result.externalId, result.externalIdStatus);
                         syncNextActivity(synchronizer, mode);
                         break;
 
@@ -1276,13 +1336,17 @@ public class SyncManager {
             protected Synchronizer.Status doInBackground(Synchronizer... params) {
                 try {
                     Synchronizer.Status s2 = params[0].getFeed(feedUpdater);
-                    // See doUpload() for motivation
+                    // Refresh the access token and try again
                     if (s2 == Synchronizer.Status.NEED_REFRESH) {
                         s2 = handleRefreshComplete(synchronizer, synchronizer.refreshToken());
                         if (s2 == Synchronizer.Status.OK) {
                             s2 = params[0].getFeed(feedUpdater);
                         }
                     }
+                    if (s2 == Synchronizer.Status.OK) {
+                        // Insert the new items in the background
+                        feedUpdater.flush();
+                    }
                     return s2;
                 } catch (Exception ex) {
                     ex.printStackTrace();
@@ -23,6 +23,7 @@ import android.content.Intent;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Pair;
 
+import org.runnerup.export.util.ExportCache;
 import org.runnerup.feed.FeedList.FeedUpdater;
 import org.runnerup.util.SyncActivityItem;
 
@@ -46,6 +47,44 @@ public interface Synchronizer {
         public String externalId = null ;
     }
 
+    /**
+     * The result of one upload. Status is a shared enum, the fields of an upload are kept
+     * here so uploads can run in parallel.
+     */
+    final class UploadResult {
+        public final Status status;
+        public final AuthMethod authMethod;
+        public final ExternalIdStatus externalIdStatus;
+        public final String externalId;
+        public final Exception ex;
+
+        public UploadResult(Status status) {
+            this(status, null, ExternalIdStatus.NONE, null, null);
+        }
+
+        public UploadResult(Status status, AuthMethod authMethod) {
+            this(status, authMethod, ExternalIdStatus.NONE, null, null);
+        }
+
+        public UploadResult(Status status, Exception ex) {
+            this(status, null, ExternalIdStatus.NONE, null, ex);
+        }
+
+        public UploadResult(Status status, String externalId, ExternalIdStatus externalIdStatus) {
+            this(status, null, externalId != null ? externalIdStatus : ExternalIdStatus.NONE,
+                    externalId, null);
+        }
+
+        private UploadResult(Status status, AuthMethod authMethod,
+                             ExternalIdStatus externalIdStatus, String externalId, Exception ex) {
+            this.status = status;
+            this.authMethod = authMethod;
+            this.externalIdStatus = externalIdStatus;
+            this.externalId = externalId;
+            this.ex = ex;
+        }
+    }
+
     enum ExternalIdStatus {
         NONE, PENDING, OK;
 
@@ -134,19 +173,30 @@ public interface Synchronizer {
     Status getAuthResult(int resultCode, Intent data);
 
     /**
+     * Upload an activity, called in a worker thread in parallel with other synchronizers
      * @param db
      * @param mID
      */
-    Status upload(SQLiteDatabase db, long mID);
+    UploadResult upload(SQLiteDatabase db, long mID);
+
+    /**
+     * Exports shared with other synchronizers during upload, null if not used
+     */
+    void setExportCache(ExportCache cache);
+
+    /**
+     * The max number of activities uploaded in parallel, 1 if upload() uses session state
+     */
+    int getMaxUploads();
 
     /**
      * Get the external identifier for the service
      * Done in the background, can take substantial time for some services
      * @param db
-     * @param uploadStatus The status with the (temporary) identifier for the upload
-     * @return the external ID
+     * @param uploadId The (temporary) identifier for the upload
+     * @return the external ID, null if not found
      */
-    Status getExternalId(SQLiteDatabase db, Status uploadStatus);
+    String getExternalId(SQLiteDatabase db, String uploadId);
 
     /**
      * Check if an synchronizer supports a feature
@@ -0,0 +1,247 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.export;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.runnerup.export.util.ExportCache;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Uploads activities to several synchronizers on a bounded pool of threads.
+ *
+ * Synchronizers keep session state (cookies, tokens), so the number of concurrent uploads
+ * per synchronizer is limited, see Synchronizer.getMaxUploads().
+ * Exports in the same format are rendered once per activity and shared, see ExportCache.
+ *
+ * Must be used from the main thread, the listener is called on the main thread
+ * except for Listener.upload().
+ */
+class UploadScheduler {
+
+    interface Listener {
+        /**
+         * Upload the activity, called in a worker thread
+         */
+        Synchronizer.UploadResult upload(Synchronizer synchronizer, long activityId);
+
+        /**
+         * An upload is done.
+         * For NEED_AUTH the synchronizer is held until retry() or drop() is called.
+         */
+        void onUploaded(Synchronizer synchronizer, long activityId, Synchronizer.UploadResult result);
+
+        /**
+         * All uploads are done or cancelled
+         */
+        void onDone();
+    }
+
+    private final Listener listener;
+    private final int maxPerSynchronizer;
+    private final ExecutorService executor;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExportCache exportCache;
+
+    private final Map<Synchronizer, ArrayDeque<Long>> pending = new LinkedHashMap<>();
+    private final Map<Synchronizer, Integer> running = new HashMap<>();
+    private final Set<Synchronizer> held = new HashSet<>();
+    // Uploads not done per activity, the export is dropped when it reaches 0
+    private final Map<Long, Integer> remaining = new HashMap<>();
+    private int runningCount = 0;
+    private int remainingCount = 0;
+    private boolean started = false;
+    private boolean done = false;
+
+    /**
+     * @param threads the max number of uploads in parallel
+     * @param maxPerSynchronizer the max number of uploads in parallel to one synchronizer,
+     *                           lowered by Synchronizer.getMaxUploads()
+     * @param cacheDir directory for the shared exports
+     */
+    UploadScheduler(int threads, int maxPerSynchronizer, File cacheDir, Listener listener) {
+        this.listener = listener;
+        this.maxPerSynchronizer = maxPerSynchronizer;
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.exportCache = new ExportCache(cacheDir);
+    }
+
+    void add(Synchronizer synchronizer, long activityId) {
+        ArrayDeque<Long> queue = pending.get(synchronizer);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            pending.put(synchronizer, queue);
+        }
+        queue.addLast(activityId);
+        Integer count = remaining.get(activityId);
+        remaining.put(activityId, count == null ? 1 : count + 1);
+        remainingCount++;
+    }
+
+    void start() {
+        started = true;
+        for (Map.Entry<Long, Integer> e : remaining.entrySet()) {
+            exportCache.setUsers(e.getKey(), e.getValue());
+        }
+        for (Synchronizer synchronizer : pending.keySet()) {
+            synchronizer.setExportCache(exportCache);
+        }
+        dispatch();
+    }
+
+    /**
+     * @return the number of uploads not done
+     */
+    int getRemaining() {
+        return remainingCount;
+    }
+
+    /**
+     * Upload again after authentication, the synchronizer is no longer held
+     */
+    void retry(Synchronizer synchronizer, long activityId) {
+        if (done) {
+            return;
+        }
+        held.remove(synchronizer);
+        pending.get(synchronizer).addFirst(activityId);
+        dispatch();
+    }
+
+    /**
+     * Skip the activity and the remaining uploads for a held synchronizer
+     */
+    void drop(Synchronizer synchronizer, long activityId) {
+        held.remove(synchronizer);
+        activityDone(activityId);
+        ArrayDeque<Long> queue = pending.get(synchronizer);
+        while (!queue.isEmpty()) {
+            activityDone(queue.removeFirst());
+        }
+        dispatch();
+    }
+
+    /**
+     * Skip all uploads not started, running uploads are completed
+     */
+    void cancel() {
+        for (ArrayDeque<Long> queue : pending.values()) {
+            while (!queue.isEmpty()) {
+                activityDone(queue.removeFirst());
+            }
+        }
+        held.clear();
+        checkDone();
+    }
+
+    private int getRunning(Synchronizer synchronizer) {
+        Integer count = running.get(synchronizer);
+        return count == null ? 0 : count;
+    }
+
+    private void dispatch() {
+        for (Map.Entry<Synchronizer, ArrayDeque<Long>> e : pending.entrySet()) {
+            Synchronizer synchronizer = e.getKey();
+            ArrayDeque<Long> queue = e.getValue();
+            int max = Math.max(1, Math.min(maxPerSynchronizer, synchronizer.getMaxUploads()));
+            while (!held.contains(synchronizer) && !queue.isEmpty()
+                    && getRunning(synchronizer) < max) {
+                submit(synchronizer, queue.removeFirst());
+            }
+        }
+        checkDone();
+    }
+
+    private void submit(final Synchronizer synchronizer, final long activityId) {
+        running.put(synchronizer, getRunning(synchronizer) + 1);
+        runningCount++;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Synchronizer.UploadResult r;
+                try {
+                    r = listener.upload(synchronizer, activityId);
+                } catch (Exception ex) {
+                    Log.e("UploadScheduler", "Upload to " + synchronizer.getName() + " failed", ex);
+                    r = new Synchronizer.UploadResult(Synchronizer.Status.ERROR, ex);
+                }
+                final Synchronizer.UploadResult result = r;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        uploaded(synchronizer, activityId, result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void uploaded(Synchronizer synchronizer, long activityId,
+                          Synchronizer.UploadResult result) {
+        running.put(synchronizer, getRunning(synchronizer) - 1);
+        runningCount--;
+        if (result.status == Synchronizer.Status.NEED_AUTH) {
+            held.add(synchronizer);
+        } else {
+            activityDone(activityId);
+        }
+        listener.onUploaded(synchronizer, activityId, result);
+        dispatch();
+    }
+
+    private void activityDone(long activityId) {
+        Integer count = remaining.get(activityId);
+        if (count == null) {
+            return;
+        }
+        remainingCount--;
+        if (count <= 1) {
+            remaining.remove(activityId);
+            exportCache.remove(activityId);
+        } else {
+            remaining.put(activityId, count - 1);
+        }
+    }
+
+    private void checkDone() {
+        if (done || !started || runningCount > 0 || !held.isEmpty()) {
+            return;
+        }
+        for (ArrayDeque<Long> queue : pending.values()) {
+            if (!queue.isEmpty()) {
+                return;
+            }
+        }
+        done = true;
+        for (Synchronizer synchronizer : pending.keySet()) {
+            synchronizer.setExportCache(null);
+        }
+        exportCache.clear();
+        executor.shutdown();
+        listener.onDone();
+    }
+}
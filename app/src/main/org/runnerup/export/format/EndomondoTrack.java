@@ -22,6 +22,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.location.Location;
 
 import org.runnerup.common.util.Constants.DB;
+import org.runnerup.db.TrackStore;
 import org.runnerup.export.EndomondoSynchronizer;
 import org.runnerup.workout.Sport;
 
@@ -58,7 +59,16 @@ public class EndomondoTrack {
 
     public void export(final long activityId, final Writer writer, Summary summary)
             throws IOException {
+        if (summary != null) {
+            getSummary(activityId, summary);
+        }
+        emitWaypoints(activityId, writer);
+    }
 
+    /**
+     * The summary for the activity, without exporting the track
+     */
+    public void getSummary(final long activityId, Summary summary) {
         final String[] aColumns = {
                 DB.ACTIVITY.NAME, DB.ACTIVITY.COMMENT,
                 DB.ACTIVITY.START_TIME, DB.ACTIVITY.DISTANCE, DB.ACTIVITY.TIME,
@@ -72,18 +82,14 @@ public class EndomondoTrack {
         final double distance = cursor.getDouble(3) / 1000; // in km
         final long duration = cursor.getLong(4);
 
-        if (summary != null) {
-            summary.hr = null;
-            summary.distance = distance;
-            summary.duration = duration;
-            summary.sport = EndomondoSynchronizer.sport2endomondoMap.get(Sport.valueOf(cursor.getInt(5)));
-            if (!cursor.isNull(6)) {
-                summary.hr = cursor.getLong(6);
-            }
+        summary.hr = null;
+        summary.distance = distance;
+        summary.duration = duration;
+        summary.sport = EndomondoSynchronizer.sport2endomondoMap.get(Sport.valueOf(cursor.getInt(5)));
+        if (!cursor.isNull(6)) {
+            summary.hr = cursor.getLong(6);
         }
         cursor.close();
-
-        emitWaypoints(activityId, writer);
     }
 
     private void emitWaypoints(final long activityId, final Writer writer) throws IOException {
@@ -100,8 +106,7 @@ public class EndomondoTrack {
                 DB.LOCATION.CADENCE // 9
         };
 
-        final Cursor c = mDB.query(DB.LOCATION.TABLE, pColumns, DB.LOCATION.ACTIVITY
-                + " = " + activityId, null, null, null, null);
+        final Cursor c = TrackStore.query(mDB, pColumns, activityId);
 
         double distance = 0;
         Location lastLoc = null;
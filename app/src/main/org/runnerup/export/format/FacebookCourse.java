@@ -26,6 +26,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.runnerup.common.util.Constants.DB;
+import org.runnerup.db.TrackStore;
 import org.runnerup.util.Formatter;
 
 import java.text.SimpleDateFormat;
@@ -125,8 +126,7 @@ public class FacebookCourse {
                 DB.LOCATION.TYPE, DB.LOCATION.LATITUDE,
                 DB.LOCATION.LONGITUDE, DB.LOCATION.TIME, DB.LOCATION.SPEED
         };
-        Cursor c = mDB.query(DB.LOCATION.TABLE, cols, DB.LOCATION.ACTIVITY
-                + " = " + activityId, null, null, null, null);
+        Cursor c = TrackStore.query(mDB, cols, activityId);
         if (c.moveToFirst()) {
             Location prev = null, last = null;
             double sumDist = 0;
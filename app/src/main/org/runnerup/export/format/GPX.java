@@ -21,6 +21,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
 import org.runnerup.common.util.Constants.DB;
+import org.runnerup.db.TrackStore;
 import org.runnerup.util.KXmlSerializer;
 import org.runnerup.workout.Sport;
 
@@ -156,9 +157,7 @@ public class GPX {
                 DB.LOCATION.ACCURANCY, DB.LOCATION.BEARING, DB.LOCATION.SPEED,
                 DB.LOCATION.SATELLITES, DB.LOCATION.GPS_ALTITUDE
         };
-        Cursor cLocation = mDB.query(DB.LOCATION.TABLE, pColumns,
-                DB.LOCATION.ACTIVITY + " = " + activityId, null, null, null,
-                null);
+        Cursor cLocation = TrackStore.query(mDB, pColumns, activityId);
         boolean lok = cLap.moveToFirst();
         boolean pok = cLocation.moveToFirst();
 
@@ -25,6 +25,7 @@ import android.util.Log;
 import android.util.Pair;
 
 import org.runnerup.R;
+import org.runnerup.db.TrackStore;
 import org.runnerup.export.GoogleFitSynchronizer;
 import org.runnerup.export.util.SyncHelper;
 import org.runnerup.util.JsonWriter;
@@ -116,6 +117,7 @@ public class GoogleFitData {
     private final Context mContext;
     private final String mProjectId;
     private SQLiteDatabase mDB = null;
+    private final TrackStore.Cache mTrackCache = new TrackStore.Cache();
 
     public GoogleFitData(final SQLiteDatabase db, String project, Context ctx) {
         this.mDB = db;
@@ -135,39 +137,38 @@ public class GoogleFitData {
     public final List<DataSourceType> getActivityDataSourceTypes(long activityId) {
         List<DataSourceType> neededSources = new ArrayList<>();
 
-        String[] pColumns = {DB.LOCATION.TIME};
+        String[] pColumns = {DB.LOCATION.LATITUDE, DB.LOCATION.HR, DB.LOCATION.SPEED};
+        boolean hasLocation = false;
+        boolean hasHR = false;
+        boolean hasSpeed = false;
 
-        // First we export the location
-        Cursor cursor = getDB().query(DB.LOCATION.TABLE, pColumns,
-                DB.LOCATION.ACTIVITY + " = " + activityId + " AND " + DB.LOCATION.LATITUDE + " IS NOT NULL", null, null, null,
-                null);
+        Cursor cursor = TrackStore.query(getDB(), pColumns, activityId, mTrackCache);
+        if (cursor.moveToFirst()) {
+            do {
+                hasLocation |= !cursor.isNull(0);
+                hasHR |= !cursor.isNull(1);
+                hasSpeed |= !cursor.isNull(2);
+            } while (!(hasLocation && hasHR && hasSpeed) && cursor.moveToNext());
+        }
+        cursor.close();
 
-        if (cursor.getCount() > 0) {
+        // First we export the location
+        if (hasLocation) {
             neededSources.add(DataSourceType.ACTIVITY_LOCATION);
             neededSources.add(DataSourceType.LOCATION_SUMMARY);
         }
-        cursor.close();
 
         // Than if present the heart rate
-        cursor = getDB().query(DB.LOCATION.TABLE, pColumns,
-                DB.LOCATION.ACTIVITY + " = " + activityId + " AND " + DB.LOCATION.HR + " IS NOT NULL", null, null, null,
-                null);
-
-        if (cursor.getCount() > 0) {
+        if (hasHR) {
             neededSources.add(DataSourceType.ACTIVITY_HEARTRATE);
             neededSources.add(DataSourceType.HEARTRATE_SUMMARY);
         }
-        cursor.close();
 
         // Next will be the speed
-        cursor = getDB().query(DB.LOCATION.TABLE, pColumns,
-                DB.LOCATION.ACTIVITY + " = " + activityId + " AND " + DB.LOCATION.SPEED + " IS NOT NULL", null, null, null,
-                null);
-        if (cursor.getCount() > 0) {
+        if (hasSpeed) {
             neededSources.add(DataSourceType.ACTIVITY_SPEED);
             neededSources.add(DataSourceType.SPEED_SUMMARY);
         }
-        cursor.close();
 
         // At last the segments and summary
         neededSources.add(DataSourceType.ACTIVITY_SEGMENT);
@@ -267,24 +268,26 @@ public class GoogleFitData {
     private String exportSourceDataPoints(DataSourceType source, long activityId, StringWriter writer) {
 
         ArrayList<String> pColumns = new ArrayList<>();
-        pColumns.add("MIN(" + DB.LOCATION.TIME + ") AS MIN");
-        pColumns.add("MAX(" + DB.LOCATION.TIME + ")");
-        Cursor minMaxTime = getDB().query(DB.LOCATION.TABLE, pColumns.toArray(new String[pColumns.size()]), DB.LOCATION.ACTIVITY + " = " + activityId, null, null, null, null);
-        minMaxTime.moveToFirst();
-
-        pColumns = new ArrayList<>();
         pColumns.add(DB.LOCATION.TIME);
         List<DataTypeField> fields = DATA_TYPE_FIELDS.get(source);
         for (DataTypeField field : fields) {
             pColumns.add(field.getColumn());
         }
 
-        Cursor cursor = getDB().query(DB.LOCATION.TABLE, pColumns.toArray(new String[pColumns.size()]), DB.LOCATION.ACTIVITY + " = " + activityId, null, null, null, null);
+        Cursor cursor = TrackStore.query(getDB(), pColumns.toArray(new String[pColumns.size()]), activityId,
+                mTrackCache);
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        if (cursor.moveToFirst()) {
+            do {
+                minTime = Math.min(minTime, cursor.getLong(0));
+                maxTime = Math.max(maxTime, cursor.getLong(0));
+            } while (cursor.moveToNext());
+        }
         cursor.moveToFirst();
 
-        long startTime = minMaxTime.getLong(0) * MICRO_TO_NANOS;
-        long endTime = minMaxTime.getLong(1) * MICRO_TO_NANOS;
-        minMaxTime.close();
+        long startTime = minTime * MICRO_TO_NANOS;
+        long endTime = maxTime * MICRO_TO_NANOS;
 
         JsonWriter w = new JsonWriter(writer);
         try {
@@ -22,9 +22,12 @@ import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import org.runnerup.common.util.Constants.DB;
+import org.runnerup.db.TrackStore;
+import org.runnerup.util.TrackSimplifier;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.HashSet;
 
 
 public class GoogleStaticMap {
@@ -70,19 +73,35 @@ public class GoogleStaticMap {
         encode(dst, longitude1 - longitude0);
     }
 
-    private long countLocations(long activityId) {
-        long count = 0;
-        String[] args = {
-            Long.toString(activityId)
+    /**
+     * Distinct locations rounded to 1e-5 degrees, packed as (lat << 32 | lon) in track order
+     */
+    private long[] getLocations(long activityId) {
+        String[] columns = {
+                DB.LOCATION.LATITUDE, DB.LOCATION.LONGITUDE
         };
-        Cursor c = mDB.rawQuery("SELECT COUNT (DISTINCT round(" + DB.LOCATION.LATITUDE
-                + "* 10000000000 + " + DB.LOCATION.LONGITUDE + "*100000)) FROM "
-                + DB.LOCATION.TABLE + " WHERE " + DB.LOCATION.ACTIVITY + " = ?", args);
+        Cursor c = TrackStore.query(mDB, columns, activityId);
+        long[] locations = new long[c.getCount()];
+        HashSet<Long> seen = new HashSet<>();
+        int count = 0;
         if (c.moveToFirst()) {
-            count = c.getLong(0);
+            do {
+                if (c.isNull(0) || c.isNull(1)) {
+                    continue;
+                }
+                long lat = Math.round(c.getDouble(0) * 100000);
+                long longi = Math.round(c.getDouble(1) * 100000);
+                long packed = (lat << 32) | (longi & 0xffffffffL);
+                if (seen.add(packed)) {
+                    locations[count++] = packed;
+                }
+            } while (c.moveToNext());
         }
         c.close();
-        return count;
+
+        long[] res = new long[count];
+        System.arraycopy(locations, 0, res, 0, count);
+        return res;
     }
 
     /**
@@ -90,43 +109,40 @@ public class GoogleStaticMap {
      */
     public String export(long activityId, final int maxLen) {
 
-        long count = countLocations(activityId);
+        long[] locations = getLocations(activityId);
+        int count = locations.length;
+        TrackSimplifier simplifier = new TrackSimplifier(count);
+        for (long location : locations) {
+            simplifier.add((location >> 32) / 100000.0, ((int) location) / 100000.0);
+        }
+        boolean[] keep = new boolean[count];
+
         int avgLen = 6; // in this encoding 1 location "normally" takes 9 chars
+        int points = maxLen / avgLen;
         StringBuffer dst;
         do {
+            // The most significant points, the same points are kept with fewer points
+            simplifier.select(points, keep);
             dst = new StringBuffer();
-            /*
-			 * 
-			 */
-            final int points = maxLen / avgLen;
-            final int skip = (int) (1 + count / points);
-
-            String[] args = {
-                Long.toString(activityId)
-            };
-            Cursor c = mDB.rawQuery("SELECT DISTINCT cast(round(" + DB.LOCATION.LATITUDE
-                    + "*100000) as integer), cast(round(" + DB.LOCATION.LONGITUDE
-                    + "*100000) as integer) FROM " + DB.LOCATION.TABLE + " WHERE "
-                    + DB.LOCATION.ACTIVITY + " = ?", args);
-            if (c.moveToFirst()) {
-                long lat0 = 0;
-                long long0 = 0;
-                do {
-                    long lat = c.getLong(0);
-                    long longi = c.getLong(1);
-                    encode(dst, lat, longi, lat0, long0);
-                    lat0 = lat;
-                    long0 = longi;
-                } while (c.move(skip));
+            long lat0 = 0;
+            long long0 = 0;
+            for (int i = 0; i < count; i++) {
+                if (!keep[i]) {
+                    continue;
+                }
+                long lat = locations[i] >> 32;
+                long longi = (int) locations[i];
+                encode(dst, lat, longi, lat0, long0);
+                lat0 = lat;
+                long0 = longi;
             }
-            c.close();
 
             String res;
             try {
                 res = URLEncoder.encode(dst.toString(), "UTF-8");
-                Log.e("GoogleStaticMap", "count: " + count + ", avgLen: " + avgLen + ", points: "
+                Log.e("GoogleStaticMap", "count: " + count + ", points: "
                         + points + ", res.length(): " + res.length());
-                if (res.length() < maxLen)
+                if (res.length() < maxLen || points <= 2)
                     return res;
 
             } catch (UnsupportedEncodingException e) {
@@ -134,7 +150,8 @@ public class GoogleStaticMap {
                 return null;
             }
 
-            avgLen++; // use less points...
+            // Scale the number of points to the length, with some margin
+            points = Math.max(2, (int) (points * 0.95 * maxLen / res.length()));
         } while (true);
     }
 }
@@ -22,6 +22,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.location.Location;
 
 import org.runnerup.common.util.Constants.DB;
+import org.runnerup.db.TrackStore;
 import org.runnerup.util.Formatter;
 import org.runnerup.util.KXmlSerializer;
 
@@ -42,6 +43,8 @@ public class NikeXML {
     private static final String DEVICE = "iPod";
 
     private SQLiteDatabase mDB = null;
+    // The track is read once per emitted list
+    private final TrackStore.Cache mTrackCache = new TrackStore.Cache();
     private KXmlSerializer mXML = null;
     private SimpleDateFormat simpleDateFormat = null;
 
@@ -204,19 +207,29 @@ public class NikeXML {
 
     private boolean emitHeartrateStats(long mID) throws IllegalArgumentException,
             IllegalStateException, IOException {
-        String args[] = {
-            Long.toString(mID)
+        String cols[] = {
+            DB.LOCATION.HR
         };
-        Cursor c = mDB.rawQuery("select min(" + DB.LOCATION.HR + "), max(" + DB.LOCATION.HR
-                + "), avg(" + DB.LOCATION.HR + ") FROM " + DB.LOCATION.TABLE + " WHERE "
-                + DB.LOCATION.ACTIVITY + " = ?", args);
-        if (c.moveToFirst() &&
-                !(c.isNull(0) || c.isNull(1) || c.isNull(2))) {
+        int minHR = Integer.MAX_VALUE;
+        int maxHR = Integer.MIN_VALUE;
+        long sumHR = 0;
+        int count = 0;
+        Cursor c = TrackStore.query(mDB, cols, mID, mTrackCache);
+        if (c.moveToFirst()) {
+            do {
+                if (!c.isNull(0)) {
+                    int hr = c.getInt(0);
+                    minHR = Math.min(minHR, hr);
+                    maxHR = Math.max(maxHR, hr);
+                    sumHR += hr;
+                    count++;
+                }
+            } while (c.moveToNext());
+        }
+        c.close();
 
-            int minHR = c.getInt(0);
-            int maxHR = c.getInt(1);
-            int avgHR = c.getInt(2);
-            c.close();
+        if (count > 0) {
+            int avgHR = (int) (sumHR / (double) count);
 
             mXML.startTag("", "heartrate");
             mXML.startTag("", "average");
@@ -229,42 +242,23 @@ public class NikeXML {
 
             return true;
         }
-        c.close();
         return false;
     }
 
     private void emitHRPosition(long mID, String string, int hrVal)
             throws IllegalArgumentException, IllegalStateException, IOException {
-        long _id;
-        { // 1 find a point with specified value
-            String args[] = {
-                    Long.toString(mID), Integer.toString(hrVal)
-            };
-            Cursor c = mDB.rawQuery(
-                    "select min(_id) from location where activity_id = ? and hr = ? limit 1", args);
-            if (!c.moveToFirst()) {
-                c.close();
-                return;
-            }
-            _id = c.getLong(0);
-            c.close();
-        }
-
-        // 2 iterate to that position from start...
+        // iterate from start to the first point with specified value
         String cols[] = {
                 DB.LOCATION.TYPE, DB.LOCATION.LATITUDE, DB.LOCATION.LONGITUDE, DB.LOCATION.TIME,
-                DB.LOCATION.SPEED
+                DB.LOCATION.SPEED, DB.LOCATION.HR
         };
-        String args[] = {
-                Long.toString(mID), Long.toString(_id)
-        };
-        Cursor c = mDB.query(DB.LOCATION.TABLE, cols,
-                DB.LOCATION.ACTIVITY + " = ? AND _id <= ?", args, null, null, "_id");
+        Cursor c = TrackStore.query(mDB, cols, mID, mTrackCache);
+        Location last = null;
+        double sumDist = 0;
+        long sumTime = 0;
+        boolean found = false;
 
         if (c.moveToFirst()) {
-            Location last = null;
-            double sumDist = 0;
-            long sumTime = 0;
             do {
                 switch (c.getInt(0)) {
                     case DB.LOCATION.TYPE_START:
@@ -289,7 +283,12 @@ public class NikeXML {
                         sumTime += l.getTime() - last.getTime();
                         last = l;
                 }
-            } while (c.moveToNext());
+                found = !c.isNull(5) && c.getInt(5) == hrVal;
+            } while (!found && c.moveToNext());
+        }
+        c.close();
+
+        if (found) {
             mXML.startTag("", string);
             mXML.startTag("", "duration");
             mXML.text(Long.toString(sumTime)); // ms
@@ -316,7 +315,6 @@ public class NikeXML {
 
             mXML.endTag("", string);
         }
-        c.close();
     }
 
     abstract class Emitter {
@@ -449,8 +447,7 @@ public class NikeXML {
                 DB.LOCATION.HR
         }; // 6
 
-        final Cursor c = mDB.query(DB.LOCATION.TABLE, pColumns, DB.LOCATION.ACTIVITY
-                + " = " + activityId, null, null, null, null);
+        final Cursor c = TrackStore.query(mDB, pColumns, activityId, mTrackCache);
 
         try {
             final Pos p = new Pos();
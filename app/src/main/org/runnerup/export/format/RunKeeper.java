@@ -26,6 +26,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.runnerup.common.util.Constants;
 import org.runnerup.common.util.Constants.DB;
+import org.runnerup.db.TrackStore;
 import org.runnerup.db.entities.ActivityEntity;
 import org.runnerup.db.entities.LapEntity;
 import org.runnerup.db.entities.LocationEntity;
@@ -58,6 +59,7 @@ import java.util.concurrent.TimeUnit;
 public class RunKeeper {
 
     private SQLiteDatabase mDB = null;
+    private final TrackStore.Cache mTrackCache = new TrackStore.Cache();
 
     public RunKeeper(SQLiteDatabase db) {
         mDB = db;
@@ -112,9 +114,7 @@ public class RunKeeper {
         String[] pColumns = {
                 DB.LOCATION.TIME, DB.LOCATION.HR
         };
-        Cursor cursor = mDB.query(DB.LOCATION.TABLE, pColumns,
-                DB.LOCATION.ACTIVITY + " = " + activityId, null, null, null,
-                null);
+        Cursor cursor = TrackStore.query(mDB, pColumns, activityId, mTrackCache);
         if (cursor.moveToFirst()) {
             long startTime = cursor.getLong(0);
             do {
@@ -136,9 +136,7 @@ public class RunKeeper {
                 DB.LOCATION.TIME, DB.LOCATION.LATITUDE,
                 DB.LOCATION.LONGITUDE, DB.LOCATION.ALTITUDE, DB.LOCATION.TYPE
         };
-        Cursor cursor = mDB.query(DB.LOCATION.TABLE, pColumns,
-                DB.LOCATION.ACTIVITY + " = " + activityId, null, null, null,
-                null);
+        Cursor cursor = TrackStore.query(mDB, pColumns, activityId, mTrackCache);
         if (cursor.moveToFirst()) {
             w.name(name);
             w.beginArray();
@@ -23,6 +23,7 @@ import android.location.Location;
 import android.util.Pair;
 
 import org.runnerup.common.util.Constants.DB;
+import org.runnerup.db.TrackStore;
 import org.runnerup.util.KXmlSerializer;
 import org.runnerup.workout.Sport;
 
@@ -167,9 +168,7 @@ public class TCX {
                 DB.LOCATION.LATITUDE, DB.LOCATION.LONGITUDE, DB.LOCATION.ALTITUDE,
                 DB.LOCATION.HR, DB.LOCATION.CADENCE //, DB.LOCATION.TEMPERATURE, DB.LOCATION.PRESSURE
         };
-        Cursor cLocation = mDB.query(DB.LOCATION.TABLE, pColumns,
-                DB.LOCATION.ACTIVITY + " = " + activityId, null, null, null,
-                null);
+        Cursor cLocation = TrackStore.query(mDB, pColumns, activityId);
         boolean lok = cLap.moveToFirst();
         boolean pok = cLocation.moveToFirst();
 
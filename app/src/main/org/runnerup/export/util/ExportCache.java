@@ -0,0 +1,158 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.export.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Exports shared by the synchronizers uploading the same activity, rendered once per
+ * (activity, format) to a file and kept until all uploads for the activity are done.
+ * Activities uploaded to one synchronizer only are not cached but streamed.
+ */
+public class ExportCache {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final File dir;
+    private final Map<Long, Integer> users = new HashMap<>();
+    private final Map<String, FutureTask<File>> exports = new HashMap<>();
+
+    /**
+     * @param dir directory for the exports, the files are deleted when no longer used
+     */
+    public ExportCache(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Set the number of uploads for the activity, exports are cached if more than one
+     */
+    public synchronized void setUsers(long activityId, int count) {
+        users.put(activityId, count);
+    }
+
+    /**
+     * Drop the exports for an activity when all uploads are done
+     */
+    public synchronized void remove(long activityId) {
+        users.remove(activityId);
+        String prefix = activityId + "/";
+        Iterator<Map.Entry<String, FutureTask<File>>> it = exports.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, FutureTask<File>> e = it.next();
+            if (e.getKey().startsWith(prefix)) {
+                delete(e.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        users.clear();
+        for (FutureTask<File> task : exports.values()) {
+            delete(task);
+        }
+        exports.clear();
+    }
+
+    private static void delete(FutureTask<File> task) {
+        // Exports in progress are deleted by the renderer if failed, no upload is waiting
+        if (!task.isDone()) {
+            return;
+        }
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            task.get().delete();
+        } catch (InterruptedException | ExecutionException e) {
+            // Not rendered
+        }
+    }
+
+    /**
+     * @return the file with the export as UTF-8, rendered by the first caller,
+     *         or null if not shared
+     */
+    File get(long activityId, final String format, final ExportWritable.Exporter exporter)
+            throws IOException {
+        FutureTask<File> task;
+        boolean render = false;
+        synchronized (this) {
+            Integer count = users.get(activityId);
+            if (count == null || count <= 1) {
+                return null;
+            }
+            String key = activityId + "/" + format;
+            task = exports.get(key);
+            if (task == null) {
+                task = new FutureTask<>(new Callable<File>() {
+                    @Override
+                    public File call() throws Exception {
+                        return render(format, exporter);
+                    }
+                });
+                exports.put(key, task);
+                render = true;
+            }
+        }
+
+        // Render outside the lock, other uploads of the same export wait for the result
+        if (render) {
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private File render(String format, ExportWritable.Exporter exporter) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir.getAbsolutePath());
+        }
+        File file = File.createTempFile("export", "." + format, dir);
+        boolean ok = false;
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), BUFFER_SIZE);
+        try {
+            exporter.export(writer);
+            ok = true;
+        } finally {
+            writer.close();
+            if (!ok) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        return file;
+    }
+}
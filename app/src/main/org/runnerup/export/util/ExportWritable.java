@@ -0,0 +1,97 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.export.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A part that is exported when the request body is written, instead of being built in memory.
+ * If the export is shared with other uploads, it is rendered once to a file in the ExportCache.
+ * Use with a connection in streaming mode, see SyncHelper.postMulti(conn, parts, true)
+ * and SyncHelper.postData().
+ */
+public class ExportWritable implements Writable {
+
+    public interface Exporter {
+        void export(Writer writer) throws IOException;
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Exporter exporter;
+    private final boolean gzip;
+    private final ExportCache cache;
+    private final long activityId;
+    private final String format;
+
+    /**
+     * @param gzip compress the exported data
+     */
+    public ExportWritable(Exporter exporter, boolean gzip) {
+        this(null, 0, null, exporter, gzip);
+    }
+
+    /**
+     * @param cache exports shared with other uploads, may be null
+     * @param format the export format, uploads with the same format share the export
+     */
+    public ExportWritable(ExportCache cache, long activityId, String format,
+                          Exporter exporter, boolean gzip) {
+        this.cache = cache;
+        this.activityId = activityId;
+        this.format = format;
+        this.exporter = exporter;
+        this.gzip = gzip;
+    }
+
+    public void write(OutputStream out) throws IOException {
+        GZIPOutputStream gzipStream = null;
+        OutputStream os = out;
+        if (gzip) {
+            gzipStream = new GZIPOutputStream(out, BUFFER_SIZE);
+            os = gzipStream;
+        }
+        File file = cache == null ? null : cache.get(activityId, format, exporter);
+        if (file != null) {
+            InputStream in = new FileInputStream(file);
+            try {
+                byte[] buf = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    os.write(buf, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+        } else {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"), BUFFER_SIZE);
+            exporter.export(writer);
+            writer.flush();
+        }
+        if (gzipStream != null) {
+            // Write the trailer but leave the stream open for the next part
+            gzipStream.finish();
+        }
+    }
+}
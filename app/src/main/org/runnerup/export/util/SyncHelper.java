@@ -66,15 +66,32 @@ public final class SyncHelper {
         }
     }
 
+    /**
+     * Post the parts as multipart/form-data, buffered by the connection
+     */
     public static void postMulti(HttpURLConnection conn, Part<?> parts[]) throws IOException {
+        postMulti(conn, parts, false);
+    }
+
+    /**
+     * Post the parts as multipart/form-data.
+     * @param stream stream the body in chunks, parts like ExportWritable are not kept in memory.
+     *               The connection cannot retry for authentication or redirects and
+     *               the server must accept chunked requests.
+     */
+    public static void postMulti(HttpURLConnection conn, Part<?> parts[], boolean stream)
+            throws IOException {
         String lineEnd = "\r\n";
         String twoHyphens = "--";
         String boundary = "*****" + Long.toString(System.currentTimeMillis())
                 + "*****";
         conn.setRequestProperty("Content-Type",
                 "multipart/form-data; boundary=" + boundary);
+        if (stream) {
+            conn.setChunkedStreamingMode(0);
+        }
         DataOutputStream outputStream = new DataOutputStream(
-                conn.getOutputStream());
+                new BufferedOutputStream(conn.getOutputStream()));
         for (Part<?> part : parts) {
             if (part == null) {
                 continue;
@@ -102,6 +119,18 @@ public final class SyncHelper {
         outputStream.close();
     }
 
+    /**
+     * Post data as the request body, streamed in chunks like postMulti(conn, parts, true).
+     * Used for exports that are not kept in memory.
+     */
+    public static void postData(HttpURLConnection conn, Writable data) throws IOException {
+        conn.setChunkedStreamingMode(0);
+        OutputStream out = new BufferedOutputStream(conn.getOutputStream());
+        data.write(out);
+        out.flush();
+        out.close();
+    }
+
     private static Map<String, String> parseAttributes(String attributesStr) {
         Map<String, String> attributes = new HashMap<>();
         Matcher matcher = attributePattern.matcher(attributesStr);
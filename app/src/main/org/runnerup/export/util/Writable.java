@@ -20,6 +20,6 @@ package org.runnerup.export.util;
 import java.io.IOException;
 import java.io.OutputStream;
 
-interface Writable {
+public interface Writable {
     void write(OutputStream out) throws IOException;
 }
@@ -18,37 +18,132 @@
 package org.runnerup.feed;
 
 import android.annotation.SuppressLint;
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.os.AsyncTask;
 import android.util.Log;
+import android.util.LruCache;
 
+import org.runnerup.util.FileUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Collections;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
-
 
+/**
+ * Feed images (avatars), decoded to the view size.
+ *
+ * Bitmaps are kept in memory, bounded by bytes, and the downloaded images in the app cache
+ * directory. A cached image is revalidated with its ETag when older than REVALIDATE_MS
+ * and used as is if the server cannot be reached.
+ */
 public class FeedImageLoader {
-    static private final Map<String, Bitmap> imageCache = Collections
-            .synchronizedMap(new WeakHashMap<String, Bitmap>());
+    private static final String DIR = "feed_images";
+    private static final long MAX_BYTES = 4 * 1024 * 1024;
+    private static final long REVALIDATE_MS = 24 * 3600 * 1000;
+    private static final int VERSION = 1;
+
+    static private final LruCache<String, Bitmap> imageCache =
+            new LruCache<String, Bitmap>((int) Math.min(Runtime.getRuntime().maxMemory() / 16,
+                    Integer.MAX_VALUE)) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return value.getRowBytes() * value.getHeight();
+                }
+            };
+
+    // Async loads in progress by cache key, accessed from the main thread only
+    static private final Map<String, List<Callback>> pending = new HashMap<>();
 
     public interface Callback {
         void run(final String url, final Bitmap b);
     }
 
-    static public Bitmap LoadImageSync(final String url) {
+    /**
+     * @param size the view size in pixels, the image is decoded to at least this size
+     */
+    static public Bitmap LoadImageSync(Context context, final String url, int size) {
         final String fixedUrl = FixUrl(url);
-        Bitmap b = imageCache.get(fixedUrl);
+        final String key = getKey(fixedUrl, size);
+        Bitmap b = imageCache.get(key);
         if (b != null) {
             return b;
         }
+        return load(context.getApplicationContext(), fixedUrl, key, size);
+    }
+
+    /**
+     * Load the image, the callback is run on the main thread.
+     * Simultaneous loads of the same image share one download.
+     * @param size the view size in pixels, the image is decoded to at least this size
+     */
+    @SuppressLint("StaticFieldLeak")
+    static public void LoadImageAsync(Context context, final String url, final int size,
+                                      final Callback onLoadingDone) {
+        final String fixedUrl = FixUrl(url);
+        final String key = getKey(fixedUrl, size);
+        Bitmap b = imageCache.get(key);
+        if (b != null) {
+            onLoadingDone.run(url, b);
+            return;
+        }
+
+        List<Callback> callbacks = pending.get(key);
+        if (callbacks != null) {
+            callbacks.add(onLoadingDone);
+            return;
+        }
+        callbacks = new ArrayList<>();
+        callbacks.add(onLoadingDone);
+        pending.put(key, callbacks);
+
+        Log.i("FeedImageLoader", "Loading image for " + fixedUrl);
+        final Context appContext = context.getApplicationContext();
+        new AsyncTask<Void, Void, Bitmap>() {
+            @Override
+            protected Bitmap doInBackground(Void... params) {
+                return load(appContext, fixedUrl, key, size);
+            }
+
+            @Override
+            protected void onPostExecute(Bitmap result) {
+                List<Callback> callbacks = pending.remove(key);
+                if (result == null || callbacks == null)
+                    return;
+
+                for (Callback c : callbacks) {
+                    c.run(url, result);
+                }
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    private static String getKey(String fixedUrl, int size) {
+        return fixedUrl + "#" + size;
+    }
+
+    private static Bitmap load(Context context, String fixedUrl, String key, int size) {
         try {
-            InputStream is = (InputStream) new URL(fixedUrl).getContent();
-            b = BitmapFactory.decodeStream(is);
+            byte[] data = fetch(context, fixedUrl);
+            Bitmap b = decode(data, size);
             if (b != null) {
-                imageCache.put(fixedUrl, b);
+                imageCache.put(key, b);
             }
             return b;
         } catch (Exception e) {
@@ -57,43 +152,175 @@ public class FeedImageLoader {
         return null;
     }
 
-    @SuppressLint("StaticFieldLeak")
-    static public void LoadImageAsync(final String url, final Callback onLoadingDone) {
-        final String fixedUrl = FixUrl(url);
-        Bitmap b = imageCache.get(url);
-        if (b != null) {
-            Log.i("FeedImageLoader", "Found cached image for " + url);
-            onLoadingDone.run(url, b);
-        } else {
-            Log.i("FeedImageLoader", "Downloading image for " + url);
-            new AsyncTask<String, String, Bitmap>() {
-                @Override
-                protected Bitmap doInBackground(String... params) {
-                    Bitmap b = imageCache.get(fixedUrl);
-                    if (b != null) {
-                        return b;
-                    }
-                    try {
-                        InputStream is = (InputStream) new URL(fixedUrl).getContent();
-                        b = BitmapFactory.decodeStream(is);
-                        if (b != null) {
-                            imageCache.put(fixedUrl, b);
-                        }
-                        return b;
-                    } catch (Exception e) {
-                        Log.e("FeedImageLoader", "url exception for " + fixedUrl + ": " + e.getMessage());
-                    }
+    /**
+     * Decode with the largest power of two subsampling keeping at least size pixels
+     */
+    static Bitmap decode(byte[] data, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, size);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    static int getSampleSize(int width, int height, int size) {
+        int sampleSize = 1;
+        if (size > 0) {
+            while (width / (sampleSize * 2) >= size && height / (sampleSize * 2) >= size) {
+                sampleSize *= 2;
+            }
+        }
+        return sampleSize;
+    }
+
+    /**
+     * The image from the disk cache, downloaded or revalidated if needed
+     */
+    private static byte[] fetch(Context context, String fixedUrl) throws IOException {
+        File dir = new File(context.getCacheDir(), DIR);
+        File file = new File(dir, getFileName(fixedUrl));
+        CacheEntry entry = CacheEntry.read(file);
+        long now = System.currentTimeMillis();
+        if (entry != null && now - entry.validated < REVALIDATE_MS) {
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(now);
+            return entry.data;
+        }
+
+        HttpURLConnection conn = (HttpURLConnection) new URL(fixedUrl).openConnection();
+        try {
+            if (entry != null && entry.etag.length() > 0) {
+                conn.setRequestProperty("If-None-Match", entry.etag);
+            }
+            int code = conn.getResponseCode();
+            if (entry != null && code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                entry.validated = now;
+            } else if (code == HttpURLConnection.HTTP_OK) {
+                String etag = conn.getHeaderField("ETag");
+                entry = new CacheEntry(now, etag != null ? etag : "", readFully(conn.getInputStream()));
+            } else if (entry == null) {
+                throw new IOException("HTTP " + code);
+            }
+        } catch (IOException e) {
+            if (entry == null) {
+                throw e;
+            }
+            // Offline, use the cached image
+            return entry.data;
+        } finally {
+            conn.disconnect();
+        }
+
+        if (dir.isDirectory() || dir.mkdirs()) {
+            entry.write(file);
+            trim(dir);
+        }
+        return entry.data;
+    }
+
+    private static class CacheEntry {
+        long validated;
+        final String etag;
+        final byte[] data;
+
+        CacheEntry(long validated, String etag, byte[] data) {
+            this.validated = validated;
+            this.etag = etag;
+            this.data = data;
+        }
+
+        static CacheEntry read(File file) {
+            if (!file.isFile()) {
+                return null;
+            }
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                if (in.readInt() != VERSION) {
                     return null;
                 }
+                long validated = in.readLong();
+                String etag = in.readUTF();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                return new CacheEntry(validated, etag, data);
+            } catch (IOException e) {
+                return null;
+            } finally {
+                close(in);
+            }
+        }
 
-                @Override
-                protected void onPostExecute(Bitmap result) {
-                    if (result == null)
-                        return;
-
-                    onLoadingDone.run(url, result);
+        void write(File file) {
+            File tmp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+            DataOutputStream out = null;
+            boolean ok = false;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+                out.writeInt(VERSION);
+                out.writeLong(validated);
+                out.writeUTF(etag);
+                out.writeInt(data.length);
+                out.write(data);
+                out.close();
+                out = null;
+                ok = tmp.renameTo(file);
+            } catch (IOException e) {
+                Log.w("FeedImageLoader", "Failed to write " + file + ": " + e.getMessage());
+            } finally {
+                close(out);
+                if (!ok) {
+                    //noinspection ResultOfMethodCallIgnored
+                    tmp.delete();
                 }
-            }.execute(url);
+            }
+        }
+    }
+
+    private static String getFileName(String fixedUrl) throws IOException {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(fixedUrl.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void close(java.io.Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Remove the least recently used images when the cache exceeds MAX_BYTES
+     */
+    private static void trim(File dir) {
+        synchronized (FeedImageLoader.class) {
+            FileUtil.trim(dir, MAX_BYTES);
         }
     }
 
@@ -17,9 +17,11 @@
 
 package org.runnerup.feed;
 
+import android.annotation.SuppressLint;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.os.AsyncTask;
 import android.util.Log;
 
 import org.runnerup.common.util.Constants;
@@ -35,13 +37,29 @@ import java.util.Set;
 import java.util.TimeZone;
 
 
+/**
+ * The feed, newest first, loaded from the database a page at a time.
+ *
+ * Synchronizers add items with a FeedUpdater. Duplicates are matched against the stored
+ * items close in time, new items are inserted in one transaction.
+ * The database is read and written in the background, except for load().
+ */
 public class FeedList extends Observable implements Constants {
 
     private static final int MAX_ITEMS = 50;
-    private static final long TIME_MARGIN = 5 * 60; // 5 minutes
+    // Rows kept in the database
+    private static final int MAX_ROWS = 500;
+    // Items matched as duplicates are within a day, also for broken start times
+    private static final long MATCH_WINDOW = 24 * 3600 * 1000;
+
+    private static final String ORDER = DB.FEED.START_TIME + " desc, _id desc";
 
     private final SQLiteDatabase mDB;
     private List<ContentValues> list = new ArrayList<>();
+    private boolean hasMore = true;
+    private boolean loadingMore = false;
+    // Pages loaded for an older list are dropped
+    private int generation = 0;
     private boolean filterDuplicates = true;
 
     public FeedList(SQLiteDatabase db) {
@@ -56,16 +74,78 @@ public class FeedList extends Observable implements Constants {
         return filterDuplicates;
     }
 
+    /**
+     * Load the first page
+     */
     public void load() {
+        setFirstPage(loadPage(null, null));
+    }
+
+    private void setFirstPage(List<ContentValues> page) {
+        generation++;
+        loadingMore = false;
         list.clear();
-        Cursor c = mDB.query(DB.FEED.TABLE, null, null, null, null, null, DB.FEED.START_TIME
-                + " desc", Integer.toString(MAX_ITEMS));
+        list.addAll(page);
+        hasMore = page.size() == MAX_ITEMS;
+    }
+
+    /**
+     * Load the next page in the background, after the last loaded item.
+     * Observers are notified when items are added.
+     */
+    @SuppressLint("StaticFieldLeak")
+    public void loadMore() {
+        if (!hasMore || loadingMore) {
+            return;
+        }
+        final String selection;
+        final String[] args;
+        int size = list.size();
+        if (size == 0) {
+            selection = null;
+            args = null;
+        } else {
+            ContentValues last = list.get(size - 1);
+            String startTime = last.getAsString(DB.FEED.START_TIME);
+            selection = DB.FEED.START_TIME + " < ? OR (" + DB.FEED.START_TIME + " = ? AND _id < ?)";
+            args = new String[]{startTime, startTime, last.getAsString("_id")};
+        }
+        final int loadGeneration = generation;
+        loadingMore = true;
+        new AsyncTask<Void, Void, List<ContentValues>>() {
+
+            @Override
+            protected List<ContentValues> doInBackground(Void... params) {
+                return loadPage(selection, args);
+            }
+
+            @Override
+            protected void onPostExecute(List<ContentValues> page) {
+                if (loadGeneration != generation) {
+                    return;
+                }
+                loadingMore = false;
+                list.addAll(page);
+                hasMore = page.size() == MAX_ITEMS;
+                if (!page.isEmpty()) {
+                    setChanged();
+                    notifyObservers(null);
+                }
+            }
+        }.execute();
+    }
+
+    private List<ContentValues> loadPage(String selection, String[] args) {
+        List<ContentValues> page = new ArrayList<>(MAX_ITEMS);
+        Cursor c = mDB.query(DB.FEED.TABLE, null, selection, args, null, null, ORDER,
+                Integer.toString(MAX_ITEMS));
         if (c.moveToFirst()) {
             do {
-                list.add(DBHelper.get(c));
+                page.add(DBHelper.get(c));
             } while (c.moveToNext());
         }
         c.close();
+        return page;
     }
 
     public void reset() {
@@ -73,13 +153,8 @@ public class FeedList extends Observable implements Constants {
     }
 
     private void prune() {
-        if (list.size() >= MAX_ITEMS + 1) {
-            ContentValues tmp = list.get(MAX_ITEMS);
-            long start_time = tmp.getAsLong(DB.FEED.START_TIME);
-            mDB.execSQL("DELETE FROM " + DB.FEED.TABLE + " WHERE " + DB.FEED.START_TIME + " < "
-                    + start_time);
-            list = list.subList(0, MAX_ITEMS);
-        }
+        mDB.execSQL("DELETE FROM " + DB.FEED.TABLE + " WHERE _id NOT IN (SELECT _id FROM "
+                + DB.FEED.TABLE + " ORDER BY " + ORDER + " LIMIT " + MAX_ROWS + ")");
     }
 
     public List<ContentValues> getList() {
@@ -87,20 +162,14 @@ public class FeedList extends Observable implements Constants {
     }
 
     public class FeedUpdater {
-        List<ContentValues> currList = null;
-        List<ContentValues> addList = null;
+        final List<ContentValues> addList = new ArrayList<>();
+        // The first page after the new items were inserted
+        List<ContentValues> firstPage = null;
         String synchronizer = null;
         int added = 0;
         int discarded = 0;
 
         FeedUpdater() {
-            currList = new ArrayList<>(list.size());
-            for (ContentValues c : list) { // initialize list with already
-                                           // present items
-                if (!isHeaderDate(c))
-                    currList.add(c);
-            }
-            addList = new ArrayList<>(list.size());
         }
 
         public void start(String synchronizerName) {
@@ -122,52 +191,64 @@ public class FeedList extends Observable implements Constants {
             long startTime = values.getAsLong(DB.FEED.START_TIME);
             long endTime = startTime;
             if (values.containsKey(DB.FEED.DURATION))
-                endTime = startTime + values.getAsLong(DB.FEED.DURATION);
-
-            int endIndex = findEndIndex(startTime - TIME_MARGIN);
-            int startIndex = findStartIndex(endIndex, endTime + TIME_MARGIN);
-
-            for (int i = startIndex; i <= endIndex; i++) {
-                ContentValues c = currList.get(i);
-                if (match(values, c, filterDuplicates)) {
-                    // Set already contains matching row...skip this
-                    discarded++;
-                    return;
-                }
+                endTime = startTime + 1000 * values.getAsLong(DB.FEED.DURATION);
+
+            // Candidates from the start time index
+            Cursor c = mDB.query(DB.FEED.TABLE, null, DB.FEED.START_TIME + " BETWEEN ? AND ?",
+                    new String[]{Long.toString(startTime - MATCH_WINDOW),
+                            Long.toString(endTime + MATCH_WINDOW)},
+                    null, null, null);
+            boolean found = false;
+            if (c.moveToFirst()) {
+                do {
+                    found = match(values, DBHelper.get(c), filterDuplicates);
+                } while (!found && c.moveToNext());
+            }
+            c.close();
+            if (found) {
+                // Set already contains matching row...skip this
+                discarded++;
+                return;
             }
             added++;
             addList.add(values); // no match, add this row
-            mDB.insert(DB.FEED.TABLE, null, values);
         }
 
-        private int findEndIndex(long time) {
-            return currList.size() - 1;
-        }
-
-        @SuppressWarnings("SameReturnValue")
-        private int findStartIndex(int startIndex, long l) {
-            return 0;
+        /**
+         * Insert the new items in one transaction and read the first page for complete()
+         */
+        // this method is called by different thread (not UI thread)
+        public void flush() {
+            if (addList.isEmpty()) {
+                return;
+            }
+            mDB.beginTransaction();
+            try {
+                for (ContentValues values : addList) {
+                    mDB.insert(DB.FEED.TABLE, null, values);
+                }
+                prune();
+                mDB.setTransactionSuccessful();
+            } finally {
+                mDB.endTransaction();
+            }
+            addList.clear();
+            firstPage = loadPage(null, null);
         }
 
+        /**
+         * Show the items written by flush(), called in the UI thread
+         */
         public void complete() {
-            if (addList.size() > 0) {
-                mergeLists(currList, addList);
-                list = currList;
+            if (firstPage != null) {
+                setFirstPage(firstPage);
+                firstPage = null;
                 setChanged();
                 notifyObservers(null);
             }
-            prune();
             Log.i(getClass().getSimpleName(), "FeedUpdater: " + synchronizer + ", added: " + added + ", discarded: "
                     + discarded);
         }
-
-        private void mergeLists(List<ContentValues> l1, List<ContentValues> l2) {
-            if (l2.isEmpty())
-                return;
-            l1.addAll(l2);
-            FeedList.sort(l1);
-            l2.clear();
-        }
     }
 
     public FeedUpdater getUpdater() {
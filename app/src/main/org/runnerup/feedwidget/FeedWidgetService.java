@@ -74,7 +74,9 @@ public class FeedWidgetService extends RemoteViewsService {
                     rv.setOnClickFillInIntent(R.id.feed_widget_item, fillInIntent);
                     String src = getSynchronizerName(tmp.getAsLong(Constants.DB.FEED.ACCOUNT_ID));
                     if (tmp.containsKey(Constants.DB.FEED.USER_IMAGE_URL)) {
-                        Bitmap b = FeedImageLoader.LoadImageSync(tmp.getAsString(Constants.DB.FEED.USER_IMAGE_URL));
+                        Bitmap b = FeedImageLoader.LoadImageSync(getApplicationContext(),
+                                tmp.getAsString(Constants.DB.FEED.USER_IMAGE_URL),
+                                getResources().getDimensionPixelSize(R.dimen.feed_avatar_size));
                         if (b!=null) {
                             rv.setImageViewBitmap(R.id.feed_widget_item_avatar, b);
                         }
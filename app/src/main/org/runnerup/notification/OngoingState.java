@@ -11,6 +11,7 @@ import org.runnerup.R;
 import org.runnerup.common.util.Constants;
 import org.runnerup.util.Formatter;
 import org.runnerup.view.RunActivity;
+import org.runnerup.workout.Dimension;
 import org.runnerup.workout.Scope;
 import org.runnerup.workout.Sport;
 import org.runnerup.workout.WorkoutInfo;
@@ -64,11 +65,11 @@ public class OngoingState implements NotificationState {
     @Override
     public Notification createNotification() {
         String distance = formatter.formatDistance(Formatter.Format.TXT_SHORT,
-                Math.round(workoutInfo.getDistance(Scope.ACTIVITY)));
+                Math.round(workoutInfo.get(Scope.ACTIVITY, Dimension.DISTANCE)));
         String time = formatter.formatElapsedTime(Formatter.Format.TXT_LONG,
-                Math.round(workoutInfo.getTime(Scope.ACTIVITY)));
+                Math.round(workoutInfo.get(Scope.ACTIVITY, Dimension.TIME)));
         String pace = formatter.formatPaceSpeed(Formatter.Format.TXT_SHORT,
-                workoutInfo.getSpeed(Scope.ACTIVITY));
+                workoutInfo.get(Scope.ACTIVITY, Dimension.SPEED));
 
         String content = String.format("%s: %s %s: %s %s: %s",
                 context.getString(R.string.distance), distance,
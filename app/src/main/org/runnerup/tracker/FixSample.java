@@ -0,0 +1,112 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.tracker;
+
+/**
+ * A GPS fix with the sensor values at the time of the fix.
+ *
+ * Values are primitives, optional values are valid if the corresponding bit in mask is set.
+ * Samples are reused (see Pool), receivers must copy the values they keep.
+ */
+public class FixSample {
+
+    // Bits in mask, set if the optional value is valid
+    public static final int HAS_ALTITUDE = 1;
+    public static final int HAS_ACCURACY = 1 << 1;
+    public static final int HAS_GPS_ALTITUDE = 1 << 2;
+    public static final int HAS_SPEED = 1 << 3;
+    public static final int HAS_BEARING = 1 << 4;
+    public static final int HAS_SATELLITES = 1 << 5;
+    public static final int HAS_PRESSURE = 1 << 6;
+    public static final int HAS_ELAPSED = 1 << 7;
+    public static final int HAS_DISTANCE = 1 << 8;
+    public static final int HAS_HR = 1 << 9;
+    public static final int HAS_CADENCE = 1 << 10;
+    public static final int HAS_TEMPERATURE = 1 << 11;
+
+    public int mask;
+    public long time;
+    public double latitude;
+    public double longitude;
+    // Corrected elevation
+    public double altitude;
+    public float accuracy;
+    // Elevation as reported by GPS
+    public double gpsAltitude;
+    public float speed;
+    public float bearing;
+    public int satellites;
+    public float pressure;
+    public long elapsed;
+    public double distance;
+    public int hr;
+    public float cadence;
+    public float temperature;
+
+    public boolean has(int bit) {
+        return (mask & bit) != 0;
+    }
+
+    public void clear() {
+        mask = 0;
+    }
+
+    public void copyFrom(FixSample s) {
+        mask = s.mask;
+        time = s.time;
+        latitude = s.latitude;
+        longitude = s.longitude;
+        altitude = s.altitude;
+        accuracy = s.accuracy;
+        gpsAltitude = s.gpsAltitude;
+        speed = s.speed;
+        bearing = s.bearing;
+        satellites = s.satellites;
+        pressure = s.pressure;
+        elapsed = s.elapsed;
+        distance = s.distance;
+        hr = s.hr;
+        cadence = s.cadence;
+        temperature = s.temperature;
+    }
+
+    /**
+     * Samples for reuse, not thread safe
+     */
+    public static class Pool {
+        private final FixSample[] free;
+        private int count = 0;
+
+        public Pool(int capacity) {
+            free = new FixSample[capacity];
+        }
+
+        public FixSample obtain() {
+            FixSample s = count > 0 ? free[--count] : new FixSample();
+            s.clear();
+            return s;
+        }
+
+        /**
+         * Return the sample to the pool, it must not be used after this
+         */
+        public void recycle(FixSample s) {
+            if (count < free.length) {
+                free[count++] = s;
+            }
+        }
+    }
+}
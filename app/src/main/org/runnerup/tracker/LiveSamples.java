@@ -0,0 +1,162 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.tracker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The recent samples of the current activity, for live graphs without reading the database.
+ *
+ * Single producer ring buffer: only the tracker adds samples, from one thread.
+ * Any thread can read, without locks. A reader copies the samples and drops the samples
+ * that were overwritten while copying, the tracker never waits for a reader.
+ */
+public class LiveSamples {
+
+    // About 34 minutes with one location per second
+    public static final int CAPACITY = 2048;
+
+    private static final int ELAPSED = 0;
+    private static final int DISTANCE = 1;
+    private static final int SPEED = 2;
+    private static final int HR = 3;
+    private static final int ALTITUDE = 4;
+    private static final int CADENCE = 5;
+    private static final int FIELDS = 6;
+
+    // Sample i is in slot i % CAPACITY, doubles as raw bits
+    private final AtomicLongArray values = new AtomicLongArray(CAPACITY * FIELDS);
+    // Number of added samples, written by the producer only
+    private volatile long head = 0;
+    // The first sample of the activity
+    private volatile long first = 0;
+
+    /**
+     * A copy of the samples, reused between reads. Missing values are NaN.
+     */
+    public static class Series {
+        public int size = 0;
+        // Activity time in ms
+        public long[] elapsed = new long[0];
+        public double[] distance = new double[0];
+        // Speed in m/s, the pace is the inverse
+        public double[] speed = new double[0];
+        public double[] hr = new double[0];
+        public double[] altitude = new double[0];
+        public double[] cadence = new double[0];
+
+        private void ensureCapacity(int capacity) {
+            if (elapsed.length < capacity) {
+                capacity = Math.max(capacity, Math.min(2 * elapsed.length, CAPACITY));
+                elapsed = new long[capacity];
+                distance = new double[capacity];
+                speed = new double[capacity];
+                hr = new double[capacity];
+                altitude = new double[capacity];
+                cadence = new double[capacity];
+            }
+        }
+
+        private void removeFirst(int count) {
+            size -= count;
+            System.arraycopy(elapsed, count, elapsed, 0, size);
+            System.arraycopy(distance, count, distance, 0, size);
+            System.arraycopy(speed, count, speed, 0, size);
+            System.arraycopy(hr, count, hr, 0, size);
+            System.arraycopy(altitude, count, altitude, 0, size);
+            System.arraycopy(cadence, count, cadence, 0, size);
+        }
+    }
+
+    /**
+     * Start a new activity, called by the producer
+     */
+    public void clear() {
+        first = head;
+    }
+
+    /**
+     * Add a sample with elapsed and distance set, called by the producer
+     * @param speed the current speed in m/s
+     */
+    public void add(FixSample sample, double speed) {
+        final long h = head;
+        final int base = slot(h);
+        values.set(base + ELAPSED, sample.elapsed);
+        set(base + DISTANCE, sample.distance);
+        set(base + SPEED, speed);
+        set(base + HR, sample.has(FixSample.HAS_HR) ? sample.hr : Double.NaN);
+        set(base + ALTITUDE, sample.has(FixSample.HAS_ALTITUDE) ? sample.altitude : Double.NaN);
+        set(base + CADENCE, sample.has(FixSample.HAS_CADENCE) ? sample.cadence : Double.NaN);
+        // Publish, the values are visible to readers that see the new head
+        head = h + 1;
+    }
+
+    /**
+     * @return the number of added samples, changes when there are new samples
+     */
+    public long getCount() {
+        return head;
+    }
+
+    /**
+     * Copy the samples from an activity time, called by any thread
+     * @param fromElapsed the first activity time in ms
+     * @return the number of copied samples, also in out.size
+     */
+    public int read(long fromElapsed, Series out) {
+        final long h = head;
+        // The producer may be writing sample h, in the slot of h - CAPACITY
+        final long start = Math.max(first, h - CAPACITY + 1);
+
+        long i = h;
+        while (i > start && values.get(slot(i - 1) + ELAPSED) >= fromElapsed) {
+            i--;
+        }
+        out.size = 0;
+        out.ensureCapacity((int) (h - i));
+        for (; i < h; i++) {
+            final int base = slot(i);
+            final int n = out.size++;
+            out.elapsed[n] = values.get(base + ELAPSED);
+            out.distance[n] = get(base + DISTANCE);
+            out.speed[n] = get(base + SPEED);
+            out.hr[n] = get(base + HR);
+            out.altitude[n] = get(base + ALTITUDE);
+            out.cadence[n] = get(base + CADENCE);
+        }
+
+        // Samples overwritten while copying, or before a new activity
+        final long valid = Math.max(first, head - CAPACITY + 1);
+        final long overwritten = valid - (h - out.size);
+        if (overwritten > 0) {
+            out.removeFirst((int) Math.min(overwritten, out.size));
+        }
+        return out.size;
+    }
+
+    private static int slot(long i) {
+        return (int) (i % CAPACITY) * FIELDS;
+    }
+
+    private void set(int index, double value) {
+        values.set(index, Double.doubleToRawLongBits(value));
+    }
+
+    private double get(int index) {
+        return Double.longBitsToDouble(values.get(index));
+    }
+}
@@ -40,7 +40,9 @@ import org.runnerup.R;
 import org.runnerup.common.tracker.TrackerState;
 import org.runnerup.common.util.Constants;
 import org.runnerup.common.util.ValueModel;
+import org.runnerup.db.ActivityAggregator;
 import org.runnerup.db.DBHelper;
+import org.runnerup.db.TrackStore;
 import org.runnerup.export.SyncManager;
 import org.runnerup.hr.HRProvider;
 import org.runnerup.notification.ForegroundNotificationDisplayStrategy;
@@ -62,6 +64,7 @@ import org.runnerup.tracker.component.TrackerWear;
 import org.runnerup.tracker.filter.PersistentGpsLoggerListener;
 import org.runnerup.util.Formatter;
 import org.runnerup.util.HRZones;
+import org.runnerup.util.TickListener;
 import org.runnerup.workout.Scope;
 import org.runnerup.workout.Workout;
 
@@ -124,8 +127,15 @@ public class Tracker extends android.app.Service implements
 
     private SQLiteDatabase mDB = null;
     private PersistentGpsLoggerListener mDBWriter = null;
+    private final ActivityAggregator mAggregator = new ActivityAggregator();
     private PowerManager.WakeLock mWakeLock = null;
     private final List<WorkoutObserver> liveLoggers = new ArrayList<>();
+    private final List<TickListener> locationTickListeners = new ArrayList<>();
+    // Reused for every location, no allocations when recording
+    private final FixSample.Pool mSamplePool = new FixSample.Pool(2);
+    private final float[] mDistanceResult = new float[1];
+    // Recent samples for live graphs, written here only
+    private final LiveSamples mLiveSamples = new LiveSamples();
 
     private Workout workout = null;
     private NotificationStateManager notificationStateManager;
@@ -158,6 +168,11 @@ public class Tracker extends android.app.Service implements
 
     @Override
     public void onDestroy() {
+        if (mDBWriter != null) {
+            // Write the buffered locations while the database is open
+            mDBWriter.close();
+            mDBWriter.setDB(null);
+        }
         if (mDB != null) {
             DBHelper.closeDB(mDB);
             mDB = null;
@@ -166,6 +181,15 @@ public class Tracker extends android.app.Service implements
         reset();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // The process may be killed, do not keep buffered locations
+        if (mDBWriter != null) {
+            mDBWriter.flush();
+        }
+    }
+
     public void setup() {
         switch (state.get()) {
             case INIT:
@@ -321,7 +345,8 @@ public class Tracker extends android.app.Service implements
         tmp.clear();
         tmp.put(DB.LOCATION.ACTIVITY, mActivityId);
         tmp.put(DB.LOCATION.LAP, 0); // always start with lap 0
-        mDBWriter = new PersistentGpsLoggerListener(mDB, DB.LOCATION.TABLE, tmp, logGpxAccuracy);
+        // Locations are buffered and written in batches, flushed at lap, pause and stop
+        mDBWriter = new PersistentGpsLoggerListener(mDB, DB.LOCATION.TABLE, tmp, logGpxAccuracy, true);
         return mActivityId;
     }
 
@@ -362,6 +387,8 @@ public class Tracker extends android.app.Service implements
         mHeartbeatNanos = 0;
         mMaxHR = 0;
         mLastLocationStarted = null;
+        mAggregator.reset();
+        mLiveSamples.clear();
 
         // New location update will be tagged with START
         setNextLocationType(DB.LOCATION.TYPE_START);
@@ -392,8 +419,11 @@ public class Tracker extends android.app.Service implements
     }
 
     public void newLap(ContentValues tmp) {
+        // locations for the previous lap must be stored before lap aggregates are used
+        mDBWriter.flush();
         tmp.put(DB.LAP.ACTIVITY, mActivityId);
         mLapId = mDB.insert(DB.LAP.TABLE, null, tmp);
+        mAggregator.startLap();
         ContentValues key = mDBWriter.getKey();
         key.put(DB.LOCATION.LAP, tmp.getAsLong(DB.LAP.LAP));
         mDBWriter.setKey(key);
@@ -401,6 +431,13 @@ public class Tracker extends android.app.Service implements
 
     public void saveLap(ContentValues tmp) {
         tmp.put(DB.LAP.ACTIVITY, mActivityId);
+        ActivityAggregator.Totals lap = mAggregator.getLap();
+        if (lap.hasHr()) {
+            tmp.put(DB.LAP.MAX_HR, lap.getMaxHr());
+        }
+        if (lap.hasCadence()) {
+            tmp.put(DB.LAP.AVG_CADENCE, lap.getAvgCadence());
+        }
         String key[] = {
                 Long.toString(mLapId)
         };
@@ -426,6 +463,7 @@ public class Tracker extends android.app.Service implements
         setNextLocationType(DB.LOCATION.TYPE_PAUSE);
         // This saves a PAUSE location
         internalOnLocationChanged(mLastLocationStarted);
+        mDBWriter.flush();
 
         saveActivity();
         components.onPause();
@@ -457,6 +495,7 @@ public class Tracker extends android.app.Service implements
         setNextLocationType(DB.LOCATION.TYPE_PAUSE);
         // This saves a PAUSE location
         internalOnLocationChanged(mLastLocationStarted);
+        mDBWriter.flush();
 
         saveActivity();
         components.onPause(); // TODO add new callback for this
@@ -524,6 +563,10 @@ public class Tracker extends android.app.Service implements
 
         wakeLock(false);
 
+        if (mDBWriter != null) {
+            mDBWriter.close();
+        }
+
         if (workout != null) {
             workout.setTracker(null);
             workout = null;
@@ -531,6 +574,7 @@ public class Tracker extends android.app.Service implements
 
         state.set(TrackerState.CLEANUP);
         liveLoggers.clear();
+        locationTickListeners.clear();
         TrackerComponent.ResultCode res = components.onEnd(onEndCallback, getApplicationContext());
         if (res != TrackerComponent.ResultCode.RESULT_PENDING)
             onEndCallback.run(components, res);
@@ -558,10 +602,14 @@ public class Tracker extends android.app.Service implements
 
         setNextLocationType(DB.LOCATION.TYPE_END);
         internalOnLocationChanged(mLastLocationStarted);
+        // Write remaining locations and stop the writer thread
+        mDBWriter.close();
 
         if (save) {
             saveActivity();
             liveLog(DB.LOCATION.TYPE_END);
+            // The locations are not updated after this, store them compressed
+            TrackStore.seal(mDB, mActivityId);
         } else {
             ContentValues tmp = new ContentValues();
             tmp.put("deleted", 1);
@@ -584,6 +632,9 @@ public class Tracker extends android.app.Service implements
         }
         if (mMaxHR > 0)
             tmp.put(Constants.DB.ACTIVITY.MAX_HR, mMaxHR);
+        if (mAggregator.getActivity().hasCadence())
+            tmp.put(Constants.DB.ACTIVITY.AVG_CADENCE, mAggregator.getActivity().getAvgCadence());
+        tmp.put(DB.ACTIVITY.ELEVATION_GAIN, mAggregator.getActivity().getElevationGain());
 
         if (TrackerPressure.isAvailable(this)) {
             final SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
@@ -691,20 +742,19 @@ public class Tracker extends android.app.Service implements
             }
         }
 
-        Integer hrValue;
+        int hrValue;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
             hrValue = getCurrentHRValueElapsed(arg0.getElapsedRealtimeNanos(), MAX_HR_AGE);
         } else {
             // adjust GPS sensor time to system time
             hrValue = getCurrentHRValue(arg0.getTime() + mSystemToGpsDiffTimeNanos/NANO_IN_MILLI, MAX_HR_AGE);
         }
-        Double eleValue = getCurrentElevation();
-        Float cadValue = getCurrentCadence();
-        Float temperatureValue = getCurrentTemperature();
-        Float pressureValue = getCurrentPressure();
+        FixSample sample = getSample(arg0, hrValue);
 
         if (mLastLocation != null) {
-            double distDiff = arg0.distanceTo(mLastLocation);
+            Location.distanceBetween(mLastLocation.getLatitude(), mLastLocation.getLongitude(),
+                    arg0.getLatitude(), arg0.getLongitude(), mDistanceResult);
+            double distDiff = mDistanceResult[0];
             long timeDiffNanos;
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
                 timeDiffNanos = (arg0.getElapsedRealtimeNanos() - mLastLocation.getElapsedRealtimeNanos());
@@ -737,16 +787,23 @@ public class Tracker extends android.app.Service implements
                 if (!internal) {
                     mElapsedDistance += distDiff;
                 }
-                if (hrValue != null) {
+                if (hrValue >= 0) {
                     mHeartbeats += (hrValue * timeDiffNanos) / (double)(60 * 1000 * NANO_IN_MILLI);
                     mHeartbeatNanos += timeDiffNanos; // TODO handle loss of HRM connection
                     mMaxHR = Math.max(hrValue, mMaxHR);
                 }
             }
          }
+        if (workout != null) {
+            // Distance, time and speed have changed
+            workout.newSnapshot();
+        }
 
         if (internal || state.get() == TrackerState.STARTED) {
-            mDBWriter.onLocationChanged(arg0, eleValue, getTimeMs(), mElapsedDistance, hrValue, cadValue, temperatureValue, pressureValue);
+            sample.elapsed = getTimeMs();
+            sample.distance = mElapsedDistance;
+            sample.mask |= FixSample.HAS_ELAPSED | FixSample.HAS_DISTANCE;
+            record(mDBWriter, mLiveSamples, mAggregator, mLocationType, sample, mCurrentSpeed);
 
             switch (mLocationType) {
                 case DB.LOCATION.TYPE_START:
@@ -763,25 +820,130 @@ public class Tracker extends android.app.Service implements
                     }
                     break;
             }
-            liveLog(mLocationType);
+            liveLog(mLocationType, sample);
 
-            notificationStateManager.displayNotificationState(activityOngoingState);
+            if (activityOngoingState != null) {
+                notificationStateManager.displayNotificationState(activityOngoingState);
+            }
         }
 
+        mSamplePool.recycle(sample);
+
         if (!internal) {
             mLastLocation = arg0;
             if (state.get() == TrackerState.STARTED) {
                 mLastLocationStarted = arg0;
             }
         }
+
+        for (int i = 0; i < locationTickListeners.size(); i++) {
+            locationTickListeners.get(i).onTick();
+        }
+    }
+
+    /**
+     * The location and the current sensor values, recycle to mSamplePool when done
+     * @param hrValue the heart rate, negative if not available
+     */
+    private FixSample getSample(Location arg0, int hrValue) {
+        FixSample s = mSamplePool.obtain();
+        s.time = arg0.getTime();
+        s.latitude = arg0.getLatitude();
+        s.longitude = arg0.getLongitude();
+        if (arg0.hasAccuracy()) {
+            s.accuracy = arg0.getAccuracy();
+            s.mask |= FixSample.HAS_ACCURACY;
+        }
+        if (arg0.hasAltitude()) {
+            s.gpsAltitude = arg0.getAltitude();
+            s.mask |= FixSample.HAS_GPS_ALTITUDE;
+        }
+        if (arg0.hasSpeed()) {
+            s.speed = arg0.getSpeed();
+            s.mask |= FixSample.HAS_SPEED;
+        }
+        if (arg0.hasBearing()) {
+            s.bearing = arg0.getBearing();
+            s.mask |= FixSample.HAS_BEARING;
+        }
+        if (arg0.getExtras() != null) {
+            int sats = arg0.getExtras().getInt("satellites", -1);
+            if (sats >= 0) {
+                s.satellites = sats;
+                s.mask |= FixSample.HAS_SATELLITES;
+            }
+        }
+
+        if (hrValue >= 0) {
+            s.hr = hrValue;
+            s.mask |= FixSample.HAS_HR;
+        }
+        double ele = trackerElevation.getElevation();
+        if (!Double.isNaN(ele)) {
+            s.altitude = ele;
+            s.mask |= FixSample.HAS_ALTITUDE;
+        }
+        float cad = trackerCadence.getCadence();
+        if (!Float.isNaN(cad)) {
+            s.cadence = cad;
+            s.mask |= FixSample.HAS_CADENCE;
+        }
+        // Boxed values are kept by the sensors, no allocation when unboxing
+        Float temperature = trackerTemperature.getValue();
+        if (temperature != null) {
+            s.temperature = temperature;
+            s.mask |= FixSample.HAS_TEMPERATURE;
+        }
+        Float pressure = trackerPressure.getValue();
+        if (pressure != null) {
+            s.pressure = pressure;
+            s.mask |= FixSample.HAS_PRESSURE;
+        }
+        return s;
+    }
+
+    /**
+     * Write the sample and add it to the live samples and the aggregates, for every fix
+     * when recording. Does not allocate, the sample can be reused when this returns.
+     */
+    private static void record(PersistentGpsLoggerListener writer, LiveSamples liveSamples,
+                               ActivityAggregator aggregator, int type, FixSample sample,
+                               double speed) {
+        writer.onLocationChanged(sample);
+        liveSamples.add(sample, speed);
+        // Lap and activity aggregates are kept current, no recompute needed when saving
+        aggregator.add(type, sample.time, sample.latitude, sample.longitude,
+                sample.has(FixSample.HAS_HR) ? sample.hr : 0,
+                sample.has(FixSample.HAS_CADENCE) ? sample.cadence : Float.NaN,
+                sample.has(FixSample.HAS_ALTITUDE) ? sample.altitude : Double.NaN);
     }
 
     private void liveLog(int type) {
-        for (WorkoutObserver l : liveLoggers) {
-            l.workoutEvent(workout, type);
+        liveLog(type, null);
+    }
+
+    private void liveLog(int type, FixSample sample) {
+        // Called for every location, no iterator
+        for (int i = 0; i < liveLoggers.size(); i++) {
+            liveLoggers.get(i).workoutEvent(workout, type, sample);
         }
     }
 
+    /**
+     * Record the locations to the writer as for a started activity, without a workout,
+     * components or notification. Used to test the recording path.
+     */
+    void startRecording(PersistentGpsLoggerListener writer) {
+        mDBWriter = writer;
+        mElapsedTimeNanos = 0;
+        mElapsedDistance = 0;
+        mLastLocationStarted = null;
+        mAggregator.reset();
+        mLiveSamples.clear();
+        setNextLocationType(DB.LOCATION.TYPE_START);
+        state.set(TrackerState.STARTED);
+    }
+
     @Override
     public void onProviderDisabled(String arg0) {
     }
@@ -882,42 +1044,46 @@ public class Tracker extends android.app.Service implements
         return (trackerHRM.getHrProvider());
     }
 
-    private Integer getCurrentHRValueElapsed(long now, long maxAge) {
+    // @return the heart rate, -1 if not available
+    private int getCurrentHRValueElapsed(long now, long maxAge) {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
             if (BuildConfig.DEBUG) {
                 throw new AssertionError();
             }
-            return null;
+            return -1;
         }
 
         HRProvider hrProvider = trackerHRM.getHrProvider();
         if (hrProvider == null)
-            return null;
+            return -1;
 
         // now is elapsed nanosec, no sensor adjust needed
         if (now > hrProvider.getHRValueElapsedRealtime() + maxAge * NANO_IN_MILLI)
-            return null;
+            return -1;
 
         return hrProvider.getHRValue();
     }
 
-    private Integer getCurrentHRValue(long now, long maxAge) {
+    // @return the heart rate, -1 if not available
+    private int getCurrentHRValue(long now, long maxAge) {
         HRProvider hrProvider = trackerHRM.getHrProvider();
         if (hrProvider == null)
-            return null;
+            return -1;
 
         if (now > hrProvider.getHRValueTimestamp() + maxAge)
-            return null;
+            return -1;
 
         return hrProvider.getHRValue();
     }
 
     public Integer getCurrentHRValue() {
+        int hr;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-            return getCurrentHRValueElapsed(SystemClock.elapsedRealtimeNanos(), MAX_HR_AGE);
+            hr = getCurrentHRValueElapsed(SystemClock.elapsedRealtimeNanos(), MAX_HR_AGE);
         } else {
-            return getCurrentHRValue(System.currentTimeMillis(), MAX_HR_AGE);
+            hr = getCurrentHRValue(System.currentTimeMillis(), MAX_HR_AGE);
         }
+        return hr < 0 ? null : hr;
     }
 
     public double getHeartbeats() {
@@ -967,7 +1133,25 @@ public class Tracker extends android.app.Service implements
     }
 
 
+    /**
+     * The recent samples of the activity, can be read from any thread
+     */
+    public LiveSamples getLiveSamples() {
+        return mLiveSamples;
+    }
+
     public Workout getWorkout() {
         return workout;
     }
-}
\ No newline at end of file
+
+    /**
+     * Called for every location, also when paused, until the tracker is stopped
+     */
+    public void addLocationTickListener(TickListener listener) {
+        locationTickListeners.add(listener);
+    }
+
+    public void removeLocationTickListener(TickListener listener) {
+        locationTickListeners.remove(listener);
+    }
+}
\ No newline at end of file
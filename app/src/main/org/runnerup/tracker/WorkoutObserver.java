@@ -19,6 +19,10 @@ package org.runnerup.tracker;
 import org.runnerup.workout.WorkoutInfo;
 
 public interface WorkoutObserver {
-    // @note: type is in Constants.DB.LOCATION.TYPE
-    void workoutEvent(WorkoutInfo workoutInfo, int type);
+    /**
+     * @param type in Constants.DB.LOCATION.TYPE
+     * @param sample the location and sensor values, null if the event is not for a location.
+     *               The sample is reused when this returns.
+     */
+    void workoutEvent(WorkoutInfo workoutInfo, int type, FixSample sample);
 }
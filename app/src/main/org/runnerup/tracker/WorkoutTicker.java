@@ -0,0 +1,196 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.tracker;
+
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.runnerup.util.TickListener;
+import org.runnerup.workout.Workout;
+
+import java.util.Locale;
+
+/**
+ * Ticks the workout when there is something to do instead of at a fixed rate.
+ *
+ * A tick is run for every new location (also when paused, for auto resume) and when
+ * a trigger waiting for a time or the end of a time step is due. Otherwise the workout
+ * is ticked at a base interval that depends on if the view is visible and the workout paused.
+ * Sensor values without their own events (heart rate, cadence) are read on these ticks.
+ *
+ * Runs on the main thread.
+ */
+public class WorkoutTicker {
+
+    private static final String TAG = "WorkoutTicker";
+
+    // Burst of locations and events
+    private static final long MIN_INTERVAL_MS = 200;
+    private static final long VISIBLE_INTERVAL_MS = 1000;
+    private static final long HIDDEN_INTERVAL_MS = 5000;
+    private static final long PAUSED_INTERVAL_MS = 30000;
+    // Wake just after a time event, not just before
+    private static final long SLACK_MS = 20;
+    private static final long REPORT_INTERVAL_MS = 10 * 60 * 1000;
+
+    private final Tracker tracker;
+    private final TickListener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private boolean started = false;
+    private boolean visible = true;
+    private long lastTick = 0;
+    // Uptime of the posted tick, -1 if none
+    private long nextTick = -1;
+
+    private long startTime = 0;
+    private long lastReport = 0;
+    private long wakeups = 0;
+    private long cpuNanos = 0;
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            nextTick = -1;
+            onTick();
+        }
+    };
+
+    private final TickListener onLocation = new TickListener() {
+        @Override
+        public void onTick() {
+            tickNow();
+        }
+    };
+
+    public WorkoutTicker(Tracker tracker, TickListener listener) {
+        this.tracker = tracker;
+        this.listener = listener;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        startTime = SystemClock.uptimeMillis();
+        lastReport = startTime;
+        wakeups = 0;
+        cpuNanos = 0;
+        tracker.addLocationTickListener(onLocation);
+        schedule(startTime);
+    }
+
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        handler.removeCallbacks(tick);
+        nextTick = -1;
+        tracker.removeLocationTickListener(onLocation);
+        report();
+    }
+
+    /**
+     * The view is updated on ticks, tick more often when it is visible
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        if (visible) {
+            tickNow();
+        }
+    }
+
+    /**
+     * Tick as soon as allowed, after the workout changed (pause, resume, new lap)
+     */
+    public void tickNow() {
+        if (started) {
+            schedule(Math.max(SystemClock.uptimeMillis(), lastTick + MIN_INTERVAL_MS));
+        }
+    }
+
+    public double getWakeupsPerHour() {
+        return perHour(wakeups);
+    }
+
+    public double getCpuMsPerHour() {
+        return perHour(cpuNanos / 1000000.0);
+    }
+
+    private double perHour(double value) {
+        final long ms = SystemClock.uptimeMillis() - startTime;
+        return ms > 0 ? value * 3600 * 1000 / ms : 0;
+    }
+
+    private void schedule(long time) {
+        if (nextTick != -1 && nextTick <= time) {
+            return;
+        }
+        handler.removeCallbacks(tick);
+        nextTick = time;
+        handler.postAtTime(tick, time);
+    }
+
+    private void onTick() {
+        final long now = SystemClock.uptimeMillis();
+        lastTick = now;
+        wakeups++;
+        final long cpu = Debug.threadCpuTimeNanos();
+        listener.onTick();
+        if (cpu >= 0) {
+            cpuNanos += Debug.threadCpuTimeNanos() - cpu;
+        }
+
+        if (now - lastReport >= REPORT_INTERVAL_MS) {
+            lastReport = now;
+            report();
+        }
+        // The listener may have stopped the ticks
+        if (started) {
+            schedule(now + getInterval());
+        }
+    }
+
+    private long getInterval() {
+        final Workout workout = tracker.getWorkout();
+        long interval = visible ? VISIBLE_INTERVAL_MS : HIDDEN_INTERVAL_MS;
+        if (workout == null) {
+            return interval;
+        }
+        if (!visible && workout.isPaused()) {
+            interval = PAUSED_INTERVAL_MS;
+        }
+        final double next = workout.getNextTimeEvent() * 1000;
+        if (next < interval) {
+            interval = Math.max((long) next + SLACK_MS, MIN_INTERVAL_MS);
+        }
+        return interval;
+    }
+
+    private void report() {
+        Log.i(TAG, String.format(Locale.US, "wakeups/h: %.0f, cpu ms/h: %.0f",
+                getWakeupsPerHour(), getCpuMsPerHour()));
+    }
+}
@@ -50,15 +50,24 @@ public class TrackerCadence extends DefaultTrackerComponent implements SensorEve
     private Float mCurrentCadence = null;
 
     public Float getValue() {
+        float val = getCadence();
+        return Float.isNaN(val) ? null : val;
+    }
+
+    /**
+     * The cadence without boxing, used for every location
+     * @return the cadence, NaN if not available
+     */
+    public float getCadence() {
         if (!isSportEnabled) {
-            return null;
+            return Float.NaN;
         }
         if (isMockSensor) {
             return (new Random()).nextFloat() * 120;
         }
 
         if (mCurrentCadence == null) {
-            return null;
+            return Float.NaN;
         }
 
         // It can take seconds between sensor updates
@@ -72,7 +81,7 @@ public class TrackerCadence extends DefaultTrackerComponent implements SensorEve
             now = SystemClock.elapsedRealtime() * nanoSec / 1000;
         }
         long timeDiff = now - mPrevTime;
-        Float res = mCurrentCadence;
+        float res = mCurrentCadence;
         if (timeDiff > cutOffTime * nanoSec) {
             mCurrentCadence = null;
             res = 0.0f;
@@ -18,6 +18,7 @@ package org.runnerup.tracker.component;
 
 import android.content.Context;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.Pair;
 import org.runnerup.BuildConfig;
@@ -77,16 +78,24 @@ public class TrackerComponentCollection implements TrackerComponent {
      */
     @Override
     public ResultCode onInit(final Callback callback, Context context) {
-        return forEach("onInit", new Func1() {
+        // Time spent in onInit() delays Tracker.setup(), log it per component
+        long start = SystemClock.elapsedRealtime();
+        ResultCode res = forEach("onInit", new Func1() {
             @Override
             public ResultCode apply(TrackerComponent comp0, ResultCode currentResultCode,
                                     Callback callback0, Context context0) {
-                if (currentResultCode == ResultCode.RESULT_OK)
-                    return comp0.onInit(callback0, context0);
-                else
+                if (currentResultCode == ResultCode.RESULT_OK) {
+                    long compStart = SystemClock.elapsedRealtime();
+                    ResultCode compRes = comp0.onInit(callback0, context0);
+                    Log.i(getName(), comp0.getName() + " onInit took "
+                            + (SystemClock.elapsedRealtime() - compStart) + " ms");
+                    return compRes;
+                } else
                     return currentResultCode;
             }
         }, callback, context);
+        Log.i(getName(), "onInit took " + (SystemClock.elapsedRealtime() - start) + " ms");
+        return res;
     }
 
     @Override
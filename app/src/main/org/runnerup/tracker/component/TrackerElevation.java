@@ -20,10 +20,13 @@ package org.runnerup.tracker.component;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
@@ -31,13 +34,21 @@ import org.runnerup.BuildConfig;
 import org.runnerup.R;
 import org.runnerup.tracker.Tracker;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.matthiaszimmermann.location.egm96.Geoid;
 
 public class TrackerElevation extends DefaultTrackerComponent implements SensorEventListener {
 
     private static final String NAME = "Elevation";
+    // Precompiled geoid grid, generated by the build and stored uncompressed to be mapped
+    private static final String GEOID_GRID_ASSET = "egm96.grid";
 
     @Override
     public String getName() {
@@ -49,7 +60,8 @@ public class TrackerElevation extends DefaultTrackerComponent implements SensorE
     private final TrackerPressure trackerPressure;
 
     private Double mElevationOffset = null;
-    private Double mAverageGpsElevation = null;
+    // NaN if not set, not boxed as it is updated for every location
+    private double mAverageGpsElevation = Double.NaN;
     private long minEleAverageCutoffTime = Long.MAX_VALUE;
     private GeoidAdjust mGeoidAdjust = null;
     private boolean mAltitudeFromGpsAverage = true;
@@ -64,34 +76,90 @@ public class TrackerElevation extends DefaultTrackerComponent implements SensorE
     public class GeoidAdjust {
         // "static" constructor in subclass
         GeoidAdjust GetAltitudeAdjust(Context context) {
-            try {
-                Geoid.init(context.getAssets().open("egm96-delta.dat"));
-                return new GeoidAdjust();
-            } catch (IOException e) {
-                Log.e("TrackerElevation", "Altitude correction " + e);
-            }
-            return null;
+            // The grid is loaded at the first lookup, not to delay the tracker initialization
+            final AssetManager assets = context.getApplicationContext().getAssets();
+            Geoid.init(new Geoid.GridLoader() {
+                @Override
+                public ByteBuffer load() throws IOException {
+                    return loadGrid(assets);
+                }
+            });
+            return new GeoidAdjust();
         }
 
-        Double getOffset(Tracker tracker) {
+        double getOffset(Tracker tracker) {
+            if (!Geoid.isAvailable()) {
+                return 0;
+            }
             return Geoid.getOffset(tracker.getLastKnownLocation().getLatitude(),
                     tracker.getLastKnownLocation().getLongitude());
         }
     }
 
-    @SuppressLint("NewApi")
+    private static ByteBuffer loadGrid(AssetManager assets) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        ByteBuffer grid;
+        try {
+            AssetFileDescriptor fd = assets.openFd(GEOID_GRID_ASSET);
+            FileInputStream in = fd.createInputStream();
+            try {
+                // The mapping is valid also after the file is closed
+                grid = in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                        fd.getStartOffset(), fd.getLength());
+            } finally {
+                in.close();
+                fd.close();
+            }
+        } catch (FileNotFoundException e) {
+            // Compressed in the apk, cannot be mapped
+            InputStream in = assets.open(GEOID_GRID_ASSET);
+            try {
+                grid = readFully(in);
+            } finally {
+                in.close();
+            }
+        }
+        Log.i("TrackerElevation", "Loaded geoid grid in "
+                + (SystemClock.elapsedRealtime() - start) + " ms");
+        return grid;
+    }
+
+    private static ByteBuffer readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int len;
+        while ((len = in.read(buf)) > 0) {
+            out.write(buf, 0, len);
+        }
+        byte[] data = out.toByteArray();
+        ByteBuffer grid = ByteBuffer.allocateDirect(data.length);
+        grid.put(data);
+        grid.rewind();
+        return grid;
+    }
+
     public Double getValue() {
-        Double val;
+        double val = getElevation();
+        return Double.isNaN(val) ? null : val;
+    }
+
+    /**
+     * The elevation without boxing, used for every location
+     * @return the elevation, NaN if not available
+     */
+    @SuppressLint("NewApi")
+    public double getElevation() {
+        double val;
         Float pressure = tracker.getCurrentPressure();
         //noinspection ConstantConditions
         if (pressure != null && BuildConfig.VERSION_CODE >= 9) {
             //Pressure available - use it for elevation
             //TODO get real sea level pressure (online) or set offset from start/end
             //noinspection InlinedApi
-            val = ((Float) SensorManager.getAltitude(SensorManager.PRESSURE_STANDARD_ATMOSPHERE, pressure)).doubleValue();
+            val = SensorManager.getAltitude(SensorManager.PRESSURE_STANDARD_ATMOSPHERE, pressure);
             if (mElevationOffset == null) {
                 //"Lock" the offset (can be unlocked in onLocationChanged)
-                if (mAltitudeFromGpsAverage && mAverageGpsElevation != null) {
+                if (mAltitudeFromGpsAverage && !Double.isNaN(mAverageGpsElevation)) {
                     //pressure is low-pass filtered, compare to low-pass GPS elevation
                     mElevationOffset = mAverageGpsElevation - val;
                 } else {
@@ -108,7 +176,7 @@ public class TrackerElevation extends DefaultTrackerComponent implements SensorE
                 val -= mGeoidAdjust.getOffset(tracker);
             }
         } else {
-            val = null;
+            val = Double.NaN;
         }
         return val;
     }
@@ -117,12 +185,12 @@ public class TrackerElevation extends DefaultTrackerComponent implements SensorE
         if (arg0.hasAltitude()
                 && (mElevationOffset == null || arg0.getTime() < minEleAverageCutoffTime || !isStarted)) {
             //If mElevationOffset is not "used" yet or shortly after first GPS, update the average
-            Double ele = arg0.getAltitude();
+            double ele = arg0.getAltitude();
             final int minElevationStabilizeTime = 60;
             if (minEleAverageCutoffTime == Long.MAX_VALUE) {
                 minEleAverageCutoffTime = arg0.getTime() + minElevationStabilizeTime * 1000;
             }
-            if (mAverageGpsElevation == null) {
+            if (Double.isNaN(mAverageGpsElevation)) {
                 mAverageGpsElevation = ele;
             } else {
                 final float alpha = 0.5f;
@@ -228,7 +296,7 @@ public class TrackerElevation extends DefaultTrackerComponent implements SensorE
         isStarted = false;
         minEleAverageCutoffTime = Long.MAX_VALUE;
         mElevationOffset = null;
-        mAverageGpsElevation = null;
+        mAverageGpsElevation = Double.NaN;
     }
 
     /**
@@ -239,7 +307,7 @@ public class TrackerElevation extends DefaultTrackerComponent implements SensorE
         isStarted = false;
         minEleAverageCutoffTime = Long.MAX_VALUE;
         mElevationOffset = null;
-        mAverageGpsElevation = null;
+        mAverageGpsElevation = Double.NaN;
         return ResultCode.RESULT_OK;
     }
 }
\ No newline at end of file
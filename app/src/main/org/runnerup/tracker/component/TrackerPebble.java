@@ -31,6 +31,7 @@ import com.getpebble.android.kit.util.PebbleDictionary;
 import org.runnerup.R;
 import org.runnerup.common.tracker.TrackerState;
 import org.runnerup.common.util.ValueModel;
+import org.runnerup.tracker.FixSample;
 import org.runnerup.tracker.Tracker;
 import org.runnerup.tracker.WorkoutObserver;
 import org.runnerup.util.Formatter;
@@ -115,7 +116,7 @@ public class TrackerPebble extends DefaultTrackerComponent implements WorkoutObs
     }
 
     @Override
-    public void workoutEvent(WorkoutInfo workoutInfo, int type) {
+    public void workoutEvent(WorkoutInfo workoutInfo, int type, FixSample sample) {
         if (!isConnected())
             return;
 
@@ -124,10 +125,10 @@ public class TrackerPebble extends DefaultTrackerComponent implements WorkoutObs
         data.addString(Constants.SPORTS_DISTANCE_KEY, formatter.format(Formatter.Format.TXT, Dimension.DISTANCE, workoutInfo.get(Scope.ACTIVITY, Dimension.DISTANCE)));
         data.addString(Constants.SPORTS_DATA_KEY, formatter.format(Formatter.Format.TXT_SHORT, Dimension.PACE, workoutInfo.get(Scope.ACTIVITY, Dimension.PACE)));
         if (tracker.isComponentConnected(TrackerHRM.NAME)) {
-            data.addUint8(Constants.SPORTS_HR_BPM_KEY, (byte) workoutInfo.getHeartRate(Scope.CURRENT));
+            data.addUint8(Constants.SPORTS_HR_BPM_KEY, (byte) workoutInfo.get(Scope.CURRENT, Dimension.HR));
         }
         data.addString(Constants.SPORTS_CUSTOM_LABEL_KEY, "SPEED");
-        data.addString(Constants.SPORTS_CUSTOM_VALUE_KEY, formatter.format(Formatter.Format.TXT_SHORT, Dimension.SPEED, workoutInfo.getSpeed(Scope.CURRENT)));
+        data.addString(Constants.SPORTS_CUSTOM_VALUE_KEY, formatter.format(Formatter.Format.TXT_SHORT, Dimension.SPEED, workoutInfo.get(Scope.CURRENT, Dimension.SPEED)));
         data.addUint8(Constants.SPORTS_LABEL_KEY, (byte) Constants.SPORTS_DATA_PACE);
         data.addUint8(Constants.SPORTS_UNITS_KEY, isMetric ? (byte) Constants.SPORTS_UNITS_METRIC : (byte) Constants.SPORTS_UNITS_IMPERIAL);
 
@@ -19,9 +19,12 @@ package org.runnerup.tracker.filter;
 
 import android.content.ContentValues;
 import android.database.sqlite.SQLiteDatabase;
-import android.location.Location;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
 
 import org.runnerup.common.util.Constants;
+import org.runnerup.tracker.FixSample;
 import org.runnerup.tracker.LocationListenerBase;
 
 
@@ -33,13 +36,104 @@ public class PersistentGpsLoggerListener extends LocationListenerBase implements
     private ContentValues mKey;
     private final boolean mLogGpxAccuracy;
 
+    /**
+     * Write-behind mode: fixes are kept in a preallocated ring buffer and
+     * written by a separate thread in one transaction every FLUSH_BATCH fixes
+     * or FLUSH_INTERVAL_MS, whatever comes first.
+     * The tracker forces a flush at pause, lap, stop and when memory is trimmed.
+     * At most FLUSH_INTERVAL_MS of fixes are lost if the process is killed.
+     */
+    private static final int CAPACITY = 256;
+    private static final int FLUSH_BATCH = 60;
+    private static final long FLUSH_INTERVAL_MS = 10 * 1000;
+    // A failed batch is kept and written again after this
+    private static final long RETRY_INTERVAL_MS = 1000;
+
+    // Bits in mKeyMask, set if the key column has a value
+    private static final int HAS_ACTIVITY = 1;
+    private static final int HAS_LAP = 1 << 1;
+    private static final int HAS_TYPE = 1 << 2;
+
+    private static final String[] COLUMNS = {
+            DB.LOCATION.ACTIVITY,
+            DB.LOCATION.LAP,
+            DB.LOCATION.TYPE,
+            DB.LOCATION.TIME,
+            DB.LOCATION.LATITUDE,
+            DB.LOCATION.LONGITUDE,
+            DB.LOCATION.ALTITUDE,
+            DB.LOCATION.ACCURANCY,
+            DB.LOCATION.GPS_ALTITUDE,
+            DB.LOCATION.SPEED,
+            DB.LOCATION.BEARING,
+            DB.LOCATION.SATELLITES,
+            DB.LOCATION.PRESSURE,
+            DB.LOCATION.ELAPSED,
+            DB.LOCATION.DISTANCE,
+            DB.LOCATION.HR,
+            DB.LOCATION.CADENCE,
+            DB.LOCATION.TEMPERATURE
+    };
+
+    // Key values, cached from mKey to avoid copying ContentValues for every fix
+    private long mKeyActivity;
+    private long mKeyLap;
+    private int mKeyType;
+    private int mKeyMask;
+
+    // Ring buffer, guarded by mLock
+    // Slots [mHead, mHead + mCount) are pending, the writer owns the slots it is writing
+    private final FixSample[] mSlots;
+    private final int[] mSlotKeyMask;
+    private final long[] mActivity;
+    private final long[] mLap;
+    private final int[] mType;
+    private int mHead = 0;
+    private int mCount = 0;
+    private long mFirstPendingTime = 0;
+    private boolean mFlushRequested = false;
+    private boolean mStopRequested = false;
+    // Batches the writer has tried to write, and if the last was not committed
+    private long mWriteAttempts = 0;
+    private boolean mLastWriteFailed = false;
+
+    private Thread mWriter = null;
+    private SQLiteStatement mInsert = null;
+    private SQLiteDatabase mInsertDB = null;
+    private String mInsertTable = null;
+
     public PersistentGpsLoggerListener(SQLiteDatabase _db, String _table,
             ContentValues _key, boolean logGpxAccuracy) {
+        this(_db, _table, _key, logGpxAccuracy, false);
+    }
+
+    public PersistentGpsLoggerListener(SQLiteDatabase _db, String _table,
+            ContentValues _key, boolean logGpxAccuracy, boolean writeBehind) {
         this.mLock = new java.lang.Object();
         this.mDB = _db;
         this.mTable = _table;
         this.mLogGpxAccuracy = logGpxAccuracy;
         setKey(_key);
+
+        int capacity = writeBehind ? CAPACITY : 0;
+        mSlots = new FixSample[capacity];
+        for (int i = 0; i < capacity; i++) {
+            mSlots[i] = new FixSample();
+        }
+        mSlotKeyMask = new int[capacity];
+        mActivity = new long[capacity];
+        mLap = new long[capacity];
+        mType = new int[capacity];
+
+        if (writeBehind) {
+            mWriter = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    writerLoop();
+                }
+            }, "PersistentGpsLoggerListener");
+            mWriter.start();
+        }
     }
 
     public SQLiteDatabase getDB() {
@@ -47,6 +141,7 @@ public class PersistentGpsLoggerListener extends LocationListenerBase implements
     }
 
     public void setDB(SQLiteDatabase _db) {
+        flush();
         mDB = _db;
     }
 
@@ -55,6 +150,7 @@ public class PersistentGpsLoggerListener extends LocationListenerBase implements
     }
 
     public void setTable(String _tab) {
+        flush();
         mTable = _tab;
     }
 
@@ -68,15 +164,41 @@ public class PersistentGpsLoggerListener extends LocationListenerBase implements
 
     public void setKey(ContentValues key) {
         synchronized (mLock) {
-            if (key == null)
+            mKeyMask = 0;
+            if (key == null) {
                 mKey = null;
-            else
-                mKey = new ContentValues(key);
+                return;
+            }
+            mKey = new ContentValues(key);
+            Long activity = key.getAsLong(DB.LOCATION.ACTIVITY);
+            if (activity != null) {
+                mKeyActivity = activity;
+                mKeyMask |= HAS_ACTIVITY;
+            }
+            Long lap = key.getAsLong(DB.LOCATION.LAP);
+            if (lap != null) {
+                mKeyLap = lap;
+                mKeyMask |= HAS_LAP;
+            }
+            Integer type = key.getAsInteger(DB.LOCATION.TYPE);
+            if (type != null) {
+                mKeyType = type;
+                mKeyMask |= HAS_TYPE;
+            }
         }
     }
 
-    public void onLocationChanged(Location arg0, Double eleValue, Long elapsed, Double distance,
-        Integer hrValue, Float cadValue, Float temperatureValue, Float pressureValue) {
+    /**
+     * Log the fix, the sample is copied and can be reused when this returns
+     */
+    public void onLocationChanged(FixSample s) {
+        if (isWriteBehind()) {
+            if (enqueue(s)) {
+                return;
+            }
+            // The writer is stopped, write directly
+        }
+
         ContentValues values;
         synchronized (mLock) {
             if (mKey == null)
@@ -85,58 +207,379 @@ public class PersistentGpsLoggerListener extends LocationListenerBase implements
                 values = new ContentValues(mKey);
         }
 
-        values.put(DB.LOCATION.TIME, arg0.getTime());
-        values.put(DB.LOCATION.LATITUDE, arg0.getLatitude());
-        values.put(DB.LOCATION.LONGITUDE, arg0.getLongitude());
-        if (eleValue != null) {
-            values.put(DB.LOCATION.ALTITUDE, eleValue);
+        values.put(DB.LOCATION.TIME, s.time);
+        values.put(DB.LOCATION.LATITUDE, s.latitude);
+        values.put(DB.LOCATION.LONGITUDE, s.longitude);
+        if (s.has(FixSample.HAS_ALTITUDE)) {
+            values.put(DB.LOCATION.ALTITUDE, s.altitude);
         }
         //Used by Google Fit, so logged by default
-        if (arg0.hasAccuracy()) {
-            values.put(DB.LOCATION.ACCURANCY, arg0.getAccuracy());
+        if (s.has(FixSample.HAS_ACCURACY)) {
+            values.put(DB.LOCATION.ACCURANCY, s.accuracy);
         }
 
         if (this.mLogGpxAccuracy) {
             //Accuracy related, normally not used in exports
             //null data still uses one byte storage
-            if (arg0.hasAltitude()) {
-                values.put(DB.LOCATION.GPS_ALTITUDE, arg0.getAltitude());
+            if (s.has(FixSample.HAS_GPS_ALTITUDE)) {
+                values.put(DB.LOCATION.GPS_ALTITUDE, s.gpsAltitude);
             }
-            if (arg0.hasSpeed()) {
-                values.put(DB.LOCATION.SPEED, arg0.getSpeed());
+            if (s.has(FixSample.HAS_SPEED)) {
+                values.put(DB.LOCATION.SPEED, s.speed);
             }
-            if (arg0.hasBearing()) {
-                values.put(DB.LOCATION.BEARING, arg0.getBearing());
+            if (s.has(FixSample.HAS_BEARING)) {
+                values.put(DB.LOCATION.BEARING, s.bearing);
             }
             //Most GPS chips also includes no of sats
-            if (arg0.getExtras() != null) {
-                int sats = arg0.getExtras().getInt("satellites", -1);
-                if (sats >= 0) {
-                    values.put(DB.LOCATION.SATELLITES, sats);
-                }
+            if (s.has(FixSample.HAS_SATELLITES)) {
+                values.put(DB.LOCATION.SATELLITES, s.satellites);
             }
             //Not accuracy related but unused by exporters
-            if (pressureValue != null) {
-                values.put(DB.LOCATION.PRESSURE, pressureValue);
+            if (s.has(FixSample.HAS_PRESSURE)) {
+                values.put(DB.LOCATION.PRESSURE, s.pressure);
             }
         }
-        if (elapsed != null) {
-            values.put(DB.LOCATION.ELAPSED, elapsed);
+        if (s.has(FixSample.HAS_ELAPSED)) {
+            values.put(DB.LOCATION.ELAPSED, s.elapsed);
         }
-        if (distance != null) {
-            values.put(DB.LOCATION.DISTANCE, distance);
+        if (s.has(FixSample.HAS_DISTANCE)) {
+            values.put(DB.LOCATION.DISTANCE, s.distance);
         }
-        if (hrValue != null) {
-            values.put(DB.LOCATION.HR, hrValue);
+        if (s.has(FixSample.HAS_HR)) {
+            values.put(DB.LOCATION.HR, s.hr);
         }
-        if (cadValue != null) {
-            values.put(DB.LOCATION.CADENCE, cadValue);
+        if (s.has(FixSample.HAS_CADENCE)) {
+            values.put(DB.LOCATION.CADENCE, s.cadence);
         }
-        if (temperatureValue != null) {
-            values.put(DB.LOCATION.TEMPERATURE, temperatureValue);
+        if (s.has(FixSample.HAS_TEMPERATURE)) {
+            values.put(DB.LOCATION.TEMPERATURE, s.temperature);
         }
         if (mDB != null) {
             mDB.insert(mTable, null, values);
         }
     }
+
+    private boolean isWriteBehind() {
+        return mWriter != null;
+    }
+
+    /**
+     * Copy the fix to the ring buffer
+     * @return false if the writer is stopped and the fix was not queued
+     */
+    private boolean enqueue(FixSample s) {
+        synchronized (mLock) {
+            if (mStopRequested) {
+                return false;
+            }
+            while (mCount == CAPACITY) {
+                if (mLastWriteFailed) {
+                    // The database cannot be written now, do not block the tracker
+                    return false;
+                }
+                // Should not occur, the writer has fallen far behind
+                mFlushRequested = true;
+                mLock.notifyAll();
+                try {
+                    mLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                if (mStopRequested) {
+                    return false;
+                }
+            }
+
+            int i = (mHead + mCount) % CAPACITY;
+            mSlotKeyMask[i] = mKeyMask;
+            mActivity[i] = mKeyActivity;
+            mLap[i] = mKeyLap;
+            mType[i] = mKeyType;
+            FixSample slot = mSlots[i];
+            slot.copyFrom(s);
+            if (!this.mLogGpxAccuracy) {
+                slot.mask &= ~(FixSample.HAS_GPS_ALTITUDE | FixSample.HAS_SPEED
+                        | FixSample.HAS_BEARING | FixSample.HAS_SATELLITES
+                        | FixSample.HAS_PRESSURE);
+            }
+
+            if (mCount == 0) {
+                mFirstPendingTime = SystemClock.elapsedRealtime();
+            }
+            mCount++;
+            // First pending fix starts the flush timer in the writer
+            if (mCount == 1 || mCount >= FLUSH_BATCH) {
+                mLock.notifyAll();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write all buffered fixes to the database, returns when they are committed
+     * or the write failed (the fixes are kept and written later)
+     */
+    public void flush() {
+        if (!isWriteBehind()) {
+            return;
+        }
+        synchronized (mLock) {
+            if (mCount == 0 || !mWriter.isAlive()) {
+                return;
+            }
+            final long attempts = mWriteAttempts;
+            mFlushRequested = true;
+            mLock.notifyAll();
+            while (mCount > 0 && mWriter.isAlive()
+                    && !(mLastWriteFailed && mWriteAttempts != attempts)) {
+                try {
+                    mLock.wait(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Flush and stop the writer thread
+     * Later fixes (if any) are written directly
+     */
+    public void close() {
+        if (!isWriteBehind()) {
+            return;
+        }
+        synchronized (mLock) {
+            mStopRequested = true;
+            mLock.notifyAll();
+        }
+        try {
+            mWriter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writerLoop() {
+        while (true) {
+            int start;
+            int count;
+            boolean stop;
+            synchronized (mLock) {
+                while (!mStopRequested && !mFlushRequested && mCount < FLUSH_BATCH) {
+                    long wait = mCount == 0 ? 0 :
+                            mFirstPendingTime + FLUSH_INTERVAL_MS - SystemClock.elapsedRealtime();
+                    if (mCount > 0 && wait <= 0) {
+                        break;
+                    }
+                    try {
+                        mLock.wait(wait);
+                    } catch (InterruptedException e) {
+                        mStopRequested = true;
+                    }
+                }
+                mFlushRequested = false;
+                start = mHead;
+                count = mCount;
+                stop = mStopRequested;
+                if (count == 0) {
+                    if (mStopRequested) {
+                        releaseStatement();
+                        mLock.notifyAll();
+                        return;
+                    }
+                    continue;
+                }
+            }
+
+            // The slots are not reused until mCount is decreased
+            boolean written = writeBatch(start, count);
+            if (!written && stop) {
+                // Last chance, insert the fixes one by one
+                insertDirect(start, count);
+                written = true;
+            }
+
+            synchronized (mLock) {
+                mWriteAttempts++;
+                mLastWriteFailed = !written;
+                if (written) {
+                    mHead = (mHead + count) % CAPACITY;
+                    mCount -= count;
+                    if (mCount > 0) {
+                        mFirstPendingTime = SystemClock.elapsedRealtime();
+                    }
+                }
+                mLock.notifyAll();
+                if (!written && !mStopRequested) {
+                    // Keep the fixes, write them again later
+                    try {
+                        mLock.wait(RETRY_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        mStopRequested = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the slots, called in the writer thread
+     * @return true if the fixes are committed
+     */
+    protected boolean writeBatch(int start, int count) {
+        SQLiteDatabase db = mDB;
+        if (db == null) {
+            Log.w(getClass().getName(), "No database, keeping " + count + " locations");
+            return false;
+        }
+        try {
+            SQLiteStatement stmt = getStatement(db);
+            db.beginTransaction();
+            try {
+                for (int n = 0; n < count; n++) {
+                    bindSlot(stmt, (start + n) % CAPACITY);
+                    stmt.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return true;
+        } catch (Exception e) {
+            Log.e(getClass().getName(), "Failed to write " + count + " locations: " + e.getMessage());
+            // The statement may belong to a closed database
+            releaseStatement();
+            return false;
+        }
+    }
+
+    private void insertDirect(int start, int count) {
+        int lost = 0;
+        for (int n = 0; n < count; n++) {
+            SQLiteDatabase db = mDB;
+            try {
+                if (db == null || db.insert(mTable, null, getValues((start + n) % CAPACITY)) == -1) {
+                    lost++;
+                }
+            } catch (Exception e) {
+                lost++;
+            }
+        }
+        if (lost > 0) {
+            Log.e(getClass().getName(), "Lost " + lost + " locations when stopping");
+        }
+    }
+
+    private ContentValues getValues(int i) {
+        ContentValues values = new ContentValues();
+        int keyMask = mSlotKeyMask[i];
+        FixSample s = mSlots[i];
+        if ((keyMask & HAS_ACTIVITY) != 0)
+            values.put(DB.LOCATION.ACTIVITY, mActivity[i]);
+        if ((keyMask & HAS_LAP) != 0)
+            values.put(DB.LOCATION.LAP, mLap[i]);
+        if ((keyMask & HAS_TYPE) != 0)
+            values.put(DB.LOCATION.TYPE, mType[i]);
+        values.put(DB.LOCATION.TIME, s.time);
+        values.put(DB.LOCATION.LATITUDE, s.latitude);
+        values.put(DB.LOCATION.LONGITUDE, s.longitude);
+        if (s.has(FixSample.HAS_ALTITUDE))
+            values.put(DB.LOCATION.ALTITUDE, s.altitude);
+        if (s.has(FixSample.HAS_ACCURACY))
+            values.put(DB.LOCATION.ACCURANCY, s.accuracy);
+        if (s.has(FixSample.HAS_GPS_ALTITUDE))
+            values.put(DB.LOCATION.GPS_ALTITUDE, s.gpsAltitude);
+        if (s.has(FixSample.HAS_SPEED))
+            values.put(DB.LOCATION.SPEED, s.speed);
+        if (s.has(FixSample.HAS_BEARING))
+            values.put(DB.LOCATION.BEARING, s.bearing);
+        if (s.has(FixSample.HAS_SATELLITES))
+            values.put(DB.LOCATION.SATELLITES, s.satellites);
+        if (s.has(FixSample.HAS_PRESSURE))
+            values.put(DB.LOCATION.PRESSURE, s.pressure);
+        if (s.has(FixSample.HAS_ELAPSED))
+            values.put(DB.LOCATION.ELAPSED, s.elapsed);
+        if (s.has(FixSample.HAS_DISTANCE))
+            values.put(DB.LOCATION.DISTANCE, s.distance);
+        if (s.has(FixSample.HAS_HR))
+            values.put(DB.LOCATION.HR, s.hr);
+        if (s.has(FixSample.HAS_CADENCE))
+            values.put(DB.LOCATION.CADENCE, s.cadence);
+        if (s.has(FixSample.HAS_TEMPERATURE))
+            values.put(DB.LOCATION.TEMPERATURE, s.temperature);
+        return values;
+    }
+
+    private SQLiteStatement getStatement(SQLiteDatabase db) {
+        if (mInsert == null || mInsertDB != db || !mTable.equals(mInsertTable)) {
+            releaseStatement();
+            StringBuilder sql = new StringBuilder("INSERT INTO " + mTable + " (");
+            StringBuilder params = new StringBuilder();
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                    params.append(", ");
+                }
+                sql.append(COLUMNS[i]);
+                params.append("?");
+            }
+            sql.append(") VALUES (").append(params).append(")");
+            mInsert = db.compileStatement(sql.toString());
+            mInsertDB = db;
+            mInsertTable = mTable;
+        }
+        return mInsert;
+    }
+
+    private void releaseStatement() {
+        if (mInsert != null) {
+            mInsert.close();
+            mInsert = null;
+            mInsertDB = null;
+            mInsertTable = null;
+        }
+    }
+
+    private void bindSlot(SQLiteStatement stmt, int i) {
+        // Index in COLUMNS + 1
+        int keyMask = mSlotKeyMask[i];
+        FixSample s = mSlots[i];
+        stmt.clearBindings();
+        if ((keyMask & HAS_ACTIVITY) != 0)
+            stmt.bindLong(1, mActivity[i]);
+        if ((keyMask & HAS_LAP) != 0)
+            stmt.bindLong(2, mLap[i]);
+        if ((keyMask & HAS_TYPE) != 0)
+            stmt.bindLong(3, mType[i]);
+        stmt.bindLong(4, s.time);
+        stmt.bindDouble(5, s.latitude);
+        stmt.bindDouble(6, s.longitude);
+        if (s.has(FixSample.HAS_ALTITUDE))
+            stmt.bindDouble(7, s.altitude);
+        if (s.has(FixSample.HAS_ACCURACY))
+            stmt.bindDouble(8, s.accuracy);
+        if (s.has(FixSample.HAS_GPS_ALTITUDE))
+            stmt.bindDouble(9, s.gpsAltitude);
+        if (s.has(FixSample.HAS_SPEED))
+            stmt.bindDouble(10, s.speed);
+        if (s.has(FixSample.HAS_BEARING))
+            stmt.bindDouble(11, s.bearing);
+        if (s.has(FixSample.HAS_SATELLITES))
+            stmt.bindLong(12, s.satellites);
+        if (s.has(FixSample.HAS_PRESSURE))
+            stmt.bindDouble(13, s.pressure);
+        if (s.has(FixSample.HAS_ELAPSED))
+            stmt.bindLong(14, s.elapsed);
+        if (s.has(FixSample.HAS_DISTANCE))
+            stmt.bindDouble(15, s.distance);
+        if (s.has(FixSample.HAS_HR))
+            stmt.bindLong(16, s.hr);
+        if (s.has(FixSample.HAS_CADENCE))
+            stmt.bindDouble(17, s.cadence);
+        if (s.has(FixSample.HAS_TEMPERATURE))
+            stmt.bindDouble(18, s.temperature);
+    }
 }
@@ -17,11 +17,15 @@
 
 package org.runnerup.util;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileFilter;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
 
 
 public class FileUtil {
@@ -79,4 +83,49 @@ public class FileUtil {
             close(output);
         }
     }
+    /**
+     * Delete the least recently modified files in a cache directory until the files use
+     * at most maxBytes. Files ending with .tmp are being written and are kept.
+     * The caller serializes trims and writes of the directory.
+     * @return the number of deleted files
+     */
+    public static int trim(File dir, long maxBytes) {
+        File[] files = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return f.isFile() && !f.getName().endsWith(".tmp");
+            }
+        });
+        if (files == null) {
+            return 0;
+        }
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= maxBytes) {
+            return 0;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                long t1 = f1.lastModified();
+                long t2 = f2.lastModified();
+                return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+            }
+        });
+        int deleted = 0;
+        for (File f : files) {
+            if (total <= maxBytes) {
+                break;
+            }
+            long len = f.length();
+            if (f.delete()) {
+                total -= len;
+                deleted++;
+            }
+        }
+        return deleted;
+    }
 }
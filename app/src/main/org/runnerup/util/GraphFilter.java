@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2012 - 2013 jonas.oreland@gmail.com
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.util;
+
+/**
+ * Smoothing filters for graph data, the data is filtered in place.
+ * The filters are streaming, the window is a ring buffer so each sample is O(1),
+ * O(log windowLen) for the median.
+ */
+public class GraphFilter {
+
+    private final double data[];
+    // Value used after the end of data
+    private final double tail;
+
+    public GraphFilter(double data[], double tail) {
+        this.data = data;
+        this.tail = tail;
+    }
+
+    private void init(double window[], double val) {
+        for (int j = 0; j < window.length - 1; j++)
+            window[j] = val;
+    }
+
+    private void shiftLeft(double window[], double newVal) {
+        System.arraycopy(window, 1, window, 0, window.length - 1);
+        window[window.length - 1] = newVal;
+    }
+
+    /**
+     * The window for the first sample, data[0] before the start of data
+     */
+    private double[] initWindow(int windowLen) {
+        double window[] = new double[windowLen];
+        init(window, data[0]);
+
+        final int mid = (window.length - 1) / 2;
+        for (int i = 0; i < data.length && i <= mid; i++) {
+            window[i + mid] = data[i];
+        }
+        return window;
+    }
+
+    /**
+     * Perform in place moving average
+     */
+    public void movingAvergage(int windowLen) {
+        // Ring buffer, oldest is the first value in the window
+        double window[] = initWindow(windowLen);
+        int oldest = 0;
+
+        final int mid = (window.length - 1) / 2;
+        double sum = 0;
+        for (double aWindow : window) sum += aWindow;
+
+        for (int i = 0; i < data.length; i++) {
+            double newY = sum / windowLen;
+            data[i] = newY;
+            double newVal = (i + mid) < data.length ? data[i + mid] : tail;
+            sum -= window[oldest];
+            window[oldest] = newVal;
+            sum += newVal;
+            if (++oldest == windowLen)
+                oldest = 0;
+        }
+    }
+
+    /**
+     * Perform in place moving median
+     */
+    public void movingMedian(int windowLen) {
+        RunningMedian median = new RunningMedian(initWindow(windowLen));
+        int oldest = 0;
+
+        final int mid = (windowLen - 1) / 2;
+        for (int i = 0; i < data.length; i++) {
+            data[i] = median.get();
+            median.replace(oldest, (i + mid) < data.length ? data[i + mid] : tail);
+            if (++oldest == windowLen)
+                oldest = 0;
+        }
+    }
+
+    /**
+     * Perform in place SavitzkyGolay windowLen = 5
+     */
+    public void SavitzkyGolay5() {
+        final int len = 5;
+        double window[] = new double[len];
+        init(window, data[0]);
+
+        final int mid = (window.length - 1) / 2;
+        for (int i = 0; i < data.length && i <= mid; i++) {
+            window[i + mid] = data[i];
+        }
+        for (int i = 0; i < data.length; i++) {
+            double newY = (-3 * window[0] + 12 * window[1] + 17
+                    * window[2] + 12 * window[3] - 3 * window[4]) / 35;
+            data[i] = newY;
+            shiftLeft(window,
+                    (i + mid) < data.length ? data[i + mid] : tail);
+        }
+    }
+
+    /**
+     * Perform in place SavitzkyGolay windowLen = 7
+     */
+    public void SavitzkyGolay7() {
+        final int len = 7;
+        double window[] = new double[len];
+        init(window, data[0]);
+
+        final int mid = (window.length - 1) / 2;
+        for (int i = 0; i < data.length && i <= mid; i++) {
+            window[i + mid] = data[i];
+        }
+        for (int i = 0; i < data.length; i++) {
+            double newY = (-2 * window[0] + 3 * window[1] + 6
+                    * window[2] + 7 * window[3] + 6 * window[4] + 3
+                    * window[5] - 2 * window[6]) / 21;
+            data[i] = newY;
+            shiftLeft(window,
+                    (i + mid) < data.length ? data[i + mid] : tail);
+        }
+    }
+
+    public void KolmogorovZurbenko(int n, int len) {
+        for (int i = 0; i < n; i++)
+            movingAvergage(len);
+    }
+
+    /**
+     * Median of a window where values are replaced by position.
+     * A max heap has the lower (len - 1) / 2 + 1 values and a min heap the upper values,
+     * the median is the top of the max heap, the same as sorted[(len - 1) / 2].
+     */
+    static final class RunningMedian {
+        private final double value[];
+        // Window positions in the heaps
+        private final int low[];
+        private final int high[];
+        // Index in the heap for each window position
+        private final int index[];
+        private final boolean inLow[];
+
+        RunningMedian(double window[]) {
+            final int len = window.length;
+            value = window.clone();
+            low = new int[(len - 1) / 2 + 1];
+            high = new int[len - low.length];
+            index = new int[len];
+            inLow = new boolean[len];
+
+            // Insertion sort of the positions, the window is small
+            int sorted[] = new int[len];
+            for (int i = 0; i < len; i++) {
+                int j = i;
+                for (; j > 0 && value[sorted[j - 1]] > value[i]; j--)
+                    sorted[j] = sorted[j - 1];
+                sorted[j] = i;
+            }
+            // Descending order is a max heap and ascending order a min heap
+            for (int i = 0; i < low.length; i++) {
+                set(low, true, i, sorted[low.length - 1 - i]);
+            }
+            for (int i = 0; i < high.length; i++) {
+                set(high, false, i, sorted[low.length + i]);
+            }
+        }
+
+        double get() {
+            return value[low[0]];
+        }
+
+        /**
+         * Replace the value at a window position, O(log len)
+         */
+        void replace(int pos, double newVal) {
+            double oldVal = value[pos];
+            value[pos] = newVal;
+            if (inLow[pos]) {
+                if (newVal > oldVal)
+                    siftUp(low, true, index[pos]);
+                else
+                    siftDown(low, true, low.length, index[pos]);
+            } else {
+                if (newVal < oldVal)
+                    siftUp(high, false, index[pos]);
+                else
+                    siftDown(high, false, high.length, index[pos]);
+            }
+
+            // Only the replaced value can be on the wrong side
+            if (high.length > 0 && value[low[0]] > value[high[0]]) {
+                int l = low[0];
+                int h = high[0];
+                set(low, true, 0, h);
+                set(high, false, 0, l);
+                siftDown(low, true, low.length, 0);
+                siftDown(high, false, high.length, 0);
+            }
+        }
+
+        private void set(int heap[], boolean isLow, int i, int pos) {
+            heap[i] = pos;
+            index[pos] = i;
+            inLow[pos] = isLow;
+        }
+
+        // a is above b in the heap
+        private boolean before(boolean isLow, int a, int b) {
+            return isLow ? value[a] > value[b] : value[a] < value[b];
+        }
+
+        private void siftUp(int heap[], boolean isLow, int i) {
+            int pos = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!before(isLow, pos, heap[parent]))
+                    break;
+                set(heap, isLow, i, heap[parent]);
+                i = parent;
+            }
+            set(heap, isLow, i, pos);
+        }
+
+        private void siftDown(int heap[], boolean isLow, int size, int i) {
+            int pos = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && before(isLow, heap[child + 1], heap[child]))
+                    child++;
+                if (!before(isLow, heap[child], pos))
+                    break;
+                set(heap, isLow, i, heap[child]);
+                i = child;
+            }
+            set(heap, isLow, i, pos);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.res.Resources;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.os.AsyncTask;
 import android.os.Build;
@@ -44,9 +45,18 @@ import org.runnerup.common.util.Constants;
 import org.runnerup.db.entities.LocationEntity;
 import org.runnerup.view.HRZonesBar;
 
-import java.util.ArrayList;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class GraphWrapper implements Constants {
     private GraphView graphView;
@@ -106,6 +116,182 @@ public class GraphWrapper implements Constants {
         hrzonesBar = new HRZonesBar(context);
     }
 
+    /**
+     * The graph data for an activity as primitive arrays, smoothed with the filter settings
+     */
+    static class SeriesData {
+        private static final int VERSION = 1;
+
+        final double[] distance;
+        final double[] pace;
+        final double[] hr;
+        final boolean showHR;
+        // Share of the time in each HR zone, null if zones are not configured
+        final double[] hrzHist;
+
+        SeriesData(double[] distance, double[] pace, double[] hr, boolean showHR, double[] hrzHist) {
+            this.distance = distance;
+            this.pace = pace;
+            this.hr = hr;
+            this.showHR = showHR;
+            this.hrzHist = hrzHist;
+        }
+
+        void write(DataOutputStream out, String key) throws IOException {
+            out.writeInt(VERSION);
+            out.writeUTF(key);
+            out.writeBoolean(showHR);
+            out.writeInt(distance.length);
+            for (int i = 0; i < distance.length; i++) {
+                out.writeDouble(distance[i]);
+                out.writeDouble(pace[i]);
+                out.writeDouble(hr[i]);
+            }
+            out.writeInt(hrzHist == null ? -1 : hrzHist.length);
+            if (hrzHist != null) {
+                for (double h : hrzHist) {
+                    out.writeDouble(h);
+                }
+            }
+        }
+
+        /**
+         * @return the series or null if written with another key
+         */
+        static SeriesData read(DataInputStream in, String key) throws IOException {
+            if (in.readInt() != VERSION || !key.equals(in.readUTF())) {
+                return null;
+            }
+            boolean showHR = in.readBoolean();
+            int count = in.readInt();
+            double[] distance = new double[count];
+            double[] pace = new double[count];
+            double[] hr = new double[count];
+            for (int i = 0; i < count; i++) {
+                distance[i] = in.readDouble();
+                pace[i] = in.readDouble();
+                hr[i] = in.readDouble();
+            }
+            int zones = in.readInt();
+            double[] hrzHist = null;
+            if (zones >= 0) {
+                hrzHist = new double[zones];
+                for (int i = 0; i < zones; i++) {
+                    hrzHist[i] = in.readDouble();
+                }
+            }
+            return new SeriesData(distance, pace, hr, showHR, hrzHist);
+        }
+    }
+
+    private static final int SERIES_CACHE_SIZE = 4;
+    private static final String SERIES_CACHE_DIR = "graph";
+    private static final long SERIES_CACHE_MAX_BYTES = 4 * 1024 * 1024;
+
+    // Series for the last viewed activities, also stored in the cache dir, one file per activity.
+    // The files are trimmed least recently used first, see FileUtil.trim().
+    private static final Map<String, SeriesData> sSeriesCache =
+            new LinkedHashMap<String, SeriesData>(SERIES_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SeriesData> eldest) {
+                    return size() > SERIES_CACHE_SIZE;
+                }
+            };
+
+    /**
+     * The key for the activity modification and the settings used by GraphProducer
+     */
+    private static String getSeriesKey(Context context, SQLiteDatabase db, long activityId) {
+        Resources res = context.getResources();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        Cursor c = db.query(DB.ACTIVITY.TABLE, new String[]{DB.ACTIVITY.MODIFIED},
+                "_id = " + activityId, null, null, null, null);
+        String key = activityId + ":" + (c.moveToFirst() ? c.getLong(0) : -1);
+        c.close();
+
+        boolean smoothData = prefs.getBoolean(res.getString(R.string.pref_pace_graph_smoothing), true);
+        String filterList = smoothData ? prefs.getString(
+                res.getString(R.string.pref_pace_graph_smoothing_filters),
+                res.getString(R.string.mm31kz513sg5)) : "";
+        return key + ":" + filterList + ":" + prefs.getString(res.getString(R.string.pref_hrz_values), "");
+    }
+
+    private static File getSeriesDir(Context context) {
+        return new File(context.getCacheDir(), SERIES_CACHE_DIR);
+    }
+
+    private static File getSeriesFile(Context context, long activityId) {
+        return new File(getSeriesDir(context), Long.toString(activityId));
+    }
+
+    /**
+     * Remove the cached series for a deleted activity
+     */
+    public static void deleteSeries(Context context, long activityId) {
+        String prefix = activityId + ":";
+        synchronized (sSeriesCache) {
+            Iterator<String> it = sSeriesCache.keySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().startsWith(prefix)) {
+                    it.remove();
+                }
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        getSeriesFile(context, activityId).delete();
+    }
+
+    private static SeriesData readSeries(File file, String key) {
+        if (!file.exists()) {
+            return null;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(System.currentTimeMillis());
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return SeriesData.read(in, key);
+        } catch (IOException e) {
+            Log.w("GraphWrapper", "Failed to read " + file + ": " + e.getMessage());
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static void writeSeries(File file, String key, SeriesData series) {
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            series.write(out, key);
+        } catch (IOException e) {
+            Log.w("GraphWrapper", "Failed to write " + file + ": " + e.getMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+        trimSeries(file.getParentFile());
+    }
+
+    private static void trimSeries(File dir) {
+        synchronized (sSeriesCache) {
+            FileUtil.trim(dir, SERIES_CACHE_MAX_BYTES);
+        }
+    }
+
      class GraphProducer {
         final int interval;
         boolean first = true;
@@ -124,8 +310,10 @@ public class GraphWrapper implements Constants {
         double avg_pace = 0;
         double min_pace = Double.MAX_VALUE;
         double max_pace = Double.MIN_VALUE;
-        List<DataPoint> paceList = null;
-        List<DataPoint> hrList = null;
+        int count = 0;
+        double[] distanceList = null;
+        double[] paceList = null;
+        double[] hrList = null;
 
         boolean showHR = false;
         boolean showHRZhist = false;
@@ -144,11 +332,13 @@ public class GraphWrapper implements Constants {
                 graphAverageSeconds = GRAPH_AVERAGE_SECONDS;
                 this.interval = GRAPH_INTERVAL_SECONDS;
             }
-            this.paceList = new ArrayList<>();
+            final int capacity = Math.max(noPoints / this.interval, 16);
+            this.distanceList = new double[capacity];
+            this.paceList = new double[capacity];
+            this.hrList = new double[capacity];
             this.time = new double[graphAverageSeconds];
             this.distance = new double[graphAverageSeconds];
 
-            this.hrList = new ArrayList<>();
             this.hr = new int[graphAverageSeconds];
 
             Resources res = context.getResources();
@@ -247,12 +437,10 @@ public class GraphWrapper implements Constants {
             if (avg_dist > 0) {
                 double pace = avg_time / avg_dist / 1000.0;
                 if (first) {
-                    paceList.add(new DataPoint(0, pace));
-                    hrList.add(new DataPoint(0, Math.round(avg_hr)));
+                    add(0, pace, Math.round(avg_hr));
                     first = false;
                 }
-                paceList.add(new DataPoint(tot_distance, pace));
-                hrList.add(new DataPoint(tot_distance, Math.round(avg_hr)));
+                add(tot_distance, pace, Math.round(avg_hr));
                 acc_time = 0;
 
                 tot_avg_hr += avg_hr;
@@ -262,215 +450,71 @@ public class GraphWrapper implements Constants {
             }
         }
 
-        class GraphFilter {
-
-            double data[] = null;
-            final List<DataPoint> source;
-
-            GraphFilter(List<DataPoint> paceList) {
-                source = paceList;
-                data = new double[paceList.size()];
-                for (int i = 0; i < paceList.size(); i++)
-                    data[i] = paceList.get(i).getY();
-            }
-
-            void complete() {
-                for (int i = 0; i < source.size(); i++)
-                    source.set(i, new DataPoint(source.get(i).getX(), data[i]));
-            }
-
-            void init(double window[], double val) {
-                for (int j = 0; j < window.length - 1; j++)
-                    window[j] = val;
-            }
-
-            void shiftLeft(double window[], double newVal) {
-                System.arraycopy(window, 1, window, 0, window.length - 1);
-                window[window.length - 1] = newVal;
-            }
-
-            /**
-             * Perform in place moving average
-             */
-            void movingAvergage(int windowLen) {
-                double window[] = new double[windowLen];
-                init(window, data[0]);
-
-                final int mid = (window.length - 1) / 2;
-                final int last = window.length - 1;
-                for (int i = 0; i < data.length && i <= mid; i++) {
-                    window[i + mid] = data[i];
-                }
-
-                double sum = 0;
-                for (double aWindow : window) sum += aWindow;
-
-                for (int i = 0; i < data.length; i++) {
-                    double newY = sum / windowLen;
-                    data[i] = newY;
-                    sum -= window[0];
-                    shiftLeft(window, (i + mid) < data.length ? data[i + mid] : avg_pace);
-                    sum += window[last];
-                }
-            }
-
-            /**
-             * Perform in place moving average
-             */
-            void movingMedian(int windowLen) {
-                double window[] = new double[windowLen];
-                init(window, data[0]);
-
-                final int mid = (window.length - 1) / 2;
-                for (int i = 0; i < data.length && i <= mid; i++) {
-                    window[i + mid] = data[i];
-                }
-
-                double sort[] = new double[windowLen];
-                for (int i = 0; i < data.length; i++) {
-                    System.arraycopy(window, 0, sort, 0, windowLen);
-                    Arrays.sort(sort);
-                    data[i] = sort[mid];
-                    shiftLeft(window, (i + mid) < data.length ? data[i + mid] : avg_pace);
-                }
-            }
-
-            /**
-             * Perform in place SavitzkyGolay windowLen = 5
-             */
-            void SavitzkyGolay5() {
-                final int len = 5;
-                double window[] = new double[len];
-                init(window, data[0]);
-
-                final int mid = (window.length - 1) / 2;
-                for (int i = 0; i < data.length && i <= mid; i++) {
-                    window[i + mid] = data[i];
-                }
-                for (int i = 0; i < data.length; i++) {
-                    double newY = (-3 * window[0] + 12 * window[1] + 17
-                            * window[2] + 12 * window[3] - 3 * window[4]) / 35;
-                    data[i] = newY;
-                    shiftLeft(window,
-                            (i + mid) < data.length ? data[i + mid] : avg_pace);
-                }
-            }
-
-            /**
-             * Perform in place SavitzkyGolay windowLen = 7
-             */
-            void SavitzkyGolay7() {
-                final int len = 7;
-                double window[] = new double[len];
-                init(window, data[0]);
-
-                final int mid = (window.length - 1) / 2;
-                for (int i = 0; i < data.length && i <= mid; i++) {
-                    window[i + mid] = data[i];
-                }
-                for (int i = 0; i < data.length; i++) {
-                    double newY = (-2 * window[0] + 3 * window[1] + 6
-                            * window[2] + 7 * window[3] + 6 * window[4] + 3
-                            * window[5] - 2 * window[6]) / 21;
-                    data[i] = newY;
-                    shiftLeft(window,
-                            (i + mid) < data.length ? data[i + mid] : avg_pace);
-                }
-            }
-
-            void KolmogorovZurbenko(int n, int len) {
-                for (int i = 0; i < n; i++)
-                    movingAvergage(len);
+        private void add(double distance, double pace, double hr) {
+            if (count == paceList.length) {
+                int capacity = count * 2;
+                distanceList = Arrays.copyOf(distanceList, capacity);
+                paceList = Arrays.copyOf(paceList, capacity);
+                hrList = Arrays.copyOf(hrList, capacity);
             }
+            distanceList[count] = distance;
+            paceList[count] = pace;
+            hrList[count] = hr;
+            count++;
         }
 
-        public void complete(final GraphView graphView) {
-            avg_pace /= paceList.size();
-            Log.e(getClass().getName(), "graph: " + paceList.size() + " points");
-
-            boolean smoothData = PreferenceManager.getDefaultSharedPreferences(graphView.getContext())
-                    .getBoolean(graphView.getContext().getResources().getString(R.string.pref_pace_graph_smoothing), true);
-            if (paceList.size() > 0 && smoothData) {
-                GraphFilter f = new GraphFilter(paceList);
-                final String defaultFilterList = graphView.getContext().getResources().getString(R.string.mm31kz513sg5);
-                final String filterList = PreferenceManager.getDefaultSharedPreferences(
-                        graphView.getContext()).getString(
-                        graphView.getContext().getResources().getString(R.string.pref_pace_graph_smoothing_filters),
+        /**
+         * Smooth the pace, called in the background
+         */
+        public SeriesData complete(Context context) {
+            avg_pace /= count;
+
+            Resources res = context.getResources();
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+            double[] data = Arrays.copyOf(paceList, count);
+            boolean smoothData = prefs.getBoolean(res.getString(R.string.pref_pace_graph_smoothing), true);
+            if (count > 0 && smoothData) {
+                GraphFilter f = new GraphFilter(data, avg_pace);
+                final String defaultFilterList = res.getString(R.string.mm31kz513sg5);
+                final String filterList = prefs.getString(
+                        res.getString(R.string.pref_pace_graph_smoothing_filters),
                         defaultFilterList);
                 final String filters[] = filterList.split(";");
-                System.err.print("Applying filters(" + filters.length + ", >" + filterList + "<):");
                 for (String filter : filters) {
                     int args[] = getArgs(filter);
                     if (filter.startsWith("mm")) {
                         if (args.length == 1) {
                             f.movingMedian(args[0]);
-                            System.err.print(" mm(" + args[0] + ")");
                         }
                     } else if (filter.startsWith("ma")) {
                         if (args.length == 1) {
                             f.movingAvergage(args[0]);
-                            System.err.print(" ma(" + args[0] + ")");
                         }
                     } else if (filter.startsWith("kz")) {
                         if (args.length == 2) {
                             f.KolmogorovZurbenko(args[0], args[1]);
-                            System.err.print(" kz(" + args[0] + "," + args[1] + ")");
                         }
                     } else if (filter.startsWith("sg")) {
                         if (args.length == 1 && args[0] == 5) {
                             f.SavitzkyGolay5();
-                            System.err.print(" sg(5)");
                         } else if (args.length == 1 && args[0] == 7) {
                             f.SavitzkyGolay7();
-                            System.err.print(" sg(7)");
                         }
                     }
                 }
-                Log.e(getClass().getName(), "");
-                f.complete();
-            }
-            LineGraphSeries<DataPoint> graphViewData = new LineGraphSeries<>(
-                    paceList.toArray(new DataPoint[paceList.size()]));
-            graphView.addSeries(graphViewData); // data
-            graphView.getViewport().setMinX(graphView.getViewport().getMinX(true));
-            graphView.getViewport().setMaxX(graphView.getViewport().getMaxX(true));
-            graphViewData.setOnDataPointTapListener(new OnDataPointTapListener() {
-                @Override
-                public void onTap(Series series, DataPointInterface dataPoint) {
-                    String msg = graphView.getContext().getString(R.string.Distance) + ": " + formatter.formatDistance(Formatter.Format.TXT_SHORT, (long) dataPoint.getX()) + "\n" +
-                            graphView.getContext().getString(R.string.Pace) + ": " + formatter.formatPace(Formatter.Format.TXT_SHORT, dataPoint.getY());
-                    Toast.makeText(graphView.getContext(), msg, Toast.LENGTH_SHORT).show();
-                }
-            });
-            if (showHR) {
-                LineGraphSeries<DataPoint> graphViewData2 = new LineGraphSeries<>(
-                        hrList.toArray(new DataPoint[hrList.size()]));
-                graphView2.addSeries(graphViewData2); // data
-                graphView2.getViewport().setMinX(graphView2.getViewport().getMinX(true));
-                graphView2.getViewport().setMaxX(graphView2.getViewport().getMaxX(true));
-                graphViewData2.setOnDataPointTapListener(new OnDataPointTapListener() {
-                    @Override
-                    public void onTap(Series series, DataPointInterface dataPoint) {
-                        String msg = graphView.getContext().getString(R.string.Distance) + ": " + formatter.formatDistance(Formatter.Format.TXT_SHORT, (long) dataPoint.getX()) + "\n" +
-                                graphView.getContext().getString(R.string.Heart_rate) + ": " + formatter.formatHeartRate(Formatter.Format.TXT_SHORT, dataPoint.getY());
-                        Toast.makeText(graphView.getContext(), msg, Toast.LENGTH_SHORT).show();
-                    }
-                });
+            }
 
-                if (showHRZhist) {
-                    System.err.print("HR Zones:");
-                    double sum = 0;
-                    for (double aHrzHist : hrzHist) {
-                        sum += aHrzHist;
-                    }
-                    for (int i = 0; i < hrzHist.length; i++) {
-                        hrzHist[i] = hrzHist[i] / sum;
-                        System.err.print(" " + hrzHist[i]);
-                    }
-                    Log.e(getClass().getName(), "\n");
-                    hrzonesBar.pushHrzData(hrzHist);
+            if (showHRZhist) {
+                double sum = 0;
+                for (double aHrzHist : hrzHist) {
+                    sum += aHrzHist;
+                }
+                for (int i = 0; i < hrzHist.length; i++) {
+                    hrzHist[i] = hrzHist[i] / sum;
                 }
             }
+            return new SeriesData(Arrays.copyOf(distanceList, count), data,
+                    Arrays.copyOf(hrList, count), showHR, showHRZhist ? hrzHist : null);
         }
 
         private int[] getArgs(String s) {
@@ -489,12 +533,48 @@ public class GraphWrapper implements Constants {
             }
         }
 
-        public boolean HasHRInfo() {
-            return showHR;
+    }
+
+    private static DataPoint[] getDataPoints(double[] x, double[] y) {
+        DataPoint[] points = new DataPoint[x.length];
+        for (int i = 0; i < x.length; i++) {
+            points[i] = new DataPoint(x[i], y[i]);
         }
+        return points;
+    }
 
-        public boolean HasHRZHist() {
-            return showHR && showHRZhist;
+    private void addSeries(SeriesData data) {
+        LineGraphSeries<DataPoint> graphViewData = new LineGraphSeries<>(
+                getDataPoints(data.distance, data.pace));
+        graphView.addSeries(graphViewData); // data
+        graphView.getViewport().setMinX(graphView.getViewport().getMinX(true));
+        graphView.getViewport().setMaxX(graphView.getViewport().getMaxX(true));
+        graphViewData.setOnDataPointTapListener(new OnDataPointTapListener() {
+            @Override
+            public void onTap(Series series, DataPointInterface dataPoint) {
+                String msg = graphView.getContext().getString(R.string.Distance) + ": " + formatter.formatDistance(Formatter.Format.TXT_SHORT, (long) dataPoint.getX()) + "\n" +
+                        graphView.getContext().getString(R.string.Pace) + ": " + formatter.formatPace(Formatter.Format.TXT_SHORT, dataPoint.getY());
+                Toast.makeText(graphView.getContext(), msg, Toast.LENGTH_SHORT).show();
+            }
+        });
+        if (data.showHR) {
+            LineGraphSeries<DataPoint> graphViewData2 = new LineGraphSeries<>(
+                    getDataPoints(data.distance, data.hr));
+            graphView2.addSeries(graphViewData2); // data
+            graphView2.getViewport().setMinX(graphView2.getViewport().getMinX(true));
+            graphView2.getViewport().setMaxX(graphView2.getViewport().getMaxX(true));
+            graphViewData2.setOnDataPointTapListener(new OnDataPointTapListener() {
+                @Override
+                public void onTap(Series series, DataPointInterface dataPoint) {
+                    String msg = graphView.getContext().getString(R.string.Distance) + ": " + formatter.formatDistance(Formatter.Format.TXT_SHORT, (long) dataPoint.getX()) + "\n" +
+                            graphView.getContext().getString(R.string.Heart_rate) + ": " + formatter.formatHeartRate(Formatter.Format.TXT_SHORT, dataPoint.getY());
+                    Toast.makeText(graphView.getContext(), msg, Toast.LENGTH_SHORT).show();
+                }
+            });
+
+            if (data.hrzHist != null) {
+                hrzonesBar.pushHrzData(data.hrzHist);
+            }
         }
     }
 
@@ -528,12 +608,34 @@ public class GraphWrapper implements Constants {
     }
 
     @SuppressLint("StaticFieldLeak")
-    private class LoadGraph extends AsyncTask<LoadParam, Void, GraphProducer> {
+    private class LoadGraph extends AsyncTask<LoadParam, Void, SeriesData> {
         @Override
-        protected GraphProducer doInBackground(LoadParam... params) {
+        protected SeriesData doInBackground(LoadParam... params) {
+            final Context context = params[0].context;
+            String key = getSeriesKey(context, params[0].mDB, params[0].mID);
+            SeriesData data;
+            synchronized (sSeriesCache) {
+                data = sSeriesCache.get(key);
+            }
+            if (data != null) {
+                return data;
+            }
+
+            File file = getSeriesFile(context, params[0].mID);
+            data = readSeries(file, key);
+            if (data == null) {
+                data = loadSeries(context, params[0].mDB, params[0].mID);
+                writeSeries(file, key, data);
+            }
+            synchronized (sSeriesCache) {
+                sSeriesCache.put(key, data);
+            }
+            return data;
+        }
 
-            LocationEntity.LocationList<LocationEntity> ll = new LocationEntity.LocationList<>(params[0].mDB, params[0].mID);
-            GraphProducer graphData = new GraphProducer(params[0].context, ll.getCount());
+        private SeriesData loadSeries(Context context, SQLiteDatabase db, long activityId) {
+            LocationEntity.LocationList<LocationEntity> ll = new LocationEntity.LocationList<>(db, activityId);
+            GraphProducer graphData = new GraphProducer(context, ll.getCount());
             double lastDistance = 0;
             long lastTime = 0;
             int lastLap = -1;
@@ -563,15 +665,15 @@ public class GraphWrapper implements Constants {
             //    Log.e(getClass().getName(), "Finished loading " + cnt + " points");
             //}
             ll.close();
-            return graphData;
+            return graphData.complete(context);
         }
 
         @SuppressLint("ObsoleteSdkInt")
         @Override
-        protected void onPostExecute(GraphProducer graphData) {
+        protected void onPostExecute(SeriesData data) {
 
-            graphData.complete(graphView);
-            if (!graphData.HasHRInfo()) {
+            addSeries(data);
+            if (!data.showHR) {
                 graphTab.addView(graphView);
             } else {
                 graphTab.addView(graphView,
@@ -583,7 +685,7 @@ public class GraphWrapper implements Constants {
                                 LayoutParams.MATCH_PARENT, 0, 0.5f));
             }
 
-            if (graphData.HasHRZHist()) {
+            if (data.showHR && data.hrzHist != null) {
                 hrzonesBarLayout.setVisibility(View.VISIBLE);
                 hrzonesBarLayout.addView(hrzonesBar);
             } else {
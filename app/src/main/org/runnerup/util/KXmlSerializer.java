@@ -21,8 +21,6 @@
 
 package org.runnerup.util;
 
-import android.text.TextUtils;
-
 import java.io.*;
 import java.util.Locale;
 import org.xmlpull.v1.*;
@@ -55,6 +53,11 @@ public class KXmlSerializer implements XmlSerializer {
     private boolean unicode;
     private String encoding;
 
+    // As TextUtils.isEmpty(), no Android dependency
+    private static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+
     private void check(boolean close) throws IOException {
         if (!pending)
             return;
@@ -72,11 +75,11 @@ public class KXmlSerializer implements XmlSerializer {
         for (int i = nspCounts[depth - 1]; i < nspCounts[depth]; i++) {
             writer.write(' ');
             writer.write("xmlns");
-            if (!TextUtils.isEmpty(nspStack[i * 2])) {
+            if (!isEmpty(nspStack[i * 2])) {
                 writer.write(':');
                 writer.write(nspStack[i * 2]);
             }
-            else if (TextUtils.isEmpty(getNamespace()) && !TextUtils.isEmpty(nspStack[i * 2 + 1]))
+            else if (isEmpty(getNamespace()) && !isEmpty(nspStack[i * 2 + 1]))
                 throw new IllegalStateException("Cannot set default namespace for elements in no namespace");
             writer.write("=\"");
             writeEscaped(nspStack[i * 2 + 1], '"');
@@ -212,7 +215,7 @@ public class KXmlSerializer implements XmlSerializer {
             i >= 0;
             i -= 2) {
             if (nspStack[i + 1].equals(namespace)
-                && (includeDefault || !TextUtils.isEmpty(nspStack[i]))) {
+                && (includeDefault || !isEmpty(nspStack[i]))) {
                 String cand = nspStack[i];
                 for (int j = i + 2;
                     j < nspCounts[depth + 1] * 2;
@@ -232,7 +235,7 @@ public class KXmlSerializer implements XmlSerializer {
 
         String prefix;
 
-        if (TextUtils.isEmpty(namespace))
+        if (isEmpty(namespace))
             prefix = "";
         else {
             do {
@@ -400,11 +403,11 @@ public class KXmlSerializer implements XmlSerializer {
                 ? ""
                 : getPrefix(namespace, true, true);
 
-        if (namespace != null && TextUtils.isEmpty(namespace)) {
+        if (namespace != null && isEmpty(namespace)) {
             for (int i = nspCounts[depth];
                 i < nspCounts[depth + 1];
                 i++) {
-                if (TextUtils.isEmpty(nspStack[i * 2]) && !TextUtils.isEmpty(nspStack[i * 2 + 1])) {
+                if (isEmpty(nspStack[i * 2]) && !isEmpty(nspStack[i * 2 + 1])) {
                     throw new IllegalStateException("Cannot set default namespace for elements in no namespace");
                 }
             }
@@ -415,7 +418,7 @@ public class KXmlSerializer implements XmlSerializer {
         elementStack[esp] = name;
 
         writer.write('<');
-        if (!TextUtils.isEmpty(prefix)) {
+        if (!isEmpty(prefix)) {
             writer.write(prefix);
             writer.write(':');
         }
@@ -444,7 +447,7 @@ public class KXmlSerializer implements XmlSerializer {
         //        pending = false;
 
         String prefix =
-                TextUtils.isEmpty(namespace)
+                isEmpty(namespace)
                 ? ""
                 : getPrefix(namespace, false, true);
 
@@ -465,7 +468,7 @@ public class KXmlSerializer implements XmlSerializer {
                 */
 
         writer.write(' ');
-        if (!TextUtils.isEmpty(prefix)) {
+        if (!isEmpty(prefix)) {
             writer.write(prefix);
             writer.write(':');
         }
@@ -517,7 +520,7 @@ public class KXmlSerializer implements XmlSerializer {
 
             writer.write("</");
             String prefix = elementStack[depth * 3 + 1];
-            if (!TextUtils.isEmpty(prefix)) {
+            if (!isEmpty(prefix)) {
                 writer.write(prefix);
                 writer.write(':');
             }
@@ -21,12 +21,14 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.res.Resources;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Color;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
+import com.mapbox.mapboxsdk.plugins.annotation.Line;
 import com.mapbox.mapboxsdk.plugins.annotation.LineManager;
 import com.mapbox.mapboxsdk.plugins.annotation.LineOptions;
 import com.mapbox.mapboxsdk.plugins.annotation.SymbolManager;
@@ -37,6 +39,7 @@ import android.util.Log;
 import android.view.ViewTreeObserver;
 
 import com.mapbox.mapboxsdk.Mapbox;
+import com.mapbox.mapboxsdk.camera.CameraPosition;
 import com.mapbox.mapboxsdk.camera.CameraUpdate;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
 import com.mapbox.mapboxsdk.geometry.LatLng;
@@ -54,13 +57,22 @@ import org.runnerup.common.util.Constants;
 import org.runnerup.db.entities.LocationEntity;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.runnerup.util.Formatter.Format.TXT_SHORT;
 
 
 public class MapWrapper implements Constants {
 
+    // Points in the route line without zoom, enough for the resolution of the screen
+    private static final int MAX_ROUTE_POINTS = 4000;
+    private static final int ROUTE_CACHE_SIZE = 4;
+    // Tolerance for the route line at zoom level 0, the equator circumference per 512 dp
+    // (Mapbox tiles are 512 density independent pixels)
+    private static final double METERS_PER_DP_ZOOM_0 = 78271.52;
+
     private MapView mapView;
     private LineManager lineManager;
     private SymbolManager symbolManager;
@@ -70,6 +82,14 @@ public class MapWrapper implements Constants {
     private final Context context;
     private Formatter formatter = null;
 
+    private MapboxMap map = null;
+    // The loaded route, null until the line is added
+    private Route route = null;
+    // Selecting the route detail, at most one at a time
+    private UpdateDetail updateTask = null;
+    private boolean updatePending = false;
+    private final MapboxMap.OnCameraIdleListener onCameraIdle = () -> updateDetail();
+
     public MapWrapper(Context context, SQLiteDatabase mDB, long mID, Formatter formatter, MapView mapView) {
         this.context = context;
         this.mDB = mDB;
@@ -85,6 +105,8 @@ public class MapWrapper implements Constants {
     public void onCreate(Bundle savedInstanceState) {
         mapView.onCreate(savedInstanceState);
         mapView.getMapAsync(mapboxMap -> {
+                    map = mapboxMap;
+                    mapboxMap.addOnCameraIdleListener(onCameraIdle);
                     SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
                     Resources res = context.getResources();
                     String val = prefs.getString(res.getString(R.string.pref_mapbox_default_style),
@@ -126,6 +148,14 @@ public class MapWrapper implements Constants {
     }
 
     public void onDestroy() {
+        if (map != null) {
+            map.removeOnCameraIdleListener(onCameraIdle);
+        }
+        if (updateTask != null) {
+            updateTask.cancel(false);
+            updateTask = null;
+        }
+        route = null;
         if (lineManager != null) {
             lineManager.onDestroy();
         }
@@ -135,16 +165,151 @@ public class MapWrapper implements Constants {
         mapView.onDestroy();
     }
 
+    /**
+     * Update the route line for the zoom level, with details only around the visible area.
+     * The points are selected in the background, a camera change meanwhile is handled after.
+     */
+    private void updateDetail() {
+        if (route == null || route.line == null || lineManager == null) {
+            return;
+        }
+        if (updateTask != null) {
+            updatePending = true;
+            return;
+        }
+        CameraPosition position = route.map.getCameraPosition();
+        int zoom = (int) position.zoom;
+        LatLngBounds visible = route.map.getProjection().getVisibleRegion().latLngBounds;
+        if (zoom == route.zoom && route.covered != null && route.covered.contains(visible)) {
+            return;
+        }
+
+        // Also detail around the visible area, to pan without update
+        double latSpan = visible.getLatNorth() - visible.getLatSouth();
+        double lonSpan = visible.getLonEast() - visible.getLonWest();
+        LatLngBounds covered = LatLngBounds.from(
+                Math.min(90, visible.getLatNorth() + latSpan / 2),
+                Math.min(180, visible.getLonEast() + lonSpan / 2),
+                Math.max(-90, visible.getLatSouth() - latSpan / 2),
+                Math.max(-180, visible.getLonWest() - lonSpan / 2));
+        // Meters per screen pixel
+        double tolerance = METERS_PER_DP_ZOOM_0
+                * Math.cos(Math.toRadians(position.target.getLatitude())) / Math.pow(2, zoom)
+                / context.getResources().getDisplayMetrics().density;
+
+        updateTask = new UpdateDetail(route, zoom, covered, tolerance);
+        updateTask.execute();
+    }
+
+    @SuppressLint("StaticFieldLeak")
+    private class UpdateDetail extends AsyncTask<Void, Void, List<LatLng>> {
+        final Route route;
+        final int zoom;
+        final LatLngBounds covered;
+        final double tolerance;
+
+        UpdateDetail(Route route, int zoom, LatLngBounds covered, double tolerance) {
+            this.route = route;
+            this.zoom = zoom;
+            this.covered = covered;
+            this.tolerance = tolerance;
+        }
+
+        @Override
+        protected List<LatLng> doInBackground(Void... params) {
+            return route.select(tolerance, Math.max(tolerance, route.overviewTolerance),
+                    covered.getLatSouth(), covered.getLonWest(),
+                    covered.getLatNorth(), covered.getLonEast());
+        }
+
+        @Override
+        protected void onPostExecute(List<LatLng> path) {
+            updateTask = null;
+            if (route != MapWrapper.this.route || lineManager == null) {
+                return;
+            }
+            route.zoom = zoom;
+            route.covered = covered;
+            route.line.setLatLngs(path);
+            lineManager.update(route.line);
+            Log.v(getClass().getName(), "Route at zoom " + zoom + ": " + path.size() + " points");
+
+            if (updatePending) {
+                updatePending = false;
+                updateDetail();
+            }
+        }
+    }
+
     class Route {
-        Route(Context context, MapboxMap map) {
+        Route(Context context, MapboxMap map, RouteData data) {
             this.context = context;
             this.map = map;
+            this.geometry = data.geometry;
+            this.markers = data.markers;
+            this.overviewTolerance = data.overviewTolerance;
         }
 
         final List<LatLng> path = new ArrayList<>(10);
-        final ArrayList<SymbolOptions> markers = new ArrayList<>(10);
+        final ArrayList<SymbolOptions> markers;
         final Context context;
         final MapboxMap map;
+        final RouteGeometry geometry;
+        final double overviewTolerance;
+        Line line;
+        // The zoom level and area of the current path
+        int zoom = -1;
+        LatLngBounds covered = null;
+        // Reused for each selection, one at a time in the background
+        private boolean[] keep = null;
+
+        List<LatLng> select(double tolerance, double outsideTolerance,
+                            double south, double west, double north, double east) {
+            if (keep == null) {
+                keep = new boolean[geometry.size()];
+            }
+            int count = geometry.select(tolerance, outsideTolerance, south, west, north, east, keep);
+            List<LatLng> res = new ArrayList<>(count);
+            for (int i = 0; i < keep.length; i++) {
+                if (keep[i]) {
+                    res.add(new LatLng(geometry.getLatitude(i), geometry.getLongitude(i)));
+                }
+            }
+            return res;
+        }
+    }
+
+    /**
+     * The route for an activity, independent of the map
+     */
+    private static class RouteData {
+        RouteData(RouteGeometry geometry, ArrayList<SymbolOptions> markers) {
+            this.geometry = geometry;
+            this.markers = markers;
+            this.overviewTolerance = geometry.getTolerance(MAX_ROUTE_POINTS);
+        }
+
+        final RouteGeometry geometry;
+        final ArrayList<SymbolOptions> markers;
+        // Tolerance for the route without zoom
+        final double overviewTolerance;
+    }
+
+    // Routes for the last viewed activities, keyed by activity and modification
+    private static final Map<String, RouteData> sRouteCache =
+            new LinkedHashMap<String, RouteData>(ROUTE_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RouteData> eldest) {
+                    return size() > ROUTE_CACHE_SIZE;
+                }
+            };
+
+    private static String getRouteKey(SQLiteDatabase db, long activityId) {
+        Cursor c = db.query(DB.ACTIVITY.TABLE, new String[]{DB.ACTIVITY.MODIFIED},
+                "_id = " + activityId, null, null, null, null);
+        String key = activityId + ":" + (c.moveToFirst() ? c.getLong(0) : -1);
+        c.close();
+        return key;
     }
 
     private class LoadParam {
@@ -166,16 +331,33 @@ public class MapWrapper implements Constants {
         @Override
         protected Route doInBackground(LoadParam... params) {
 
-            Route route = new Route(params[0].context, params[0].map);
-            LocationEntity.LocationList<LocationEntity> ll = new LocationEntity.LocationList<>(params[0].mDB, params[0].mID);
+            String key = getRouteKey(params[0].mDB, params[0].mID);
+            RouteData data;
+            synchronized (sRouteCache) {
+                data = sRouteCache.get(key);
+            }
+            if (data == null) {
+                data = loadRoute(params[0].mDB, params[0].mID);
+                synchronized (sRouteCache) {
+                    sRouteCache.put(key, data);
+                }
+            }
+
+            Route route = new Route(params[0].context, params[0].map, data);
+            route.path.addAll(route.select(route.overviewTolerance, route.overviewTolerance,
+                    -90, -180, 90, 180));
+            return route;
+        }
+
+        private RouteData loadRoute(SQLiteDatabase db, long activityId) {
+            ArrayList<SymbolOptions> markers = new ArrayList<>(10);
+            LocationEntity.LocationList<LocationEntity> ll = new LocationEntity.LocationList<>(db, activityId);
+            TrackSimplifier simplifier = new TrackSimplifier(1024);
             int lastLap = 0;
             for (LocationEntity loc : ll) {
-                LatLng point = new LatLng(loc.getLatitude(), loc.getLongitude());
-                route.path.add(point);
-
                 Integer type;
                 //Start/end markers are not set in db, special handling
-                if (route.markers.isEmpty()) {
+                if (markers.isEmpty()) {
                     type = DB.LOCATION.TYPE_START;
                 } else {
                     type = loc.getType();
@@ -194,7 +376,10 @@ public class MapWrapper implements Constants {
                     iconImage = null;
                 }
 
+                // Marker locations are kept in the path
+                simplifier.add(loc.getLatitude(), loc.getLongitude(), iconImage != null);
                 if (iconImage != null) {
+                    LatLng point = new LatLng(loc.getLatitude(), loc.getLongitude());
                     // TBD Implement Info popup with the info instead, using the annotaion plugin (currently no examples)
                     String info;
                     if (type == DB.LOCATION.TYPE_START) {
@@ -211,24 +396,24 @@ public class MapWrapper implements Constants {
                             .withIconAnchor(Property.ICON_ANCHOR_BOTTOM)
                             .withTextField(info)
                             .withTextAnchor(Property.TEXT_ANCHOR_TOP);
-                    route.markers.add(m);
+                    markers.add(m);
                 }
             }
             ll.close();
 
             //Track is normally ended with a pause not always followed by an end
             // Ignore the pause
-            if (!route.markers.isEmpty()) {
-                SymbolOptions m = route.markers.get(route.markers.size() - 2);
-                SymbolOptions me = route.markers.get(route.markers.size() - 1);
+            if (!markers.isEmpty()) {
+                SymbolOptions m = markers.get(markers.size() - 2);
+                SymbolOptions me = markers.get(markers.size() - 1);
                 if (m.getIconImage().equals(((Integer) DB.LOCATION.TYPE_PAUSE).toString() )&&
                         me.getIconImage().equals(((Integer) DB.LOCATION.TYPE_END).toString())) {
-                    route.markers.remove(route.markers.size() - 2);
+                    markers.remove(markers.size() - 2);
                 } else if (me.getIconImage().equals(((Integer) DB.LOCATION.TYPE_PAUSE).toString() )) {
                     me.withIconImage(((Integer) DB.LOCATION.TYPE_END).toString());
                 }
             }
-            return route;
+            return new RouteData(new RouteGeometry(simplifier), markers);
         }
 
         @SuppressLint("ObsoleteSdkInt")
@@ -246,8 +431,9 @@ public class MapWrapper implements Constants {
                             .withLatLngs(route.path)
                             .withLineColor(ColorUtils.colorToRgbaString(Color.RED))
                             .withLineWidth(3.0f);
-                    lineManager.create(lineOptions);
+                    route.line = lineManager.create(lineOptions);
                     Log.v(getClass().getName(), "Added line");
+                    MapWrapper.this.route = route;
 
                     final LatLngBounds box =
                             new LatLngBounds.Builder().includes(route.path).build();
@@ -0,0 +1,309 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.util;
+
+/**
+ * Sliding window of the last values with order statistics, for triggers.
+ *
+ * The values are kept in a treap ordered as Arrays.sort (NaN last), where each node has the
+ * size and the sum of its subtree. Adding a value, evicting the oldest and reading a value
+ * or a sum by rank are O(log n).
+ * Infinite and NaN values are counted separately, so the sums do not become NaN when
+ * the values leave the window.
+ *
+ * Not thread safe.
+ */
+public class OrderStatisticWindow {
+
+    private static final int NIL = -1;
+
+    // Node i is the value at position i in the ring, the node of an evicted value is reused
+    private final double[] value;
+    private final long[] seq;
+    private final int[] priority;
+    private final int[] left;
+    private final int[] right;
+    private final int[] size;
+    private final double[] sum;
+    private final int[] posInf;
+    private final int[] negInf;
+    private final int[] nan;
+
+    private int root = NIL;
+    private long count = 0;
+    private int random = 0x2545F491;
+
+    // The result of the last prefix
+    private double accSum;
+    private int accPosInf;
+    private int accNegInf;
+    private int accNan;
+
+    public OrderStatisticWindow(int capacity) {
+        capacity = Math.max(capacity, 1);
+        value = new double[capacity];
+        seq = new long[capacity];
+        priority = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        size = new int[capacity];
+        sum = new double[capacity];
+        posInf = new int[capacity];
+        negInf = new int[capacity];
+        nan = new int[capacity];
+    }
+
+    public int getCapacity() {
+        return value.length;
+    }
+
+    public int size() {
+        return root == NIL ? 0 : size[root];
+    }
+
+    public void clear() {
+        root = NIL;
+        count = 0;
+    }
+
+    /**
+     * Add a value, the oldest value is evicted if the window is full
+     */
+    public void add(double val) {
+        final int node = (int) (count % value.length);
+        if (count >= value.length) {
+            root = remove(root, node);
+        }
+        value[node] = val;
+        seq[node] = count++;
+        // xorshift, the shape of the tree does not change the results
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+        priority[node] = random;
+        left[node] = NIL;
+        right[node] = NIL;
+        update(node);
+        root = insert(root, node);
+    }
+
+    /**
+     * @return the value with the rank, 0 is the smallest
+     */
+    public double get(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("rank: " + rank + ", size: " + size());
+        }
+        int t = root;
+        while (true) {
+            int ls = sizeOf(left[t]);
+            if (rank < ls) {
+                t = left[t];
+            } else if (rank == ls) {
+                return value[t];
+            } else {
+                rank -= ls + 1;
+                t = right[t];
+            }
+        }
+    }
+
+    public double getMedian() {
+        final int n = size();
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return n % 2 == 1 ? get(n / 2) : (get(n / 2 - 1) + get(n / 2)) / 2;
+    }
+
+    /**
+     * @return the mean of the values with rank from fromRank (inclusive) to toRank (exclusive),
+     *         NaN if empty
+     */
+    public double getMean(int fromRank, int toRank) {
+        prefix(toRank);
+        double s = accSum;
+        int p = accPosInf;
+        int n = accNegInf;
+        int q = accNan;
+        prefix(fromRank);
+        s -= accSum;
+        p -= accPosInf;
+        n -= accNegInf;
+        q -= accNan;
+
+        if (q > 0 || (p > 0 && n > 0) || toRank <= fromRank) {
+            return Double.NaN;
+        } else if (p > 0) {
+            return Double.POSITIVE_INFINITY;
+        } else if (n > 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return s / (toRank - fromRank);
+    }
+
+    /**
+     * @return the mean without the lowest and the highest percent of the values
+     */
+    public double getTrimmedMean(int percent) {
+        final int n = size();
+        final int skip = (percent * n) / 100;
+        return getMean(skip, n - skip);
+    }
+
+    /**
+     * Sum of the values with rank below r, in the acc fields
+     */
+    private void prefix(int r) {
+        accSum = 0;
+        accPosInf = 0;
+        accNegInf = 0;
+        accNan = 0;
+        int t = root;
+        while (t != NIL && r > 0) {
+            final int l = left[t];
+            final int ls = sizeOf(l);
+            if (r <= ls) {
+                t = l;
+                continue;
+            }
+            if (l != NIL) {
+                accSum += sum[l];
+                accPosInf += posInf[l];
+                accNegInf += negInf[l];
+                accNan += nan[l];
+            }
+            accumulate(value[t]);
+            r -= ls + 1;
+            t = right[t];
+        }
+    }
+
+    private void accumulate(double v) {
+        if (Double.isNaN(v)) {
+            accNan++;
+        } else if (v == Double.POSITIVE_INFINITY) {
+            accPosInf++;
+        } else if (v == Double.NEGATIVE_INFINITY) {
+            accNegInf++;
+        } else {
+            accSum += v;
+        }
+    }
+
+    private boolean less(int a, int b) {
+        final int c = Double.compare(value[a], value[b]);
+        return c < 0 || (c == 0 && seq[a] < seq[b]);
+    }
+
+    private int insert(int t, int node) {
+        if (t == NIL) {
+            return node;
+        }
+        if (less(node, t)) {
+            left[t] = insert(left[t], node);
+            if (priority[left[t]] > priority[t]) {
+                t = rotateRight(t);
+            }
+        } else {
+            right[t] = insert(right[t], node);
+            if (priority[right[t]] > priority[t]) {
+                t = rotateLeft(t);
+            }
+        }
+        update(t);
+        return t;
+    }
+
+    private int remove(int t, int node) {
+        if (t == node) {
+            if (left[t] == NIL) {
+                return right[t];
+            }
+            if (right[t] == NIL) {
+                return left[t];
+            }
+            if (priority[left[t]] > priority[right[t]]) {
+                t = rotateRight(t);
+                right[t] = remove(right[t], node);
+            } else {
+                t = rotateLeft(t);
+                left[t] = remove(left[t], node);
+            }
+        } else if (less(node, t)) {
+            left[t] = remove(left[t], node);
+        } else {
+            right[t] = remove(right[t], node);
+        }
+        update(t);
+        return t;
+    }
+
+    private int rotateRight(int t) {
+        final int l = left[t];
+        left[t] = right[l];
+        right[l] = t;
+        update(t);
+        update(l);
+        return l;
+    }
+
+    private int rotateLeft(int t) {
+        final int r = right[t];
+        right[t] = left[r];
+        left[r] = t;
+        update(t);
+        update(r);
+        return r;
+    }
+
+    private int sizeOf(int t) {
+        return t == NIL ? 0 : size[t];
+    }
+
+    /**
+     * Recompute the subtree values from the children, so the sums do not drift
+     */
+    private void update(int t) {
+        accSum = 0;
+        accPosInf = 0;
+        accNegInf = 0;
+        accNan = 0;
+        accumulate(value[t]);
+        int s = 1;
+        final int l = left[t];
+        final int r = right[t];
+        if (l != NIL) {
+            s += size[l];
+            accSum += sum[l];
+            accPosInf += posInf[l];
+            accNegInf += negInf[l];
+            accNan += nan[l];
+        }
+        if (r != NIL) {
+            s += size[r];
+            accSum += sum[r];
+            accPosInf += posInf[r];
+            accNegInf += negInf[r];
+            accNan += nan[r];
+        }
+        size[t] = s;
+        sum[t] = accSum;
+        posInf[t] = accPosInf;
+        negInf[t] = accNegInf;
+        nan[t] = accNan;
+    }
+}
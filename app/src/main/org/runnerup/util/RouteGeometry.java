@@ -0,0 +1,93 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.util;
+
+import java.util.Arrays;
+
+/**
+ * Multi-resolution route geometry for an activity, see TrackSimplifier.
+ *
+ * The level of detail is selected by a tolerance in meters, normally from the map zoom, with
+ * full detail only in the visible area.
+ */
+public class RouteGeometry {
+
+    private final double[] latitude;
+    private final double[] longitude;
+    private final float[] importance;
+
+    public RouteGeometry(TrackSimplifier simplifier) {
+        int size = simplifier.size();
+        latitude = new double[size];
+        longitude = new double[size];
+        importance = new float[size];
+        for (int i = 0; i < size; i++) {
+            latitude[i] = simplifier.getLatitude(i);
+            longitude[i] = simplifier.getLongitude(i);
+            importance[i] = (float) simplifier.getImportance(i);
+        }
+    }
+
+    public int size() {
+        return latitude.length;
+    }
+
+    public double getLatitude(int i) {
+        return latitude[i];
+    }
+
+    public double getLongitude(int i) {
+        return longitude[i];
+    }
+
+    /**
+     * @return the tolerance for at most maxPoints points
+     */
+    public double getTolerance(int maxPoints) {
+        if (maxPoints >= importance.length) {
+            return 0;
+        }
+        float[] sorted = Arrays.copyOf(importance, importance.length);
+        Arrays.sort(sorted);
+        return sorted[importance.length - maxPoints - 1];
+    }
+
+    /**
+     * Select points with the tolerance in the bounds and with a larger tolerance outside.
+     * Segments crossing the bounds are detailed.
+     * @param keep set for the points to keep, at least size() long
+     * @return the number of points kept
+     */
+    public int select(double tolerance, double outsideTolerance,
+                      double south, double west, double north, double east, boolean[] keep) {
+        int count = 0;
+        boolean prevInside = false;
+        for (int i = 0; i < latitude.length; i++) {
+            boolean inside = latitude[i] >= south && latitude[i] <= north
+                    && longitude[i] >= west && longitude[i] <= east;
+            boolean nextInside = i + 1 < latitude.length
+                    && latitude[i + 1] >= south && latitude[i + 1] <= north
+                    && longitude[i + 1] >= west && longitude[i + 1] <= east;
+            double t = inside || prevInside || nextInside ? tolerance : outsideTolerance;
+            keep[i] = importance[i] > t;
+            if (keep[i]) {
+                count++;
+            }
+            prevInside = inside;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.util;
+
+import java.util.Arrays;
+
+/**
+ * Douglas-Peucker simplification of a track, shared by the map, the static map and trim.
+ *
+ * Points are added in track order. Each point gets an importance, the distance in meters
+ * from the simplified line at which the point is needed, so the track can be simplified to a
+ * tolerance or to a number of points without running the algorithm again.
+ * The track is processed in windows of at most WINDOW points as points are added, which
+ * bounds the work per window. Window ends and fixed points (pause, lap) are always kept.
+ *
+ * Not thread safe.
+ */
+public class TrackSimplifier {
+
+    public static final int WINDOW = 4096;
+
+    private static final double METERS_PER_DEGREE = 111319.49;
+
+    private int size = 0;
+    private double[] latitude;
+    private double[] longitude;
+    // Local projection in meters
+    private double[] x;
+    private double[] y;
+    private double[] importance;
+    private double lonScale = Double.NaN;
+    // First point in the window not processed
+    private int windowStart = 0;
+
+    private final int[] stackFrom = new int[WINDOW];
+    private final int[] stackTo = new int[WINDOW];
+    private final double[] stackImportance = new double[WINDOW];
+
+    public TrackSimplifier(int capacity) {
+        capacity = Math.max(capacity, 16);
+        latitude = new double[capacity];
+        longitude = new double[capacity];
+        x = new double[capacity];
+        y = new double[capacity];
+        importance = new double[capacity];
+    }
+
+    public void add(double lat, double lon) {
+        add(lat, lon, false);
+    }
+
+    /**
+     * @param fixed the point is always kept
+     */
+    public void add(double lat, double lon, boolean fixed) {
+        if (size == latitude.length) {
+            grow();
+        }
+        if (Double.isNaN(lonScale)) {
+            lonScale = Math.cos(Math.toRadians(lat)) * METERS_PER_DEGREE;
+        }
+        latitude[size] = lat;
+        longitude[size] = lon;
+        x[size] = lon * lonScale;
+        y[size] = lat * METERS_PER_DEGREE;
+        importance[size] = size == 0 || fixed ? Double.POSITIVE_INFINITY : 0;
+        size++;
+
+        if (fixed || size - windowStart >= WINDOW) {
+            process(size - 1);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getLatitude(int i) {
+        return latitude[i];
+    }
+
+    public double getLongitude(int i) {
+        return longitude[i];
+    }
+
+    /**
+     * @return the max distance in meters from the track if the point is removed
+     */
+    public double getImportance(int i) {
+        finish();
+        return importance[i];
+    }
+
+    /**
+     * Select the points needed for the tolerance
+     * @param keep set for the points to keep, at least size() long
+     * @return the number of points kept
+     */
+    public int select(double tolerance, boolean[] keep) {
+        finish();
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            keep[i] = importance[i] > tolerance;
+            if (keep[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Select the most important points.
+     * All fixed points are kept, also if there are more than maxPoints of them.
+     * @param keep set for the points to keep, at least size() long
+     * @return the number of points kept
+     */
+    public int select(int maxPoints, boolean[] keep) {
+        finish();
+        if (maxPoints >= size) {
+            Arrays.fill(keep, 0, size, true);
+            return size;
+        }
+
+        double[] sorted = Arrays.copyOf(importance, size);
+        Arrays.sort(sorted);
+        double threshold = sorted[size - Math.max(maxPoints, 1)];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            keep[i] = importance[i] > threshold || importance[i] == Double.POSITIVE_INFINITY;
+            if (keep[i]) {
+                count++;
+            }
+        }
+        // Points at the threshold, in track order
+        for (int i = 0; i < size && count < maxPoints; i++) {
+            if (importance[i] == threshold) {
+                keep[i] = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void finish() {
+        if (size > 0 && windowStart < size - 1) {
+            process(size - 1);
+        }
+        if (size > 0) {
+            importance[size - 1] = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Douglas-Peucker for the window ending at last, the window ends are kept.
+     * Importance is limited by the importance of the enclosing segment, so removing points
+     * in order of increasing importance gives the same result as a higher tolerance.
+     */
+    private void process(int last) {
+        int first = windowStart;
+        windowStart = last;
+        importance[last] = Double.POSITIVE_INFINITY;
+        if (last - first < 2) {
+            return;
+        }
+
+        int top = 0;
+        stackFrom[top] = first;
+        stackTo[top] = last;
+        stackImportance[top] = Double.POSITIVE_INFINITY;
+        top++;
+        while (top > 0) {
+            top--;
+            int from = stackFrom[top];
+            int to = stackTo[top];
+            double parent = stackImportance[top];
+
+            int index = -1;
+            double max = -1;
+            for (int i = from + 1; i < to; i++) {
+                double d = distance(i, from, to);
+                if (d > max) {
+                    max = d;
+                    index = i;
+                }
+            }
+            double imp = Math.min(max, parent);
+            importance[index] = imp;
+            if (index - from > 1) {
+                stackFrom[top] = from;
+                stackTo[top] = index;
+                stackImportance[top] = imp;
+                top++;
+            }
+            if (to - index > 1) {
+                stackFrom[top] = index;
+                stackTo[top] = to;
+                stackImportance[top] = imp;
+                top++;
+            }
+        }
+    }
+
+    /**
+     * Distance from point i to the segment from-to
+     */
+    private double distance(int i, int from, int to) {
+        double dx = x[to] - x[from];
+        double dy = y[to] - y[from];
+        double px = x[i] - x[from];
+        double py = y[i] - y[from];
+        double len2 = dx * dx + dy * dy;
+        if (len2 > 0) {
+            double t = (px * dx + py * dy) / len2;
+            if (t > 1) {
+                px -= dx;
+                py -= dy;
+            } else if (t > 0) {
+                px -= t * dx;
+                py -= t * dy;
+            }
+        }
+        return Math.sqrt(px * px + py * py);
+    }
+
+    private void grow() {
+        int capacity = latitude.length * 2;
+        latitude = Arrays.copyOf(latitude, capacity);
+        longitude = Arrays.copyOf(longitude, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        importance = Arrays.copyOf(importance, capacity);
+    }
+}
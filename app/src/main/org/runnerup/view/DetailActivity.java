@@ -853,6 +853,7 @@ public class DetailActivity extends AppCompatActivity implements Constants {
                     new DialogInterface.OnClickListener() {
                         public void onClick(DialogInterface dialog, int which) {
                             DBHelper.deleteActivity(mDB, mID);
+                            GraphWrapper.deleteSeries(DetailActivity.this, mID);
                             dialog.dismiss();
                             DetailActivity.this.setResult(RESULT_OK);
                             DetailActivity.this.finish();
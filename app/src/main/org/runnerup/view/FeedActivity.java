@@ -32,6 +32,7 @@ import android.view.LayoutInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
@@ -103,6 +104,20 @@ public class FeedActivity extends AppCompatActivity implements Constants {
         ListView feedList = (ListView) findViewById(R.id.feed_list);
         feedList.setAdapter(feedAdapter);
         feedList.setDividerHeight(2);
+        feedList.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                                 int totalItemCount) {
+                // Next page from the database when the end is visible
+                if (totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount) {
+                    feed.loadMore();
+                }
+            }
+        });
 
         feedProgress = (LinearLayout) findViewById(R.id.feed_progress);
         feedProgressLabel = (TextView) findViewById(R.id.feed_progress_label);
@@ -226,7 +241,8 @@ public class FeedActivity extends AppCompatActivity implements Constants {
 
                 // avatar
                 if (tmp.containsKey(DB.FEED.USER_IMAGE_URL)) {
-                    FeedImageLoader.LoadImageAsync(tmp.getAsString(DB.FEED.USER_IMAGE_URL), new FeedImageLoader.Callback() {
+                    FeedImageLoader.LoadImageAsync(context, tmp.getAsString(DB.FEED.USER_IMAGE_URL),
+                            getResources().getDimensionPixelSize(R.dimen.feed_avatar_size), new FeedImageLoader.Callback() {
                         @Override
                         public void run(String url, Bitmap b) {
                             ivAvatar.setImageBitmap(b);
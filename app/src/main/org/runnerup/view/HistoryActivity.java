@@ -43,7 +43,6 @@ import org.runnerup.R;
 import org.runnerup.common.util.Constants;
 import org.runnerup.db.ActivityCleaner;
 import org.runnerup.db.DBHelper;
-import org.runnerup.db.entities.ActivityEntity;
 import org.runnerup.util.Formatter;
 import org.runnerup.util.SimpleCursorLoader;
 import org.runnerup.workout.Sport;
@@ -57,8 +56,22 @@ public class HistoryActivity extends AppCompatActivity implements Constants, OnI
     private SQLiteDatabase mDB = null;
     private Formatter formatter = null;
 
+    // The list is bound from the summary table, see DBHelper
+    private static final String[] FROM = new String[]{
+            "_id", DB.SUMMARY.START_TIME, DB.SUMMARY.DISTANCE, DB.SUMMARY.TIME,
+            DB.SUMMARY.SPORT, DB.SUMMARY.AVG_HR, DB.SUMMARY.PACE, DB.SUMMARY.MONTH
+    };
+    private static final int COLUMN_START_TIME = 1;
+    private static final int COLUMN_DISTANCE = 2;
+    private static final int COLUMN_TIME = 3;
+    private static final int COLUMN_SPORT = 4;
+    private static final int COLUMN_AVG_HR = 5;
+    private static final int COLUMN_PACE = 6;
+    private static final int COLUMN_MONTH = 7;
+
     CursorAdapter cursorAdapter = null;
     View fab = null;
+    TextView totalsText = null;
 
     /**
      * Called when the activity is first created.
@@ -85,6 +98,9 @@ public class HistoryActivity extends AppCompatActivity implements Constants, OnI
         formatter = new Formatter(this);
         listView.setDividerHeight(2);
         listView.setOnItemClickListener(this);
+        View totals = getLayoutInflater().inflate(R.layout.history_totals, listView, false);
+        totalsText = (TextView) totals.findViewById(R.id.history_totals);
+        listView.addHeaderView(totals, null, false);
         cursorAdapter = new HistoryListAdapter(this, null);
         listView.setAdapter(cursorAdapter);
 
@@ -109,18 +125,39 @@ public class HistoryActivity extends AppCompatActivity implements Constants, OnI
     @NonNull
     @Override
     public Loader<Cursor> onCreateLoader(int arg0, Bundle arg1) {
-        String[] from = new String[]{
-                "_id", DB.ACTIVITY.START_TIME,
-                DB.ACTIVITY.DISTANCE, DB.ACTIVITY.TIME, DB.ACTIVITY.SPORT
-        };
-
-        return new SimpleCursorLoader(this, mDB, DB.ACTIVITY.TABLE, from, "deleted == 0", null,
-                DB.ACTIVITY.START_TIME + " desc");
+        return new SimpleCursorLoader(this, mDB, DB.SUMMARY.TABLE, FROM, null, null,
+                DB.SUMMARY.START_TIME + " desc");
     }
 
     @Override
     public void onLoadFinished(@NonNull Loader<Cursor> arg0, Cursor arg1) {
         cursorAdapter.swapCursor(arg1);
+        updateTotals();
+    }
+
+    /**
+     * Show the totals for the current year
+     */
+    private void updateTotals() {
+        int year = Calendar.getInstance().get(Calendar.YEAR);
+        String[] from = {
+                DB.ROLLUP.COUNT, DB.ROLLUP.DISTANCE, DB.ROLLUP.TIME
+        };
+        Cursor c = mDB.query(DB.ROLLUP.TABLE, from, DB.ROLLUP.PERIOD + " = "
+                + DB.ROLLUP.PERIOD_YEAR + " and " + DB.ROLLUP.BUCKET + " = " + year,
+                null, null, null, null);
+        int count = 0;
+        long distance = 0;
+        long time = 0;
+        if (c.moveToFirst()) {
+            count = c.getInt(0);
+            distance = Math.round(c.getDouble(1));
+            time = c.getLong(2);
+        }
+        c.close();
+        totalsText.setText(getString(R.string.Year_1d_totals_2d_activities_3s_4s, year, count,
+                formatter.formatDistance(Formatter.Format.TXT_SHORT, distance),
+                formatter.formatElapsedTime(Formatter.Format.TXT_LONG, time)));
     }
 
     @Override
@@ -150,53 +187,44 @@ public class HistoryActivity extends AppCompatActivity implements Constants, OnI
             inflater = LayoutInflater.from(context);
         }
 
-        private boolean sameMonthAsPrevious(int curYear, int curMonth, Cursor cursor) {
+        private boolean sameMonthAsPrevious(int month, Cursor cursor) {
             int curPosition = cursor.getPosition();
             if (curPosition == 0)
                 return false;
 
-            cursor.moveToPrevious();
-            long prevTimeInSecs = new ActivityEntity(cursor).getStartTime();
-
-            Calendar prevCal = Calendar.getInstance();
-            prevCal.setTime(new Date(prevTimeInSecs * 1000));
-            return prevCal.get(Calendar.YEAR) == curYear
-                    && prevCal.get(Calendar.MONTH) == curMonth;
+            cursor.moveToPosition(curPosition - 1);
+            int prevMonth = cursor.getInt(COLUMN_MONTH);
+            cursor.moveToPosition(curPosition);
+            return prevMonth == month;
         }
 
         @Override
         public void bindView(View view, Context context, Cursor cursor) {
-            ActivityEntity ae = new ActivityEntity(cursor);
+            long startTime = cursor.getLong(COLUMN_START_TIME);
 
             // month + day
-            Date curDate = new Date(ae.getStartTime() * 1000);
-            Calendar cal = Calendar.getInstance();
-            cal.setTime(curDate);
-
             TextView sectionTitle = (TextView)view.findViewById(R.id.section_title);
-            int year = cal.get(Calendar.YEAR);
-            int month = cal.get(Calendar.MONTH);
-            if (sameMonthAsPrevious(year, month, cursor)) {
+            if (sameMonthAsPrevious(cursor.getInt(COLUMN_MONTH), cursor)) {
                 sectionTitle.setVisibility(View.GONE);
             } else {
                 sectionTitle.setVisibility(View.VISIBLE);
-                sectionTitle.setText(formatter.formatMonth(curDate));
+                sectionTitle.setText(formatter.formatMonth(new Date(startTime * 1000)));
             }
 
             TextView dateText = (TextView)view.findViewById(R.id.history_list_date);
-            dateText.setText(formatter.formatDateTime(ae.getStartTime()));
+            dateText.setText(formatter.formatDateTime(startTime));
 
             // distance
-            Double d = ae.getDistance();
             TextView distanceText = (TextView)view.findViewById(R.id.history_list_distance);
-            if (d != null) {
-                distanceText.setText(formatter.formatDistance(Formatter.Format.TXT_SHORT, d.longValue()));
+            if (!cursor.isNull(COLUMN_DISTANCE)) {
+                distanceText.setText(formatter.formatDistance(Formatter.Format.TXT_SHORT,
+                        (long) cursor.getDouble(COLUMN_DISTANCE)));
             } else {
                 distanceText.setText("");
             }
 
             // sport + additional info
-            Integer s = ae.getSport();
+            int s = cursor.getInt(COLUMN_SPORT);
             ImageView emblem = (ImageView)view.findViewById(R.id.history_list_emblem);
             TextView additionalInfo = (TextView)view.findViewById(R.id.history_list_additional);
 
@@ -205,26 +233,28 @@ public class HistoryActivity extends AppCompatActivity implements Constants, OnI
             emblem.setImageDrawable(sportDrawable);
             distanceText.setTextColor(sportColor);
             additionalInfo.setTextColor(sportColor);
-            Integer hr = ae.getAvgHr();
-            if (hr != null) {
-                additionalInfo.setText(formatter.formatHeartRate(Formatter.Format.TXT_SHORT, hr));
+            if (!cursor.isNull(COLUMN_AVG_HR)) {
+                additionalInfo.setText(formatter.formatHeartRate(Formatter.Format.TXT_SHORT,
+                        cursor.getInt(COLUMN_AVG_HR)));
             } else {
                 additionalInfo.setText(null);
             }
 
             // duration
-            Long dur = ae.getTime();
             TextView durationText = (TextView)view.findViewById(R.id.history_list_duration);
-            if (dur != null) {
-                durationText.setText(formatter.formatElapsedTime(Formatter.Format.TXT_SHORT, dur));
+            if (!cursor.isNull(COLUMN_TIME)) {
+                durationText.setText(formatter.formatElapsedTime(Formatter.Format.TXT_SHORT,
+                        cursor.getLong(COLUMN_TIME)));
             } else {
                 durationText.setText("");
             }
 
             // pace
             TextView paceText = (TextView)view.findViewById(R.id.history_list_pace);
-            if (d != null && dur != null && dur != 0) {
-                paceText.setText(formatter.formatPaceSpeed(Formatter.Format.TXT_LONG, d / dur));
+            if (!cursor.isNull(COLUMN_PACE) && !cursor.isNull(COLUMN_TIME)
+                    && cursor.getLong(COLUMN_TIME) != 0) {
+                paceText.setText(formatter.formatPace(Formatter.Format.TXT_LONG,
+                        cursor.getDouble(COLUMN_PACE)));
             } else {
                 paceText.setText("");
             }
@@ -29,7 +29,6 @@ import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.location.Location;
 import android.os.Bundle;
-import android.os.Handler;
 import android.os.IBinder;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
@@ -46,15 +45,23 @@ import android.widget.TableLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.jjoe64.graphview.DefaultLabelFormatter;
+import com.jjoe64.graphview.GraphView;
+import com.jjoe64.graphview.series.DataPoint;
+import com.jjoe64.graphview.series.LineGraphSeries;
+
 import org.runnerup.R;
 import org.runnerup.BuildConfig;
 import org.runnerup.common.tracker.TrackerState;
 import org.runnerup.common.util.Constants;
+import org.runnerup.tracker.LiveSamples;
 import org.runnerup.tracker.Tracker;
+import org.runnerup.tracker.WorkoutTicker;
 import org.runnerup.tracker.component.TrackerHRM;
 import org.runnerup.util.Formatter;
 import org.runnerup.util.TickListener;
 import org.runnerup.widget.WidgetUtil;
+import org.runnerup.workout.Dimension;
 import org.runnerup.workout.Intensity;
 import org.runnerup.workout.Scope;
 import org.runnerup.workout.Step;
@@ -64,14 +71,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Timer;
-import java.util.TimerTask;
 
 
 public class RunActivity extends AppCompatActivity implements TickListener {
     private Workout workout = null;
     private Tracker mTracker = null;
-    private final Handler handler = new Handler();
 
     private Button pauseButton = null;
     private Button newLapButton = null;
@@ -86,7 +90,10 @@ public class RunActivity extends AppCompatActivity implements TickListener {
     private TextView intervalPace = null;
     private TextView currentPace = null;
     private TextView countdownView = null;
+    private TextView activityRemaining = null;
+    private TextView intervalNext = null;
     private ListView workoutList = null;
+    private GraphView liveGraph = null;
     private View tableRowInterval = null;
     private org.runnerup.workout.Step currentStep = null;
     private Formatter formatter = null;
@@ -99,6 +106,12 @@ public class RunActivity extends AppCompatActivity implements TickListener {
     private long[] mTapArray= {0, 0, 0, 0};
     private int mTapIndex = 0;
 
+    // The pace for the last minutes, from the tracker samples
+    private static final long LIVE_GRAPH_MS = 10 * 60 * 1000;
+    private final LineGraphSeries<DataPoint> livePace = new LineGraphSeries<>();
+    private final LiveSamples.Series liveSamples = new LiveSamples.Series();
+    private long liveSampleCount = -1;
+
     class WorkoutRow {
         org.runnerup.workout.Step step = null;
         ContentValues lap = null;
@@ -137,7 +150,21 @@ public class RunActivity extends AppCompatActivity implements TickListener {
         currentPace = (TextView) findViewById(R.id.current_pace);
         currentHr = (TextView) findViewById(R.id.current_hr);
         countdownView = (TextView) findViewById(R.id.countdown_text_view);
+        activityRemaining = (TextView) findViewById(R.id.activity_remaining);
+        intervalNext = (TextView) findViewById(R.id.interval_next);
         workoutList = (ListView) findViewById(R.id.workout_list);
+        liveGraph = (GraphView) findViewById(R.id.live_graph);
+        liveGraph.addSeries(livePace);
+        liveGraph.getGridLabelRenderer().setLabelFormatter(new DefaultLabelFormatter() {
+            @Override
+            public String formatLabel(double value, boolean isValueX) {
+                if (isValueX) {
+                    return formatter.formatElapsedTime(Formatter.Format.TXT_SHORT, Math.round(value));
+                } else {
+                    return formatter.formatPaceSpeed(Formatter.Format.TXT_SHORT, value);
+                }
+            }
+        });
         WorkoutAdapter adapter = new WorkoutAdapter(workoutRows);
         workoutList.setAdapter(adapter);
 
@@ -183,11 +210,19 @@ public class RunActivity extends AppCompatActivity implements TickListener {
     @Override
     public void onPause() {
         super.onPause();
+        visible = false;
+        if (ticker != null) {
+            ticker.setVisible(false);
+        }
     }
 
     @Override
     public void onResume() {
         super.onResume();
+        visible = true;
+        if (ticker != null) {
+            ticker.setVisible(true);
+        }
     }
 
     @Override
@@ -239,27 +274,20 @@ public class RunActivity extends AppCompatActivity implements TickListener {
         }
     }
 
-    private Timer timer = null;
+    private WorkoutTicker ticker = null;
+    private boolean visible = false;
 
     private void startTimer() {
-        timer = new Timer();
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                RunActivity.this.handler.post(new Runnable() {
-                    public void run() {
-                        RunActivity.this.onTick();
-                    }
-                });
-            }
-        }, 0, 500);
+        if (ticker == null) {
+            ticker = new WorkoutTicker(mTracker, this);
+        }
+        ticker.setVisible(visible);
+        ticker.start();
     }
 
     private void stopTimer() {
-        if (timer != null) {
-            timer.cancel();
-            timer.purge();
-            timer = null;
+        if (ticker != null) {
+            ticker.stop();
         }
     }
 
@@ -280,9 +308,9 @@ public class RunActivity extends AppCompatActivity implements TickListener {
     }
 
     private void doStop() {
-        if (timer != null) {
+        if (ticker != null && ticker.isStarted()) {
             workout.onStop(workout);
-            stopTimer(); // set timer=null;
+            stopTimer();
             mTracker.stopForeground(true); // remove notification
             Intent intent = new Intent(RunActivity.this, DetailActivity.class);
             /*
@@ -351,6 +379,9 @@ public class RunActivity extends AppCompatActivity implements TickListener {
                 workout.onPause(workout);
             }
             setPauseButtonEnabled(!workout.isPaused());
+            if (ticker != null) {
+                ticker.tickNow();
+            }
         }
     };
 
@@ -377,16 +408,17 @@ public class RunActivity extends AppCompatActivity implements TickListener {
             doStop();
         } else {
             setPauseButtonEnabled(!workout.isPaused());
-            double ad = workout.getDistance(Scope.ACTIVITY);
-            double at = workout.getTime(Scope.ACTIVITY);
-            double ap = workout.getSpeed(Scope.ACTIVITY);
+            double ad = workout.get(Scope.ACTIVITY, Dimension.DISTANCE);
+            double at = workout.get(Scope.ACTIVITY, Dimension.TIME);
+            double ap = workout.get(Scope.ACTIVITY, Dimension.SPEED);
             activityTime.setText(formatter.formatElapsedTime(Formatter.Format.TXT_SHORT, Math.round(at)));
             activityDistance.setText(formatter.formatDistance(Formatter.Format.TXT_SHORT, Math.round(ad)));
             activityPace.setText(formatter.formatPaceSpeed(Formatter.Format.TXT_SHORT, ap));
+            updateRemaining();
 
-            double ld = workout.getDistance(Scope.LAP);
-            double lt = workout.getTime(Scope.LAP);
-            double lp = workout.getSpeed(Scope.LAP);
+            double ld = workout.get(Scope.LAP, Dimension.DISTANCE);
+            double lt = workout.get(Scope.LAP, Dimension.TIME);
+            double lp = workout.get(Scope.LAP, Dimension.SPEED);
             lapTime.setText(formatter.formatElapsedTime(Formatter.Format.TXT_SHORT, Math.round(lt)));
             lapDistance.setText(formatter.formatDistance(Formatter.Format.TXT_LONG, Math.round(ld)));
             lapPace.setText(formatter.formatPaceSpeed(Formatter.Format.TXT_SHORT, lp));
@@ -394,9 +426,9 @@ public class RunActivity extends AppCompatActivity implements TickListener {
             if (tableRowInterval != null && this.currentStep != null &&
                     workout.getWorkoutType() != Constants.WORKOUT_TYPE.BASIC &&
                     this.currentStep.getIntensity() == Intensity.ACTIVE) {
-                double id = workout.getDistance(Scope.STEP);
-                double it = workout.getTime(Scope.STEP);
-                double ip = workout.getSpeed(Scope.STEP);
+                double id = workout.get(Scope.STEP, Dimension.DISTANCE);
+                double it = workout.get(Scope.STEP, Dimension.TIME);
+                double ip = workout.get(Scope.STEP, Dimension.SPEED);
 
                 tableRowInterval.setVisibility(View.VISIBLE);
                 intervalTime.setText(formatter.formatElapsedTime(Formatter.Format.TXT_SHORT, Math.round(it)));
@@ -407,14 +439,14 @@ public class RunActivity extends AppCompatActivity implements TickListener {
                 tableRowInterval.setVisibility(View.GONE);
             }
 
-            double cp = workout.getSpeed(Scope.CURRENT);
+            double cp = workout.get(Scope.CURRENT, Dimension.SPEED);
             currentPace.setText(formatter.formatPaceSpeed(Formatter.Format.TXT_SHORT, cp));
 
             if (mTracker.isComponentConnected(TrackerHRM.NAME)) {
-                double ahr = workout.getHeartRate(Scope.ACTIVITY);
-                double ihr = workout.getHeartRate(Scope.STEP);
-                double lhr = workout.getHeartRate(Scope.LAP);
-                double chr = workout.getHeartRate(Scope.CURRENT);
+                double ahr = workout.get(Scope.ACTIVITY, Dimension.HR);
+                double ihr = workout.get(Scope.STEP, Dimension.HR);
+                double lhr = workout.get(Scope.LAP, Dimension.HR);
+                double chr = workout.get(Scope.CURRENT, Dimension.HR);
                 lapHr.setText(formatter.formatHeartRate(Formatter.Format.TXT_SHORT, lhr));
                 intervalHr.setText(formatter.formatHeartRate(Formatter.Format.TXT_SHORT, ihr));
                 currentHr.setText(formatter.formatHeartRate(Formatter.Format.TXT_SHORT, chr));
@@ -437,8 +469,55 @@ public class RunActivity extends AppCompatActivity implements TickListener {
                 ((WorkoutAdapter) workoutList.getAdapter()).notifyDataSetChanged();
                 currentStep = curr;
                 workoutList.setSelection(getPosition(workoutRows, currentStep));
+                Step next = workout.getNextStep();
+                intervalNext.setText(next == null ? "" :
+                        getString(R.string.Next_step_1s, getStepText(next)));
             }
+            updateLiveGraph();
+        }
+    }
+
+    /**
+     * Show the planned time left of the workout, or the distance if no step has a time
+     */
+    private void updateRemaining() {
+        double rt = workout.getPlannedRemaining(Dimension.TIME);
+        String remaining;
+        if (rt > 0) {
+            remaining = formatter.formatElapsedTime(Formatter.Format.TXT_SHORT, Math.round(rt));
+        } else {
+            double rd = workout.getPlannedRemaining(Dimension.DISTANCE);
+            remaining = rd > 0 ?
+                    formatter.formatDistance(Formatter.Format.TXT_SHORT, Math.round(rd)) : null;
+        }
+        activityRemaining.setText(remaining == null ? "" :
+                getString(R.string.Planned_remaining_1s, remaining));
+    }
+
+    private String getStepText(Step step) {
+        String text = getString(step.getIntensity().getTextId());
+        if (step.getDurationType() != null) {
+            text += " " + formatter.format(Formatter.Format.TXT_SHORT, step.getDurationType(),
+                    step.getDurationValue());
+        }
+        return text;
+    }
+
+    private void updateLiveGraph() {
+        LiveSamples samples = mTracker.getLiveSamples();
+        if (samples.getCount() == liveSampleCount) {
+            return;
+        }
+        liveSampleCount = samples.getCount();
+
+        int count = samples.read(mTracker.getTimeMs() - LIVE_GRAPH_MS, liveSamples);
+        DataPoint[] points = new DataPoint[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = new DataPoint(liveSamples.elapsed[i] / 1000.0, liveSamples.speed[i]);
         }
+        livePace.resetData(points);
+        // Hidden until there is a line to show
+        liveGraph.setVisibility(count > 1 ? View.VISIBLE : View.GONE);
     }
 
     private int getPosition(ArrayList<WorkoutRow> workoutRows,
@@ -100,7 +100,7 @@ public class EndOfLapSuppression extends TriggerSuppression {
             return false;
         }
 
-        double distance = w.getDistance(Scope.LAP);
+        double distance = w.get(Scope.LAP, Dimension.DISTANCE);
         if ((distance - lapDuration) == lapDistanceLimit) {
             Log.e(getClass().getName(), "suppressing trigger! distance: " + distance + ", lapDistance: "
                     + lapDuration);
@@ -134,9 +134,9 @@ public class EndOfLapSuppression extends TriggerSuppression {
             case SPEED:
                 return false;
             case DISTANCE:
-                return Math.abs(w.getDistance(Scope.STEP) - s.getDurationValue()) <= lapDistanceLimit;
+                return Math.abs(w.get(Scope.STEP, Dimension.DISTANCE) - s.getDurationValue()) <= lapDistanceLimit;
             case TIME:
-                return Math.abs(w.getTime(Scope.STEP) - s.getDurationValue()) <= lapTimeLimit;
+                return Math.abs(w.get(Scope.STEP, Dimension.TIME) - s.getDurationValue()) <= lapTimeLimit;
             default:
                 break;
 
@@ -18,7 +18,7 @@
 package org.runnerup.workout;
 
 
-public class IntervalTrigger extends Trigger {
+public class IntervalTrigger extends Trigger implements TriggerScheduler.Scheduled {
 
     Scope scope = Scope.ACTIVITY;
     Dimension dimension = Dimension.TIME;
@@ -40,6 +40,21 @@ public class IntervalTrigger extends Trigger {
         return false;
     }
 
+    @Override
+    public Scope getScope() {
+        return scope;
+    }
+
+    @Override
+    public Dimension getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public double getNext(Workout w) {
+        return next != 0 ? next : Double.POSITIVE_INFINITY;
+    }
+
     private void scheduleNext(Workout w, double now) {
         if (interval == 0) {
             // last occurrence (maybe first)
@@ -20,7 +20,7 @@ package org.runnerup.workout;
 import java.util.ArrayList;
 
 
-public class ListTrigger extends Trigger {
+public class ListTrigger extends Trigger implements TriggerScheduler.Scheduled {
 
     private Scope scope;
     private Dimension dimension;
@@ -39,13 +39,15 @@ public class ListTrigger extends Trigger {
         pos = 0;
     }
 
-    @Override
-    public boolean onTick(Workout w) {
+    private double getMargin() {
         // add a bit of margin, NOTE: less than 0.5s
         // For distance 4:00 /km is just over 4 m/s
-        final double margin = dimension == Dimension.TIME ? 0.4d : 2d;
+        return dimension == Dimension.TIME ? 0.4d : 2d;
+    }
 
-        double now = w.getRemaining(scope, dimension) - margin;
+    @Override
+    public boolean onTick(Workout w) {
+        double now = w.getRemaining(scope, dimension) - getMargin();
         if (pos < triggerTimes.size() && now <= triggerTimes.get(pos)) {
             scheduleNext(w, now);
             fire(w);
@@ -53,6 +55,27 @@ public class ListTrigger extends Trigger {
         return false;
     }
 
+    @Override
+    public Scope getScope() {
+        return scope;
+    }
+
+    @Override
+    public Dimension getDimension() {
+        return dimension;
+    }
+
+    /**
+     * The value where the remaining value is at the next trigger time, fired ahead by the margin
+     */
+    @Override
+    public double getNext(Workout w) {
+        if (pos >= triggerTimes.size()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return w.getDuration(scope, dimension) - getMargin() - triggerTimes.get(pos);
+    }
+
     private void scheduleNext(Workout w, double now) {
         while (pos < triggerTimes.size() && now <= triggerTimes.get(pos)) {
             pos++;
@@ -0,0 +1,70 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.workout;
+
+import java.util.Arrays;
+
+/**
+ * The workout values for all scopes and dimensions at one point in time.
+ *
+ * A value is computed from the workout the first time it is read and then kept until the
+ * snapshot is renewed, at the start of a tick, for new locations and when a step or lap starts.
+ * Triggers, feedback and the displays of a tick read the same values, the cost of a tick does
+ * not depend on how many of them read a value.
+ *
+ * Used from the thread of the workout.
+ */
+public class MetricSnapshot {
+
+    private static final Scope[] SCOPES = Scope.values();
+    private static final Dimension[] DIMENSIONS = Dimension.values();
+
+    interface Source {
+        double compute(Scope scope, Dimension dimension);
+    }
+
+    private final Source source;
+    // Indexed by scope and dimension
+    private final double[] values = new double[SCOPES.length * DIMENSIONS.length];
+    // The generation when the value was computed
+    private final int[] computed = new int[SCOPES.length * DIMENSIONS.length];
+    private int generation = 1;
+
+    MetricSnapshot(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * Drop the values, the next reads compute new values
+     */
+    void renew() {
+        generation++;
+        if (generation == 0) {
+            // Wrapped, the zero values are not valid
+            Arrays.fill(computed, 0);
+            generation = 1;
+        }
+    }
+
+    public double get(Scope scope, Dimension dimension) {
+        final int i = scope.ordinal() * DIMENSIONS.length + dimension.ordinal();
+        if (computed[i] != generation) {
+            values[i] = source.compute(scope, dimension);
+            computed[i] = generation;
+        }
+        return values[i];
+    }
+}
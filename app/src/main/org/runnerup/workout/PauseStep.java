@@ -45,6 +45,7 @@ public class PauseStep extends Step {
             for (Trigger t : triggers) {
                 t.onStart(what, s);
             }
+            scheduler.invalidate();
         } else {
             super.onStart(what, s);
         }
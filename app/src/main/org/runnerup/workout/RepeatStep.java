@@ -149,6 +149,14 @@ public class RepeatStep extends Step {
         }
     }
 
+    @Override
+    double getNextTimeEvent(Workout w) {
+        if (currentStep >= steps.size()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return steps.get(currentStep).getNextTimeEvent(w);
+    }
+
     @Override
     public double getDistance(Workout w, Scope s) {
         return steps.get(currentStep).getDistance(w, s);
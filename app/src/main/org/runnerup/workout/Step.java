@@ -58,6 +58,7 @@ public class Step implements TickComponent {
      * Triggers
      */
     final ArrayList<Trigger> triggers = new ArrayList<>();
+    final TriggerScheduler scheduler = new TriggerScheduler();
 
     /**
      * @return the name
@@ -179,6 +180,7 @@ public class Step implements TickComponent {
         for (Trigger t : triggers) {
             t.onRepeat(current, count);
         }
+        scheduler.invalidate();
     }
 
     private double stepStartTime = 0;
@@ -198,6 +200,7 @@ public class Step implements TickComponent {
             stepStartTime = time;
             stepStartDistance = dist;
             stepStartHeartbeats = beats;
+            s.newSnapshot();
             if (s.isPaused())
                 s.tracker.pause();
             else
@@ -206,6 +209,7 @@ public class Step implements TickComponent {
             lapStartTime = time;
             lapStartDistance = dist;
             lapStartHeartbeats = beats;
+            s.newSnapshot();
             ContentValues tmp = new ContentValues();
             tmp.put(DB.LAP.INTENSITY, intensity.getValue());
             if (durationType != null) {
@@ -252,6 +256,7 @@ public class Step implements TickComponent {
         for (Trigger t : triggers) {
             t.onStart(what, s);
         }
+        scheduler.invalidate();
     }
 
     @Override
@@ -296,9 +301,7 @@ public class Step implements TickComponent {
             return true;
         }
 
-        for (Trigger t : triggers) {
-            t.onTick(s);
-        }
+        scheduler.onTick(s, triggers);
 
         return false;
     }
@@ -329,7 +332,8 @@ public class Step implements TickComponent {
             }
             mPrevTickStepDistance = distance;
         } else if (durationType == Dimension.TIME) {
-            double diff = (time - mPrevTickStepTime) / 2;
+            // Ticks are scheduled at the end of the step, the interval is not limited
+            double diff = Math.min(time - mPrevTickStepTime, 1.0) / 2;
             mPrevTickStepTime = time;
             // This point is more likely than next
             newStep = s.get(Scope.STEP, durationType) + diff >= this.durationValue;
@@ -359,6 +363,18 @@ public class Step implements TickComponent {
         return true; // move to next step
     }
 
+    /**
+     * @return the time in seconds until the step ends or a trigger waiting for a time is due,
+     *         infinity if none. Other triggers need new values.
+     */
+    double getNextTimeEvent(Workout w) {
+        double next = scheduler.getNextTime(w);
+        if (durationType == Dimension.TIME) {
+            next = Math.min(next, Math.max(durationValue - w.get(Scope.STEP, Dimension.TIME), 0));
+        }
+        return next;
+    }
+
     @Override
     public void onResume(Workout s) {
         for (Trigger t : triggers) {
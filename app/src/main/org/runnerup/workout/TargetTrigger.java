@@ -20,6 +20,7 @@ package org.runnerup.workout;
 import android.util.Log;
 
 import org.runnerup.BuildConfig;
+import org.runnerup.util.OrderStatisticWindow;
 
 
 public class TargetTrigger extends Trigger {
@@ -38,10 +39,9 @@ public class TargetTrigger extends Trigger {
     Range range = null;
 
     private int cntMeasures = 0;
-    private double[] measure = null;
+    private OrderStatisticWindow measure = null;
     @SuppressWarnings("FieldCanBeLocal")
     private int skip_values = 1;
-    private double[] sort_measure = null;
     private double lastTimestamp = 0;
 
     private double[] measure_time = null;
@@ -55,8 +55,7 @@ public class TargetTrigger extends Trigger {
 
     public TargetTrigger(Dimension dim, int movingAverageSeconds, int graceSeconds) {
         dimension = dim;
-        measure = new double[movingAverageSeconds];
-        sort_measure = new double[movingAverageSeconds];
+        measure = new OrderStatisticWindow(movingAverageSeconds);
 
         if (dimension == Dimension.HRZ)
             dimension = Dimension.HR;
@@ -134,8 +133,7 @@ public class TargetTrigger extends Trigger {
     }
 
     private void addObservation(double val_now) {
-        int pos = cntMeasures % measure.length;
-        measure[pos] = val_now;
+        measure.add(val_now);
         cntMeasures++;
     }
 
@@ -149,28 +147,16 @@ public class TargetTrigger extends Trigger {
         if (cntMeasures == lastValCnt)
             return lastVal;
 
-        //not all values in the measure array are meaningful when
-        //cntMeasures is small so we adjust for it.
-        int meaningful_length = Math.min(cntMeasures,measure.length);
+        //the window has fewer values when cntMeasures is small,
+        //the skipped values are 5% of the values in the window.
         //should the percentage of values skipped be a variable of the class?
-        int meaningful_skip_values = (5*meaningful_length)/100;
-        System.arraycopy(measure, 0, sort_measure, 0, meaningful_length);
-        java.util.Arrays.sort(sort_measure,0,meaningful_length);
-        double cnt = 0;
-        double val = 0;
-        for (int i = meaningful_skip_values; i < meaningful_length - meaningful_skip_values; i++) {
-            val += sort_measure[i];
-            cnt++;
-        }
-        lastVal = val / cnt;
+        lastVal = measure.getTrimmedMean(5);
         lastValCnt = cntMeasures;
         return lastVal;
     }
 
     private void reset() {
-        for (int i = 0; i < measure.length; i++) {
-            measure[i] = 0;
-        }
+        measure.clear();
         inited = false;
         cntMeasures = 0;
         graceCount = initialGrace;
@@ -0,0 +1,200 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.workout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Calls the triggers of a step on a tick.
+ *
+ * Triggers waiting for a value in a scope and dimension (intervals, countdowns) are kept in
+ * a priority queue per scope and dimension, ordered by the value where they fire next.
+ * A tick reads the current value once per queue and only calls the triggers that are due,
+ * other triggers are called every tick. The triggers are called in the order of the step.
+ *
+ * The queues are rebuilt when the triggers are started, the value where a trigger fires
+ * can change then. A trigger woken before its condition is met is scheduled again.
+ */
+class TriggerScheduler {
+
+    /**
+     * A trigger that does nothing on a tick before its next value is reached
+     */
+    interface Scheduled {
+        Scope getScope();
+
+        Dimension getDimension();
+
+        /**
+         * @return the value of the scope and dimension where the trigger fires next,
+         *         infinity if it will not fire
+         */
+        double getNext(Workout w);
+    }
+
+    private static class Entry {
+        final Trigger trigger;
+        // Position in the step
+        final int index;
+        double next = Double.POSITIVE_INFINITY;
+
+        Entry(Trigger trigger, int index) {
+            this.trigger = trigger;
+            this.index = index;
+        }
+    }
+
+    private static final Comparator<Entry> BY_NEXT = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            return Double.compare(e1.next, e2.next);
+        }
+    };
+
+    private static final Comparator<Entry> BY_INDEX = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            return e1.index - e2.index;
+        }
+    };
+
+    private static class Queue {
+        final Scope scope;
+        final Dimension dimension;
+        final ArrayList<Entry> entries = new ArrayList<>();
+        final PriorityQueue<Entry> queue = new PriorityQueue<>(4, BY_NEXT);
+
+        Queue(Scope scope, Dimension dimension) {
+            this.scope = scope;
+            this.dimension = dimension;
+        }
+    }
+
+    private final ArrayList<Entry> polled = new ArrayList<>();
+    private final ArrayList<Queue> queues = new ArrayList<>();
+    private final ArrayList<Entry> due = new ArrayList<>();
+    private int triggerCount = -1;
+    private boolean started = false;
+
+    /**
+     * The triggers are started, the next values are computed on the next tick
+     */
+    void invalidate() {
+        started = false;
+    }
+
+    void onTick(Workout w, List<Trigger> triggers) {
+        if (triggers.size() != triggerCount) {
+            build(triggers);
+        }
+        if (!started) {
+            reschedule(w);
+        }
+
+        for (int i = 0; i < queues.size(); i++) {
+            Queue q = queues.get(i);
+            Entry first = q.queue.peek();
+            if (first == null || first.next == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            final double now = w.get(q.scope, q.dimension);
+            while (!q.queue.isEmpty() && q.queue.peek().next <= now) {
+                due.add(q.queue.poll());
+            }
+        }
+        if (due.size() > 1) {
+            Collections.sort(due, BY_INDEX);
+        }
+
+        // Merge with the polled triggers, in the order of the step
+        int d = 0;
+        for (int p = 0; p <= polled.size(); p++) {
+            final int index = p < polled.size() ? polled.get(p).index : Integer.MAX_VALUE;
+            for (; d < due.size() && due.get(d).index < index; d++) {
+                Entry e = due.get(d);
+                e.trigger.onTick(w);
+                schedule(w, e);
+            }
+            if (p < polled.size()) {
+                polled.get(p).trigger.onTick(w);
+            }
+        }
+        due.clear();
+    }
+
+    /**
+     * @return the time in seconds until the next trigger waiting for a time, infinity if none
+     */
+    double getNextTime(Workout w) {
+        double res = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < queues.size(); i++) {
+            Queue q = queues.get(i);
+            Entry first = q.queue.peek();
+            if (q.dimension == Dimension.TIME && first != null
+                    && first.next != Double.POSITIVE_INFINITY) {
+                res = Math.min(res, first.next - w.get(q.scope, q.dimension));
+            }
+        }
+        return Math.max(res, 0);
+    }
+
+    private void build(List<Trigger> triggers) {
+        triggerCount = triggers.size();
+        started = false;
+        polled.clear();
+        queues.clear();
+        for (int i = 0; i < triggers.size(); i++) {
+            Trigger t = triggers.get(i);
+            Entry e = new Entry(t, i);
+            if (t instanceof Scheduled) {
+                getQueue(((Scheduled) t).getScope(), ((Scheduled) t).getDimension()).entries.add(e);
+            } else {
+                polled.add(e);
+            }
+        }
+    }
+
+    private Queue getQueue(Scope scope, Dimension dimension) {
+        for (Queue q : queues) {
+            if (q.scope == scope && q.dimension == dimension) {
+                return q;
+            }
+        }
+        Queue q = new Queue(scope, dimension);
+        queues.add(q);
+        return q;
+    }
+
+    private void reschedule(Workout w) {
+        started = true;
+        for (Queue q : queues) {
+            q.queue.clear();
+            for (Entry e : q.entries) {
+                schedule(w, e);
+            }
+        }
+    }
+
+    private void schedule(Workout w, Entry e) {
+        Scheduled s = (Scheduled) e.trigger;
+        e.next = s.getNext(w);
+        getQueue(s.getScope(), s.getDimension()).queue.add(e);
+    }
+}
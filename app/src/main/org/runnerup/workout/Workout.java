@@ -49,6 +49,9 @@ public class Workout implements WorkoutComponent, WorkoutInfo {
     private int currentStepNo = -1;
     private int workoutType = Constants.WORKOUT_TYPE.BASIC;
     private Step currentStep = null;
+    // Compiled when started, the position of the current step in the plan
+    private WorkoutPlan plan = null;
+    private int planPosition = 0;
     private boolean paused = false;
     final ArrayList<Step> steps = new ArrayList<>();
     private final ArrayList<WorkoutStepListener> stepListeners = new ArrayList<>();
@@ -95,6 +98,13 @@ public class Workout implements WorkoutComponent, WorkoutInfo {
 
     private final PendingFeedback pendingFeedback = new PendingFeedback();
 
+    private final MetricSnapshot snapshot = new MetricSnapshot(new MetricSnapshot.Source() {
+        @Override
+        public double compute(Scope scope, Dimension d) {
+            return Workout.this.compute(scope, d);
+        }
+    });
+
     Tracker tracker = null;
     SharedPreferences audioCuePrefs;
     private HRZones hrZones = null;
@@ -152,6 +162,8 @@ public class Workout implements WorkoutComponent, WorkoutInfo {
             st.onRepeat(0, 1);
         }
 
+        plan = WorkoutPlan.compile(this);
+        planPosition = 0;
         currentStepNo = 0;
         if (steps.size() > 0) {
             setCurrentStep(steps.get(currentStepNo));
@@ -169,8 +181,21 @@ public class Workout implements WorkoutComponent, WorkoutInfo {
     private void setCurrentStep(Step step) {
         Step oldStep = currentStep;
         currentStep = step;
+        newSnapshot();
 
         Step newStep = (step == null) ? null : step.getCurrentStep();
+        if (plan != null) {
+            if (step == null) {
+                planPosition = plan.size();
+            } else if (newStep != null) {
+                // Usually the next position. Repeats of 0 and empty repeats are not
+                // in the plan, the position is kept for them.
+                int p = plan.find(newStep, oldStep == null ? 0 : planPosition + 1);
+                if (p < plan.size()) {
+                    planPosition = p;
+                }
+            }
+        }
         for (WorkoutStepListener l : stepListeners) {
             l.onStepChanged(oldStep, newStep);
         }
@@ -286,11 +311,67 @@ public class Workout implements WorkoutComponent, WorkoutInfo {
         return paused;
     }
 
+    /**
+     * @return the time in seconds until a trigger waiting for a time or the end of the step
+     *         is due, infinity if none
+     */
+    public double getNextTimeEvent() {
+        Step step = getCurrentStep();
+        // The time is stopped when paused, except in pause steps
+        if (currentStep == null || (paused && (step == null || !step.isPauseStep()))) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return currentStep.getNextTimeEvent(this);
+    }
+
+    /**
+     * @return the steps in the order they are run, null if not started
+     */
+    public WorkoutPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return the step after the current step, null if it is the last or not started
+     */
+    public Step getNextStep() {
+        if (plan == null) {
+            return null;
+        }
+        return plan.getNextStep(planPosition);
+    }
+
+    /**
+     * @return the planned time or distance left of the workout, for the steps with
+     *         a duration in the dimension
+     */
+    public double getPlannedRemaining(Dimension dimension) {
+        if (plan == null || planPosition >= plan.size()) {
+            return 0;
+        }
+        return getRemaining(Scope.STEP, dimension)
+                + plan.getPlannedFrom(planPosition + 1, dimension);
+    }
+
+    /**
+     * Renew the values read with get(), when the tracker or the step has changed
+     */
+    public void newSnapshot() {
+        snapshot.renew();
+    }
+
+    /**
+     * The value in the current snapshot, computed once per snapshot
+     */
     @Override
     public double get(Scope scope, Dimension d) {
         if (d == null) {
             return 0;
         }
+        return snapshot.get(scope, d);
+    }
+
+    private double compute(Scope scope, Dimension d) {
         switch (d) {
             case DISTANCE:
                 return getDistance(scope);
@@ -546,6 +627,10 @@ public class Workout implements WorkoutComponent, WorkoutInfo {
     }
 
     private void initFeedback() {
+        if (pendingFeedback.depth == 0) {
+            // The values at the start of this tick or event
+            newSnapshot();
+        }
         pendingFeedback.init();
     }
 
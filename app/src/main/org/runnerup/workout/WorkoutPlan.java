@@ -0,0 +1,177 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.workout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The steps of a workout in the order they are run, with the repeats unrolled.
+ *
+ * Position i is the i:th step run in the workout, with the repeat of its repeat step.
+ * The planned time and distance before each position are summed when compiled, so the next
+ * step and the planned remaining time or distance are read without walking the steps.
+ * Only steps with a duration in a dimension are planned in that dimension, a step
+ * "until pressed" or with a distance has no planned time.
+ *
+ * Compiled when the workout starts, the steps must not be changed after that.
+ */
+public class WorkoutPlan {
+
+    // Nested repeats grow quickly, the steps after this are not planned
+    static final int MAX_POSITIONS = 10000;
+
+    private final Step[] steps;
+    // Index in Workout.getStepList()
+    private final int[] entry;
+    // Repeat of the closest repeat step, 0 if none
+    private final int[] repeat;
+    // Planned before position i, size + 1 values
+    private final double[] time;
+    private final double[] distance;
+    private final boolean truncated;
+
+    private WorkoutPlan(Builder b) {
+        final int n = b.steps.size();
+        steps = b.steps.toArray(new Step[n]);
+        entry = new int[n];
+        repeat = new int[n];
+        time = new double[n + 1];
+        distance = new double[n + 1];
+        for (int i = 0; i < n; i++) {
+            entry[i] = b.entry.get(i);
+            repeat[i] = b.repeat.get(i);
+            time[i + 1] = time[i] + steps[i].getDuration(Dimension.TIME);
+            distance[i + 1] = distance[i] + steps[i].getDuration(Dimension.DISTANCE);
+        }
+        truncated = b.truncated;
+    }
+
+    public static WorkoutPlan compile(Workout w) {
+        Builder b = new Builder();
+        for (Step s : w.getSteps()) {
+            b.add(s, 0);
+        }
+        return new WorkoutPlan(b);
+    }
+
+    private static class Builder {
+        final ArrayList<Step> steps = new ArrayList<>();
+        final ArrayList<Integer> entry = new ArrayList<>();
+        final ArrayList<Integer> repeat = new ArrayList<>();
+        // Entries in Workout.getStepList(), counted while walking the steps
+        int entries = 0;
+        boolean truncated = false;
+
+        void add(Step s, int r) {
+            final int e = entries++;
+            if (!(s instanceof RepeatStep)) {
+                if (steps.size() >= MAX_POSITIONS) {
+                    truncated = true;
+                    return;
+                }
+                steps.add(s);
+                entry.add(e);
+                repeat.add(r);
+                return;
+            }
+
+            final List<Step> children = ((RepeatStep) s).getSteps();
+            final int first = entries;
+            final int count = s.getRepeatCount();
+            if (count == 0) {
+                // Not run, but still in the step list
+                skip(children);
+            }
+            for (int i = 0; i < count; i++) {
+                entries = first;
+                for (Step c : children) {
+                    add(c, i);
+                }
+            }
+        }
+
+        private void skip(List<Step> children) {
+            for (Step c : children) {
+                entries++;
+                if (c instanceof RepeatStep) {
+                    skip(((RepeatStep) c).getSteps());
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return steps.length;
+    }
+
+    /**
+     * @return true if there were more steps than planned, the steps at the end are missing
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public Step getStep(int position) {
+        return steps[position];
+    }
+
+    /**
+     * @return the step after position, null if it is the last
+     */
+    public Step getNextStep(int position) {
+        return position + 1 < steps.length ? steps[position + 1] : null;
+    }
+
+    /**
+     * @return the index of the step in Workout.getStepList()
+     */
+    public int getEntry(int position) {
+        return entry[position];
+    }
+
+    public int getRepeat(int position) {
+        return repeat[position];
+    }
+
+    /**
+     * @return the position of the step at or after position, size() if not found
+     */
+    public int find(Step step, int position) {
+        for (int i = Math.max(position, 0); i < steps.length; i++) {
+            if (steps[i] == step) {
+                return i;
+            }
+        }
+        return steps.length;
+    }
+
+    /**
+     * @return the planned time or distance of the steps from position to the end,
+     *         0 for other dimensions
+     */
+    public double getPlannedFrom(int position, Dimension dimension) {
+        final int p = Math.min(Math.max(position, 0), steps.length);
+        switch (dimension) {
+            case TIME:
+                return time[steps.length] - time[p];
+            case DISTANCE:
+                return distance[steps.length] - distance[p];
+            default:
+                return 0;
+        }
+    }
+}
@@ -71,6 +71,14 @@ public class AudioFeedback extends Feedback {
             textToSpeech = (RUTextToSpeech) bindValues.get(Workout.KEY_TTS);
         if (bindValues.containsKey(Workout.KEY_FORMATTER))
             formatter = (Formatter) bindValues.get(Workout.KEY_FORMATTER);
+        if (textToSpeech != null && formatter != null) {
+            // Fixed phrases are cached before the first cue
+            if (msgId > 0) {
+                textToSpeech.prewarm(formatter.getCueString(msgId));
+            } else if (scope != null) {
+                textToSpeech.prewarm(formatter.getCueString(scope.getCueId()));
+            }
+        }
     }
 
     @Override
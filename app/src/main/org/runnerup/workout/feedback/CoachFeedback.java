@@ -29,6 +29,8 @@ import org.runnerup.workout.Scope;
 import org.runnerup.workout.TargetTrigger;
 import org.runnerup.workout.Workout;
 
+import java.util.HashMap;
+
 
 public class CoachFeedback extends AudioFeedback {
 
@@ -61,6 +63,15 @@ public class CoachFeedback extends AudioFeedback {
         return scope.equal(other.scope);
     }
 
+    @Override
+    public void onBind(Workout s, HashMap<String, Object> bindValues) {
+        super.onBind(s, bindValues);
+        if (textToSpeech != null && formatter != null) {
+            textToSpeech.prewarm(formatter.getCueString(R.string.cue_speedup));
+            textToSpeech.prewarm(formatter.getCueString(R.string.cue_slowdown));
+        }
+    }
+
     @Override
     public void emit(Workout s, Context ctx) {
         double val;
@@ -0,0 +1,470 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.workout.feedback;
+
+import android.content.Context;
+import android.speech.tts.TextToSpeech;
+import android.util.Log;
+import android.util.LruCache;
+
+import org.runnerup.util.FileUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pre-rendered words for audio cues.
+ *
+ * Words are synthesized once per engine and locale to WAV files in the app cache directory.
+ * A cue where every word has a clip is stitched from the clips and played without waiting
+ * for the engine. Other cues are spoken live and their words are synthesized in the
+ * background, so fixed phrases are cached after they are spoken once.
+ * The clips are decoded in the background when their words are learned, a cue is only
+ * stitched from clips already in memory.
+ *
+ * Callbacks from the engine come on another thread, the methods are synchronized.
+ */
+class CueCache {
+
+    private static final String TAG = "CueCache";
+
+    static final String UTTERANCE_ID = "RUCueCache";
+
+    // Clips on disk, about 400 words
+    private static final long MAX_DISK_BYTES = 12 * 1024 * 1024;
+    // Decoded clips in memory, about 100 words
+    private static final int MAX_CLIP_BYTES = 2 * 1024 * 1024;
+    // Synthesis requests queued at the engine at the same time, live cues are queued after these
+    private static final int MAX_PENDING = 2;
+    // Longer words are spoken live, the file name is four characters per character
+    private static final int MAX_WORD = 40;
+    // Silence kept at the ends of a word
+    private static final int MARGIN_MS = 10;
+    // Silence between words and between cues
+    static final int WORD_GAP_MS = 80;
+    static final int CUE_GAP_MS = 300;
+    // Samples below this amplitude are silence
+    private static final int SILENCE = 256;
+
+    /**
+     * 16 bit PCM audio, interleaved if stereo
+     */
+    static class Clip {
+        final int rate;
+        final int channels;
+        final short[] samples;
+
+        Clip(int rate, int channels, short[] samples) {
+            this.rate = rate;
+            this.channels = channels;
+            this.samples = samples;
+        }
+
+        int getFrames() {
+            return samples.length / channels;
+        }
+
+        long getDurationMs() {
+            return 1000L * getFrames() / rate;
+        }
+    }
+
+    private final TextToSpeech tts;
+    private final Locale locale;
+    private final File dir;
+
+    // Clip file names on disk
+    private final HashSet<String> onDisk = new HashSet<>();
+    // Decoded clips, by word
+    private final LruCache<String, Clip> clips = new LruCache<String, Clip>(MAX_CLIP_BYTES) {
+        @Override
+        protected int sizeOf(String key, Clip value) {
+            return 2 * value.samples.length;
+        }
+    };
+    // Words with clips being decoded
+    private final HashSet<String> loading = new HashSet<>();
+    // Words to synthesize, in request order
+    private final LinkedHashSet<String> queue = new LinkedHashSet<>();
+    // Utterance id to word, for synthesis requests at the engine
+    private final HashMap<String, String> pending = new HashMap<>();
+    // Words the engine could not synthesize, not retried
+    private final HashSet<String> failed = new HashSet<>();
+    private long nextId = 0;
+    // Live cues are spoken, synthesis requests are not queued before them
+    private boolean paused = false;
+
+    private static final ExecutorService sLoader = Executors.newSingleThreadExecutor();
+
+    CueCache(TextToSpeech tts, Locale locale, Context context) {
+        this.tts = tts;
+        this.locale = locale != null ? locale : Locale.getDefault();
+        String engine = tts.getDefaultEngine();
+        String name = (engine != null ? engine : "default") + "_" + this.locale.toString();
+        this.dir = new File(new File(context.getCacheDir(), "tts"),
+                name.replaceAll("[^A-Za-z0-9_.-]", "_"));
+
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+        String[] files = dir.list();
+        if (files != null) {
+            for (String f : files) {
+                if (f.endsWith(".tmp")) {
+                    //noinspection ResultOfMethodCallIgnored
+                    new File(dir, f).delete();
+                } else {
+                    onDisk.add(f);
+                }
+            }
+        }
+    }
+
+    /**
+     * Split a cue in words
+     * @return the words, null if the cue has words that are not cached
+     */
+    static String[] split(String text, Locale locale) {
+        String[] words = text.trim().split("\\s+");
+        for (int i = 0; i < words.length; i++) {
+            String w = words[i];
+            if (w.length() == 0 || w.length() > MAX_WORD) {
+                return null;
+            }
+            // Decimals and punctuation change with the value or the prosody
+            for (int j = 0; j < w.length(); j++) {
+                char c = w.charAt(j);
+                if (!Character.isLetterOrDigit(c) && c != '\'' && c != '-') {
+                    return null;
+                }
+            }
+            words[i] = w.toLowerCase(locale);
+        }
+        return words;
+    }
+
+    /**
+     * Synthesize the words of a cue that are not cached
+     */
+    synchronized void learn(String text) {
+        String[] words = split(text, locale);
+        if (words == null) {
+            return;
+        }
+        for (String w : words) {
+            if (onDisk.contains(fileName(w))) {
+                preload(w);
+            } else if (!failed.contains(w)) {
+                queue.add(w);
+            }
+        }
+        synthesizeNext();
+    }
+
+    /**
+     * @return the clips for the words of the cue, null if any word is not in memory.
+     *         Clips on disk are decoded in the background for the next time.
+     */
+    synchronized Clip[] getClips(String text) {
+        String[] words = split(text, locale);
+        if (words == null) {
+            return null;
+        }
+        Clip[] res = new Clip[words.length];
+        boolean missing = false;
+        for (int i = 0; i < words.length; i++) {
+            res[i] = clips.get(words[i]);
+            if (res[i] == null) {
+                missing = true;
+                if (onDisk.contains(fileName(words[i]))) {
+                    preload(words[i]);
+                }
+            }
+        }
+        return missing ? null : res;
+    }
+
+    private void preload(final String word) {
+        if (loading.contains(word) || clips.get(word) != null) {
+            return;
+        }
+        loading.add(word);
+        sLoader.execute(new Runnable() {
+            @Override
+            public void run() {
+                load(word);
+            }
+        });
+    }
+
+    private void load(String word) {
+        String name = fileName(word);
+        File file = new File(dir, name);
+        Clip clip = read(file);
+        synchronized (this) {
+            loading.remove(word);
+            if (clip == null) {
+                Log.w(TAG, "Cannot read clip for " + word);
+                onDisk.remove(name);
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+                return;
+            }
+            // Recently used clips are kept when trimming
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            clips.put(word, clip);
+        }
+    }
+
+    /**
+     * Called when the engine is done with an utterance
+     * @return true if the utterance was a synthesis request from the cache
+     */
+    synchronized boolean onDone(String utteranceId, boolean success) {
+        String word = pending.remove(utteranceId);
+        if (word == null) {
+            return false;
+        }
+        String name = fileName(word);
+        File tmp = new File(dir, name + ".tmp");
+        if (success && tmp.length() > 0 && tmp.renameTo(new File(dir, name))) {
+            onDisk.add(name);
+            trim();
+            preload(word);
+        } else {
+            Log.w(TAG, "Synthesis failed for " + word);
+            failed.add(word);
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+        synthesizeNext();
+        return true;
+    }
+
+    /**
+     * Pause synthesis while live cues are spoken, the engine plays requests in order
+     */
+    synchronized void setPaused(boolean paused) {
+        this.paused = paused;
+        if (!paused) {
+            synthesizeNext();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void synthesizeNext() {
+        if (paused) {
+            return;
+        }
+        Iterator<String> it = queue.iterator();
+        while (pending.size() < MAX_PENDING && it.hasNext()) {
+            String word = it.next();
+            it.remove();
+            String name = fileName(word);
+            if (onDisk.contains(name) || pending.containsValue(word)) {
+                continue;
+            }
+            String id = UTTERANCE_ID + (nextId++);
+            HashMap<String, String> params = new HashMap<>();
+            params.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, id);
+            pending.put(id, word);
+            if (tts.synthesizeToFile(word, params, new File(dir, name + ".tmp").getPath())
+                    != TextToSpeech.SUCCESS) {
+                pending.remove(id);
+                failed.add(word);
+            }
+        }
+    }
+
+    private void trim() {
+        if (FileUtil.trim(dir, MAX_DISK_BYTES) == 0) {
+            return;
+        }
+        // Words with deleted clips are synthesized again when learned
+        String[] files = dir.list();
+        onDisk.retainAll(files == null ? Collections.<String>emptyList() : Arrays.asList(files));
+    }
+
+    private static String fileName(String word) {
+        // Words can have characters that are not valid in file names
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < word.length(); i++) {
+            sb.append(String.format("%04x", (int) word.charAt(i)));
+        }
+        return sb.append(".wav").toString();
+    }
+
+    private static Clip read(File file) {
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return decode(out.toByteArray());
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Cannot close " + file.getName(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode a 16 bit PCM WAV file, with the leading and trailing silence removed
+     * @return the clip, null if not supported
+     */
+    static Clip decode(byte[] data) {
+        if (data.length < 12 || !tag(data, 0, "RIFF") || !tag(data, 8, "WAVE")) {
+            return null;
+        }
+        int rate = 0;
+        int channels = 0;
+        int pos = 12;
+        while (pos + 8 <= data.length) {
+            int size = readInt(data, pos + 4);
+            int start = pos + 8;
+            if (size < 0) {
+                return null;
+            }
+            if (tag(data, pos, "fmt ") && size >= 16 && start + 16 <= data.length) {
+                int format = readShort(data, start);
+                channels = readShort(data, start + 2);
+                rate = readInt(data, start + 4);
+                int bits = readShort(data, start + 14);
+                if (format != 1 || bits != 16 || channels < 1 || channels > 2 || rate <= 0) {
+                    return null;
+                }
+            } else if (tag(data, pos, "data") && rate > 0) {
+                // Some engines write the size before knowing it
+                int end = (int) Math.min((long) start + size, data.length);
+                int frames = (end - start) / (2 * channels);
+                short[] samples = new short[frames * channels];
+                for (int i = 0; i < samples.length; i++) {
+                    samples[i] = (short) readShort(data, start + 2 * i);
+                }
+                return new Clip(rate, channels, trimSilence(samples, channels, rate));
+            }
+            // Chunks are padded to an even size
+            pos = start + size + (size & 1);
+        }
+        return null;
+    }
+
+    private static short[] trimSilence(short[] samples, int channels, int rate) {
+        int first = 0;
+        while (first < samples.length && Math.abs(samples[first]) < SILENCE) {
+            first++;
+        }
+        int last = samples.length - 1;
+        while (last > first && Math.abs(samples[last]) < SILENCE) {
+            last--;
+        }
+        if (first >= samples.length) {
+            return new short[0];
+        }
+        int margin = rate * MARGIN_MS / 1000 * channels;
+        first = Math.max(0, first / channels * channels - margin);
+        last = Math.min(samples.length, (last / channels + 1) * channels + margin);
+        return Arrays.copyOfRange(samples, first, last);
+    }
+
+    /**
+     * Join the clips of the cues, with silence between words and between cues
+     * @return the stitched clip, null if the clips have different formats
+     */
+    static Clip stitch(List<Clip[]> cues) {
+        if (cues.isEmpty() || cues.get(0).length == 0) {
+            return null;
+        }
+        final int rate = cues.get(0)[0].rate;
+        final int channels = cues.get(0)[0].channels;
+        final int wordGap = rate * WORD_GAP_MS / 1000 * channels;
+        final int cueGap = rate * CUE_GAP_MS / 1000 * channels;
+        int length = 0;
+        for (int i = 0; i < cues.size(); i++) {
+            Clip[] words = cues.get(i);
+            for (int j = 0; j < words.length; j++) {
+                if (words[j].rate != rate || words[j].channels != channels) {
+                    return null;
+                }
+                length += words[j].samples.length;
+                if (j > 0) {
+                    length += wordGap;
+                }
+            }
+            if (i > 0) {
+                length += cueGap;
+            }
+        }
+
+        short[] samples = new short[length];
+        int pos = 0;
+        for (int i = 0; i < cues.size(); i++) {
+            if (i > 0) {
+                pos += cueGap;
+            }
+            Clip[] words = cues.get(i);
+            for (int j = 0; j < words.length; j++) {
+                if (j > 0) {
+                    pos += wordGap;
+                }
+                System.arraycopy(words[j].samples, 0, samples, pos, words[j].samples.length);
+                pos += words[j].samples.length;
+            }
+        }
+        return new Clip(rate, channels, samples);
+    }
+
+    private static boolean tag(byte[] data, int pos, String tag) {
+        for (int i = 0; i < 4; i++) {
+            if (pos + i >= data.length || data[pos + i] != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readShort(byte[] data, int pos) {
+        return (short) ((data[pos] & 0xff) | (data[pos + 1] << 8));
+    }
+
+    private static int readInt(byte[] data, int pos) {
+        return (data[pos] & 0xff) | ((data[pos + 1] & 0xff) << 8)
+                | ((data[pos + 2] & 0xff) << 16) | (data[pos + 3] << 24);
+    }
+}
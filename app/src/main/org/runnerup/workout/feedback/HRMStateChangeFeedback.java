@@ -3,6 +3,7 @@ package org.runnerup.workout.feedback;
 import android.content.Context;
 
 import org.runnerup.R;
+import org.runnerup.workout.Dimension;
 import org.runnerup.workout.HRMStateTrigger;
 import org.runnerup.workout.Scope;
 import org.runnerup.workout.Workout;
@@ -14,7 +15,7 @@ public class HRMStateChangeFeedback extends AudioFeedback {
     }
 
     String getCue(Workout w, Context ctx) {
-        return (formatter.getCueString((w.getHeartRate(Scope.CURRENT) == 0)
+        return (formatter.getCueString((w.get(Scope.CURRENT, Dimension.HR) == 0)
                 ? R.string.cue_hrm_connection_lost
                 : R.string.cue_hrm_connection_restored));
     }
@@ -20,8 +20,14 @@ package org.runnerup.workout.feedback;
 import android.annotation.SuppressLint;
 import android.annotation.TargetApi;
 import android.content.Context;
+import android.media.AudioFormat;
 import android.media.AudioManager;
+import android.media.AudioTrack;
 import android.os.Build;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.speech.tts.TextToSpeech;
 import android.speech.tts.UtteranceProgressListener;
 import android.util.Log;
@@ -34,6 +40,10 @@ import java.util.HashSet;
 import java.util.Locale;
 
 
+/**
+ * Cues are buffered and emitted on the main thread. Playback state (track, clipQueue,
+ * outstanding) is only used on the main thread, callbacks from the engine are posted there.
+ */
 public class RUTextToSpeech {
 
     private static final String UTTERANCE_ID = "RUTextTospeech";
@@ -45,6 +55,8 @@ public class RUTextToSpeech {
     class Entry {
         final String text;
         final HashMap<String, String> params;
+        // When the cue was requested, for the latency
+        final long time = SystemClock.elapsedRealtime();
 
         public Entry(String text, HashMap<String, String> params) {
             this.text = text;
@@ -52,6 +64,23 @@ public class RUTextToSpeech {
         }
     }
 
+    private static final long LIVE_TIMEOUT_MS = 30000;
+
+    private final CueCache cueCache;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Stitched cues, played one at a time
+    private final ArrayList<CueCache.Clip> clipQueue = new ArrayList<>();
+    private AudioTrack track = null;
+    private String trackId = null;
+    private long trackEnd = 0;
+    // Request time of live cues not done by the engine, by utterance id
+    private final HashMap<String, Long> liveStart = new HashMap<>();
+    // Cue latency, from the request to the start of playback
+    private int cachedCount = 0;
+    private long cachedLatency = 0;
+    private int liveCount = 0;
+    private long liveLatency = 0;
+
     private final HashSet<String> cueSet = new HashSet<>();
     private final ArrayList<Entry> cueList = new ArrayList<>();
 
@@ -76,8 +105,21 @@ public class RUTextToSpeech {
             }
         }
 
-        if (this.mute) {
-            UtteranceCompletion.setUtteranceCompletedListener(tts, this);
+        UtteranceCompletion.setUtteranceCompletedListener(tts, this);
+
+        cueCache = new CueCache(tts, locale, context);
+        // Countdowns and most values
+        for (int i = 0; i < 60; i++) {
+            cueCache.learn(Integer.toString(i));
+        }
+    }
+
+    /**
+     * Synthesize a fixed phrase in advance, if not cached
+     */
+    public void prewarm(String text) {
+        if (text != null) {
+            cueCache.learn(text);
         }
     }
 
@@ -158,9 +200,43 @@ public class RUTextToSpeech {
 
     private final HashSet<String> outstanding = new HashSet<>();
 
-    void utteranceCompleted(String id) {
-        outstanding.remove(id);
-        if (outstanding.isEmpty()) {
+    void utteranceStarted(String id) {
+        final long latency;
+        synchronized (liveStart) {
+            Long time = liveStart.get(id);
+            if (time == null) {
+                return;
+            }
+            latency = SystemClock.elapsedRealtime() - time;
+            liveCount++;
+            liveLatency += latency;
+        }
+        logLatency("live", latency);
+    }
+
+    /**
+     * Called by the engine, on another thread
+     */
+    void utteranceCompleted(final String id, boolean success) {
+        if (cueCache.onDone(id, success)) {
+            return;
+        }
+        synchronized (liveStart) {
+            liveStart.remove(id);
+            if (liveStart.isEmpty()) {
+                cueCache.setPaused(false);
+            }
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                utteranceCompleted(id);
+            }
+        });
+    }
+
+    private void utteranceCompleted(String id) {
+        if (outstanding.remove(id) && outstanding.isEmpty()) {
             audioManager.abandonAudioFocus(null);
         }
     }
@@ -177,33 +253,162 @@ public class RUTextToSpeech {
         if (cueSet.isEmpty()) {
             return;
         }
-        if (mute && requestFocus()) {
-            for (Entry e : cueList) {
-                final String utId = getId(e.text);
+        final long cpu = Debug.threadCpuTimeNanos();
+        boolean speaking = false;
+        synchronized (liveStart) {
+            // Missed callbacks are not waited for
+            final long since = SystemClock.elapsedRealtime() - LIVE_TIMEOUT_MS;
+            for (long time : liveStart.values()) {
+                speaking |= time > since;
+            }
+        }
+        if (!speaking) {
+            // Callbacks for live cues may be missed, do not keep synthesis paused
+            cueCache.setPaused(false);
+        }
+        // Cached cues are not played over live cues
+        CueCache.Clip clip = speaking ? null : stitch();
+        if (clip != null) {
+            play(clip);
+            final long latency = SystemClock.elapsedRealtime() - cueList.get(0).time;
+            synchronized (liveStart) {
+                cachedCount++;
+                cachedLatency += latency;
+            }
+            logLatency("cached", latency);
+        } else {
+            speakLive();
+        }
+        // The CPU in this thread, the engine runs in another process
+        Log.i(getClass().getName(), "emit " + (clip != null ? "cached" : "live") + " "
+                + cueList.size() + " cues, cpu: " + (Debug.threadCpuTimeNanos() - cpu) / 1000
+                + " us");
+        cueSet.clear();
+        cueList.clear();
+    }
+
+    private void speakLive() {
+        // Words synthesized in the background would delay the cues
+        cueCache.setPaused(true);
+        final boolean focus = mute && requestFocus();
+        for (Entry e : cueList) {
+            final String utId = getId(e.text);
+            if (focus) {
                 outstanding.add(utId);
+            }
+            synchronized (liveStart) {
+                liveStart.put(utId, e.time);
+            }
 
-                HashMap<String, String> params = e.params;
-                if (params == null) {
-                    params = new HashMap<>();
+            HashMap<String, String> params = e.params;
+            if (params == null) {
+                params = new HashMap<>();
+            }
+            params.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, utId);
+            int res = textToSpeech.speak(e.text, TextToSpeech.QUEUE_ADD, params);
+            if (res == TextToSpeech.ERROR) {
+                Log.e(getClass().getName(), "res == ERROR emit() text: " + e.text + ", utId: " + utId
+                        + ") outstanding.size(): " + outstanding.size());
+                outstanding.remove(utId);
+                synchronized (liveStart) {
+                    liveStart.remove(utId);
                 }
-                params.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, utId);
-                int res = textToSpeech.speak(e.text, TextToSpeech.QUEUE_ADD, params);
-                if (res == TextToSpeech.ERROR) {
-                    Log.e(getClass().getName(), "res == ERROR emit() text: " + e.text + ", utId: " + utId
-                            + ") outstanding.size(): " + outstanding.size());
-                    outstanding.remove(utId);
+            }
+            // Cached the next time
+            cueCache.learn(e.text);
+        }
+        if (focus && outstanding.isEmpty()) {
+            audioManager.abandonAudioFocus(null);
+        }
+    }
+
+    /**
+     * @return the buffered cues stitched from cached clips, null if not all are cached
+     */
+    private CueCache.Clip stitch() {
+        ArrayList<CueCache.Clip[]> cues = new ArrayList<>();
+        for (Entry e : cueList) {
+            CueCache.Clip[] clips = cueCache.getClips(e.text);
+            if (clips == null) {
+                return null;
+            }
+            cues.add(clips);
+        }
+        return CueCache.stitch(cues);
+    }
+
+    private void play(CueCache.Clip clip) {
+        if (track != null && SystemClock.elapsedRealtime() > trackEnd) {
+            // The end marker was missed
+            releaseTrack();
+        }
+        clipQueue.add(clip);
+        if (track == null) {
+            playNext();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void playNext() {
+        if (clipQueue.isEmpty()) {
+            return;
+        }
+        CueCache.Clip clip = clipQueue.remove(0);
+        final AudioTrack t = new AudioTrack(AudioManager.STREAM_MUSIC, clip.rate,
+                clip.channels == 2 ? AudioFormat.CHANNEL_OUT_STEREO : AudioFormat.CHANNEL_OUT_MONO,
+                AudioFormat.ENCODING_PCM_16BIT, Math.max(2 * clip.samples.length, 2),
+                AudioTrack.MODE_STATIC);
+        if (t.getState() != AudioTrack.STATE_NO_STATIC_DATA) {
+            Log.e(getClass().getName(), "Cannot create AudioTrack: " + t.getState());
+            t.release();
+            playNext();
+            return;
+        }
+        t.write(clip.samples, 0, clip.samples.length);
+        t.setNotificationMarkerPosition(Math.max(clip.getFrames(), 1));
+        // The marker is posted to the main thread, as the other uses of the track
+        t.setPlaybackPositionUpdateListener(new AudioTrack.OnPlaybackPositionUpdateListener() {
+            @Override
+            public void onMarkerReached(AudioTrack audioTrack) {
+                if (audioTrack == track) {
+                    releaseTrack();
+                    playNext();
                 }
             }
-            if (outstanding.isEmpty()) {
-                audioManager.abandonAudioFocus(null);
+
+            @Override
+            public void onPeriodicNotification(AudioTrack audioTrack) {
             }
-        } else {
-            for (Entry e : cueList) {
-                textToSpeech.speak(e.text, TextToSpeech.QUEUE_ADD, e.params);
+        }, handler);
+
+        track = t;
+        trackId = getId(null);
+        trackEnd = SystemClock.elapsedRealtime() + clip.getDurationMs() + 1000;
+        if (mute) {
+            if (requestFocus()) {
+                outstanding.add(trackId);
+            } else {
+                Log.e(getClass().getName(), "Could not get audio focus.");
             }
         }
-        cueSet.clear();
-        cueList.clear();
+        t.play();
+    }
+
+    private void releaseTrack() {
+        track.release();
+        track = null;
+        utteranceCompleted(trackId);
+        trackId = null;
+    }
+
+    private void logLatency(String kind, long latency) {
+        synchronized (liveStart) {
+            Log.i(getClass().getName(), "cue " + kind + " latency: " + latency + " ms"
+                    + ", cached: " + cachedCount
+                    + " avg " + (cachedCount > 0 ? cachedLatency / cachedCount : 0) + " ms"
+                    + ", live: " + liveCount
+                    + " avg " + (liveCount > 0 ? liveLatency / liveCount : 0) + " ms");
+        }
     }
 }
 
@@ -218,16 +423,17 @@ class UtteranceCompletion {
         tts.setOnUtteranceProgressListener(new UtteranceProgressListener() {
             @Override
             public void onDone(String utteranceId) {
-                ruTextToSpeech.utteranceCompleted(utteranceId);
+                ruTextToSpeech.utteranceCompleted(utteranceId, true);
             }
 
             @Override
             public void onError(String utteranceId) {
-                ruTextToSpeech.utteranceCompleted(utteranceId);
+                ruTextToSpeech.utteranceCompleted(utteranceId, false);
             }
 
             @Override
             public void onStart(String utteranceId) {
+                ruTextToSpeech.utteranceStarted(utteranceId);
             }
         });
     }
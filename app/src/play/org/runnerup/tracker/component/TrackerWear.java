@@ -47,6 +47,7 @@ import com.google.android.gms.wearable.Wearable;
 import org.runnerup.common.tracker.TrackerState;
 import org.runnerup.common.util.Constants;
 import org.runnerup.common.util.ValueModel;
+import org.runnerup.tracker.FixSample;
 import org.runnerup.tracker.Tracker;
 import org.runnerup.tracker.WorkoutObserver;
 import org.runnerup.util.Formatter;
@@ -299,7 +300,7 @@ public class TrackerWear extends DefaultTrackerComponent
     }
 
     @Override
-    public void workoutEvent(WorkoutInfo workoutInfo, int type) {
+    public void workoutEvent(WorkoutInfo workoutInfo, int type, FixSample sample) {
         switch (workoutType) {
             case WORKOUT_TYPE.BASIC:
                 break;
@@ -0,0 +1,95 @@
+package org.matthiaszimmermann.location.egm96;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * The grid generated by the geoidGrid build task must give the same offsets as the delta file
+ */
+public class GeoidGridTest {
+    // Unit tests run in the app module directory, the grid is generated before the build
+    private static final File DELTA = new File("geoid/egm96-delta.dat");
+    private static final File GRID = new File("build/generated/assets/geoid/egm96.grid");
+
+    @After
+    public void tearDown() {
+        Geoid.reset();
+    }
+
+    private static double[] getOffsets() {
+        // All grid positions, including the poles. The longitude step is the same.
+        final double step = Geoid.LATITUDE_STEP;
+        int rows = (int) (180 / step) + 1;
+        int cols = (int) (360 / step);
+        double[] offsets = new double[rows * cols + 36 * 72];
+        int i = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                offsets[i++] = Geoid.getOffset(90 - row * step, col * step);
+            }
+        }
+        // Interpolated, bilinear close to the poles
+        for (int lat = 0; lat < 36; lat++) {
+            for (int lng = 0; lng < 72; lng++) {
+                offsets[i++] = Geoid.getOffset(-89.9 + lat * 4.99, -179.9 + lng * 4.99);
+            }
+        }
+        return offsets;
+    }
+
+    @Test
+    public void gridMatchesDelta() throws IOException {
+        assumeTrue(DELTA.isFile() && GRID.isFile());
+
+        Geoid.reset();
+        InputStream in = new FileInputStream(DELTA);
+        try {
+            assertTrue(Geoid.init(in));
+        } finally {
+            in.close();
+        }
+        double[] expected = getOffsets();
+
+        Geoid.reset();
+        // As TrackerElevation, a memory mapped file in the default (big endian) byte order
+        Geoid.init(new Geoid.GridLoader() {
+            @Override
+            public ByteBuffer load() throws IOException {
+                RandomAccessFile file = new RandomAccessFile(GRID, "r");
+                try {
+                    return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                } finally {
+                    file.close();
+                }
+            }
+        });
+        assertTrue(Geoid.isAvailable());
+        assertArrayEquals(expected, getOffsets(), 0);
+    }
+}
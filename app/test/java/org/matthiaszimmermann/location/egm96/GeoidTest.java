@@ -0,0 +1,88 @@
+package org.matthiaszimmermann.location.egm96;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class GeoidTest {
+    // Unit tests run in the app module directory
+    private static final File DELTA = new File("geoid/egm96-delta.dat");
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue(DELTA.isFile());
+        InputStream in = new FileInputStream(DELTA);
+        try {
+            assertTrue(Geoid.init(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void gridPoints() {
+        assertEquals(17.16, Geoid.getOffset(0, 0), 1e-9);
+        assertEquals(35.74, Geoid.getOffset(55.75, 13.25), 1e-9);
+        assertEquals(13.68, Geoid.getOffset(90, 0), 1e-9);
+        assertEquals(13.68, Geoid.getOffset(90, 123.4), 1e-9);
+        assertEquals(-29.79, Geoid.getOffset(-90, 0), 1e-9);
+    }
+
+    @Test
+    public void interpolation() {
+        assertEquals(35.6335, Geoid.getOffset(55.7, 13.2), 1e-3);
+        assertEquals(22.4842, Geoid.getOffset(-33.9, 151.2), 1e-3);
+        assertEquals(Geoid.getOffset(55.7, 13.2), Geoid.getOffset(55.7, 13.2 - 360), 1e-9);
+        // Close to the poles, only bilinear interpolation is possible
+        assertEquals(13.79, Geoid.getOffset(89.9, 10.1), 0.01);
+        assertEquals(-29.67, Geoid.getOffset(-89.9, 10.1), 0.01);
+    }
+
+    @Test
+    public void noAllocationInCell() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long id = Thread.currentThread().getId();
+        final int fixes = 100000;
+
+        double sum = 0;
+        for (int n = 0; n < fixes; n++) {
+            sum += Geoid.getOffset(55.7 + (n % 1000) * 1e-5, 13.2);
+        }
+        long start = threads.getThreadAllocatedBytes(id);
+        long overhead = threads.getThreadAllocatedBytes(id) - start;
+        start = threads.getThreadAllocatedBytes(id);
+        for (int n = 0; n < fixes; n++) {
+            sum += Geoid.getOffset(55.7 + (n % 1000) * 1e-5, 13.2);
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - start - overhead;
+
+        assertTrue("allocated " + allocated + " bytes for " + fixes + " lookups", allocated < fixes);
+        assertTrue(sum > 0);
+    }
+}
@@ -0,0 +1,100 @@
+package org.runnerup.db;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.runnerup.common.util.Constants.DB;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Cached exports are keyed on the modification stamp, edits to laps and locations must bump it.
+ */
+public class ActivityModifiedTriggerTest {
+    private Connection conn;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        execute(DBHelper.CREATE_TABLE_ACTIVITY);
+        execute(DBHelper.CREATE_TABLE_LAP);
+        execute(DBHelper.CREATE_TABLE_LOCATION);
+        execute(DBHelper.CREATE_TABLE_TRACK);
+        execute(DBHelper.CREATE_TRIGGER_ACTIVITY_MODIFIED);
+        for (String sql : DBHelper.CREATE_TRIGGER_ACTIVITY_DATA_MODIFIED) {
+            execute(sql);
+        }
+        execute("insert into " + DB.ACTIVITY.TABLE + " (_id) values (1)");
+        execute("insert into " + DB.ACTIVITY.TABLE + " (_id) values (2)");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    private void execute(String sql) throws SQLException {
+        Statement s = conn.createStatement();
+        s.execute(sql);
+        s.close();
+    }
+
+    private long modified(long id) throws SQLException {
+        Statement s = conn.createStatement();
+        ResultSet rs = s.executeQuery("select " + DB.ACTIVITY.MODIFIED + " from "
+                + DB.ACTIVITY.TABLE + " where _id = " + id);
+        long res = rs.next() ? rs.getLong(1) : -1;
+        rs.close();
+        s.close();
+        return res;
+    }
+
+    @Test
+    public void lapEdits() throws SQLException {
+        execute("insert into " + DB.LAP.TABLE + " (" + DB.LAP.ACTIVITY + ", " + DB.LAP.LAP
+                + ") values (1, 0)");
+        assertEquals(1, modified(1));
+        execute("update " + DB.LAP.TABLE + " set " + DB.LAP.DISTANCE + " = 1000");
+        assertEquals(2, modified(1));
+        execute("delete from " + DB.LAP.TABLE);
+        assertEquals(3, modified(1));
+        assertEquals(0, modified(2));
+    }
+
+    @Test
+    public void locationEdits() throws SQLException {
+        // Recorded locations do not touch the activity
+        execute("insert into " + DB.LOCATION.TABLE + " (" + DB.LOCATION.ACTIVITY + ", "
+                + DB.LOCATION.LAP + ", " + DB.LOCATION.TYPE + ", " + DB.LOCATION.TIME + ", "
+                + DB.LOCATION.LONGITUDE + ", " + DB.LOCATION.LATITUDE
+                + ") values (1, 0, 0, 0, 0, 0)");
+        assertEquals(0, modified(1));
+        execute("update " + DB.LOCATION.TABLE + " set " + DB.LOCATION.ALTITUDE + " = 10");
+        assertEquals(1, modified(1));
+
+        execute("insert into " + DB.TRACK.TABLE + " (" + DB.TRACK.ACTIVITY + ", "
+                + DB.TRACK.COUNT + ", " + DB.TRACK.DATA + ") values (1, 1, x'00')");
+        assertEquals(2, modified(1));
+        assertEquals(0, modified(2));
+    }
+}
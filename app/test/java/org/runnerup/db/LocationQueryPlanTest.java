@@ -0,0 +1,107 @@
+package org.runnerup.db;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.runnerup.common.util.Constants.DB;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The location table is large, all reads per activity must use the index.
+ * The queries are built from the selections and orders used by TrackStore.
+ */
+public class LocationQueryPlanTest {
+    private static final String INDEX = "LOCATION_ACTIVITY_LAP";
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Statement s = conn.createStatement();
+        s.execute(DBHelper.CREATE_TABLE_LOCATION);
+        s.execute(DBHelper.CREATE_INDEX_LOCATION);
+        s.close();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    private void assertUsesIndex(String sql) throws SQLException {
+        Statement s = conn.createStatement();
+        ResultSet rs = s.executeQuery("EXPLAIN QUERY PLAN " + sql);
+        StringBuilder plan = new StringBuilder();
+        boolean indexed = false;
+        while (rs.next()) {
+            String detail = rs.getString("detail");
+            plan.append(detail).append('\n');
+            if (detail.contains(DB.LOCATION.TABLE) && detail.contains(INDEX)) {
+                indexed = true;
+            }
+        }
+        rs.close();
+        s.close();
+        assertTrue("Full scan for: " + sql + "\n" + plan, indexed);
+    }
+
+    /**
+     * The statement SQLiteDatabase.query() runs
+     */
+    private static String query(String selection, String order, String limit) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < TrackCodec.COLUMNS.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(TrackCodec.COLUMNS[i]);
+        }
+        sql.append(" FROM ").append(DB.LOCATION.TABLE)
+                .append(" WHERE ").append(selection)
+                .append(" ORDER BY ").append(order);
+        if (limit != null) {
+            sql.append(" LIMIT ").append(limit);
+        }
+        return sql.toString();
+    }
+
+    @Test
+    public void activityQueryUsesIndex() throws SQLException {
+        // TrackStore.query(db, columns, activityId) and seal()
+        assertUsesIndex(query(TrackStore.getLocationSelection(1, -1),
+                TrackStore.LOCATION_ORDER, null));
+    }
+
+    @Test
+    public void lapQueriesUseIndex() throws SQLException {
+        // TrackStore.query(db, columns, activityId, lap): ActivityCleaner.trimLap
+        assertUsesIndex(query(TrackStore.getLocationSelection(1, 2),
+                TrackStore.LOCATION_ORDER, null));
+    }
+
+    @Test
+    public void sealUsesIndex() throws SQLException {
+        // TrackStore.seal
+        assertUsesIndex("DELETE FROM " + DB.LOCATION.TABLE
+                + " WHERE " + TrackStore.getLocationSelection(1, -1));
+    }
+}
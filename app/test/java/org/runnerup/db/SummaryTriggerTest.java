@@ -0,0 +1,139 @@
+package org.runnerup.db;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.runnerup.common.util.Constants.DB;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The summary and rollup tables are maintained by triggers on the activity table.
+ */
+public class SummaryTriggerTest {
+    // 2018-01-15 12:00 UTC
+    private static final long START = 1516017600;
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Statement s = conn.createStatement();
+        s.execute(DBHelper.CREATE_TABLE_ACTIVITY);
+        s.execute(DBHelper.CREATE_TRIGGER_ACTIVITY_MODIFIED);
+        s.execute(DBHelper.CREATE_TABLE_SUMMARY);
+        s.execute(DBHelper.CREATE_TABLE_ROLLUP);
+        for (String sql : DBHelper.getCreateTriggerSummary(Calendar.SUNDAY)) {
+            s.execute(sql);
+        }
+        s.close();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    private void execute(String sql) throws SQLException {
+        Statement s = conn.createStatement();
+        s.execute(sql);
+        s.close();
+    }
+
+    private void insert(long id, long startTime, double distance, long time) throws SQLException {
+        execute("insert into " + DB.ACTIVITY.TABLE + " (_id, " + DB.ACTIVITY.START_TIME + ", "
+                + DB.ACTIVITY.DISTANCE + ", " + DB.ACTIVITY.TIME + ", " + DB.ACTIVITY.SPORT
+                + ") values (" + id + ", " + startTime + ", " + distance + ", " + time + ", 0)");
+    }
+
+    private long count(String table) throws SQLException {
+        return queryLong("select count(*) from " + table);
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        Statement s = conn.createStatement();
+        ResultSet rs = s.executeQuery(sql);
+        long res = rs.next() ? rs.getLong(1) : -1;
+        rs.close();
+        s.close();
+        return res;
+    }
+
+    private long yearTotal(String column) throws SQLException {
+        return queryLong("select " + column + " from " + DB.ROLLUP.TABLE
+                + " where " + DB.ROLLUP.PERIOD + " = " + DB.ROLLUP.PERIOD_YEAR);
+    }
+
+    @Test
+    public void insertUpdateDelete() throws SQLException {
+        insert(1, START, 5000, 1500);
+        insert(2, START + 86400, 10000, 3000);
+        assertEquals(2, count(DB.SUMMARY.TABLE));
+        assertEquals(2, yearTotal(DB.ROLLUP.COUNT));
+        assertEquals(15000, yearTotal(DB.ROLLUP.DISTANCE));
+
+        execute("update " + DB.ACTIVITY.TABLE + " set " + DB.ACTIVITY.DISTANCE
+                + " = 6000 where _id = 1");
+        assertEquals(2, count(DB.SUMMARY.TABLE));
+        assertEquals(16000, yearTotal(DB.ROLLUP.DISTANCE));
+        assertEquals(4500, yearTotal(DB.ROLLUP.TIME));
+
+        // Deleted activities are not in the history
+        execute("update " + DB.ACTIVITY.TABLE + " set deleted = 1 where _id = 2");
+        assertEquals(1, count(DB.SUMMARY.TABLE));
+        assertEquals(6000, yearTotal(DB.ROLLUP.DISTANCE));
+
+        execute("delete from " + DB.ACTIVITY.TABLE);
+        assertEquals(0, count(DB.SUMMARY.TABLE));
+        assertEquals(0, count(DB.ROLLUP.TABLE));
+    }
+
+    private long weekCount(long bucket) throws SQLException {
+        return queryLong("select " + DB.ROLLUP.COUNT + " from " + DB.ROLLUP.TABLE
+                + " where " + DB.ROLLUP.PERIOD + " = " + DB.ROLLUP.PERIOD_WEEK
+                + " and " + DB.ROLLUP.BUCKET + " = " + bucket);
+    }
+
+    @Test
+    public void weekAtNewYear() throws SQLException {
+        // Sunday 2017-12-31 and Monday 2018-01-01, 12:00 UTC
+        insert(1, 1514721600, 5000, 1500);
+        insert(2, 1514808000, 5000, 1500);
+        // Weeks start on Sunday, keyed by the first day
+        assertEquals(2, weekCount(20171231));
+        assertEquals(20171231, queryLong("select " + DB.SUMMARY.WEEK + " from "
+                + DB.SUMMARY.TABLE + " where _id = 2"));
+    }
+
+    @Test
+    public void unrelatedUpdate() throws SQLException {
+        insert(1, START, 5000, 1500);
+        execute("update " + DB.ACTIVITY.TABLE + " set " + DB.ACTIVITY.COMMENT
+                + " = 'x' where _id = 1");
+        assertEquals(1, count(DB.SUMMARY.TABLE));
+        assertEquals(1, yearTotal(DB.ROLLUP.COUNT));
+        assertEquals(3, count(DB.ROLLUP.TABLE));
+    }
+}
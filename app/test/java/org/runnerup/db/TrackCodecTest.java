@@ -0,0 +1,97 @@
+package org.runnerup.db;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+import org.runnerup.common.util.Constants.DB;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrackCodecTest {
+    private static final int LAP = TrackCodec.getColumnIndex(DB.LOCATION.LAP);
+    private static final int TIME = TrackCodec.getColumnIndex(DB.LOCATION.TIME);
+    private static final int LATITUDE = TrackCodec.getColumnIndex(DB.LOCATION.LATITUDE);
+    private static final int LONGITUDE = TrackCodec.getColumnIndex(DB.LOCATION.LONGITUDE);
+    private static final int HR = TrackCodec.getColumnIndex(DB.LOCATION.HR);
+
+    private static TrackCodec.Track createTrack(int size) {
+        TrackCodec.Track track = new TrackCodec.Track(size);
+        for (int row = 0; row < size; row++) {
+            for (int i = 0; i < TrackCodec.COLUMNS.length; i++) {
+                track.setNull(i, row);
+            }
+            track.set(LAP, row, row / 1000);
+            track.set(TIME, row, 1500000000000L + row * 1000L);
+            track.set(LATITUDE, row, 55.7 + row * 1e-5);
+            track.set(LONGITUDE, row, 13.2 - row * 2e-5);
+            if (row % 3 != 0) {
+                track.set(HR, row, 140 + row % 7);
+            }
+        }
+        return track;
+    }
+
+    private static void assertTrackEquals(TrackCodec.Track expected, int from, TrackCodec.Track actual) {
+        for (int row = 0; row < actual.size(); row++) {
+            for (int i = 0; i < TrackCodec.COLUMNS.length; i++) {
+                assertEquals(expected.isNull(i, from + row), actual.isNull(i, row));
+                assertEquals(expected.getDouble(i, from + row), actual.getDouble(i, row), 0);
+            }
+        }
+    }
+
+    @Test
+    public void roundtrip() {
+        TrackCodec.Track track = createTrack(5000);
+        byte[] data = TrackCodec.encode(track);
+        TrackCodec.Track decoded = TrackCodec.decode(data);
+
+        assertEquals(track.size(), decoded.size());
+        assertTrackEquals(track, 0, decoded);
+        assertEquals(140 + 1, decoded.getLong(HR, 1));
+        assertEquals(55.7 + 2 * 1e-5, decoded.getDouble(LATITUDE, 2), 1e-7);
+        // like SQLite, real values are truncated
+        assertEquals(55, decoded.getLong(LATITUDE, 2));
+        // steady 1 Hz samples should compress well below the size of the location rows
+        assertTrue("size: " + data.length, data.length < track.size() * 16);
+    }
+
+    @Test
+    public void parts() {
+        TrackCodec.Track track = createTrack(2500);
+        TrackCodec.Track first = TrackCodec.decode(TrackCodec.encode(track, 0, 1000));
+        TrackCodec.Track second = TrackCodec.decode(TrackCodec.encode(track, 1000, 1500));
+        assertTrackEquals(track, 1000, second);
+
+        TrackCodec.Track joined = TrackCodec.Track.concat(Arrays.asList(first, second));
+        assertEquals(track.size(), joined.size());
+        assertTrackEquals(track, 0, joined);
+    }
+
+    @Test
+    public void empty() {
+        TrackCodec.Track decoded = TrackCodec.decode(TrackCodec.encode(new TrackCodec.Track(0)));
+        assertEquals(0, decoded.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncated() {
+        byte[] data = TrackCodec.encode(createTrack(100));
+        TrackCodec.decode(Arrays.copyOf(data, data.length / 2));
+    }
+}
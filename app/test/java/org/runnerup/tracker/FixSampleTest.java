@@ -0,0 +1,169 @@
+package org.runnerup.tracker;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import android.location.Location;
+import android.location.LocationManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.runnerup.common.util.Constants.DB;
+import org.runnerup.tracker.filter.PersistentGpsLoggerListener;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+// Robolectric provides Location and the time sources used by the tracker
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class FixSampleTest {
+    private static final int FIXES = 100000;
+
+    // As the tracker and the write-behind buffer use the samples
+    private final FixSample.Pool pool = new FixSample.Pool(2);
+    private final FixSample[] slots = new FixSample[256];
+
+    public FixSampleTest() {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new FixSample();
+        }
+    }
+
+    /**
+     * The write-behind writer, without a database the batches are committed at once
+     */
+    private static class CommittingWriter extends PersistentGpsLoggerListener {
+        volatile long written = 0;
+
+        CommittingWriter() {
+            super(null, DB.LOCATION.TABLE, null, false, true);
+        }
+
+        @Override
+        protected boolean writeBatch(int start, int count) {
+            written += count;
+            return true;
+        }
+    }
+
+    private static void fill(FixSample s, int n) {
+        s.time = 1500000000000L + n * 1000L;
+        s.latitude = 55.7 + n * 1e-5;
+        s.longitude = 13.2;
+        s.accuracy = 4;
+        s.mask |= FixSample.HAS_ACCURACY;
+        if (n % 2 == 0) {
+            s.hr = 140 + n % 20;
+            s.mask |= FixSample.HAS_HR;
+        }
+        s.cadence = 85.5f;
+        s.altitude = 10 + n % 5;
+        s.mask |= FixSample.HAS_CADENCE | FixSample.HAS_ALTITUDE;
+    }
+
+    private void onFix(int n) {
+        FixSample s = pool.obtain();
+        fill(s, n);
+        slots[n % slots.length].copyFrom(s);
+        pool.recycle(s);
+    }
+
+    @Test
+    public void poolReusesSamples() {
+        FixSample s1 = pool.obtain();
+        s1.mask = FixSample.HAS_HR;
+        FixSample s2 = pool.obtain();
+        assertNotSame(s1, s2);
+        pool.recycle(s1);
+        FixSample s3 = pool.obtain();
+        assertSame(s1, s3);
+        assertFalse(s3.has(FixSample.HAS_HR));
+    }
+
+    @Test
+    public void copy() {
+        onFix(2);
+        FixSample s = slots[2];
+        assertTrue(s.has(FixSample.HAS_HR));
+        assertTrue(s.has(FixSample.HAS_CADENCE));
+        assertFalse(s.has(FixSample.HAS_TEMPERATURE));
+        assertEquals(142, s.hr);
+        assertEquals(85.5f, s.cadence, 0);
+        assertEquals(55.7 + 2 * 1e-5, s.latitude, 0);
+    }
+
+    // The tracker keeps the last location, alternate between two
+    private final Location[] locations = {
+            new Location(LocationManager.GPS_PROVIDER),
+            new Location(LocationManager.GPS_PROVIDER)
+    };
+
+    private void onLocation(Tracker tracker, int n) {
+        Location l = locations[n % locations.length];
+        l.setTime(1500000000000L + n * 1000L);
+        l.setElapsedRealtimeNanos(n * 1000000000L);
+        l.setLatitude(55.7 + n * 1e-5);
+        l.setLongitude(13.2);
+        l.setAccuracy(4);
+        l.setAltitude(10 + n % 5);
+        l.setSpeed(3.5f);
+        tracker.onLocationChanged(l);
+    }
+
+    @Test
+    public void noAllocationWhenRecording() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long id = Thread.currentThread().getId();
+
+        Tracker tracker = Robolectric.buildService(Tracker.class).get();
+        CommittingWriter writer = new CommittingWriter();
+        tracker.startRecording(writer);
+        long allocated;
+        try {
+            // Steady state, the pool is filled and the code is compiled
+            for (int n = 0; n < FIXES; n++) {
+                onLocation(tracker, n);
+            }
+
+            // Measuring may allocate, the overhead is not per fix
+            long start = threads.getThreadAllocatedBytes(id);
+            long overhead = threads.getThreadAllocatedBytes(id) - start;
+            start = threads.getThreadAllocatedBytes(id);
+            for (int n = FIXES; n < 2 * FIXES; n++) {
+                onLocation(tracker, n);
+            }
+            allocated = threads.getThreadAllocatedBytes(id) - start - overhead;
+        } finally {
+            writer.close();
+        }
+
+        assertEquals("allocated bytes for " + FIXES + " fixes", 0, allocated);
+        assertEquals(2 * FIXES, writer.written);
+        assertEquals(2 * FIXES, tracker.getLiveSamples().getCount());
+        assertTrue(tracker.getDistance() > 0);
+    }
+}
@@ -0,0 +1,102 @@
+package org.runnerup.tracker;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LiveSamplesTest {
+
+    private static void add(LiveSamples samples, FixSample s, long i) {
+        s.clear();
+        s.elapsed = i * 1000;
+        s.distance = i * 3;
+        if (i % 2 == 0) {
+            s.hr = (int) (i % 200);
+            s.mask |= FixSample.HAS_HR;
+        }
+        samples.add(s, i);
+    }
+
+    @Test
+    public void readFrom() {
+        LiveSamples samples = new LiveSamples();
+        LiveSamples.Series out = new LiveSamples.Series();
+        FixSample s = new FixSample();
+        assertEquals(0, samples.read(0, out));
+
+        for (long i = 0; i < 100; i++) {
+            add(samples, s, i);
+        }
+        assertEquals(100, samples.read(0, out));
+        assertEquals(10, samples.read(90 * 1000, out));
+        assertEquals(90 * 1000, out.elapsed[0]);
+        assertEquals(99 * 3, out.distance[9], 0);
+        assertEquals(98, out.hr[8], 0);
+        assertTrue(Double.isNaN(out.hr[9]));
+        assertTrue(Double.isNaN(out.altitude[9]));
+
+        // Only the last CAPACITY samples are kept
+        for (long i = 100; i < 5000; i++) {
+            add(samples, s, i);
+        }
+        assertEquals(LiveSamples.CAPACITY - 1, samples.read(0, out));
+        assertEquals(4999 * 1000, out.elapsed[out.size - 1]);
+
+        samples.clear();
+        assertEquals(0, samples.read(0, out));
+        add(samples, s, 0);
+        assertEquals(1, samples.read(0, out));
+    }
+
+    @Test
+    public void concurrentRead() throws InterruptedException {
+        final LiveSamples samples = new LiveSamples();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                FixSample s = new FixSample();
+                for (long i = 0; i < 2000000; i++) {
+                    add(samples, s, i);
+                }
+                done.set(true);
+            }
+        });
+        producer.start();
+
+        LiveSamples.Series out = new LiveSamples.Series();
+        int reads = 0;
+        while (!done.get() || reads == 0) {
+            samples.read(0, out);
+            // Consecutive samples with consistent values
+            for (int j = 0; j < out.size; j++) {
+                long i = out.elapsed[j] / 1000;
+                assertEquals(i * 3, out.distance[j], 0);
+                assertEquals(i, out.speed[j], 0);
+                if (j > 0) {
+                    assertEquals(out.elapsed[j - 1] + 1000, out.elapsed[j]);
+                }
+            }
+            reads++;
+        }
+        producer.join();
+        assertEquals(LiveSamples.CAPACITY - 1, samples.read(0, out));
+    }
+}
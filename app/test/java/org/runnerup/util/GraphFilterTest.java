@@ -0,0 +1,94 @@
+package org.runnerup.util;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class GraphFilterTest {
+
+    private static double[] createPace(int size, long seed) {
+        Random random = new Random(seed);
+        double[] data = new double[size];
+        for (int i = 0; i < size; i++) {
+            // About 5:00 min/km with noise and some duplicates
+            data[i] = 0.3 + (random.nextInt(4) == 0 ? 0 : random.nextGaussian() * 0.05);
+        }
+        return data;
+    }
+
+    // The window as the filters use it, sorted for every sample
+    private static void sortedMovingMedian(double[] data, double tail, int windowLen) {
+        double[] window = new double[windowLen];
+        for (int j = 0; j < windowLen - 1; j++)
+            window[j] = data[0];
+        final int mid = (windowLen - 1) / 2;
+        for (int i = 0; i < data.length && i <= mid; i++)
+            window[i + mid] = data[i];
+
+        double[] sort = new double[windowLen];
+        for (int i = 0; i < data.length; i++) {
+            System.arraycopy(window, 0, sort, 0, windowLen);
+            Arrays.sort(sort);
+            data[i] = sort[mid];
+            System.arraycopy(window, 1, window, 0, windowLen - 1);
+            window[windowLen - 1] = (i + mid) < data.length ? data[i + mid] : tail;
+        }
+    }
+
+    @Test
+    public void movingMedian() {
+        int[] lengths = {1, 2, 3, 4, 5, 8, 31, 32};
+        for (int len : lengths) {
+            for (int size : new int[]{1, 10, 1000}) {
+                double[] expected = createPace(size, len * size);
+                double[] data = expected.clone();
+                sortedMovingMedian(expected, 0.3, len);
+                new GraphFilter(data, 0.3).movingMedian(len);
+                assertArrayEquals("len " + len + " size " + size, expected, data, 0);
+            }
+        }
+    }
+
+    @Test
+    public void runningMedian() {
+        Random random = new Random(7);
+        double[] window = new double[9];
+        for (int i = 0; i < window.length; i++)
+            window[i] = random.nextInt(5);
+        GraphFilter.RunningMedian median = new GraphFilter.RunningMedian(window);
+        for (int i = 0; i < 10000; i++) {
+            int pos = random.nextInt(window.length);
+            window[pos] = random.nextInt(5);
+            median.replace(pos, window[pos]);
+            double[] sorted = window.clone();
+            Arrays.sort(sorted);
+            assertEquals(sorted[4], median.get(), 0);
+        }
+    }
+
+    @Test
+    public void movingAverage() {
+        double[] data = {1, 2, 3, 4, 5, 6, 7};
+        new GraphFilter(data, 10).movingAvergage(3);
+        // data[0] before the start, the window is [1, 1, 2], [1, 2, 2], [2, 2, 3], ...
+        assertArrayEquals(new double[]{4 / 3.0, 5 / 3.0, 7 / 3.0, 3, 4, 5, 6}, data, 1e-12);
+    }
+}
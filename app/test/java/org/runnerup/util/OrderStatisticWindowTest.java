@@ -0,0 +1,87 @@
+package org.runnerup.util;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class OrderStatisticWindowTest {
+
+    // The trimmed mean as computed by TargetTrigger with a sort
+    private static double sortedTrimmedMean(double[] window, int size) {
+        double[] sorted = Arrays.copyOf(window, size);
+        Arrays.sort(sorted);
+        int skip = (5 * size) / 100;
+        double cnt = 0;
+        double val = 0;
+        for (int i = skip; i < size - skip; i++) {
+            val += sorted[i];
+            cnt++;
+        }
+        return val / cnt;
+    }
+
+    @Test
+    public void trimmedMean() {
+        final int capacity = 60;
+        OrderStatisticWindow window = new OrderStatisticWindow(capacity);
+        double[] values = new double[capacity];
+        Random r = new Random(17);
+        assertEquals(Double.NaN, window.getTrimmedMean(5), 0);
+        for (int i = 0; i < 2000; i++) {
+            double v = 240 + 60 * r.nextGaussian();
+            if (i % 37 == 0) {
+                // Standing still
+                v = Double.POSITIVE_INFINITY;
+            } else if (i % 11 == 0) {
+                // Repeated values
+                v = 300;
+            }
+            values[i % capacity] = v;
+            window.add(v);
+
+            int size = Math.min(i + 1, capacity);
+            assertEquals(size, window.size());
+            assertEquals("at " + i, sortedTrimmedMean(values, size), window.getTrimmedMean(5),
+                    1e-9);
+        }
+    }
+
+    @Test
+    public void rank() {
+        OrderStatisticWindow window = new OrderStatisticWindow(5);
+        for (double v : new double[] { 5, 1, Double.NaN, 4, 2, 3, 3 }) {
+            window.add(v);
+        }
+        // The window is 4, 2, 3, 3 and NaN
+        assertEquals(2, window.get(0), 0);
+        assertEquals(3, window.get(1), 0);
+        assertEquals(3, window.get(2), 0);
+        assertEquals(4, window.get(3), 0);
+        assertEquals(Double.NaN, window.get(4), 0);
+        assertEquals(3, window.getMedian(), 0);
+        assertEquals(3, window.getMean(0, 4), 0);
+        assertEquals(Double.NaN, window.getMean(0, 5), 0);
+
+        window.clear();
+        assertEquals(0, window.size());
+        window.add(7);
+        assertEquals(7, window.getMedian(), 0);
+    }
+}
@@ -0,0 +1,64 @@
+package org.runnerup.util;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RouteGeometryTest {
+
+    private static RouteGeometry createGeometry(int size) {
+        TrackSimplifier s = new TrackSimplifier(size);
+        Random random = new Random(3);
+        for (int i = 0; i < size; i++) {
+            // Northbound with about 5 m noise
+            s.add(55.7 + i * 1e-5, 13.2 + random.nextGaussian() * 5e-5);
+        }
+        return new RouteGeometry(s);
+    }
+
+    @Test
+    public void detailInBounds() {
+        RouteGeometry geometry = createGeometry(10000);
+        boolean[] keep = new boolean[geometry.size()];
+        int overview = geometry.select(20, 20, -90, -180, 90, 180, keep);
+        int full = geometry.select(1, 1, -90, -180, 90, 180, keep);
+
+        // Detail for the first tenth of the route
+        int mixed = geometry.select(1, 20, 55.7, 13, 55.71, 14, keep);
+        assertTrue(overview < mixed && mixed < full);
+        int inside = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (keep[i]) {
+                inside++;
+            }
+        }
+        assertTrue(inside > mixed / 2);
+    }
+
+    @Test
+    public void tolerance() {
+        RouteGeometry geometry = createGeometry(10000);
+        boolean[] keep = new boolean[geometry.size()];
+        double tolerance = geometry.getTolerance(500);
+        int count = geometry.select(tolerance, tolerance, -90, -180, 90, 180, keep);
+        assertTrue(count <= 500 && count > 400);
+        assertEquals(0, geometry.getTolerance(20000), 0);
+    }
+}
@@ -0,0 +1,99 @@
+package org.runnerup.util;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrackSimplifierTest {
+    // About 1 m
+    private static final double STEP = 1e-5;
+
+    @Test
+    public void straightLine() {
+        TrackSimplifier s = new TrackSimplifier(10);
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            // less than 0.5 m off the line
+            s.add(55.7 + i * STEP, 13.2 + (random.nextDouble() - 0.5) * 0.5 * STEP);
+        }
+        boolean[] keep = new boolean[s.size()];
+        assertEquals(2, s.select(1.0, keep));
+        assertTrue(keep[0]);
+        assertTrue(keep[999]);
+    }
+
+    @Test
+    public void corners() {
+        TrackSimplifier s = new TrackSimplifier(10);
+        for (int i = 0; i < 100; i++) {
+            s.add(55.7 + i * STEP, 13.2);
+        }
+        for (int i = 1; i < 100; i++) {
+            s.add(55.7 + 99 * STEP, 13.2 + i * STEP);
+        }
+        boolean[] keep = new boolean[s.size()];
+        assertEquals(3, s.select(1.0, keep));
+        assertTrue(keep[99]);
+        assertEquals(3, s.select(3, keep));
+        assertTrue(keep[99]);
+    }
+
+    @Test
+    public void fixedPoints() {
+        TrackSimplifier s = new TrackSimplifier(10);
+        for (int i = 0; i < 100; i++) {
+            s.add(55.7 + i * STEP, 13.2, i == 50);
+        }
+        boolean[] keep = new boolean[s.size()];
+        assertEquals(3, s.select(1.0, keep));
+        assertTrue(keep[50]);
+        // Fixed points are kept also above the limit
+        assertEquals(3, s.select(1, keep));
+    }
+
+    @Test
+    public void maxPoints() {
+        TrackSimplifier s = new TrackSimplifier(10);
+        Random random = new Random(2);
+        double lat = 55.7;
+        double lon = 13.2;
+        final int size = 3 * TrackSimplifier.WINDOW + 100;
+        for (int i = 0; i < size; i++) {
+            lat += random.nextGaussian() * STEP;
+            lon += random.nextGaussian() * STEP;
+            s.add(lat, lon);
+        }
+        boolean[] keep = new boolean[s.size()];
+        assertEquals(500, s.select(500, keep));
+        // Window ends are kept
+        assertTrue(keep[TrackSimplifier.WINDOW - 1]);
+        assertTrue(keep[size - 1]);
+
+        // Fewer points for a higher tolerance, the points are a subset
+        boolean[] keep2 = new boolean[s.size()];
+        int c1 = s.select(1.0, keep);
+        int c2 = s.select(5.0, keep2);
+        assertTrue(c2 < c1);
+        for (int i = 0; i < size; i++) {
+            assertFalse(keep2[i] && !keep[i]);
+        }
+    }
+}
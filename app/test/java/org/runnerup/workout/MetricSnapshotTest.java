@@ -0,0 +1,56 @@
+package org.runnerup.workout;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MetricSnapshotTest {
+
+    private static class CountingSource implements MetricSnapshot.Source {
+        int calls = 0;
+        double distance = 100;
+
+        @Override
+        public double compute(Scope scope, Dimension dimension) {
+            calls++;
+            return dimension == Dimension.DISTANCE ? distance : scope.ordinal();
+        }
+    }
+
+    @Test
+    public void computedOncePerSnapshot() {
+        CountingSource source = new CountingSource();
+        MetricSnapshot snapshot = new MetricSnapshot(source);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(100, snapshot.get(Scope.ACTIVITY, Dimension.DISTANCE), 0);
+            assertEquals(Scope.LAP.ordinal(), snapshot.get(Scope.LAP, Dimension.TIME), 0);
+        }
+        assertEquals(2, source.calls);
+
+        // Kept until renewed
+        source.distance = 200;
+        assertEquals(100, snapshot.get(Scope.ACTIVITY, Dimension.DISTANCE), 0);
+        snapshot.renew();
+        assertEquals(200, snapshot.get(Scope.ACTIVITY, Dimension.DISTANCE), 0);
+        assertEquals(3, source.calls);
+
+        // Scopes are separate
+        assertEquals(200, snapshot.get(Scope.STEP, Dimension.DISTANCE), 0);
+        assertEquals(4, source.calls);
+    }
+}
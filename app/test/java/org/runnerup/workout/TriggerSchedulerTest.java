@@ -0,0 +1,215 @@
+package org.runnerup.workout;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+import org.runnerup.tracker.Tracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TriggerSchedulerTest {
+
+    private static class CountingTrigger extends IntervalTrigger {
+        int ticks = 0;
+
+        CountingTrigger(Scope scope, Dimension dimension, double interval) {
+            this.scope = scope;
+            this.dimension = dimension;
+            this.first = interval;
+            this.interval = interval;
+        }
+
+        @Override
+        public boolean onTick(Workout w) {
+            ticks++;
+            return super.onTick(w);
+        }
+    }
+
+    private static class CountingListTrigger extends ListTrigger {
+        int ticks = 0;
+
+        CountingListTrigger(Scope scope, Dimension dimension, Double... times) {
+            super(dimension, scope, new ArrayList<>(Arrays.asList(times)));
+        }
+
+        @Override
+        public boolean onTick(Workout w) {
+            ticks++;
+            return super.onTick(w);
+        }
+    }
+
+    @Test
+    public void onlyDueTriggersAreCalled() {
+        Workout workout = mock(Workout.class);
+        Feedback timeFeedback = mock(Feedback.class);
+        Feedback distanceFeedback = mock(Feedback.class);
+
+        CountingTrigger time = new CountingTrigger(Scope.STEP, Dimension.TIME, 10);
+        time.triggerAction.add(timeFeedback);
+        CountingTrigger distance = new CountingTrigger(Scope.STEP, Dimension.DISTANCE, 1000);
+        distance.triggerAction.add(distanceFeedback);
+        ArrayList<Trigger> triggers = new ArrayList<>();
+        triggers.add(time);
+        triggers.add(distance);
+        for (Trigger t : triggers) {
+            t.onStart(Scope.STEP, workout);
+        }
+
+        TriggerScheduler scheduler = new TriggerScheduler();
+        for (int i = 0; i <= 35; i++) {
+            when(workout.get(Scope.STEP, Dimension.TIME)).thenReturn((double) i);
+            when(workout.get(Scope.STEP, Dimension.DISTANCE)).thenReturn(i * 4d);
+            scheduler.onTick(workout, triggers);
+        }
+
+        // Woken at 10, 20 and 30 s, not at every tick
+        assertEquals(3, time.ticks);
+        verify(workout, times(3)).addFeedback(timeFeedback);
+        assertEquals(0, distance.ticks);
+
+        // Started again, the next time is from the start
+        time.onStart(Scope.STEP, workout);
+        scheduler.invalidate();
+        when(workout.get(Scope.STEP, Dimension.TIME)).thenReturn(10d);
+        scheduler.onTick(workout, triggers);
+        assertEquals(4, time.ticks);
+        verify(workout, times(4)).addFeedback(timeFeedback);
+    }
+
+    @Test
+    public void countdownIsWokenAtEachTime() {
+        Workout workout = mock(Workout.class);
+        Feedback feedback = mock(Feedback.class);
+
+        CountingListTrigger countdown = new CountingListTrigger(Scope.STEP, Dimension.TIME,
+                60d, 30d, 10d);
+        countdown.triggerAction.add(feedback);
+        ArrayList<Trigger> triggers = new ArrayList<>();
+        triggers.add(countdown);
+        countdown.onStart(Scope.STEP, workout);
+
+        TriggerScheduler scheduler = new TriggerScheduler();
+        when(workout.getDuration(Scope.STEP, Dimension.TIME)).thenReturn(120d);
+        for (int i = 0; i <= 120; i++) {
+            when(workout.get(Scope.STEP, Dimension.TIME)).thenReturn((double) i);
+            when(workout.getRemaining(Scope.STEP, Dimension.TIME)).thenReturn(120d - i);
+            scheduler.onTick(workout, triggers);
+        }
+
+        // Woken at 60, 90 and 110 s (ahead by the margin), not after the last time
+        assertEquals(3, countdown.ticks);
+        verify(workout, times(3)).addFeedback(feedback);
+        verify(feedback).onEnd(workout);
+        assertEquals(Double.POSITIVE_INFINITY, scheduler.getNextTime(workout), 0);
+    }
+
+    @Test
+    public void rescheduledOnNewLap() {
+        Workout workout = mock(Workout.class);
+        Feedback feedback = mock(Feedback.class);
+
+        Step step = new Step();
+        CountingTrigger lap = new CountingTrigger(Scope.LAP, Dimension.TIME, 10);
+        lap.triggerAction.add(feedback);
+        step.triggers.add(lap);
+
+        step.onStart(Scope.LAP, workout);
+        for (int i = 0; i <= 15; i++) {
+            when(workout.get(Scope.LAP, Dimension.TIME)).thenReturn((double) i);
+            step.onTick(workout);
+        }
+        assertEquals(1, lap.ticks);
+
+        // The lap time starts over, the trigger is due at 10 s again, not at 20 s
+        step.onStart(Scope.LAP, workout);
+        for (int i = 0; i <= 10; i++) {
+            when(workout.get(Scope.LAP, Dimension.TIME)).thenReturn((double) i);
+            step.onTick(workout);
+        }
+        assertEquals(2, lap.ticks);
+        verify(workout, times(2)).addFeedback(feedback);
+    }
+
+    @Test
+    public void rescheduledOnRepeat() {
+        Workout workout = mock(Workout.class);
+        workout.tracker = mock(Tracker.class);
+        Feedback feedback = mock(Feedback.class);
+
+        Step step = new Step();
+        CountingTrigger interval = new CountingTrigger(Scope.STEP, Dimension.TIME, 10);
+        interval.triggerAction.add(feedback);
+        step.triggers.add(interval);
+
+        step.onStart(Scope.STEP, workout);
+        for (int i = 0; i <= 15; i++) {
+            when(workout.get(Scope.STEP, Dimension.TIME)).thenReturn((double) i);
+            step.onTick(workout);
+        }
+        assertEquals(1, interval.ticks);
+
+        // Restarted outside the step, picked up when the step is repeated
+        interval.onStart(Scope.STEP, workout);
+        step.onRepeat(1, 3);
+        when(workout.get(Scope.STEP, Dimension.TIME)).thenReturn(10d);
+        step.onTick(workout);
+        assertEquals(2, interval.ticks);
+        verify(workout, times(2)).addFeedback(feedback);
+    }
+
+    @Test
+    public void countdownInExtendedPause() {
+        Workout workout = mock(Workout.class);
+        workout.tracker = mock(Tracker.class);
+        Feedback feedback = mock(Feedback.class);
+
+        PauseStep pause = new PauseStep();
+        pause.setIntensity(Intensity.RESTING);
+        pause.setDurationType(Dimension.TIME);
+        pause.setDurationValue(30);
+        CountingListTrigger countdown = new CountingListTrigger(Scope.STEP, Dimension.TIME, 10d);
+        countdown.triggerAction.add(feedback);
+        pause.triggers.add(countdown);
+
+        pause.onStart(Scope.STEP, workout);
+        verify(workout.tracker).pause();
+        for (int i = 0; i <= 35; i++) {
+            if (i == 15) {
+                // Still paused, the step is extended
+                pause.setDurationValue(40);
+            }
+            when(workout.get(Scope.STEP, Dimension.TIME)).thenReturn((double) i);
+            when(workout.getDuration(Scope.STEP, Dimension.TIME))
+                    .thenReturn(pause.getDurationValue());
+            when(workout.getRemaining(Scope.STEP, Dimension.TIME))
+                    .thenReturn(pause.getDurationValue() - i);
+            assertFalse(pause.onTick(workout));
+        }
+
+        // Woken at 20 s for the planned duration, scheduled again and fired at 30 s
+        assertEquals(2, countdown.ticks);
+        verify(workout, times(1)).addFeedback(feedback);
+    }
+}
@@ -0,0 +1,112 @@
+package org.runnerup.workout;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WorkoutPlanTest {
+
+    private static Step step(Dimension dim, double value) {
+        Step s = new Step();
+        s.setDurationType(dim);
+        s.setDurationValue(value);
+        return s;
+    }
+
+    private static RepeatStep repeat(int count, Step... steps) {
+        RepeatStep r = new RepeatStep();
+        r.setRepeatCount(count);
+        for (Step s : steps) {
+            r.getSteps().add(s);
+        }
+        return r;
+    }
+
+    @Test
+    public void unrollsRepeats() {
+        Step warmup = step(Dimension.TIME, 600);
+        Step fast = step(Dimension.DISTANCE, 1000);
+        Step rest = step(Dimension.TIME, 90);
+        Step skipped = step(Dimension.TIME, 1000);
+        Step cooldown = step(null, 0);
+        Workout w = new Workout();
+        w.addStep(warmup);
+        w.addStep(repeat(3, fast, rest));
+        w.addStep(repeat(0, skipped));
+        w.addStep(cooldown);
+
+        WorkoutPlan plan = WorkoutPlan.compile(w);
+        assertEquals(8, plan.size());
+        assertFalse(plan.isTruncated());
+        assertSame(warmup, plan.getStep(0));
+        assertSame(fast, plan.getStep(5));
+        assertSame(rest, plan.getStep(6));
+        assertEquals(2, plan.getRepeat(5));
+        assertSame(cooldown, plan.getStep(7));
+        assertNull(plan.getNextStep(7));
+        assertSame(rest, plan.getNextStep(3));
+
+        // Same index as the flat list, also after a repeat that is not run
+        List<Workout.StepListEntry> list = w.getStepList();
+        for (int i = 0; i < plan.size(); i++) {
+            assertSame(plan.getStep(i), list.get(plan.getEntry(i)).step);
+        }
+
+        assertEquals(600 + 3 * 90, plan.getPlannedFrom(0, Dimension.TIME), 0);
+        assertEquals(3000, plan.getPlannedFrom(0, Dimension.DISTANCE), 0);
+        assertEquals(90, plan.getPlannedFrom(6, Dimension.TIME), 0);
+        assertEquals(0, plan.getPlannedFrom(8, Dimension.TIME), 0);
+        assertEquals(0, plan.getPlannedFrom(0, Dimension.SPEED), 0);
+
+        assertEquals(5, plan.find(fast, 4));
+        assertEquals(plan.size(), plan.find(skipped, 0));
+    }
+
+    @Test
+    public void nestedRepeats() {
+        Step inner = step(Dimension.TIME, 10);
+        Step outer = step(Dimension.TIME, 20);
+        Workout w = new Workout();
+        w.addStep(repeat(2, repeat(3, inner), outer));
+
+        WorkoutPlan plan = WorkoutPlan.compile(w);
+        assertEquals(8, plan.size());
+        assertEquals(2 * (3 * 10 + 20), plan.getPlannedFrom(0, Dimension.TIME), 0);
+        assertSame(outer, plan.getStep(3));
+        assertEquals(0, plan.getRepeat(3));
+        assertEquals(1, plan.getRepeat(7));
+        assertEquals(2, plan.getRepeat(6));
+        assertEquals(3, plan.getEntry(3));
+        assertEquals(2, plan.getEntry(4));
+    }
+
+    @Test
+    public void truncated() {
+        Workout w = new Workout();
+        w.addStep(repeat(WorkoutPlan.MAX_POSITIONS, step(Dimension.TIME, 1), step(null, 0)));
+
+        WorkoutPlan plan = WorkoutPlan.compile(w);
+        assertEquals(WorkoutPlan.MAX_POSITIONS, plan.size());
+        assertTrue(plan.isTruncated());
+    }
+}
@@ -0,0 +1,121 @@
+package org.runnerup.workout.feedback;
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CueCacheTest {
+
+    private static void putShort(ByteArrayOutputStream out, int v) {
+        out.write(v & 0xff);
+        out.write((v >> 8) & 0xff);
+    }
+
+    private static void putInt(ByteArrayOutputStream out, int v) {
+        putShort(out, v);
+        putShort(out, v >> 16);
+    }
+
+    private static void putTag(ByteArrayOutputStream out, String tag) {
+        for (int i = 0; i < 4; i++) {
+            out.write(tag.charAt(i));
+        }
+    }
+
+    private static byte[] wav(int rate, int bits, short[] samples) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        putTag(out, "RIFF");
+        putInt(out, 4 + 26 + 8 + 8 + 2 * samples.length);
+        putTag(out, "WAVE");
+        // fmt chunk with an extension, padded
+        putTag(out, "fmt ");
+        putInt(out, 18);
+        putShort(out, 1);
+        putShort(out, 1);
+        putInt(out, rate);
+        putInt(out, rate * 2);
+        putShort(out, 2);
+        putShort(out, bits);
+        putShort(out, 0);
+        putTag(out, "LIST");
+        putInt(out, 1);
+        out.write(0);
+        out.write(0);
+        putTag(out, "data");
+        putInt(out, 2 * samples.length);
+        for (short s : samples) {
+            putShort(out, s);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void decode() {
+        // 10 ms margin at 1 kHz is 10 samples
+        short[] samples = new short[100];
+        for (int i = 30; i < 60; i++) {
+            samples[i] = (short) (i % 2 == 0 ? -1000 : 1000);
+        }
+        CueCache.Clip clip = CueCache.decode(wav(1000, 16, samples));
+        assertEquals(1000, clip.rate);
+        assertEquals(1, clip.channels);
+        assertEquals(50, clip.samples.length);
+        assertEquals(0, clip.samples[9]);
+        assertEquals(-1000, clip.samples[10]);
+        assertEquals(1000, clip.samples[39]);
+
+        assertNull(CueCache.decode(wav(1000, 8, samples)));
+        assertNull(CueCache.decode(new byte[] { 'R', 'I', 'F', 'F' }));
+    }
+
+    @Test
+    public void split() {
+        assertArrayEquals(new String[] { "lap", "3", "kilometers" },
+                CueCache.split(" Lap 3  kilometers", Locale.US));
+        // Decimals and punctuation are spoken live
+        assertNull(CueCache.split("Distance 1.5 kilometers", Locale.US));
+        assertNull(CueCache.split("Pace, slow down", Locale.US));
+    }
+
+    @Test
+    public void stitch() {
+        CueCache.Clip a = new CueCache.Clip(1000, 1, new short[] { 1, 2 });
+        CueCache.Clip b = new CueCache.Clip(1000, 1, new short[] { 3 });
+        ArrayList<CueCache.Clip[]> cues = new ArrayList<>();
+        cues.add(new CueCache.Clip[] { a, b });
+        cues.add(new CueCache.Clip[] { b });
+        CueCache.Clip res = CueCache.stitch(cues);
+
+        int wordGap = CueCache.WORD_GAP_MS;
+        int cueGap = CueCache.CUE_GAP_MS;
+        assertEquals(2 + wordGap + 1 + cueGap + 1, res.samples.length);
+        assertEquals(1, res.samples[0]);
+        assertEquals(2, res.samples[1]);
+        assertEquals(0, res.samples[2]);
+        assertEquals(3, res.samples[2 + wordGap]);
+        assertEquals(3, res.samples[res.samples.length - 1]);
+
+        cues.add(new CueCache.Clip[] { new CueCache.Clip(2000, 1, new short[] { 1 }) });
+        assertNull(CueCache.stitch(cues));
+    }
+}
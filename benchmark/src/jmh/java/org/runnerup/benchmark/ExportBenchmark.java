@@ -0,0 +1,161 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.runnerup.util.JsonWriter;
+import org.runnerup.util.KXmlSerializer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Document generation as in the GPX and RunKeeper exports, without the database
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExportBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private Tracks track;
+    private SimpleDateFormat dateFormat;
+    private CountingWriter out;
+
+    /**
+     * Discards the output, the size is returned so the work is not eliminated
+     */
+    static class CountingWriter extends Writer {
+        long count = 0;
+
+        @Override
+        public void write(char[] buf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Setup
+    public void setup() {
+        track = new Tracks(size);
+        dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        out = new CountingWriter();
+    }
+
+    private String formatTime(long time) {
+        return dateFormat.format(new Date(time));
+    }
+
+    @Benchmark
+    public long gpx() throws IOException {
+        out.count = 0;
+        KXmlSerializer xml = new KXmlSerializer();
+        xml.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true);
+        xml.setOutput(out);
+        xml.startDocument("UTF-8", true);
+        xml.startTag("", "gpx");
+        xml.attribute("", "version", "1.1");
+        xml.attribute("", "xmlns", "http://www.topografix.com/GPX/1/1");
+        xml.attribute("", "xmlns:gpxtpx",
+                "http://www.garmin.com/xmlschemas/TrackPointExtension/v1");
+        xml.startTag("", "trk");
+        xml.startTag("", "trkseg");
+        for (int i = 0; i < track.size; i++) {
+            xml.startTag("", "trkpt");
+            xml.attribute("", "lon", Float.toString((float) track.longitude[i]));
+            xml.attribute("", "lat", Float.toString((float) track.latitude[i]));
+            xml.startTag("", "ele");
+            xml.text("" + track.altitude[i]);
+            xml.endTag("", "ele");
+            xml.startTag("", "time");
+            xml.text(formatTime(track.time[i]));
+            xml.endTag("", "time");
+            xml.startTag("", "extensions");
+            xml.startTag("", "gpxtpx:TrackPointExtension");
+            xml.startTag("", "gpxtpx:hr");
+            xml.text(Integer.toString(track.hr[i]));
+            xml.endTag("", "gpxtpx:hr");
+            xml.endTag("", "gpxtpx:TrackPointExtension");
+            xml.endTag("", "extensions");
+            xml.endTag("", "trkpt");
+        }
+        xml.endTag("", "trkseg");
+        xml.endTag("", "trk");
+        xml.endTag("", "gpx");
+        xml.flush();
+        xml.endDocument();
+        return out.count;
+    }
+
+    @Benchmark
+    public long json() throws IOException {
+        out.count = 0;
+        JsonWriter w = new JsonWriter(out);
+        w.beginObject();
+        w.name("type").value("Running");
+        w.name("start_time").value(formatTime(track.time[0]));
+        w.name("heart_rate");
+        w.beginArray();
+        for (int i = 0; i < track.size; i++) {
+            w.beginObject();
+            w.name("timestamp").value((track.time[i] - Tracks.START_TIME) / 1000);
+            w.name("heart_rate").value(Integer.toString(track.hr[i]));
+            w.endObject();
+        }
+        w.endArray();
+        w.name("path");
+        w.beginArray();
+        for (int i = 0; i < track.size; i++) {
+            w.beginObject();
+            w.name("timestamp").value((track.time[i] - Tracks.START_TIME) / 1000);
+            w.name("latitude").value(track.latitude[i]);
+            w.name("longitude").value(track.longitude[i]);
+            w.name("altitude").value(track.altitude[i]);
+            w.name("type").value("gps");
+            w.endObject();
+        }
+        w.endArray();
+        w.endObject();
+        w.flush();
+        return out.count;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.benchmark;
+
+import org.matthiaszimmermann.location.egm96.Geoid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Geoid correction, called for every elevation sample when recording
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeoidBenchmark {
+    private Tracks track;
+    private int pos = 0;
+    // Spread over the globe, a new grid cell for every lookup
+    private final double[] latitude = new double[1024];
+    private final double[] longitude = new double[1024];
+
+    @Setup
+    public void setup() throws IOException {
+        String file = System.getProperty("org.runnerup.benchmark.geoid");
+        try (InputStream in = new FileInputStream(file)) {
+            if (!Geoid.init(in)) {
+                throw new IOException("Cannot load " + file);
+            }
+        }
+        track = new Tracks(10000);
+        Random random = new Random(1);
+        for (int i = 0; i < latitude.length; i++) {
+            latitude[i] = random.nextDouble() * 170 - 85;
+            longitude[i] = random.nextDouble() * 360;
+        }
+    }
+
+    @Benchmark
+    public double getOffset() {
+        if (++pos == track.size) {
+            pos = 0;
+        }
+        return Geoid.getOffset(track.latitude[pos], track.longitude[pos]);
+    }
+
+    @Benchmark
+    public double getOffsetNewCell() {
+        pos = (pos + 1) & (latitude.length - 1);
+        return Geoid.getOffset(latitude[pos], longitude[pos]);
+    }
+}
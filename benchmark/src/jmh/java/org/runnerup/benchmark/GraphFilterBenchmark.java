@@ -0,0 +1,88 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.runnerup.util.GraphFilter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pace graph smoothing, the default filters are "mm(31);kz(5,13);sg(5)"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GraphFilterBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private double[] source;
+    private double[] data;
+    private double avgPace;
+
+    @Setup
+    public void setup() {
+        source = new Tracks(size).pace;
+        double sum = 0;
+        for (double p : source) {
+            sum += p;
+        }
+        avgPace = sum / source.length;
+        data = new double[source.length];
+    }
+
+    // The filters work in place
+    @Setup(Level.Invocation)
+    public void reset() {
+        System.arraycopy(source, 0, data, 0, source.length);
+    }
+
+    @Benchmark
+    public double[] movingMedian() {
+        new GraphFilter(data, avgPace).movingMedian(31);
+        return data;
+    }
+
+    @Benchmark
+    public double[] kolmogorovZurbenko() {
+        new GraphFilter(data, avgPace).KolmogorovZurbenko(5, 13);
+        return data;
+    }
+
+    @Benchmark
+    public double[] savitzkyGolay7() {
+        new GraphFilter(data, avgPace).SavitzkyGolay7();
+        return data;
+    }
+
+    @Benchmark
+    public double[] defaultFilters() {
+        GraphFilter f = new GraphFilter(data, avgPace);
+        f.movingMedian(31);
+        f.KolmogorovZurbenko(5, 13);
+        f.SavitzkyGolay5();
+        return data;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.runnerup.util.TrackSimplifier;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route simplification for the map, a long ultra is about 40k points
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TrackSimplifierBenchmark {
+    @Param({"10000", "40000"})
+    public int size;
+
+    private Tracks track;
+    private boolean[] keep;
+
+    @Setup
+    public void setup() {
+        track = new Tracks(size);
+        keep = new boolean[size];
+    }
+
+    @Benchmark
+    public int simplify() {
+        TrackSimplifier simplifier = new TrackSimplifier(track.size);
+        for (int i = 0; i < track.size; i++) {
+            simplifier.add(track.latitude[i], track.longitude[i]);
+        }
+        return simplifier.select(4000, keep);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.runnerup.benchmark;
+
+import java.util.Random;
+
+/**
+ * Synthetic tracks, a 1 Hz run with GPS noise, heart rate and elevation.
+ * The same size gives the same track, so results can be compared between runs.
+ */
+class Tracks {
+    static final long START_TIME = 1500000000000L;
+
+    final int size;
+    final long[] time;
+    final double[] latitude;
+    final double[] longitude;
+    final double[] altitude;
+    final int[] hr;
+    // Pace in s/m, as the points in the pace graph
+    final double[] pace;
+
+    Tracks(int size) {
+        this.size = size;
+        time = new long[size];
+        latitude = new double[size];
+        longitude = new double[size];
+        altitude = new double[size];
+        hr = new int[size];
+        pace = new double[size];
+
+        Random random = new Random(size);
+        double lat = 55.7;
+        double lon = 13.2;
+        double bearing = 0;
+        double speed = 3.0; // m/s
+        for (int i = 0; i < size; i++) {
+            bearing += random.nextGaussian() * 0.1;
+            speed = Math.max(1, Math.min(6, speed + random.nextGaussian() * 0.1));
+            // 1e-5 degrees is about 1 m
+            lat += Math.cos(bearing) * speed * 1e-5;
+            lon += Math.sin(bearing) * speed * 1e-5 / Math.cos(Math.toRadians(lat));
+            // Long tracks wrap around the globe
+            if (lat > 80 || lat < -80) {
+                lat = -lat;
+            }
+            if (lon > 180) {
+                lon -= 360;
+            }
+
+            time[i] = START_TIME + i * 1000L;
+            latitude[i] = lat + random.nextGaussian() * 3e-5;
+            longitude[i] = lon + random.nextGaussian() * 3e-5;
+            altitude[i] = 50 + 20 * Math.sin(i / 600.0) + random.nextGaussian();
+            hr[i] = (int) Math.round(120 + speed * 10 + random.nextGaussian() * 3);
+            pace[i] = 1 / (speed + random.nextGaussian() * 0.3);
+        }
+    }
+}
@@ -47,6 +47,8 @@ public interface Constants {
             String META_DATA = "meta_data";
             String DELETED = "deleted";
             String NULLCOLUMNHACK = "nullColumnHack";
+            String MODIFIED = "modified"; // incremented for each update of the row
+            String ELEVATION_GAIN = "elevation_gain";
 
             int SPORT_RUNNING = 0;
             int SPORT_BIKING = 1;
@@ -85,6 +87,55 @@ public interface Constants {
             int TYPE_DISCARD = 6;
         }
 
+        /*
+         * Locations for a completed activity, column encoded
+         * The rows in the location table are removed when the track is stored
+         */
+        interface TRACK {
+            String TABLE = "track";
+            String ACTIVITY = "activity_id";
+            String COUNT = "count";
+            String DATA = "data";
+        }
+
+        /*
+         * Activities not deleted, with values for the history list
+         * Maintained by triggers on the activity table, _id is the activity id
+         */
+        interface SUMMARY {
+            String TABLE = "activity_summary";
+            String START_TIME = "start_time";
+            String SPORT = "type";
+            String DISTANCE = "distance";
+            String TIME = "time";
+            String AVG_HR = "avg_hr";
+            String ELEVATION_GAIN = "elevation_gain";
+            String PACE = "pace"; // s/m, null if no distance
+            // Buckets in local time: yyyymmdd of the first day of the week (for the locale),
+            // yyyymm and yyyy
+            String WEEK = "week";
+            String MONTH = "month";
+            String YEAR = "year";
+        }
+
+        /*
+         * Totals per week, month and year for the activities in the summary
+         * Maintained by triggers on the summary table
+         */
+        interface ROLLUP {
+            String TABLE = "activity_rollup";
+            String PERIOD = "period";
+            String BUCKET = "bucket"; // as the bucket in SUMMARY
+            String COUNT = "count";
+            String DISTANCE = "distance";
+            String TIME = "time";
+            String ELEVATION_GAIN = "elevation_gain";
+
+            int PERIOD_WEEK = 0;
+            int PERIOD_MONTH = 1;
+            int PERIOD_YEAR = 2;
+        }
+
         interface LAP {
             String TABLE = "lap";
             String ACTIVITY = "activity_id";